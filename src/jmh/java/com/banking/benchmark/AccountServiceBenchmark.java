@@ -0,0 +1,130 @@
+package com.banking.benchmark;
+
+import com.banking.exception.InsufficientFundsException;
+import com.banking.model.Account;
+import com.banking.service.AccountService;
+import com.banking.service.OperationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-account operations of AccountService. Each operation has a single-threaded
+ * variant and a 4-thread variant to show how it behaves under concurrent clients.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.IN_MEMORY_URL)
+public class AccountServiceBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    // More than any seeded balance, so every withdrawal is rejected
+    private static final BigDecimal TOO_MUCH = new BigDecimal("1000000000.00");
+
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    @Param({"10", "100"})
+    public int historyPerAccount;
+
+    private AccountService accountService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.reset(accounts, historyPerAccount);
+        accountService = new AccountService();
+    }
+
+    private String randomAccount() {
+        return BenchmarkDatabase.accountId(ThreadLocalRandom.current().nextInt(accounts));
+    }
+
+    private void doTransfer() {
+        int from = ThreadLocalRandom.current().nextInt(accounts);
+        int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+        accountService.transfer(BenchmarkDatabase.accountId(from), BenchmarkDatabase.accountId(to), AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void deposit() {
+        accountService.deposit(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositMultiThreaded() {
+        accountService.deposit(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void withdraw() {
+        accountService.withdraw(randomAccount(), AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void withdrawMultiThreaded() {
+        accountService.withdraw(randomAccount(), AMOUNT);
+    }
+
+    // Rejected withdrawals through the exception API and through the result API
+    @Benchmark
+    @Threads(4)
+    public Object rejectedWithdrawException() {
+        try {
+            accountService.withdraw(randomAccount(), TOO_MUCH);
+            return null;
+        } catch (InsufficientFundsException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public OperationResult<Void> rejectedWithdrawResult() {
+        return accountService.tryWithdraw(randomAccount(), TOO_MUCH);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void transfer() {
+        doTransfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferMultiThreaded() {
+        doTransfer();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Account findAccount() {
+        return accountService.findAccount(randomAccount());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Account findAccountMultiThreaded() {
+        return accountService.findAccount(randomAccount());
+    }
+}
@@ -0,0 +1,86 @@
+package com.banking.benchmark;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.util.LedgerRollups;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Seeds the in-memory H2 database the benchmarks run against.
+ * Every fork points db.url at jdbc:h2:mem (see the @Fork arguments), so nothing touches banking_db.
+ */
+final class BenchmarkDatabase {
+    static final String IN_MEMORY_URL = "-Ddb.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    static final BigDecimal SEED_BALANCE = new BigDecimal("1000000.00");
+
+    private static final int BATCH_SIZE = 1000;
+
+    private BenchmarkDatabase() {
+    }
+
+    static String accountId(int index) {
+        return String.format("ACC%07d", index);
+    }
+
+    /**
+     * Drops everything, recreates the schema and inserts the given number of accounts
+     * (alternating savings and checking), each with historyPerAccount ledger rows. Every account
+     * goes to its own shard (db.shards), and the ledger rollups are rebuilt from the seeded rows.
+     */
+    static void reset(int accounts, int historyPerAccount) throws SQLException {
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+        DatabaseConnection.initializeSchema();
+
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            seedShard(shard, accounts, historyPerAccount);
+        }
+        LedgerRollups.rebuild();
+    }
+
+    private static void seedShard(int shard, int accounts, int historyPerAccount) throws SQLException {
+        try (Connection conn = DatabaseConnection.getShardConnection(shard)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement accountStmt = conn.prepareStatement("INSERT INTO accounts (account_id, type, balance) VALUES (?, ?, ?)");
+                 PreparedStatement txnStmt = conn.prepareStatement("INSERT INTO transactions (account_id, amount, date) VALUES (?, ?, ?)")) {
+                LocalDateTime start = LocalDateTime.now().minusDays(historyPerAccount);
+                int batched = 0;
+                for (int i = 0; i < accounts; i++) {
+                    String accountId = accountId(i);
+                    if (DatabaseConnection.shardOf(accountId) != shard) {
+                        continue;
+                    }
+                    accountStmt.setString(1, accountId);
+                    accountStmt.setString(2, i % 2 == 0 ? "SAVINGS" : "CHECKING");
+                    accountStmt.setBigDecimal(3, SEED_BALANCE);
+                    accountStmt.addBatch();
+
+                    for (int h = 0; h < historyPerAccount; h++) {
+                        txnStmt.setString(1, accountId);
+                        txnStmt.setBigDecimal(2, h == 0 ? SEED_BALANCE : BigDecimal.ONE);
+                        txnStmt.setTimestamp(3, Timestamp.valueOf(start.plusDays(h)));
+                        txnStmt.addBatch();
+                    }
+
+                    if (++batched % BATCH_SIZE == 0) {
+                        accountStmt.executeBatch();
+                        txnStmt.executeBatch();
+                        conn.commit();
+                    }
+                }
+                accountStmt.executeBatch();
+                txnStmt.executeBatch();
+                conn.commit();
+            }
+        }
+    }
+}
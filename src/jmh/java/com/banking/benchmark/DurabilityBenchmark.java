@@ -0,0 +1,85 @@
+package com.banking.benchmark;
+
+import com.banking.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposit cost under each db.durability mode, against a file database in a fresh temp directory.
+ * Each mode runs in its own fork, so the mode is fixed before DatabaseConnection loads.
+ * Reproduce with: mvn -Pbenchmark verify -Djmh.include=DurabilityBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DurabilityBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final int ACCOUNTS = 1000;
+
+    @Param({"strict", "group-commit", "snapshot"})
+    public String mode;
+
+    private AccountService accountService;
+
+    // Fixed seed per thread so every run touches the same account sequence
+    @State(Scope.Thread)
+    public static class AccountPicker {
+        private Random random;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            random = new Random(42 + params.getThreadIndex());
+        }
+
+        String next() {
+            return BenchmarkDatabase.accountId(random.nextInt(ACCOUNTS));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        Path dir = Files.createTempDirectory("durability-bench");
+        System.setProperty("db.durability", mode);
+        System.setProperty("db.url", "jdbc:h2:" + dir.resolve("bench").toAbsolutePath() + ";DB_CLOSE_DELAY=-1");
+        System.setProperty("db.snapshot.file", dir.resolve("snapshot.zip").toString());
+        System.setProperty("db.snapshot.intervalSeconds", "1");
+
+        BenchmarkDatabase.reset(ACCOUNTS, 1);
+        accountService = new AccountService();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void deposit(AccountPicker picker) {
+        accountService.deposit(picker.next(), AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositMultiThreaded(AccountPicker picker) {
+        accountService.deposit(picker.next(), AMOUNT);
+    }
+}
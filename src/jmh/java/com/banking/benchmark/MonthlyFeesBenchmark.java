@@ -0,0 +1,93 @@
+package com.banking.benchmark;
+
+import com.banking.service.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The month-end pass over every account. The database is reseeded before each iteration
+ * so interest compounding and fees do not drift balances between iterations.
+ * The multi-threaded variant runs the pass while three client threads keep depositing.
+ * engine selects the per-account pass or the columnar AccrualEngine (accrual.engine).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.IN_MEMORY_URL)
+public class MonthlyFeesBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    @Param({"1000", "10000"})
+    public int accounts;
+
+    @Param({"10"})
+    public int historyPerAccount;
+
+    @Param({"object", "columnar"})
+    public String engine;
+
+    private AccountService accountService;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void silenceConsole() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setProperty("accrual.engine", engine);
+        accountService = new AccountService();
+    }
+
+    @Setup(Level.Iteration)
+    public void reseed() throws SQLException {
+        BenchmarkDatabase.reset(accounts, historyPerAccount);
+    }
+
+    @TearDown(Level.Trial)
+    public void restoreConsole() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void applyMonthlyFeesAndInterest() {
+        accountService.applyMonthlyFeesAndInterest();
+    }
+
+    @Benchmark
+    @Group("underLoad")
+    @GroupThreads(1)
+    public void applyMonthlyFeesAndInterestUnderLoad() {
+        accountService.applyMonthlyFeesAndInterest();
+    }
+
+    @Benchmark
+    @Group("underLoad")
+    @GroupThreads(3)
+    public void concurrentDeposits() {
+        String accountId = BenchmarkDatabase.accountId(ThreadLocalRandom.current().nextInt(accounts));
+        accountService.deposit(accountId, AMOUNT);
+    }
+}
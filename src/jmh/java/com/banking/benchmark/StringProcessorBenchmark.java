@@ -0,0 +1,63 @@
+package com.banking.benchmark;
+
+import com.banking.util.StringProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringProcessor parsing of "name, type, balance" lines. Console output is discarded
+ * so the numbers reflect parsing and formatting rather than terminal speed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringProcessorBenchmark {
+    @Param({"Jane Doe, SAVINGS, 1500.00", "A Very Long Account Holder Name, CHECKING, 123456789.99"})
+    public String data;
+
+    private StringProcessor stringProcessor;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        stringProcessor = new StringProcessor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void processAccountData() {
+        stringProcessor.processAccountData(data);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void processAccountDataMultiThreaded() {
+        stringProcessor.processAccountData(data);
+    }
+}
@@ -0,0 +1,63 @@
+package com.banking.benchmark;
+
+import com.banking.util.TransactionLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TransactionLogger.getTransactionHistory for a random account, as the ledger grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.IN_MEMORY_URL)
+public class TransactionHistoryBenchmark {
+    @Param({"1000", "10000"})
+    public int accounts;
+
+    @Param({"10", "100"})
+    public int historyPerAccount;
+
+    private TransactionLogger transactionLogger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        BenchmarkDatabase.reset(accounts, historyPerAccount);
+        transactionLogger = new TransactionLogger();
+    }
+
+    private List<TransactionLogger.TransactionRecord> history() {
+        String accountId = BenchmarkDatabase.accountId(ThreadLocalRandom.current().nextInt(accounts));
+        return transactionLogger.getTransactionHistory(accountId);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public List<TransactionLogger.TransactionRecord> getTransactionHistory() {
+        return history();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<TransactionLogger.TransactionRecord> getTransactionHistoryMultiThreaded() {
+        return history();
+    }
+}
@@ -1,70 +1,242 @@
 package com.banking;
 
+import com.banking.accrual.AccrualEngine;
 import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.db.TwoPhaseCommit;
+import com.banking.event.AccountEvent;
+import com.banking.event.AccountEvents;
 import com.banking.exception.BankingException;
+import com.banking.hot.HotAccounts;
+import com.banking.metrics.MetricsRegistry;
 import com.banking.exception.InsufficientFundsException;
 import com.banking.model.Account;
 import com.banking.exception.AccountNotFoundException;
 import com.banking.model.CheckingAccount;
 import com.banking.model.SavingsAccount;
+import com.banking.report.AccountView;
+import com.banking.util.LedgerRollups;
+import com.banking.util.TransactionLogger;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class BankingSystem {
+    private static final String DUPLICATE_KEY = "23505";
+    // Balances include hot accounts' slots
+    private static final String ACCOUNT_VIEW_SQL = "SELECT a.account_id, a.type, " + HotAccounts.BALANCE_COLUMN + " AS balance FROM accounts a";
+
     public void addAccount(Account account) {
-        String sql = "INSERT INTO accounts (account_id, type, balance) VALUES (?, ?, ?)";
+        String sql = "INSERT INTO accounts (account_id, type, balance, interest_rate) VALUES (?, ?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = DatabaseConnection.getConnection(account.getAccountNumber()); PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, account.getAccountNumber());
-            stmt.setString(2, account.getClass().getSimpleName().replace("Account", "").toUpperCase());
+            String type = account.getClass().getSimpleName().replace("Account", "").toUpperCase();
+            stmt.setString(2, type);
             stmt.setBigDecimal(3, account.getBalance());
+            stmt.setBigDecimal(4, account instanceof SavingsAccount ? ((SavingsAccount) account).getCustomInterestRate() : null);
             stmt.executeUpdate();
+            DatabaseConnection.commit(conn);
+            AccountEvents.publish(AccountEvent.accountCreated(account.getAccountNumber(), type, account.getBalance()));
 
         } catch (SQLException e) {
             throw new BankingException("Failed to create account", e);
         }
     }
 
-    public Account findAccount(String accountId) {
-        String sql = "SELECT * FROM accounts WHERE account_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, accountId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                String type = rs.getString("type");
-                BigDecimal balance = rs.getBigDecimal("balance");
+    /**
+     * Creates many new accounts with their opening ledger rows. The accounts are grouped by shard,
+     * the shards are written in parallel, and each shard writes chunkSize accounts per transaction
+     * with JDBC batches. An account id that already exists is skipped and returned without failing
+     * the rest of its chunk. Up to eventLimit created accounts are published one by one, more as a
+     * single BULK_LOADED event. Chunks committed before a database error stay created.
+     */
+    public Set<String> addAccounts(List<Account> accounts, int chunkSize, int eventLimit) {
+        List<List<Account>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (Account account : accounts) {
+            byShard.get(DatabaseConnection.shardOf(account.getAccountNumber())).add(account);
+        }
 
-                if ("SAVINGS".equals(type)) {
-                    return new SavingsAccount(accountId, balance);
-                } else {
-                    return new CheckingAccount(accountId, balance);
+        boolean publishEach = accounts.size() <= eventLimit;
+        Set<String> duplicates = new HashSet<>();
+        try {
+            for (List<String> shardDuplicates : Shards.scatterByShard(
+                    (shard, conn) -> addShardAccounts(conn, byShard.get(shard), chunkSize, publishEach))) {
+                duplicates.addAll(shardDuplicates);
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to create accounts", e);
+        } finally {
+            if (!publishEach) {
+                AccountEvents.publish(AccountEvent.bulkLoaded());
+            }
+        }
+        return duplicates;
+    }
+
+    private static List<String> addShardAccounts(Connection conn, List<Account> accounts, int chunkSize, boolean publishEach)
+            throws SQLException {
+        List<String> duplicates = new ArrayList<>();
+        conn.setAutoCommit(false);
+        for (int from = 0; from < accounts.size(); from += chunkSize) {
+            List<Account> chunk = accounts.subList(from, Math.min(from + chunkSize, accounts.size()));
+            LocalDateTime date = LocalDateTime.now();
+            List<Account> created = insertChunk(conn, chunk, date, duplicates);
+            if (publishEach) {
+                for (Account account : created) {
+                    AccountEvents.publish(AccountEvent.accountCreated(account.getAccountNumber(), account.getType().name(), account.getBalance()));
+                    AccountEvents.publish(AccountEvent.ledgerEntry(account.getAccountNumber(), account.getBalance(), date));
+                }
+            }
+        }
+        return duplicates;
+    }
+
+    // Inserts the chunk's accounts that do not exist yet in one transaction and returns them
+    private static List<Account> insertChunk(Connection conn, List<Account> chunk, LocalDateTime date, List<String> duplicates)
+            throws SQLException {
+        while (true) {
+            Set<String> existing = existingAccountIds(conn, chunk);
+            List<Account> fresh = new ArrayList<>(chunk.size() - existing.size());
+            List<String> ids = new ArrayList<>(chunk.size());
+            List<BigDecimal> balances = new ArrayList<>(chunk.size());
+            for (Account account : chunk) {
+                if (!existing.contains(account.getAccountNumber())) {
+                    fresh.add(account);
+                    ids.add(account.getAccountNumber());
+                    balances.add(account.getBalance());
                 }
             }
+            if (fresh.isEmpty()) {
+                duplicates.addAll(existing);
+                return fresh;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO accounts (account_id, type, balance, interest_rate) VALUES (?, ?, ?, ?)")) {
+                for (Account account : fresh) {
+                    stmt.setString(1, account.getAccountNumber());
+                    stmt.setString(2, account.getType().name());
+                    stmt.setBigDecimal(3, account.getBalance());
+                    stmt.setBigDecimal(4, account instanceof SavingsAccount ? ((SavingsAccount) account).getCustomInterestRate() : null);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                TransactionLogger.insertTransactions(conn, ids, balances, date);
+                DatabaseConnection.commit(conn);
+                duplicates.addAll(existing);
+                return fresh;
+            } catch (SQLException e) {
+                conn.rollback();
+                // Someone created one of the ids after the check; check again
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static Set<String> existingAccountIds(Connection conn, List<Account> chunk) throws SQLException {
+        Object[] ids = new Object[chunk.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = chunk.get(i).getAccountNumber();
+        }
+        Set<String> existing = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts WHERE account_id = ANY(?)")) {
+            stmt.setObject(1, ids);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getString(1));
+                }
+            }
+        }
+        return existing;
+    }
+
+    // A failed batch reports the row's error as its cause or next exception
+    private static boolean isDuplicateKey(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && DUPLICATE_KEY.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        for (SQLException next = e.getNextException(); next != null; next = next.getNextException()) {
+            if (DUPLICATE_KEY.equals(next.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Account findAccount(String accountId) {
+        Account account = tryFindAccount(accountId);
+        if (account == null) {
             throw new AccountNotFoundException(accountId);
+        }
+        return account;
+    }
 
+    // Null if there is no such account
+    public Account tryFindAccount(String accountId) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            return tryFindAccount(conn, accountId);
         } catch (SQLException e) {
             throw new BankingException("Failed to find account", e);
         }
     }
 
+    private static Account tryFindAccount(Connection conn, String accountId) throws SQLException {
+        String sql = "SELECT a.type, " + HotAccounts.BALANCE_COLUMN + " AS balance, a.interest_rate FROM accounts a WHERE a.account_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, accountId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return toAccount(accountId, rs.getString("type"), rs.getBigDecimal("balance"), rs.getBigDecimal("interest_rate"), 0);
+            }
+            return null;
+        }
+    }
+
+    // interestRate is the account's own rate, null to follow the pricing tiers
+    private static Account toAccount(String accountId, String type, BigDecimal balance, BigDecimal interestRate, int monthlyTransactions) {
+        if ("SAVINGS".equals(type)) {
+            return new SavingsAccount(accountId, balance, interestRate, monthlyTransactions);
+        } else {
+            return new CheckingAccount(accountId, balance, monthlyTransactions);
+        }
+    }
+
+    /**
+     * Adds amount to the account's balance in the database, relative to what is stored there, so
+     * concurrent deposits to one account all count. A hot account's slots are left as they are.
+     */
     public void updateAccountAfterDeposit(String accountId, BigDecimal amount) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
             conn.setAutoCommit(false);
             try {
-                // Update account balance
-                String updateSql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE accounts SET balance = balance + ? WHERE account_id = ?")) {
                     stmt.setBigDecimal(1, amount);
                     stmt.setString(2, accountId);
-                    int updated = stmt.executeUpdate();
-                    if (updated == 0) {
+                    if (stmt.executeUpdate() == 0) {
                         throw new AccountNotFoundException(accountId);
                     }
                 }
+                // Taken while the row is locked: balances published with a later version include the deposit
+                long version = AccountEvents.currentVersion(accountId);
 
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                AccountEvents.publish(AccountEvent.balanceAdjusted(accountId, amount, version));
             } catch (Exception e) {
                 conn.rollback();
                 throw new BankingException("Deposit failed", e);
@@ -74,35 +246,34 @@ public class BankingSystem {
         }
     }
 
+    /**
+     * Takes amount off the account's balance if the balance before it, slots included, covers it.
+     * The check and the update are one statement, so concurrent withdrawals cannot overdraw it.
+     * Account rules such as minimum balances are not applied; see withdrawConsolidated.
+     */
     public void updateAccountAfterWithdrawal(String accountId, BigDecimal amount) {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
             conn.setAutoCommit(false);
             try {
-                // Check sufficient funds
-                String checkSql = "SELECT balance FROM accounts WHERE account_id = ?";
-                BigDecimal currentBalance;
-                try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
-                    stmt.setString(1, accountId);
-                    ResultSet rs = stmt.executeQuery();
-                    if (!rs.next()) {
-                        throw new AccountNotFoundException(accountId);
-                    }
-                    currentBalance = rs.getBigDecimal("balance");
-                }
-
-                if (currentBalance.compareTo(amount) < 0) {
-                    throw new InsufficientFundsException(accountId, amount, currentBalance);
-                }
-
-                // Update account balance
-                String updateSql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
-                try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+                int updated;
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE accounts a SET balance = balance - ? "
+                        + "WHERE a.account_id = ? AND " + HotAccounts.BALANCE_COLUMN + " >= ?")) {
                     stmt.setBigDecimal(1, amount);
                     stmt.setString(2, accountId);
-                    stmt.executeUpdate();
+                    stmt.setBigDecimal(3, amount);
+                    updated = stmt.executeUpdate();
                 }
+                if (updated == 0) {
+                    Account account = tryFindAccount(conn, accountId);
+                    if (account == null) {
+                        throw new AccountNotFoundException(accountId);
+                    }
+                    throw new InsufficientFundsException(accountId, amount, account.getBalance());
+                }
+                long version = AccountEvents.currentVersion(accountId);
 
-                conn.commit();
+                DatabaseConnection.commit(conn);
+                AccountEvents.publish(AccountEvent.balanceAdjusted(accountId, amount.negate(), version));
 
             } catch (Exception e) {
                 conn.rollback();
@@ -113,30 +284,178 @@ public class BankingSystem {
         }
     }
 
-    public static void fetchAccount() {
-        String sql = "SELECT * FROM accounts";
+    /**
+     * Moves money between accounts that live on different shards as one unit. Each shard locks its
+     * account row, applies the balance change and writes its ledger row in a local transaction, and
+     * TwoPhaseCommit then commits both or neither. Returns false, with nothing written, if the source
+     * account cannot cover the amount.
+     */
+    public boolean transferAcrossShards(String fromAccountId, String toAccountId, BigDecimal amount) {
+        LocalDateTime date = LocalDateTime.now();
+        // Not from the pool: a pooled connection rolls back when closed, which would undo a prepared branch left for the retry
+        try (Connection fromConn = DatabaseConnection.getUnpooledShardConnection(DatabaseConnection.shardOf(fromAccountId));
+             Connection toConn = DatabaseConnection.getUnpooledShardConnection(DatabaseConnection.shardOf(toAccountId))) {
+            fromConn.setAutoCommit(false);
+            toConn.setAutoCommit(false);
+
+            Account fromAccount;
+            Account toAccount;
+            long fromVersion;
+            long toVersion;
+            try {
+                // Lock in shard order so two opposite transfers cannot deadlock across shards
+                if (DatabaseConnection.shardOf(fromAccountId) < DatabaseConnection.shardOf(toAccountId)) {
+                    fromAccount = lockAccount(fromConn, fromAccountId);
+                    toAccount = lockAccount(toConn, toAccountId);
+                } else {
+                    toAccount = lockAccount(toConn, toAccountId);
+                    fromAccount = lockAccount(fromConn, fromAccountId);
+                }
+                if (!fromAccount.tryWithdraw(amount)) {
+                    fromConn.rollback();
+                    toConn.rollback();
+                    return false;
+                }
+                toAccount.deposit(amount);
+
+                writeBalance(fromConn, fromAccount);
+                writeBalance(toConn, toAccount);
+                fromVersion = AccountEvents.nextVersion(fromAccountId);
+                toVersion = AccountEvents.nextVersion(toAccountId);
+                TransactionLogger.insertTransaction(fromConn, fromAccountId, amount.negate(), date);
+                TransactionLogger.insertTransaction(toConn, toAccountId, amount, date);
+            } catch (SQLException | RuntimeException e) {
+                fromConn.rollback();
+                toConn.rollback();
+                throw e;
+            }
 
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            TwoPhaseCommit.commit(TwoPhaseCommit.newTransactionName(), Arrays.asList(fromConn, toConn));
 
-            System.out.println("+------------+----------+---------+");
-            System.out.println("| Account ID | Type     | Balance |");
-            System.out.println("+------------+----------+---------+");
+            AccountEvents.publish(AccountEvent.balanceChanged(fromAccountId, fromAccount.getBalance(), fromVersion));
+            AccountEvents.publish(AccountEvent.balanceChanged(toAccountId, toAccount.getBalance(), toVersion));
+            AccountEvents.publish(AccountEvent.ledgerEntry(fromAccountId, amount.negate(), date));
+            AccountEvents.publish(AccountEvent.ledgerEntry(toAccountId, amount, date));
+            return true;
+        } catch (SQLException e) {
+            throw new BankingException("Cross-shard transfer failed", e);
+        }
+    }
 
-            while (rs.next()) {
-                String accountId = rs.getString("account_id");
-                String type = rs.getString("type");
-                double balance = rs.getDouble("balance");
+    /**
+     * Credits a hot account (see HotAccounts) by adding to one of its slots, so concurrent deposits
+     * do not wait for the account row. False, with nothing written, if the account has no such slot
+     * any more; the caller then takes the normal path.
+     */
+    public boolean creditHotAccount(String accountId, BigDecimal amount, int slotCount) {
+        long version;
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                if (!HotAccounts.credit(conn, accountId, amount, slotCount)) {
+                    conn.rollback();
+                    return false;
+                }
+                // The account row is not locked, so this is published as a change on top of the latest version
+                version = AccountEvents.currentVersion(accountId);
+                DatabaseConnection.commit(conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Database error during deposit", e);
+        }
+        AccountEvents.publish(AccountEvent.balanceAdjusted(accountId, amount, version));
+        return true;
+    }
+
+    /**
+     * Withdraws from an account after folding its slots into the locked account row, so the
+     * account's minimum balance or overdraft rule sees the whole balance. Returns the account with
+     * its new balance, or null, with nothing written, if it cannot cover the amount.
+     */
+    public Account withdrawConsolidated(String accountId, BigDecimal amount) {
+        Account account;
+        long version;
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                account = lockAccount(conn, accountId);
+                if (!account.tryWithdraw(amount)) {
+                    conn.rollback();
+                    return null;
+                }
+                writeBalance(conn, account);
+                version = AccountEvents.nextVersion(accountId);
+                DatabaseConnection.commit(conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Database error during withdrawal", e);
+        }
+        AccountEvents.publish(AccountEvent.balanceChanged(accountId, account.getBalance(), version));
+        return account;
+    }
 
-                System.out.printf("| %-10s | %-8s | %7.2f |\n", accountId, type, balance);
+    // Also folds a hot account's slots into the row, which then holds the whole balance until commit
+    private static Account lockAccount(Connection conn, String accountId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT type, balance, interest_rate FROM accounts WHERE account_id = ? FOR UPDATE")) {
+            stmt.setString(1, accountId);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                throw new AccountNotFoundException(accountId);
             }
+            BigDecimal balance = rs.getBigDecimal("balance").add(HotAccounts.consolidate(conn, accountId));
+            return toAccount(accountId, rs.getString("type"), balance, rs.getBigDecimal("interest_rate"), 0);
+        }
+    }
 
-            System.out.println("+------------+----------+---------+");
+    private static void writeBalance(Connection conn, Account account) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("UPDATE accounts SET balance = ? WHERE account_id = ?")) {
+            stmt.setBigDecimal(1, account.getBalance());
+            stmt.setString(2, account.getAccountNumber());
+            stmt.executeUpdate();
+        }
+    }
+
+    public static void fetchAccount() {
+        try {
+            List<AccountView> accounts = new ArrayList<>();
+            for (List<AccountView> shard : Shards.scatter(conn -> loadAccounts(conn, ACCOUNT_VIEW_SQL))) {
+                accounts.addAll(shard);
+            }
+            printAccounts(accounts);
 
         } catch (SQLException e) {
             throw new BankingException("No account created on the table yet", e);
         }
     }
 
+    private static List<AccountView> loadAccounts(Connection conn, String sql) throws SQLException {
+        List<AccountView> accounts = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                accounts.add(new AccountView(rs.getString("account_id"), rs.getString("type"), rs.getBigDecimal("balance")));
+            }
+        }
+        return accounts;
+    }
+
+    private static void printAccounts(List<AccountView> accounts) {
+        System.out.println("+------------+----------+---------+");
+        System.out.println("| Account ID | Type     | Balance |");
+        System.out.println("+------------+----------+---------+");
+
+        for (AccountView account : accounts) {
+            System.out.printf("| %-10s | %-8s | %7.2f |\n", account.getAccountId(), account.getType(), account.getBalance());
+        }
+
+        System.out.println("+------------+----------+---------+");
+    }
+
     /**
      * // Get accounts sorted by balance [Week 1]
      * public List<Account> getAccountsSortedByBalance() {
@@ -147,23 +466,16 @@ public class BankingSystem {
      */
     // Get accounts sorted by balance [Week 2 Version]
     public static void getAccountsSortedByBalance() {
-        String sql = "SELECT * FROM accounts ORDER BY balance ASC";
-
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-
-            System.out.println("+------------+----------+---------+");
-            System.out.println("| Account ID | Type     | Balance |");
-            System.out.println("+------------+----------+---------+");
+        String sql = ACCOUNT_VIEW_SQL + " ORDER BY balance ASC";
 
-            while (rs.next()) {
-                String accountId = rs.getString("account_id");
-                String type = rs.getString("type");
-                double balance = rs.getDouble("balance");
-
-                System.out.printf("| %-10s | %-8s | %7.2f |\n", accountId, type, balance);
+        try {
+            // Each shard sorts its own accounts; the combined list is sorted once more here
+            List<AccountView> accounts = new ArrayList<>();
+            for (List<AccountView> shard : Shards.scatter(conn -> loadAccounts(conn, sql))) {
+                accounts.addAll(shard);
             }
-
-            System.out.println("+------------+----------+---------+");
+            accounts.sort(Comparator.comparing(AccountView::getBalance));
+            printAccounts(accounts);
 
         } catch (SQLException e) {
             throw new BankingException("No account created on the table yet", e);
@@ -179,56 +491,86 @@ public class BankingSystem {
 
     // Process monthly fees for all accounts [Week 2 Version]
     public static void applyMonthlyFeesAndInterest() {
-        String sql = "SELECT * FROM accounts";
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
-            ResultSet rs = stmt.executeQuery(sql);
+        // accrual.engine=columnar computes the same amounts over chunks of accounts (see AccrualEngine)
+        if ("columnar".equals(DatabaseConnection.getProperty("accrual.engine", "object"))) {
+            new AccrualEngine().applyMonthly();
+            System.out.println("Monthly fees and interest applied successfully.");
+            return;
+        }
+        try {
+            // Shards are processed in parallel; each account's writes go back to its own shard
+            Shards.scatter(conn -> {
+                applyMonthlyFeesAndInterest(conn);
+                return null;
+            });
+            System.out.println("Monthly fees and interest applied successfully.");
+
+        } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.applyMonthlyFeesAndInterest", e);
+            e.printStackTrace();
+        }
+    }
+
+    private static void applyMonthlyFeesAndInterest(Connection conn) throws SQLException {
+        // The month's transaction count (from the daily rollups) selects the fee tier
+        YearMonth month = YearMonth.now();
+        String sql = "SELECT a.account_id, a.type, " + HotAccounts.BALANCE_COLUMN + " AS balance, a.interest_rate, " + LedgerRollups.MONTH_TRANSACTIONS_COLUMN
+                + " AS month_transactions FROM accounts a";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDate(1, Date.valueOf(month.atDay(1)));
+            stmt.setDate(2, Date.valueOf(month.atEndOfMonth()));
+            ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
                 String accountId = rs.getString("account_id");
                 String type = rs.getString("type");
                 BigDecimal balance = rs.getBigDecimal("balance");
+                if (!"SAVINGS".equals(type) && !"CHECKING".equals(type)) {
+                    continue;
+                }
 
-                if ("SAVINGS".equals(type)) {
-                    SavingsAccount account = new SavingsAccount(accountId, balance);
-                    account.processMonthlyFees();
-                    updateAccountBalance(account.getAccountNumber(), account.getBalance());
-                    BigDecimal originalBalance = account.getBalance().subtract(balance);
-                    addTransactionForMonthlyFeesAndInterest(account.getAccountNumber(), originalBalance);
-
-                } else if ("CHECKING".equals(type)) {
-                    CheckingAccount account = new CheckingAccount(accountId, balance);
-                    account.processMonthlyFees();
-                    updateAccountBalance(account.getAccountNumber(), account.getBalance());
-                    BigDecimal originalBalance = account.getBalance().subtract(balance);
-                    addTransactionForMonthlyFeesAndInterest(account.getAccountNumber(), originalBalance);
+                // An account that cannot pay its fee is left alone, as AccrualEngine does
+                Account account = toAccount(accountId, type, balance, rs.getBigDecimal("interest_rate"), rs.getInt("month_transactions"));
+                if (!account.processMonthlyFees()) {
+                    continue;
                 }
+                updateAccountBalance(account.getAccountNumber(), account.getBalance());
+                BigDecimal originalBalance = account.getBalance().subtract(balance);
+                addTransactionForMonthlyFeesAndInterest(account.getAccountNumber(), originalBalance);
             }
-            System.out.println("Monthly fees and interest applied successfully.");
-
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 
     public static void updateAccountBalance(String accountNumber, BigDecimal newBalance) {
-        String sql = "UPDATE accounts SET balance = ? WHERE account_id = ?";
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String sql = HotAccounts.SET_BALANCE_SQL;
+        try (Connection conn = DatabaseConnection.getConnection(accountNumber); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            // In a transaction, so the row is still locked when the version is taken
+            conn.setAutoCommit(false);
             pstmt.setBigDecimal(1, newBalance);
             pstmt.setString(2, accountNumber);
             pstmt.executeUpdate();
+            long version = AccountEvents.nextVersion(accountNumber);
+            DatabaseConnection.commit(conn);
+            AccountEvents.publish(AccountEvent.balanceChanged(accountNumber, newBalance, version));
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.updateAccountBalance", e);
             e.printStackTrace();
         }
     }
 
     public static void addTransactionForMonthlyFeesAndInterest(String accountId, BigDecimal amount) {
-        String insertSql = "INSERT INTO transactions (account_id, amount, date) VALUES (?, ?, ?)";
-
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(insertSql)) {
-            stmt.setString(1, accountId);
-            stmt.setBigDecimal(2, amount);
-            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-            stmt.executeUpdate();
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                LocalDateTime date = LocalDateTime.now();
+                TransactionLogger.insertTransaction(conn, accountId, amount, date);
+                DatabaseConnection.commit(conn);
+                AccountEvents.publish(AccountEvent.ledgerEntry(accountId, amount, date));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.addTransactionForMonthlyFeesAndInterest", e);
             e.printStackTrace();
         }
     }
@@ -241,12 +583,22 @@ public class BankingSystem {
      */
     // Get total balance across all accounts [Week 2 Version]
     public static BigDecimal getTotalBalance() {
-        String sql = "SELECT SUM(balance) AS total_balance FROM accounts";
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return rs.getBigDecimal("total_balance");
+        String sql = "SELECT SUM(balance) + (SELECT COALESCE(SUM(balance), 0) FROM account_slots) AS total_balance FROM accounts";
+        try {
+            List<BigDecimal> totals = Shards.scatter(conn -> {
+                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                    return rs.next() ? rs.getBigDecimal("total_balance") : null;
+                }
+            });
+            BigDecimal total = null;
+            for (BigDecimal shardTotal : totals) {
+                if (shardTotal != null) {
+                    total = total == null ? shardTotal : total.add(shardTotal);
+                }
             }
+            return total;
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.getTotalBalance", e);
             e.printStackTrace();
         }
         return BigDecimal.ZERO;
@@ -260,19 +612,29 @@ public class BankingSystem {
      **/
     // Get accounts filtered by minimum balance [Week 2 Version]
     public static void getAccountWithMinBalance() {
-        String sql = "SELECT account_id, balance FROM accounts ORDER BY balance ASC LIMIT 1";
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
+        String sql = ACCOUNT_VIEW_SQL + " ORDER BY balance ASC LIMIT 1";
+        try {
+            // Minimum of the per-shard minimums
+            AccountView min = null;
+            for (List<AccountView> shard : Shards.scatter(conn -> loadAccounts(conn, sql))) {
+                for (AccountView account : shard) {
+                    if (min == null || account.getBalance().compareTo(min.getBalance()) < 0) {
+                        min = account;
+                    }
+                }
+            }
+            if (min != null) {
                 System.out.println("Account with Minimum Balance:");
                 System.out.println("+---------------+----------+");
                 System.out.println("| Account No    | Balance  |");
                 System.out.println("+---------------+----------+");
-                System.out.printf("| %-13s | %8.2f |\n", rs.getString("account_id"), rs.getDouble("balance"));
+                System.out.printf("| %-13s | %8.2f |\n", min.getAccountId(), min.getBalance());
                 System.out.println("+---------------+----------+");
             } else {
                 System.out.println("No accounts found.");
             }
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.getAccountWithMinBalance", e);
             e.printStackTrace();
         }
     }
@@ -286,11 +648,18 @@ public class BankingSystem {
     // Get number of accounts [Week 2 Version]
     public static int getNumberOfAccounts() {
         String sql = "SELECT COUNT(*) AS total_accounts FROM accounts";
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
-            if (rs.next()) {
-                return rs.getInt("total_accounts");
+        try {
+            int total = 0;
+            for (int count : Shards.scatter(conn -> {
+                try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+                    return rs.next() ? rs.getInt("total_accounts") : 0;
+                }
+            })) {
+                total += count;
             }
+            return total;
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.getNumberOfAccounts", e);
             e.printStackTrace();
         }
         return 0;
@@ -305,10 +674,20 @@ public class BankingSystem {
      */
     // Clear all accounts [Week 2 Version]
     public static void clearAccounts() {
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("DELETE FROM accounts");
+        try {
+            Shards.scatter(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM accounts");
+                    stmt.executeUpdate("DELETE FROM interest_accruals");
+                    stmt.executeUpdate("DELETE FROM account_slots");
+                    DatabaseConnection.commit(conn);
+                }
+                return null;
+            });
+            AccountEvents.publish(AccountEvent.accountsCleared());
             System.out.println("All accounts have been deleted.");
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("BankingSystem.clearAccounts", e);
             e.printStackTrace();
         }
     }
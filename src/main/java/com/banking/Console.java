@@ -1,33 +1,62 @@
 package com.banking;
 
+import com.banking.admission.AdmissionController;
+import com.banking.batch.BatchRunner;
+import com.banking.db.DatabaseConnection;
+import com.banking.db.SqlTracer;
+import com.banking.event.AccountEvent;
 import com.banking.exception.AccountNotFoundException;
+import com.banking.hot.HotAccounts;
+import com.banking.metrics.MetricsRegistry;
 import com.banking.model.Account;
 import com.banking.model.AccountType;
 import com.banking.model.CheckingAccount;
 import com.banking.model.SavingsAccount;
+import com.banking.report.AccountView;
+import com.banking.report.ReportingModel;
 import com.banking.service.AccountService;
+import com.banking.util.CommandLineOptions;
 import com.banking.util.TransactionLogger;
 import org.h2.tools.Server;
 
+import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class Console {
+    private static final int RECENT_TRANSACTIONS = Integer.parseInt(DatabaseConnection.getProperty("console.recentTransactions", "5"));
+
     private final Scanner scanner;
     private final AccountService accountService; // made static this day
     private final TransactionLogger transactionLogger; // made static this day
+    private final ReportingModel reportingModel;
     private Server h2Server;
 
     public Console() {
         this.scanner = new Scanner(System.in);
         this.accountService = new AccountService();
         this.transactionLogger = new TransactionLogger();
+        this.reportingModel = new ReportingModel();
+        MetricsRegistry.getDefault().registerMBeans();
+        AdmissionController.getDefault().registerMBean();
+        HotAccounts.getDefault().registerMBean();
+        SqlTracer.getDefault().registerMBean();
     }
 
     public void start() {
-        startH2Console();
+        // startup.mode=fast defers the H2 web console to the admin menu and initializes the rest concurrently
+        if ("fast".equals(DatabaseConnection.getProperty("startup.mode", "standard"))) {
+            FastStart fastStart = new FastStart();
+            fastStart.run(transactionLogger, reportingModel);
+            fastStart.print();
+        } else {
+            startH2Console(true);
+            reportingModel.start();
+        }
+        reportingModel.registerMBean();
 //        while (true) {
 //            displayMenu();
 //            int choice = getIntInput("Enter choice: ");
@@ -70,6 +99,7 @@ public class Console {
             }
         }
 
+        reportingModel.stop();
         stopH2Console();
     }
 
@@ -116,25 +146,40 @@ public class Console {
             switch (choice) {
                 case 1:
                     accountService.applyMonthlyFeesAndInterest();
-                    transactionLogger.fetchTransactions();
+                    awaitReportingModel();
+                    printRecentLedger();
                     break;
                 case 2:
-                    BigDecimal totalBalance = accountService.getTotalBalance();
+                    BigDecimal totalBalance = reportingModel.getTotalBalance();
                     System.out.println("The combined balance of all accounts is $" + totalBalance);
+                    printReportStaleness();
                     break;
                 case 3:
-                    accountService.getAccountsSortedByBalance();
+                    printAccounts(reportingModel.getAccountsSortedByBalance());
+                    printReportStaleness();
                     break;
                 case 4:
-                    accountService.getAccountWithMinBalance();
+                    printAccountWithMinBalance(reportingModel.getAccountWithMinBalance());
+                    printReportStaleness();
                     break;
                 case 5:
-                    System.out.println("The total number of accounts is: " + accountService.getNumberOfAccounts());
+                    System.out.println("The total number of accounts is: " + reportingModel.getNumberOfAccounts());
+                    printReportStaleness();
                     break;
                 case 6:
                     transactionLogger.clearTransactions();
                     break;
                 case 7:
+                    showSqlStatistics();
+                    break;
+                case 8:
+                    if (h2Server == null) {
+                        startH2Console(false);
+                    } else {
+                        System.out.println("H2 Console is already running at " + h2Server.getURL());
+                    }
+                    break;
+                case 9:
                     System.out.println("Thank you for using the Banking System!");
                     return;
                 default:
@@ -143,12 +188,84 @@ public class Console {
         }
     }
 
-    private void startH2Console() {
+    // Admin reports come from the read model; show how far it trails the database
+    private void printReportStaleness() {
+        System.out.printf("(report data is %d ms behind the database, %d updates pending)%n",
+                reportingModel.getStalenessMillis(), reportingModel.getPendingEvents());
+    }
+
+    // Lets the admin see their own month-end run in the report that follows it
+    private void awaitReportingModel() {
+        try {
+            if (!reportingModel.awaitCaughtUp(5000)) {
+                System.out.println("Note: the report below may not include every update yet.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void printAccounts(List<AccountView> accounts) {
+        StringBuilder table = new StringBuilder();
+        table.append("+------------+----------+---------+\n");
+        table.append("| Account ID | Type     | Balance |\n");
+        table.append("+------------+----------+---------+\n");
+        for (AccountView account : accounts) {
+            table.append(String.format("| %-10s | %-8s | %7.2f |%n", account.getAccountId(), account.getType(), account.getBalance()));
+        }
+        table.append("+------------+----------+---------+");
+        System.out.println(table);
+    }
+
+    private void printAccountWithMinBalance(AccountView account) {
+        if (account == null) {
+            System.out.println("No accounts found.");
+            return;
+        }
+        System.out.println("Account with Minimum Balance:");
+        System.out.println("+---------------+----------+");
+        System.out.println("| Account No    | Balance  |");
+        System.out.println("+---------------+----------+");
+        System.out.printf("| %-13s | %8.2f |\n", account.getAccountId(), account.getBalance());
+        System.out.println("+---------------+----------+");
+    }
+
+    private void printRecentLedger() {
+        StringBuilder table = new StringBuilder();
+        table.append("+------------+---------+----------------------------+\n");
+        table.append("| Account ID | Amount  | Date                       |\n");
+        table.append("+------------+---------+----------------------------+\n");
+        for (AccountEvent entry : reportingModel.getRecentLedgerEntries()) {
+            table.append(String.format("| %-10s | %7.2f | %-26s |%n", entry.getAccountId(), entry.getAmount(), entry.getDate()));
+        }
+        table.append("+------------+---------+----------------------------+");
+        System.out.println(table);
+        printReportStaleness();
+    }
+
+    private void showSqlStatistics() {
+        SqlTracer tracer = SqlTracer.getDefault();
+        if (!tracer.isEnabled()) {
+            System.out.println("SQL tracing is off. Start with -Ddb.trace.enabled=true to collect statistics.");
+            return;
+        }
+        tracer.dump(new PrintWriter(System.out));
+        List<String> slowQueries = tracer.getSlowQueries();
+        System.out.println("\nSlow queries (>= " + tracer.getSlowQueryThresholdMillis() + " ms): " + slowQueries.size());
+        for (String slowQuery : slowQueries) {
+            System.out.println(slowQuery);
+        }
+    }
+
+    // Opened from the admin menu it only accepts local connections
+    private void startH2Console(boolean allowOthers) {
         try {
-            h2Server = Server.createWebServer("-web", "-webAllowOthers", "-webPort", "8082").start();
+            h2Server = allowOthers
+                    ? Server.createWebServer("-web", "-webAllowOthers", "-webPort", "8082").start()
+                    : Server.createWebServer("-web", "-webPort", "8082").start();
             System.out.println("H2 Console available at http://localhost:8082");
             System.out.println("Login with username 'sa' and empty password");
-            System.out.println("JDBC URL: jdbc:h2:./banking_db\n");
+            System.out.println("JDBC URL: " + DatabaseConnection.getProperty("db.url", "jdbc:h2:./banking_db") + "\n");
         } catch (SQLException e) {
             System.out.println("Warning: Could not start H2 Console: " + e.getMessage());
         }
@@ -180,7 +297,9 @@ public class Console {
         System.out.println("4. Display Account(s) with the Lowest Balance");
         System.out.println("5. Calculate the Total Number of Accounts");
         System.out.println("6. Clear Transactions");
-        System.out.println("7. Exit");
+        System.out.println("7. Show SQL Statistics");
+        System.out.println("8. Open H2 Console");
+        System.out.println("9. Exit");
         System.out.println("==================");
     }
 
@@ -274,10 +393,7 @@ public class Console {
 
             System.out.println("\nAccount created successfully!");
             System.out.println("Your account number is: " + accountNumber);
-
-
-            System.out.println();
-            accountService.fetchAccount();
+            System.out.println("Balance: $" + accountService.findAccount(accountNumber).getBalance());
 
         } catch (Exception e) {
             System.out.println("Error creating account: " + e.getMessage());
@@ -315,9 +431,8 @@ public class Console {
             System.out.println("\nDeposit successful!");
             System.out.println("New balance: $" + accountService.findAccount(accountNumber).getBalance());
 
-            // To be removed?
             System.out.println();
-            transactionLogger.fetchTransactions();
+            printRecentTransactions(accountNumber);
 
         } catch (Exception e) {
             System.out.println("Deposit failed: " + e.getMessage());
@@ -335,7 +450,7 @@ public class Console {
             System.out.println("New balance: $" + accountService.findAccount(accountNumber).getBalance());
 
             System.out.println();
-            transactionLogger.fetchTransactions();
+            printRecentTransactions(accountNumber);
 
         } catch (Exception e) {
             System.out.println("Withdrawal failed: " + e.getMessage());
@@ -355,16 +470,23 @@ public class Console {
             System.out.println("Destination account balance: $" + accountService.findAccount(toAccount).getBalance());
 
             System.out.println();
-            accountService.fetchAccount();
+            printRecentTransactions(fromAccount);
 
             System.out.println();
-            transactionLogger.fetchTransactions();
+            printRecentTransactions(toAccount);
 
         } catch (Exception e) {
             System.out.println("Transfer failed: " + e.getMessage());
         }
     }
 
+    // Last few ledger rows of one account; costs the same however large the ledger gets
+    private void printRecentTransactions(String accountNumber) {
+        System.out.println("Recent activity for " + accountNumber + ":");
+        System.out.println(TransactionLogger.renderTransactions(
+                transactionLogger.getRecentTransactions(accountNumber, RECENT_TRANSACTIONS)));
+    }
+
     private void viewTransactions() {
         System.out.println("=== View Transactions ===");
         String accountNumber = getStringInput("Enter account number: ");
@@ -427,7 +549,17 @@ public class Console {
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // --batch=<script> runs commands from a file or stdin instead of the menus (see BatchRunner)
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("batch")) {
+            BatchRunner.run(options);
+            return;
+        }
+        if (options.containsKey("fast-start")) {
+            System.setProperty("startup.mode", "fast");
+        }
+
         Console app = new Console();
         app.start();
     }
@@ -0,0 +1,111 @@
+package com.banking;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.report.AccountView;
+import com.banking.report.ReportingModel;
+import com.banking.util.TransactionLogger;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Startup for startup.mode=fast: the schema, the connection pool (startup.poolSize) and the reporting
+ * model's caches are initialized concurrently instead of one after another, the hot paths are
+ * optionally warmed up (startup.warmup=true) and the time of each step is reported.
+ * The H2 web console is not started here; the admin menu opens it on demand.
+ */
+class FastStart {
+    private final List<String> steps = new ArrayList<>();
+    private final List<Long> millis = new ArrayList<>();
+
+    void run(TransactionLogger transactionLogger, ReportingModel reportingModel) {
+        // Covers JVM start, class loading and DatabaseConnection's configuration, which run before we get here
+        record("JVM and configuration", ManagementFactory.getRuntimeMXBean().getUptime());
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "fast-start");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // The reporting model reads the tables, so it waits for the schema; the pool does not
+            CompletableFuture<Void> schemaAndCaches = CompletableFuture
+                    .runAsync(timed("schema", () -> DatabaseConnection.initializeSchema()), executor)
+                    .thenRun(timed("reporting model", reportingModel::start));
+            int poolSize = Integer.parseInt(DatabaseConnection.getProperty("startup.poolSize", "8"));
+            CompletableFuture<Void> pool = CompletableFuture
+                    .runAsync(timed("connection pool (" + poolSize + " per shard)", () -> DatabaseConnection.initializePool(poolSize)), executor);
+            CompletableFuture.allOf(schemaAndCaches, pool).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Startup failed", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        record("concurrent initialization (wall)", elapsedMillis(start));
+
+        if (Boolean.parseBoolean(DatabaseConnection.getProperty("startup.warmup", "false"))) {
+            int iterations = Integer.parseInt(DatabaseConnection.getProperty("startup.warmupIterations", "2000"));
+            long warmupStart = System.nanoTime();
+            warmUp(transactionLogger, reportingModel, iterations);
+            record("warm-up (" + iterations + " iterations)", elapsedMillis(warmupStart));
+        }
+        record("total", ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    // Only read paths are exercised, so warming up never writes to the ledger. It goes below
+    // AccountService so the lookups do not show up in the operation metrics.
+    private void warmUp(TransactionLogger transactionLogger, ReportingModel reportingModel, int iterations) {
+        BankingSystem bankingSystem = new BankingSystem();
+        List<AccountView> accounts = reportingModel.getAccountsSortedByBalance();
+        for (int i = 0; i < iterations; i++) {
+            String accountId = accounts.isEmpty() ? "WARMUP-" + i : accounts.get(i % accounts.size()).getAccountId();
+            try {
+                bankingSystem.findAccount(accountId);
+            } catch (AccountNotFoundException e) {
+                // expected for the probe ids of an empty database
+            }
+            TransactionLogger.renderTransactions(transactionLogger.getRecentTransactions(accountId, 5));
+            reportingModel.getTotalBalance();
+        }
+    }
+
+    void print() {
+        System.out.println("Startup timings:");
+        for (int i = 0; i < steps.size(); i++) {
+            System.out.printf("  %-40s %6d ms%n", steps.get(i), millis.get(i));
+        }
+        System.out.println();
+    }
+
+    private synchronized void record(String step, long elapsedMillis) {
+        steps.add(step);
+        millis.add(elapsedMillis);
+    }
+
+    private Runnable timed(String step, Step body) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                body.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            record(step, elapsedMillis(start));
+        };
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,197 @@
+package com.banking.accrual;
+
+import com.banking.pricing.PricingTable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * One chunk of accounts in columnar form: parallel primitive arrays indexed by row, with amounts
+ * in cents and rates in millionths. The compute methods are counted loops over these arrays with
+ * no boxing or allocation, so the JIT can unroll them and vectorize what the CPU allows.
+ *
+ * The month-end follows Account.processMonthlyFees: interest at the priced rate is credited, then
+ * the fee is charged if it leaves at least the minimum balance. Rounding is HALF_UP to the cent, the
+ * same as storing the per-object BigDecimal results in a DECIMAL(19, 2) column. Rows whose balance is
+ * too large for long arithmetic are flagged wide and recomputed with BigDecimal by the finishWide methods.
+ */
+final class AccrualChunk {
+    static final int RATE_SCALE = PricingTable.RATE_SCALE;
+    static final long RATE_ONE = 1_000_000L;
+    // balance x rate x 31 days, and balance x 1e6 x 31, must fit in a long with room to spare
+    private static final int HEADROOM = 64;
+
+    final String[] accountIds;
+    final int[] type;              // AccountType ordinal, -1 for a type the month-end ignores
+    final long[] balance;          // cents (saturated for wide rows, which only use it for the tier lookup)
+    final long[] customRate;       // millionths, -1 to follow the pricing tiers
+    final long[] transactions;     // this month's, for the fee tier
+    final long[] rate;             // priced: millionths per month
+    final long[] fee;              // priced: cents per month
+    final long[] floor;            // priced: lowest balance in cents the fee may leave
+    final long[] accrued;          // sum of daily balance x rate, in cents x millionths
+    final int[] accruedDays;
+    final long[] lastAccrualDay;   // epoch day, Long.MIN_VALUE if none this month
+    final long[] interest;         // result: cents credited
+    final long[] charged;          // result: cents debited
+    final boolean[] post;          // result: the month-end processed the account (the amount can be 0.00)
+    final boolean[] accruedToday;
+    final boolean[] wide;
+    final BigDecimal[] wideBalance;
+    final BigDecimal[] wideAccrued;
+    int size;
+
+    AccrualChunk(int capacity) {
+        accountIds = new String[capacity];
+        type = new int[capacity];
+        balance = new long[capacity];
+        customRate = new long[capacity];
+        transactions = new long[capacity];
+        rate = new long[capacity];
+        fee = new long[capacity];
+        floor = new long[capacity];
+        accrued = new long[capacity];
+        accruedDays = new int[capacity];
+        lastAccrualDay = new long[capacity];
+        interest = new long[capacity];
+        charged = new long[capacity];
+        post = new boolean[capacity];
+        accruedToday = new boolean[capacity];
+        wide = new boolean[capacity];
+        wideBalance = new BigDecimal[capacity];
+        wideAccrued = new BigDecimal[capacity];
+    }
+
+    /**
+     * Appends a row. maxRate bounds the rate the row can be priced at; the balance is kept as a long
+     * unless it (or the accrued amount) could overflow the loops, in which case the row is flagged wide.
+     */
+    void add(String accountId, int accountType, BigDecimal balanceAmount, long rateMillionths, long monthTransactions,
+             long maxRate, BigDecimal accruedAmount, int days, long lastDay) {
+        int row = size++;
+        accountIds[row] = accountId;
+        type[row] = accountType;
+        customRate[row] = rateMillionths;
+        transactions[row] = monthTransactions;
+        accruedDays[row] = days;
+        lastAccrualDay[row] = lastDay;
+
+        long limit = Long.MAX_VALUE / Math.max(Math.max(maxRate, rateMillionths), RATE_ONE) / HEADROOM;
+        BigDecimal cents = balanceAmount.movePointRight(2);
+        BigDecimal accruedUnits = accruedAmount.movePointRight(2 + RATE_SCALE);
+        boolean fits = cents.abs().compareTo(BigDecimal.valueOf(limit)) <= 0
+                && accruedUnits.abs().compareTo(BigDecimal.valueOf(limit).multiply(BigDecimal.valueOf(RATE_ONE))) <= 0;
+        wide[row] = !fits;
+        if (fits) {
+            balance[row] = cents.longValueExact();
+            accrued[row] = accruedUnits.longValueExact();
+            wideBalance[row] = null;
+            wideAccrued[row] = null;
+        } else {
+            balance[row] = PricingTable.toCents(balanceAmount);
+            accrued[row] = 0;
+            wideBalance[row] = balanceAmount;
+            wideAccrued[row] = accruedAmount;
+        }
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    // Rate, fee and floor of every row from the compiled pricing table
+    void price(PricingTable pricing) {
+        for (int i = 0; i < size; i++) {
+            int t = type[i];
+            rate[i] = t < 0 ? 0 : customRate[i] >= 0 ? customRate[i] : pricing.rate(t, balance[i]);
+            fee[i] = t < 0 ? 0 : pricing.fee(t, balance[i], transactions[i]);
+            floor[i] = t < 0 ? 0 : pricing.minimumBalance(t);
+        }
+    }
+
+    // Month-end on the current balance: interest is balance x rate
+    void monthly() {
+        for (int i = 0; i < size; i++) {
+            settle(i, balance[i] * rate[i], RATE_ONE);
+        }
+    }
+
+    // One day of interest at the current balance; rows already accrued for the day are left alone
+    void accrueDay(long epochDay) {
+        for (int i = 0; i < size; i++) {
+            boolean due = type[i] >= 0 && rate[i] != 0 && lastAccrualDay[i] < epochDay;
+            accrued[i] += due ? balance[i] * rate[i] : 0;
+            accruedDays[i] += due ? 1 : 0;
+            accruedToday[i] = due;
+        }
+    }
+
+    // Month-end on the accruals: interest is the average daily balance x rate
+    void postAccrued(int daysInMonth) {
+        long divisor = RATE_ONE * daysInMonth;
+        for (int i = 0; i < size; i++) {
+            settle(i, accrued[i], divisor);
+        }
+    }
+
+    /**
+     * exact / divisor is the interest in cents. It is credited if positive; the fee is then charged if
+     * balance + exact interest - fee stays at or above the floor (compared unrounded, as Account does).
+     * An account that cannot pay its fee is not processed, as in Account.processMonthlyFees.
+     */
+    private void settle(int i, long exact, long divisor) {
+        boolean credit = exact > 0;
+        long earned = credit ? exact : 0;
+        interest[i] = credit ? (exact + divisor / 2) / divisor : 0;
+        long headroom = balance[i] - fee[i] - floor[i];
+        boolean canPay = fee[i] == 0 || headroom >= 0 || headroom * divisor + earned >= 0;
+        charged[i] = canPay ? fee[i] : 0;
+        post[i] = type[i] >= 0 && canPay;
+    }
+
+    // The loops above leave wide rows with meaningless results; these recompute them with BigDecimal
+
+    void finishWideMonthly() {
+        for (int i = 0; i < size; i++) {
+            if (wide[i]) {
+                settleWide(i, wideBalance[i].multiply(BigDecimal.valueOf(rate[i], RATE_SCALE)));
+            }
+        }
+    }
+
+    void finishWideAccrual(long epochDay) {
+        for (int i = 0; i < size; i++) {
+            if (wide[i]) {
+                accruedToday[i] = type[i] >= 0 && rate[i] != 0 && lastAccrualDay[i] < epochDay;
+                if (accruedToday[i]) {
+                    wideAccrued[i] = wideAccrued[i].add(wideBalance[i].multiply(BigDecimal.valueOf(rate[i], RATE_SCALE)));
+                    accruedDays[i]++;
+                }
+            }
+        }
+    }
+
+    void finishWidePosting(int daysInMonth) {
+        for (int i = 0; i < size; i++) {
+            if (wide[i]) {
+                // Truncating far below a cent keeps both the HALF_UP rounding and the floor comparison exact
+                settleWide(i, wideAccrued[i].divide(BigDecimal.valueOf(daysInMonth), 2 + RATE_SCALE + 4, RoundingMode.DOWN));
+            }
+        }
+    }
+
+    // BigDecimal form of settle; exactInterest is in currency units
+    private void settleWide(int i, BigDecimal exactInterest) {
+        boolean credit = exactInterest.signum() > 0;
+        BigDecimal earned = credit ? exactInterest : BigDecimal.ZERO;
+        interest[i] = credit ? exactInterest.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact() : 0;
+        BigDecimal after = wideBalance[i].add(earned).subtract(BigDecimal.valueOf(fee[i], 2));
+        boolean canPay = fee[i] == 0 || after.compareTo(BigDecimal.valueOf(floor[i], 2)) >= 0;
+        charged[i] = canPay ? fee[i] : 0;
+        post[i] = type[i] >= 0 && canPay;
+    }
+
+    BigDecimal accruedAmount(int row) {
+        return wide[row] ? wideAccrued[row] : BigDecimal.valueOf(accrued[row], 2 + RATE_SCALE);
+    }
+}
@@ -0,0 +1,291 @@
+package com.banking.accrual;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.event.AccountEvent;
+import com.banking.event.AccountEvents;
+import com.banking.exception.BankingException;
+import com.banking.hot.HotAccounts;
+import com.banking.model.AccountType;
+import com.banking.pricing.PricingTable;
+import com.banking.util.CommandLineOptions;
+import com.banking.util.LedgerRollups;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Month-end interest and fees computed over columns instead of one Account object at a time.
+ *
+ * Each shard's accounts are read in account_id order, accrual.chunkSize rows at a time, into an
+ * AccrualChunk; the interest and fee loops run over the whole chunk and the results are written back
+ * with JDBC batches in one transaction per chunk. Rates and fees come from the compiled PricingTable
+ * (fee tiers by the month's transaction count from the ledger rollups). The amounts are the same as
+ * Account.processMonthlyFees followed by storing the result in the DECIMAL(19, 2) columns; an account
+ * that cannot pay its fee (a fee past the minimum balance) is left alone by both.
+ *
+ * Interest can also accrue daily: accrueDay adds the day's balance x rate to interest_accruals, and
+ * postMonthEnd credits the accrued amount divided by the days in the month (so a balance that did not
+ * change earns exactly the monthly figure), charges the fees and clears the month's accruals.
+ *
+ * Usage: java com.banking.accrual.AccrualEngine [--monthly | --accrue=2026-09-14 | --post=2026-09] [--init-schema]
+ */
+public class AccrualEngine {
+    private static final String LOAD_SQL = "SELECT a.account_id, a.type, " + HotAccounts.BALANCE_COLUMN + " AS balance, a.interest_rate, "
+            + LedgerRollups.MONTH_TRANSACTIONS_COLUMN + " AS month_transactions, ia.accrued, ia.days, ia.last_day FROM accounts a "
+            + "LEFT JOIN interest_accruals ia ON ia.account_id = a.account_id AND ia.period = ? "
+            + "WHERE a.account_id > ? ORDER BY a.account_id LIMIT ?";
+    private static final String UPDATE_BALANCE_SQL = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+    private static final String INSERT_LEDGER_SQL = "INSERT INTO transactions (account_id, amount, date) VALUES (?, ?, ?)";
+    private static final String MERGE_ACCRUAL_SQL = "MERGE INTO interest_accruals (account_id, period, accrued, days, last_day) "
+            + "KEY (account_id, period) VALUES (?, ?, ?, ?, ?)";
+    private static final String DELETE_CHUNK_ACCRUALS_SQL = "DELETE FROM interest_accruals WHERE period = ? AND account_id BETWEEN ? AND ?";
+    private static final String DELETE_PERIOD_ACCRUALS_SQL = "DELETE FROM interest_accruals WHERE period = ?";
+
+    private enum Pass {
+        MONTHLY, ACCRUE, POST
+    }
+
+    private final int chunkSize;
+    private final PricingTable pricing;
+
+    public AccrualEngine() {
+        this(Integer.parseInt(DatabaseConnection.getProperty("accrual.chunkSize", "4096")), PricingTable.getDefault());
+    }
+
+    public AccrualEngine(int chunkSize, PricingTable pricing) {
+        this.chunkSize = chunkSize;
+        this.pricing = pricing;
+    }
+
+    // Same result as BankingSystem's per-account month-end pass
+    public AccrualSummary applyMonthly() {
+        return run(Pass.MONTHLY, LocalDate.now());
+    }
+
+    // Idempotent per day: accounts already accrued for the day are skipped
+    public AccrualSummary accrueDay(LocalDate day) {
+        return run(Pass.ACCRUE, day);
+    }
+
+    public AccrualSummary postMonthEnd(YearMonth month) {
+        return run(Pass.POST, month.atEndOfMonth());
+    }
+
+    private AccrualSummary run(Pass pass, LocalDate day) {
+        try {
+            AccrualSummary total = new AccrualSummary();
+            for (AccrualSummary shard : Shards.scatter(conn -> runShard(conn, pass, day))) {
+                total.add(shard);
+            }
+            return total;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to run " + pass.name().toLowerCase() + " accrual", e);
+        }
+    }
+
+    private AccrualSummary runShard(Connection conn, Pass pass, LocalDate day) throws SQLException {
+        AccrualSummary summary = new AccrualSummary();
+        AccrualChunk chunk = new AccrualChunk(chunkSize);
+        Date period = Date.valueOf(day.withDayOfMonth(1));
+        int daysInMonth = day.lengthOfMonth();
+        conn.setAutoCommit(false);
+
+        String after = "";
+        do {
+            load(conn, chunk, period, day, after);
+            if (chunk.size == 0) {
+                break;
+            }
+            after = chunk.accountIds[chunk.size - 1];
+            summary.addAccounts(chunk.size);
+
+            chunk.price(pricing);
+            switch (pass) {
+                case MONTHLY:
+                    chunk.monthly();
+                    chunk.finishWideMonthly();
+                    writePostings(conn, chunk, summary);
+                    break;
+                case ACCRUE:
+                    chunk.accrueDay(day.toEpochDay());
+                    chunk.finishWideAccrual(day.toEpochDay());
+                    writeAccruals(conn, chunk, period, Date.valueOf(day), summary);
+                    break;
+                case POST:
+                    chunk.postAccrued(daysInMonth);
+                    chunk.finishWidePosting(daysInMonth);
+                    // Clearing the chunk's accruals in the same transaction keeps a rerun from paying them twice
+                    try (PreparedStatement stmt = conn.prepareStatement(DELETE_CHUNK_ACCRUALS_SQL)) {
+                        stmt.setDate(1, period);
+                        stmt.setString(2, chunk.accountIds[0]);
+                        stmt.setString(3, after);
+                        stmt.executeUpdate();
+                    }
+                    writePostings(conn, chunk, summary);
+                    break;
+            }
+        } while (chunk.size == chunkSize);
+
+        if (pass == Pass.POST) {
+            // Accruals of accounts closed during the month
+            try (PreparedStatement stmt = conn.prepareStatement(DELETE_PERIOD_ACCRUALS_SQL)) {
+                stmt.setDate(1, period);
+                stmt.executeUpdate();
+            }
+            DatabaseConnection.commit(conn);
+        }
+        return summary;
+    }
+
+    private void load(Connection conn, AccrualChunk chunk, Date period, LocalDate day, String after) throws SQLException {
+        chunk.clear();
+        try (PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+            stmt.setDate(1, period);
+            stmt.setDate(2, Date.valueOf(day.withDayOfMonth(day.lengthOfMonth())));
+            stmt.setDate(3, period);
+            stmt.setString(4, after);
+            stmt.setInt(5, chunkSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    BigDecimal customRate = rs.getBigDecimal("interest_rate");
+                    BigDecimal accrued = rs.getBigDecimal("accrued");
+                    Date lastDay = rs.getDate("last_day");
+                    chunk.add(rs.getString("account_id"), typeOrdinal(rs.getString("type")), rs.getBigDecimal("balance"),
+                            customRate == null ? -1 : customRate.movePointRight(AccrualChunk.RATE_SCALE).longValue(),
+                            rs.getLong("month_transactions"), pricing.maxRate(),
+                            accrued == null ? BigDecimal.ZERO : accrued, rs.getInt("days"),
+                            lastDay == null ? Long.MIN_VALUE : lastDay.toLocalDate().toEpochDay());
+                }
+            }
+        }
+    }
+
+    // Like BankingSystem's month-end, types other than SAVINGS and CHECKING are left alone
+    private static int typeOrdinal(String type) {
+        for (AccountType accountType : AccountType.values()) {
+            if (accountType.name().equals(type)) {
+                return accountType.ordinal();
+            }
+        }
+        return -1;
+    }
+
+    // One balance update and one ledger row per account with a posting, batched, in one transaction
+    private void writePostings(Connection conn, AccrualChunk chunk, AccrualSummary summary) throws SQLException {
+        LocalDateTime date = LocalDateTime.now();
+        List<Integer> posted = new ArrayList<>();
+        long[] versions = new long[chunk.size];
+        try (PreparedStatement update = conn.prepareStatement(UPDATE_BALANCE_SQL);
+             PreparedStatement insert = conn.prepareStatement(INSERT_LEDGER_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < chunk.size; i++) {
+                if (!chunk.post[i]) {
+                    continue;
+                }
+                BigDecimal amount = BigDecimal.valueOf(chunk.interest[i] - chunk.charged[i], 2);
+                update.setBigDecimal(1, amount);
+                update.setString(2, chunk.accountIds[i]);
+                update.addBatch();
+                insert.setString(1, chunk.accountIds[i]);
+                insert.setBigDecimal(2, amount);
+                insert.setTimestamp(3, Timestamp.valueOf(date));
+                insert.addBatch();
+                posted.add(i);
+            }
+            if (posted.isEmpty()) {
+                DatabaseConnection.commit(conn);
+                return;
+            }
+            update.executeBatch();
+            insert.executeBatch();
+
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                for (int row : posted) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id generated for transaction of account " + chunk.accountIds[row]);
+                    }
+                    BigDecimal amount = BigDecimal.valueOf(chunk.interest[row] - chunk.charged[row], 2);
+                    LedgerRollups.apply(conn, chunk.accountIds[row], amount, date, keys.getLong(1));
+                }
+            }
+            // Taken while the rows are locked: balances published with a later version include the posting
+            for (int row : posted) {
+                versions[row] = AccountEvents.currentVersion(chunk.accountIds[row]);
+            }
+            DatabaseConnection.commit(conn);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+
+        for (int row : posted) {
+            BigDecimal amount = BigDecimal.valueOf(chunk.interest[row] - chunk.charged[row], 2);
+            summary.addPosting(chunk.interest[row], chunk.charged[row]);
+            AccountEvents.publish(AccountEvent.balanceAdjusted(chunk.accountIds[row], amount, versions[row]));
+            AccountEvents.publish(AccountEvent.ledgerEntry(chunk.accountIds[row], amount, date));
+        }
+    }
+
+    private void writeAccruals(Connection conn, AccrualChunk chunk, Date period, Date day, AccrualSummary summary) throws SQLException {
+        int accrued = 0;
+        try (PreparedStatement merge = conn.prepareStatement(MERGE_ACCRUAL_SQL)) {
+            for (int i = 0; i < chunk.size; i++) {
+                if (!chunk.accruedToday[i]) {
+                    continue;
+                }
+                merge.setString(1, chunk.accountIds[i]);
+                merge.setDate(2, period);
+                merge.setBigDecimal(3, chunk.accruedAmount(i));
+                merge.setInt(4, chunk.accruedDays[i]);
+                merge.setDate(5, day);
+                merge.addBatch();
+                accrued++;
+            }
+            if (accrued > 0) {
+                merge.executeBatch();
+            }
+            DatabaseConnection.commit(conn);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        summary.addAccruals(accrued);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            try {
+                DatabaseConnection.initializeSchema();
+            } catch (SQLException e) {
+                throw new BankingException("Failed to initialize schema", e);
+            }
+        }
+
+        AccrualEngine engine = new AccrualEngine();
+        long start = System.nanoTime();
+        AccrualSummary summary;
+        if (options.containsKey("accrue")) {
+            String day = options.get("accrue");
+            summary = engine.accrueDay("true".equals(day) ? LocalDate.now() : LocalDate.parse(day));
+        } else if (options.containsKey("post")) {
+            String month = options.get("post");
+            summary = engine.postMonthEnd("true".equals(month) ? YearMonth.now().minusMonths(1) : YearMonth.parse(month));
+        } else {
+            summary = engine.applyMonthly();
+        }
+        System.out.printf("%s in %d ms%n", summary, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,63 @@
+package com.banking.accrual;
+
+import java.math.BigDecimal;
+
+/**
+ * What one AccrualEngine run did across all shards.
+ */
+public class AccrualSummary {
+    private long accounts;
+    private long postings;
+    private long accruals;
+    private long interestCents;
+    private long feeCents;
+
+    void add(AccrualSummary other) {
+        accounts += other.accounts;
+        postings += other.postings;
+        accruals += other.accruals;
+        interestCents += other.interestCents;
+        feeCents += other.feeCents;
+    }
+
+    void addAccounts(int count) {
+        accounts += count;
+    }
+
+    void addAccruals(int count) {
+        accruals += count;
+    }
+
+    void addPosting(long interest, long fee) {
+        postings++;
+        interestCents += interest;
+        feeCents += fee;
+    }
+
+    public long getAccounts() {
+        return accounts;
+    }
+
+    // Ledger rows written (month-end runs)
+    public long getPostings() {
+        return postings;
+    }
+
+    // Accrual rows written (daily runs)
+    public long getAccruals() {
+        return accruals;
+    }
+
+    public BigDecimal getInterest() {
+        return BigDecimal.valueOf(interestCents, 2);
+    }
+
+    public BigDecimal getFees() {
+        return BigDecimal.valueOf(feeCents, 2);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d accounts, %d postings, %d accruals, interest %s, fees %s", accounts, postings, accruals, getInterest(), getFees());
+    }
+}
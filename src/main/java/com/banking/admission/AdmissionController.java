@@ -0,0 +1,344 @@
+package com.banking.admission;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.metrics.MetricsRegistry;
+import com.banking.metrics.ServiceOperation;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of AccountService: only a limited number of calls run at once, and
+ * the limit follows the latency those calls see, so a slow database gets fewer concurrent calls
+ * instead of an ever longer pile of them.
+ *
+ * Every operation has a Priority. HIGH calls (money movement) may use the whole limit, NORMAL
+ * calls (lookups, history) 80% of it and LOW calls (reports, month-end, bulk loads) half, so as the
+ * service fills up the reads are shed first and the remaining room is kept for transfers. A call
+ * that cannot start waits up to admission.maxWaitMillis, higher priorities being woken first; when
+ * that runs out, or admission.maxQueue calls are already waiting, it is rejected straight away.
+ *
+ * The limit is adjusted every admission.windowMillis. Each call's latency is compared with a moving
+ * average for its operation, which is only updated while nothing has to wait: if the window's calls
+ * were on average more than admission.latencyTolerance times slower than that, the limit drops by
+ * 10%; if they were not but calls had to wait, it grows by its square root. It stays between
+ * admission.minLimit and admission.maxLimit.
+ *
+ * The database is embedded and does its work on the calling threads, so with more calls running than
+ * there are processors each one takes longer just from sharing them. Latencies are divided by that
+ * share before they are compared, so a busy but healthy host is not taken for a slow database.
+ */
+public class AdmissionController implements AdmissionControllerMXBean {
+    private static volatile AdmissionController defaultController;
+
+    private static final double BACKOFF = 0.9;
+    // Fewer samples than this do not decide a window
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    // One very slow call counts as this many times slower at most
+    private static final double MAX_RATIO = 10;
+    // Samples the per-operation average moves over. It is a plain mean: one that falls faster than it
+    // rises sits near the fastest calls, and the usual slow ones then look like an overload
+    private static final int AVERAGE_WEIGHT = 32;
+
+    /**
+     * How much of the limit an operation may use; the rest is headroom for higher priorities.
+     */
+    public enum Priority {
+        LOW(0.5),
+        NORMAL(0.8),
+        HIGH(1.0);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        // Money movement first, then lookups, then reports and batch work
+        static Priority defaultFor(ServiceOperation operation) {
+            switch (operation) {
+                case CREATE_ACCOUNT:
+                case DEPOSIT:
+                case WITHDRAW:
+                case TRANSFER:
+                    return HIGH;
+                case FIND_ACCOUNT:
+                case GET_TRANSACTION_HISTORY:
+                case GET_MONTHLY_SUMMARY:
+                case GET_BALANCE_AT:
+                    return NORMAL;
+                default:
+                    return LOW;
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final Priority[] priorities;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long windowNanos;
+    private final double tolerance;
+    private final int processors;
+    private final MetricsRegistry metrics;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] wakeUp = new Condition[Priority.values().length];
+    private final int[] waiting = new int[Priority.values().length];
+    private final double[] averageNanos = new double[ServiceOperation.values().length];
+    private double limit;
+    private int inFlight;
+    private int totalWaiting;
+    private long rejected;
+    private long windowStart = System.nanoTime();
+    private double windowRatioSum;
+    private int windowSamples;
+    private boolean windowSaturated;
+
+    public AdmissionController(boolean enabled, Priority[] priorities, int initialLimit, int minLimit, int maxLimit,
+                               int maxQueue, long maxWaitMillis, long windowMillis, double tolerance, int processors,
+                               MetricsRegistry metrics) {
+        if (priorities.length != ServiceOperation.values().length) {
+            throw new IllegalArgumentException("One priority per ServiceOperation is required");
+        }
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid admission limits: min " + minLimit + ", max " + maxLimit);
+        }
+        this.enabled = enabled;
+        this.priorities = priorities.clone();
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWaitMillis * 1_000_000L;
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.tolerance = tolerance;
+        this.processors = Math.max(1, processors);
+        this.metrics = metrics;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        for (int i = 0; i < wakeUp.length; i++) {
+            wakeUp[i] = lock.newCondition();
+        }
+    }
+
+    // Built from the admission.* configuration on first use
+    public static AdmissionController getDefault() {
+        AdmissionController controller = defaultController;
+        if (controller == null) {
+            synchronized (AdmissionController.class) {
+                controller = defaultController;
+                if (controller == null) {
+                    Priority[] priorities = new Priority[ServiceOperation.values().length];
+                    for (ServiceOperation operation : ServiceOperation.values()) {
+                        String configured = DatabaseConnection.getProperty("admission.priority." + operation.metricName(), "");
+                        priorities[operation.ordinal()] = configured.isEmpty()
+                                ? Priority.defaultFor(operation) : Priority.valueOf(configured.trim().toUpperCase());
+                    }
+                    controller = defaultController = new AdmissionController(
+                            Boolean.parseBoolean(DatabaseConnection.getProperty("admission.enabled", "true")),
+                            priorities,
+                            Integer.parseInt(DatabaseConnection.getProperty("admission.initialLimit", "32")),
+                            Integer.parseInt(DatabaseConnection.getProperty("admission.minLimit", "4")),
+                            Integer.parseInt(DatabaseConnection.getProperty("admission.maxLimit", "256")),
+                            Integer.parseInt(DatabaseConnection.getProperty("admission.maxQueue", "128")),
+                            Long.parseLong(DatabaseConnection.getProperty("admission.maxWaitMillis", "50")),
+                            Long.parseLong(DatabaseConnection.getProperty("admission.windowMillis", "100")),
+                            Double.parseDouble(DatabaseConnection.getProperty("admission.latencyTolerance", "2.0")),
+                            Runtime.getRuntime().availableProcessors(),
+                            MetricsRegistry.getDefault());
+                }
+            }
+        }
+        return controller;
+    }
+
+    /**
+     * Waits for room to run the operation. True if it may run, in which case release must follow;
+     * false if it was shed. startNanos is when the call arrived, for the queue time metric.
+     */
+    public boolean acquire(ServiceOperation operation, long startNanos) {
+        if (!enabled) {
+            return true;
+        }
+        Priority priority = priorities[operation.ordinal()];
+        lock.lock();
+        try {
+            if (!canStart(priority)) {
+                windowSaturated = true;
+                if (totalWaiting >= maxQueue || !await(priority)) {
+                    rejected++;
+                    return false;
+                }
+            }
+            inFlight++;
+            // The limit may have grown by more than one call
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+        metrics.recordQueueTime(operation, System.nanoTime() - startNanos);
+        return true;
+    }
+
+    // Called with the lock held; false if the wait ran out (or the thread was interrupted)
+    private boolean await(Priority priority) {
+        int p = priority.ordinal();
+        waiting[p]++;
+        totalWaiting++;
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= threshold(priority)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = wakeUp[p].awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiting[p]--;
+            totalWaiting--;
+        }
+    }
+
+    // admittedNanos is when acquire returned; the time since is the latency the limit follows
+    public void release(ServiceOperation operation, long admittedNanos) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            // The calls that shared the processors with this one, itself included
+            int running = inFlight--;
+            sample(operation.ordinal(), (now - admittedNanos) / Math.max(1.0, (double) running / processors), now);
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // New calls do not overtake waiting ones of the same or a higher priority
+    private boolean canStart(Priority priority) {
+        if (inFlight >= threshold(priority)) {
+            return false;
+        }
+        for (int p = priority.ordinal(); p < waiting.length; p++) {
+            if (waiting[p] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int threshold(Priority priority) {
+        return Math.max(1, (int) (limit * priority.share));
+    }
+
+    // Wakes one waiter of the highest priority that has any, if it fits
+    private void signalNext() {
+        Priority[] values = Priority.values();
+        for (int p = values.length - 1; p >= 0; p--) {
+            if (waiting[p] > 0) {
+                if (inFlight < threshold(values[p])) {
+                    wakeUp[p].signal();
+                }
+                return;
+            }
+        }
+    }
+
+    private void sample(int operation, double latencyNanos, long now) {
+        double average = averageNanos[operation];
+        if (average == 0) {
+            averageNanos[operation] = Math.max(latencyNanos, 1);
+        } else {
+            windowRatioSum += Math.min(latencyNanos / average, MAX_RATIO);
+            windowSamples++;
+            // While calls queue the latency is the overload itself, not a new normal; at the minimum limit
+            // the database is just slower, and the average has to follow for the limit to recover
+            if (!windowSaturated || limit <= minLimit) {
+                averageNanos[operation] = average + (latencyNanos - average) / AVERAGE_WEIGHT;
+            }
+        }
+
+        if (now - windowStart >= windowNanos && windowSamples >= MIN_WINDOW_SAMPLES) {
+            if (windowRatioSum / windowSamples > tolerance) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+            } else if (windowSaturated) {
+                limit = Math.min(maxLimit, limit + Math.sqrt(limit));
+            }
+            windowStart = now;
+            windowRatioSum = 0;
+            windowSamples = 0;
+            windowSaturated = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Priority getPriority(ServiceOperation operation) {
+        return priorities[operation.ordinal()];
+    }
+
+    @Override
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return totalWaiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.banking:type=AdmissionController");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register admission controller MBean: " + e.getMessage());
+        }
+    }
+}
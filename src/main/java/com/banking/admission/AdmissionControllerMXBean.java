@@ -0,0 +1,15 @@
+package com.banking.admission;
+
+/**
+ * JMX view of the admission controller, registered as com.banking:type=AdmissionController.
+ * Queue times and shed calls per operation are in the OperationMetrics MBeans.
+ */
+public interface AdmissionControllerMXBean {
+    int getLimit();
+
+    int getInFlight();
+
+    int getWaiting();
+
+    long getRejected();
+}
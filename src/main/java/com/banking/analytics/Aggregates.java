@@ -0,0 +1,134 @@
+package com.banking.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Per-group running totals keyed by a long, in an open-addressing hash table over primitive arrays,
+ * so aggregating a row costs a probe and a few array writes rather than a map entry per group.
+ * Each scan task fills its own and the results are merged pairwise.
+ */
+final class Aggregates {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] counts;
+    private long[] credits;
+    private long[] debits;
+    private long[] mins;
+    private long[] maxes;
+    private int size;
+
+    Aggregates() {
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        counts = new long[capacity];
+        credits = new long[capacity];
+        debits = new long[capacity];
+        mins = new long[capacity];
+        maxes = new long[capacity];
+        size = 0;
+    }
+
+    // Keys are dictionary codes, days or months, never Long.MIN_VALUE
+    void add(long key, long cents) {
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            mins[slot] = cents;
+            maxes[slot] = cents;
+            if (++size * 2 > keys.length) {
+                grow();
+                slot = slot(key);
+            }
+        } else {
+            mins[slot] = Math.min(mins[slot], cents);
+            maxes[slot] = Math.max(maxes[slot], cents);
+        }
+        counts[slot]++;
+        if (cents > 0) {
+            credits[slot] += cents;
+        } else {
+            debits[slot] -= cents;
+        }
+    }
+
+    void merge(Aggregates other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                mergeSlot(other.keys[i], other.counts[i], other.credits[i], other.debits[i], other.mins[i], other.maxes[i]);
+            }
+        }
+    }
+
+    private void mergeSlot(long key, long count, long credit, long debit, long min, long max) {
+        int slot = slot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            mins[slot] = min;
+            maxes[slot] = max;
+            if (++size * 2 > keys.length) {
+                grow();
+                slot = slot(key);
+            }
+        } else {
+            mins[slot] = Math.min(mins[slot], min);
+            maxes[slot] = Math.max(maxes[slot], max);
+        }
+        counts[slot] += count;
+        credits[slot] += credit;
+        debits[slot] += debit;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        long h = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        long[] oldCredits = credits;
+        long[] oldDebits = debits;
+        long[] oldMins = mins;
+        long[] oldMaxes = maxes;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                credits[slot] = oldCredits[i];
+                debits[slot] = oldDebits[i];
+                mins[slot] = oldMins[i];
+                maxes[slot] = oldMaxes[i];
+                size++;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Visits every group; the order is the hash table's
+    void forEach(GroupVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                visitor.visit(keys[i], counts[i], credits[i], debits[i], mins[i], maxes[i]);
+            }
+        }
+    }
+
+    interface GroupVisitor {
+        void visit(long key, long count, long creditCents, long debitCents, long minCents, long maxCents);
+    }
+}
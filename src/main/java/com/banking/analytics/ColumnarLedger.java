@@ -0,0 +1,120 @@
+package com.banking.analytics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * A ledger snapshot loaded into memory as columns: one primitive array per field, so a scan reads
+ * only the fields it uses, sequentially. Account ids and account types are dictionary codes;
+ * accountIds() and typeNames() map them back.
+ *
+ * Rows are in row groups of consecutive indexes (as written by LedgerExport), each with the
+ * lowest and highest date in it, so a scan over a date range can skip whole groups.
+ */
+public final class ColumnarLedger {
+    private final long[] micros;
+    private final int[] accounts;
+    private final long[] cents;
+    private final String[] accountIds;
+    private final byte[] accountTypes;
+    private final String[] typeNames;
+    private final int[] groupStarts;
+    private final long[] groupMinMicros;
+    private final long[] groupMaxMicros;
+    private final LocalDateTime exportedAt;
+
+    ColumnarLedger(long[] micros, int[] accounts, long[] cents, String[] accountIds, byte[] accountTypes, String[] typeNames,
+                   int[] groupStarts, long[] groupMinMicros, long[] groupMaxMicros, LocalDateTime exportedAt) {
+        this.micros = micros;
+        this.accounts = accounts;
+        this.cents = cents;
+        this.accountIds = accountIds;
+        this.accountTypes = accountTypes;
+        this.typeNames = typeNames;
+        this.groupStarts = groupStarts;
+        this.groupMinMicros = groupMinMicros;
+        this.groupMaxMicros = groupMaxMicros;
+        this.exportedAt = exportedAt;
+    }
+
+    public static ColumnarLedger load(Path path) throws IOException {
+        return LedgerSnapshotFile.read(path);
+    }
+
+    public int getRowCount() {
+        return micros.length;
+    }
+
+    public int getAccountCount() {
+        return accountIds.length;
+    }
+
+    public int getGroupCount() {
+        return groupMinMicros.length;
+    }
+
+    public LocalDateTime getExportedAt() {
+        return exportedAt;
+    }
+
+    // Dictionary code of an account id or type name, or -1 if the snapshot has none
+    public int accountCode(String accountId) {
+        for (int i = 0; i < accountIds.length; i++) {
+            if (accountIds[i].equals(accountId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int typeCode(String typeName) {
+        for (int i = 0; i < typeNames.length; i++) {
+            if (typeNames[i].equalsIgnoreCase(typeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String accountId(int code) {
+        return accountIds[code];
+    }
+
+    public String typeName(int code) {
+        return typeNames[code];
+    }
+
+    // The columns themselves, shared rather than copied; scans must not write to them
+    long[] micros() {
+        return micros;
+    }
+
+    int[] accounts() {
+        return accounts;
+    }
+
+    long[] cents() {
+        return cents;
+    }
+
+    byte[] accountTypes() {
+        return accountTypes;
+    }
+
+    int groupStart(int group) {
+        return groupStarts[group];
+    }
+
+    int groupEnd(int group) {
+        return group + 1 < groupStarts.length ? groupStarts[group + 1] : micros.length;
+    }
+
+    long groupMinMicros(int group) {
+        return groupMinMicros[group];
+    }
+
+    long groupMaxMicros(int group) {
+        return groupMaxMicros[group];
+    }
+}
@@ -0,0 +1,69 @@
+package com.banking.analytics;
+
+import java.math.BigDecimal;
+
+/**
+ * One group of a LedgerQuery result: how many ledger rows fell in it, and their amounts.
+ */
+public final class GroupTotals {
+    private final String key;
+    private final long count;
+    private final long creditCents;
+    private final long debitCents;
+    private final long minCents;
+    private final long maxCents;
+
+    GroupTotals(String key, long count, long creditCents, long debitCents, long minCents, long maxCents) {
+        this.key = key;
+        this.count = count;
+        this.creditCents = creditCents;
+        this.debitCents = debitCents;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+    }
+
+    // The day (2026-09-14), month (2026-09), account id or account type, or "all" when not grouped
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // Sum of the positive amounts
+    public BigDecimal getCredits() {
+        return BigDecimal.valueOf(creditCents, 2);
+    }
+
+    // Sum of the negative amounts, as a positive number
+    public BigDecimal getDebits() {
+        return BigDecimal.valueOf(debitCents, 2);
+    }
+
+    public BigDecimal getNet() {
+        return BigDecimal.valueOf(creditCents - debitCents, 2);
+    }
+
+    // Money moved either way
+    public BigDecimal getVolume() {
+        return BigDecimal.valueOf(creditCents + debitCents, 2);
+    }
+
+    public BigDecimal getMin() {
+        return BigDecimal.valueOf(minCents, 2);
+    }
+
+    public BigDecimal getMax() {
+        return BigDecimal.valueOf(maxCents, 2);
+    }
+
+    long getNetCents() {
+        return creditCents - debitCents;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows, credits %s, debits %s, net %s", key, count, getCredits(), getDebits(), getNet());
+    }
+}
@@ -0,0 +1,263 @@
+package com.banking.analytics;
+
+import com.banking.exception.BankingException;
+import com.banking.util.CommandLineOptions;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Filter, group and aggregate scans over a ColumnarLedger.
+ *
+ * A query is split into fork/join tasks of one row group each. A task skips its group if the
+ * group's dates are outside the query's range, otherwise it runs a tight loop over the columns it
+ * needs, totalling the matching rows per group key in its own Aggregates; the partial results are
+ * merged as the tasks join. Nothing is boxed or allocated per row.
+ *
+ * Usage: java com.banking.analytics.LedgerQuery [--snapshot=ledger_snapshot.col]
+ *            [--report=daily|monthly|types|movers] [--from=2026-09-01] [--to=2026-10-01] [--type=SAVINGS] [--top=20]
+ */
+public class LedgerQuery {
+    private static final long MICROS_PER_DAY = 86_400_000_000L;
+
+    /**
+     * What the matching rows are grouped by.
+     */
+    public enum GroupBy {
+        NONE, DAY, MONTH, ACCOUNT, TYPE
+    }
+
+    private final ColumnarLedger ledger;
+    private long fromMicros = Long.MIN_VALUE;
+    private long toMicros = Long.MAX_VALUE;
+    private int accountCode = -1;
+    private int typeCode = -1;
+    private long minAbsCents;
+    // Set when a filter names an account or type the snapshot does not have
+    private boolean matchesNothing;
+    private GroupBy groupBy = GroupBy.NONE;
+
+    public LedgerQuery(ColumnarLedger ledger) {
+        this.ledger = ledger;
+    }
+
+    // Rows dated at or after from and before to; either may be null for no bound
+    public LedgerQuery between(LocalDateTime from, LocalDateTime to) {
+        fromMicros = from == null ? Long.MIN_VALUE : LedgerSnapshotFile.toMicros(from);
+        toMicros = to == null ? Long.MAX_VALUE : LedgerSnapshotFile.toMicros(to);
+        return this;
+    }
+
+    public LedgerQuery account(String accountId) {
+        accountCode = ledger.accountCode(accountId);
+        matchesNothing |= accountCode < 0;
+        return this;
+    }
+
+    public LedgerQuery accountType(String typeName) {
+        typeCode = ledger.typeCode(typeName);
+        matchesNothing |= typeCode < 0;
+        return this;
+    }
+
+    // Rows moving at least this much either way
+    public LedgerQuery minAmount(BigDecimal amount) {
+        minAbsCents = amount.abs().movePointRight(2).setScale(0, RoundingMode.CEILING).longValueExact();
+        return this;
+    }
+
+    public LedgerQuery groupBy(GroupBy groupBy) {
+        this.groupBy = groupBy;
+        return this;
+    }
+
+    // The groups in key order: by date for DAY and MONTH, by name for ACCOUNT and TYPE
+    public List<GroupTotals> run() {
+        List<GroupTotals> result = new ArrayList<>();
+        if (matchesNothing || ledger.getGroupCount() == 0) {
+            return result;
+        }
+        Aggregates totals = ForkJoinPool.commonPool().invoke(new ScanTask(0, ledger.getGroupCount()));
+
+        totals.forEach((key, count, credits, debits, min, max) -> result.add(new GroupTotals(label(key), count, credits, debits, min, max)));
+        if (groupBy == GroupBy.DAY || groupBy == GroupBy.MONTH) {
+            // Labels are ISO dates, so their text order is their date order
+            result.sort(Comparator.comparing(GroupTotals::getKey));
+        } else {
+            result.sort(Comparator.comparing(GroupTotals::getKey, String.CASE_INSENSITIVE_ORDER));
+        }
+        return result;
+    }
+
+    private String label(long key) {
+        switch (groupBy) {
+            case DAY:
+                return LocalDate.ofEpochDay(key).toString();
+            case MONTH:
+                return YearMonth.of((int) (key / 12), (int) (key % 12) + 1).toString();
+            case ACCOUNT:
+                return ledger.accountId((int) key);
+            case TYPE:
+                return ledger.typeName((int) key);
+            default:
+                return "all";
+        }
+    }
+
+    // Money moved per day
+    public static List<GroupTotals> dailyVolume(ColumnarLedger ledger, LocalDateTime from, LocalDateTime to) {
+        return new LedgerQuery(ledger).between(from, to).groupBy(GroupBy.DAY).run();
+    }
+
+    // Credits, debits and net flow per account type
+    public static List<GroupTotals> netFlowsByType(ColumnarLedger ledger, LocalDateTime from, LocalDateTime to) {
+        return new LedgerQuery(ledger).between(from, to).groupBy(GroupBy.TYPE).run();
+    }
+
+    // The accounts whose balance changed most either way, largest first
+    public static List<GroupTotals> largestMovers(ColumnarLedger ledger, LocalDateTime from, LocalDateTime to, int top) {
+        List<GroupTotals> accounts = new LedgerQuery(ledger).between(from, to).groupBy(GroupBy.ACCOUNT).run();
+        accounts.sort(Comparator.comparingLong((GroupTotals group) -> Math.abs(group.getNetCents())).reversed()
+                .thenComparing(GroupTotals::getKey));
+        return new ArrayList<>(accounts.subList(0, Math.min(top, accounts.size())));
+    }
+
+    /**
+     * Scans row groups [from, to), splitting in half until one group is left.
+     */
+    private final class ScanTask extends RecursiveTask<Aggregates> {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        ScanTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregates compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(from, middle);
+                left.fork();
+                Aggregates right = new ScanTask(middle, to).compute();
+                Aggregates result = left.join();
+                result.merge(right);
+                return result;
+            }
+            Aggregates totals = new Aggregates();
+            if (ledger.groupMaxMicros(from) >= fromMicros && ledger.groupMinMicros(from) < toMicros) {
+                scan(from, totals);
+            }
+            return totals;
+        }
+    }
+
+    private void scan(int group, Aggregates totals) {
+        long[] micros = ledger.micros();
+        int[] accounts = ledger.accounts();
+        long[] cents = ledger.cents();
+        byte[] types = ledger.accountTypes();
+        long lastDay = Long.MIN_VALUE;
+        long lastMonth = 0;
+        for (int i = ledger.groupStart(group), end = ledger.groupEnd(group); i < end; i++) {
+            long date = micros[i];
+            if (date < fromMicros || date >= toMicros) {
+                continue;
+            }
+            int account = accounts[i];
+            if ((accountCode >= 0 && account != accountCode) || (typeCode >= 0 && types[account] != typeCode)) {
+                continue;
+            }
+            long amount = cents[i];
+            if (minAbsCents > 0 && Math.abs(amount) < minAbsCents) {
+                continue;
+            }
+
+            long key;
+            switch (groupBy) {
+                case DAY:
+                    key = Math.floorDiv(date, MICROS_PER_DAY);
+                    break;
+                case MONTH:
+                    long day = Math.floorDiv(date, MICROS_PER_DAY);
+                    if (day != lastDay) {
+                        LocalDate local = LocalDate.ofEpochDay(day);
+                        lastDay = day;
+                        lastMonth = local.getYear() * 12L + local.getMonthValue() - 1;
+                    }
+                    key = lastMonth;
+                    break;
+                case ACCOUNT:
+                    key = account;
+                    break;
+                case TYPE:
+                    key = types[account];
+                    break;
+                default:
+                    key = 0;
+            }
+            totals.add(key, amount);
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        Path path = options.containsKey("snapshot") ? Paths.get(options.get("snapshot")) : LedgerExport.defaultFile();
+        LocalDateTime from = options.containsKey("from") ? LocalDate.parse(options.get("from")).atStartOfDay() : null;
+        LocalDateTime to = options.containsKey("to") ? LocalDate.parse(options.get("to")).atStartOfDay() : null;
+        String report = options.getOrDefault("report", "daily");
+
+        long start = System.nanoTime();
+        ColumnarLedger ledger;
+        try {
+            ledger = ColumnarLedger.load(path);
+        } catch (IOException e) {
+            throw new BankingException("Failed to load ledger snapshot " + path, e);
+        }
+        System.out.printf("Loaded %d rows of %d accounts (exported %s) in %d ms%n", ledger.getRowCount(),
+                ledger.getAccountCount(), ledger.getExportedAt(), (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        List<GroupTotals> result;
+        switch (report) {
+            case "daily":
+            case "monthly":
+            case "types":
+                LedgerQuery query = new LedgerQuery(ledger).between(from, to)
+                        .groupBy(report.equals("daily") ? GroupBy.DAY : report.equals("monthly") ? GroupBy.MONTH : GroupBy.TYPE);
+                if (options.containsKey("type")) {
+                    query.accountType(options.get("type"));
+                }
+                result = query.run();
+                break;
+            case "movers":
+                result = largestMovers(ledger, from, to, Integer.parseInt(options.getOrDefault("top", "20")));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown report: " + report);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-20s %10s %16s %16s %16s%n", "Group", "Rows", "Credits", "Debits", "Net");
+        for (GroupTotals group : result) {
+            System.out.printf("%-20s %10d %16s %16s %16s%n", group.getKey(), group.getCount(),
+                    group.getCredits(), group.getDebits(), group.getNet());
+        }
+        System.out.printf("%d groups in %.1f ms%n", result.size(), elapsed / 1_000_000.0);
+    }
+}
@@ -0,0 +1,353 @@
+package com.banking.analytics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * The columnar ledger snapshot format.
+ *
+ * Layout: a header, the row groups, the dictionaries and group directory, then a footer pointing at
+ * them. A row group holds up to analytics.rowGroupSize rows as three separately encoded columns:
+ * dates as varints of the difference from the previous row's date in microseconds (the rows are
+ * roughly in date order, so most take one to three bytes), account dictionary codes as varints, and
+ * amounts in cents as varints. Each group also records its lowest and highest date. The account
+ * dictionary gives every account's id and the code of its type in the type dictionary.
+ *
+ * Groups are independent, so they are decoded in parallel on load.
+ */
+final class LedgerSnapshotFile {
+    private static final int MAGIC = 0x4C434F4C; // "LCOL"
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int GROUP_HEADER_BYTES = 4 * Integer.BYTES + 2 * Long.BYTES;
+    static final String UNKNOWN_TYPE = "UNKNOWN";
+
+    private LedgerSnapshotFile() {
+    }
+
+    static ColumnarLedger read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Ledger snapshot too large to map: " + path);
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long directoryOffset = size >= Integer.BYTES + FOOTER_BYTES ? file.getLong((int) size - FOOTER_BYTES) : -1;
+            if (directoryOffset < Integer.BYTES || directoryOffset > size - FOOTER_BYTES
+                    || file.getInt(0) != MAGIC || file.getInt((int) size - Integer.BYTES) != MAGIC) {
+                throw new IOException("Not a ledger snapshot: " + path);
+            }
+
+            byte[] directory = new byte[(int) (size - FOOTER_BYTES - directoryOffset)];
+            file.position((int) directoryOffset);
+            file.get(directory);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(directory));
+            LocalDateTime exportedAt = toDate(in.readLong());
+            String[] typeNames = new String[in.readInt()];
+            for (int i = 0; i < typeNames.length; i++) {
+                typeNames[i] = in.readUTF();
+            }
+            String[] accountIds = new String[in.readInt()];
+            byte[] accountTypes = new byte[accountIds.length];
+            for (int i = 0; i < accountIds.length; i++) {
+                accountIds[i] = in.readUTF();
+                accountTypes[i] = in.readByte();
+            }
+            int groups = in.readInt();
+            int[] groupOffsets = new int[groups];
+            int[] groupStarts = new int[groups];
+            long rows = 0;
+            for (int g = 0; g < groups; g++) {
+                groupOffsets[g] = (int) in.readLong();
+                groupStarts[g] = (int) rows;
+                rows += in.readInt();
+            }
+            if (rows > Integer.MAX_VALUE) {
+                throw new IOException("Ledger snapshot has too many rows to load: " + path);
+            }
+
+            long[] micros = new long[(int) rows];
+            int[] accounts = new int[(int) rows];
+            long[] cents = new long[(int) rows];
+            long[] groupMin = new long[groups];
+            long[] groupMax = new long[groups];
+            try {
+                IntStream.range(0, groups).parallel().forEach(g -> {
+                    // Each group reads through its own view of the mapping
+                    ByteBuffer buffer = file.duplicate();
+                    buffer.position(groupOffsets[g]);
+                    int count = buffer.getInt();
+                    int end = g + 1 < groups ? groupStarts[g + 1] : micros.length;
+                    if (count != end - groupStarts[g]) {
+                        throw new IllegalStateException("row group " + g + " does not match the directory");
+                    }
+                    groupMin[g] = buffer.getLong();
+                    groupMax[g] = buffer.getLong();
+                    buffer.getInt();
+                    buffer.getInt();
+                    buffer.getInt();
+                    int start = groupStarts[g];
+                    long date = groupMin[g];
+                    for (int i = start; i < end; i++) {
+                        date += readSignedVarLong(buffer);
+                        micros[i] = date;
+                    }
+                    for (int i = start; i < end; i++) {
+                        int code = (int) readSignedVarLong(buffer);
+                        if (code < 0 || code >= accountIds.length) {
+                            throw new IllegalStateException("row group " + g + " has an account code out of range");
+                        }
+                        accounts[i] = code;
+                    }
+                    for (int i = start; i < end; i++) {
+                        cents[i] = readSignedVarLong(buffer);
+                    }
+                });
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt ledger snapshot " + path + ": " + e.getMessage(), e);
+            }
+            return new ColumnarLedger(micros, accounts, cents, accountIds, accountTypes, typeNames,
+                    groupStarts, groupMin, groupMax, exportedAt);
+        }
+    }
+
+    /**
+     * Writes a snapshot. Rows are added to Groups, one per writing thread, and a full group is handed
+     * to write; the dictionaries are shared. The file is written next to its target and moved into
+     * place by commit.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final DataOutputStream out;
+        private final int groupSize;
+        private final Map<String, Integer> accountCodes = new ConcurrentHashMap<>();
+        private final List<String> accountIds = new ArrayList<>();
+        private final ByteList accountTypes = new ByteList();
+        private final List<String> typeNames = new ArrayList<>();
+        private final List<Long> groupOffsets = new ArrayList<>();
+        private final List<Integer> groupRows = new ArrayList<>();
+        private long offset;
+        private long rowCount;
+        private boolean done;
+
+        Writer(Path target, int groupSize) throws IOException {
+            this.target = target;
+            this.groupSize = groupSize;
+            Path parent = target.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            this.temp = parent.resolve(target.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            out.writeInt(MAGIC);
+            offset = Integer.BYTES;
+        }
+
+        // The account's dictionary code; the type is only used the first time the account is seen
+        int accountCode(String accountId, String type) {
+            Integer code = accountCodes.get(accountId);
+            return code != null ? code : register(accountId, type);
+        }
+
+        private synchronized int register(String accountId, String type) {
+            Integer code = accountCodes.get(accountId);
+            if (code == null) {
+                String typeName = type == null ? UNKNOWN_TYPE : type;
+                int typeCode = typeNames.indexOf(typeName);
+                if (typeCode < 0) {
+                    typeCode = typeNames.size();
+                    typeNames.add(typeName);
+                }
+                code = accountIds.size();
+                accountIds.add(accountId);
+                accountTypes.add((byte) typeCode);
+                accountCodes.put(accountId, code);
+            }
+            return code;
+        }
+
+        Group newGroup() {
+            return new Group(groupSize);
+        }
+
+        // Appends the group's rows (if any) to the file and empties it
+        void write(Group group) throws IOException {
+            if (group.size == 0) {
+                return;
+            }
+            byte[] encoded = group.encode();
+            synchronized (this) {
+                out.write(encoded);
+                groupOffsets.add(offset);
+                groupRows.add(group.size);
+                offset += encoded.length;
+                rowCount += group.size;
+            }
+            group.size = 0;
+        }
+
+        synchronized long getRowCount() {
+            return rowCount;
+        }
+
+        synchronized int getAccountCount() {
+            return accountIds.size();
+        }
+
+        // Writes the dictionaries and directory, syncs and moves the file into place
+        synchronized void commit(LocalDateTime exportedAt) throws IOException {
+            out.writeLong(toMicros(exportedAt));
+            out.writeInt(typeNames.size());
+            for (String typeName : typeNames) {
+                out.writeUTF(typeName);
+            }
+            out.writeInt(accountIds.size());
+            for (int i = 0; i < accountIds.size(); i++) {
+                out.writeUTF(accountIds.get(i));
+                out.writeByte(accountTypes.get(i));
+            }
+            out.writeInt(groupOffsets.size());
+            for (int g = 0; g < groupOffsets.size(); g++) {
+                out.writeLong(groupOffsets.get(g));
+                out.writeInt(groupRows.get(g));
+            }
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+            out.close();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        }
+
+        // Without commit the partial file is deleted
+        @Override
+        public synchronized void close() throws IOException {
+            if (!done) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Rows buffered by one thread until there are enough for a row group.
+     */
+    static final class Group {
+        private final long[] micros;
+        private final int[] accounts;
+        private final long[] cents;
+        private int size;
+
+        private Group(int capacity) {
+            micros = new long[capacity];
+            accounts = new int[capacity];
+            cents = new long[capacity];
+        }
+
+        void add(long date, int account, long amount) {
+            micros[size] = date;
+            accounts[size] = account;
+            cents[size] = amount;
+            size++;
+        }
+
+        boolean isFull() {
+            return size == micros.length;
+        }
+
+        private byte[] encode() {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, micros[i]);
+                max = Math.max(max, micros[i]);
+            }
+            ByteList dates = new ByteList();
+            long previous = min;
+            for (int i = 0; i < size; i++) {
+                dates.addSignedVarLong(micros[i] - previous);
+                previous = micros[i];
+            }
+            ByteList codes = new ByteList();
+            for (int i = 0; i < size; i++) {
+                codes.addSignedVarLong(accounts[i]);
+            }
+            ByteList amounts = new ByteList();
+            for (int i = 0; i < size; i++) {
+                amounts.addSignedVarLong(cents[i]);
+            }
+
+            ByteBuffer group = ByteBuffer.allocate(GROUP_HEADER_BYTES + dates.size + codes.size + amounts.size);
+            group.putInt(size).putLong(min).putLong(max);
+            group.putInt(dates.size).putInt(codes.size).putInt(amounts.size);
+            group.put(dates.bytes, 0, dates.size).put(codes.bytes, 0, codes.size).put(amounts.bytes, 0, amounts.size);
+            return group.array();
+        }
+    }
+
+    // A growable byte array, for the encoded columns and the account type codes
+    private static final class ByteList {
+        private byte[] bytes = new byte[1024];
+        private int size;
+
+        void add(byte b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = b;
+        }
+
+        byte get(int index) {
+            return bytes[index];
+        }
+
+        void addSignedVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                add((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            add((byte) zigzag);
+        }
+    }
+
+    private static long readSignedVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    // Dates are kept as microseconds, the precision of the TIMESTAMP column
+    static long toMicros(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + date.getNano() / 1000;
+    }
+
+    static LocalDateTime toDate(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,106 @@
+package com.banking.batch;
+
+import com.banking.load.Operation;
+import com.banking.model.AccountType;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One line of a batch script:
+ *   create &lt;SAVINGS|CHECKING&gt; &lt;account&gt; &lt;initial balance&gt;
+ *   deposit &lt;account&gt; &lt;amount&gt;
+ *   withdraw &lt;account&gt; &lt;amount&gt;
+ *   transfer &lt;from&gt; &lt;to&gt; &lt;amount&gt;
+ *   history &lt;account&gt;
+ */
+public class BatchCommand {
+    private final long lineNumber;
+    private final Operation operation;
+    private final AccountType accountType;
+    private final String accountId;
+    private final String toAccountId;
+    private final BigDecimal amount;
+
+    private BatchCommand(long lineNumber, Operation operation, AccountType accountType, String accountId,
+                         String toAccountId, BigDecimal amount) {
+        this.lineNumber = lineNumber;
+        this.operation = operation;
+        this.accountType = accountType;
+        this.accountId = accountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+
+    /**
+     * Parses one script line; blank lines and lines starting with # give null.
+     */
+    public static BatchCommand parse(long lineNumber, String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] parts = trimmed.split("\\s+");
+        Operation operation;
+        try {
+            operation = Operation.valueOf(parts[0].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown command: " + parts[0]);
+        }
+
+        switch (operation) {
+            case CREATE:
+                expectArguments(parts, 4, "create <SAVINGS|CHECKING> <account> <initial balance>");
+                return new BatchCommand(lineNumber, operation, AccountType.valueOf(parts[1].toUpperCase()), parts[2], null, new BigDecimal(parts[3]));
+            case DEPOSIT:
+            case WITHDRAW:
+                expectArguments(parts, 3, operation.label() + " <account> <amount>");
+                return new BatchCommand(lineNumber, operation, null, parts[1], null, new BigDecimal(parts[2]));
+            case TRANSFER:
+                expectArguments(parts, 4, "transfer <from> <to> <amount>");
+                return new BatchCommand(lineNumber, operation, null, parts[1], parts[2], new BigDecimal(parts[3]));
+            case HISTORY:
+                expectArguments(parts, 2, "history <account>");
+                return new BatchCommand(lineNumber, operation, null, parts[1], null, null);
+            default:
+                throw new IllegalArgumentException("Unknown command: " + parts[0]);
+        }
+    }
+
+    private static void expectArguments(String[] parts, int count, String usage) {
+        if (parts.length != count) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    // Accounts whose earlier commands this one has to wait for
+    public List<String> getAccounts() {
+        return toAccountId == null ? Collections.singletonList(accountId) : Arrays.asList(accountId, toAccountId);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public AccountType getAccountType() {
+        return accountType;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getToAccountId() {
+        return toAccountId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,272 @@
+package com.banking.batch;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.OverloadedException;
+import com.banking.load.Operation;
+import com.banking.service.AccountService;
+import com.banking.util.CommandLineOptions;
+import com.banking.util.LatencyHistogram;
+import com.banking.util.TransactionLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a script of commands (see BatchCommand) through AccountService without the interactive menus.
+ *
+ * Commands are pipelined over a worker pool. A command starts only after the earlier commands on
+ * the same account(s) have finished, so each account sees its commands in script order while
+ * commands on unrelated accounts run in parallel. Results are written one line per command, in
+ * script order:
+ *   &lt;line&gt; OK &lt;command&gt; [detail]
+ *   &lt;line&gt; ERR &lt;command&gt; &lt;error&gt;
+ * followed by a timing summary (lines starting with #). The admission limit does not fall for the
+ * parallelism of a batch alone, but a command the AdmissionController does shed has done nothing and
+ * is retried after a growing pause (up to batch.maxBackoffMillis), so the results do not depend on
+ * how busy the service was.
+ *
+ * Usage: java com.banking.Console --batch=&lt;script file, or - for stdin&gt; [--parallelism=8]
+ *        [--out=results.txt] [--window=1024] [--init-schema]
+ */
+public class BatchRunner {
+    private final String script;
+    private final int parallelism;
+    private final int window;
+    private final String outPath;
+    private final long maxBackoffMillis;
+
+    private final AccountService accountService = new AccountService();
+    private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong overloadRetries = new AtomicLong();
+
+    public BatchRunner(Map<String, String> options) {
+        this.script = options.get("batch");
+        this.parallelism = Integer.parseInt(options.getOrDefault("parallelism", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        this.window = Integer.parseInt(options.getOrDefault("window", "1024"));
+        this.outPath = options.get("out");
+        this.maxBackoffMillis = Long.parseLong(DatabaseConnection.getProperty("batch.maxBackoffMillis", "200"));
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public void run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        // Commands in flight (submitted but not yet written); bounds memory on long scripts
+        Semaphore inFlight = new Semaphore(window);
+        BlockingQueue<CompletableFuture<String>> pending = new LinkedBlockingQueue<>();
+        CompletableFuture<String> endOfScript = CompletableFuture.completedFuture(null);
+
+        PrintWriter out = openOutput();
+        try (BufferedReader in = openScript()) {
+            Thread writer = new Thread(() -> writeResults(pending, inFlight, out, endOfScript), "batch-writer");
+            writer.start();
+
+            // Only accounts with a command still running; a command removes itself when it finishes
+            Map<String, CompletableFuture<?>> lastByAccount = new ConcurrentHashMap<>();
+            try {
+                String line;
+                long lineNumber = 0;
+                while ((line = in.readLine()) != null) {
+                    lineNumber++;
+                    inFlight.acquire();
+                    pending.put(submit(lineNumber, line, workers, lastByAccount));
+                }
+            } finally {
+                // Also when reading fails, so the writer finishes the submitted commands and ends
+                pending.add(endOfScript);
+                writer.join();
+            }
+
+            long total = succeeded.get() + failed.get();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            out.printf(Locale.ROOT, "# %d commands, %d ok, %d failed, %.2fs, %.1f commands/s, parallelism %d, %d overload retries%n",
+                    total, succeeded.get(), failed.get(), seconds, seconds == 0 ? 0.0 : total / seconds, parallelism, overloadRetries.get());
+            for (Map.Entry<Operation, LatencyHistogram> entry : latencies.entrySet()) {
+                LatencyHistogram latency = entry.getValue();
+                if (latency.getCount() > 0) {
+                    out.printf(Locale.ROOT, "# %-8s count=%d mean=%.0fus p50=%.0fus p99=%.0fus max=%.0fus%n",
+                            entry.getKey().label(), latency.getCount(), latency.getMeanNanos() / 1000.0,
+                            latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                            latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                            latency.getMaxNanos() / 1000.0);
+                }
+            }
+        } finally {
+            workers.shutdown();
+            if (outPath == null) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        }
+    }
+
+    // Chains the command after the previous commands of its accounts; the future yields its result line
+    private CompletableFuture<String> submit(long lineNumber, String line, ExecutorService workers,
+                                             Map<String, CompletableFuture<?>> lastByAccount) {
+        BatchCommand command;
+        try {
+            command = BatchCommand.parse(lineNumber, line);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            return CompletableFuture.completedFuture(lineNumber + " ERR " + line.trim() + " " + e.getMessage());
+        }
+        if (command == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<?>> before = new ArrayList<>();
+        for (String accountId : command.getAccounts()) {
+            CompletableFuture<?> previous = lastByAccount.get(accountId);
+            if (previous != null) {
+                before.add(previous);
+            }
+        }
+        CompletableFuture<String> result = CompletableFuture.allOf(before.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(ignored -> execute(command, line.trim()), workers);
+        for (String accountId : command.getAccounts()) {
+            lastByAccount.put(accountId, result);
+        }
+        result.whenComplete((detail, error) -> {
+            for (String accountId : command.getAccounts()) {
+                lastByAccount.remove(accountId, result);
+            }
+        });
+        return result;
+    }
+
+    private String execute(BatchCommand command, String text) {
+        long start = System.nanoTime();
+        try {
+            String detail;
+            long backoffMillis = 1;
+            while (true) {
+                try {
+                    detail = perform(command);
+                    break;
+                } catch (OverloadedException e) {
+                    overloadRetries.incrementAndGet();
+                    Thread.sleep(backoffMillis);
+                    backoffMillis = Math.min(backoffMillis * 2, maxBackoffMillis);
+                }
+            }
+            succeeded.incrementAndGet();
+            return command.getLineNumber() + " OK " + text + detail;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.incrementAndGet();
+            return command.getLineNumber() + " ERR " + text + " interrupted";
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            return command.getLineNumber() + " ERR " + text + " " + e.getMessage();
+        } finally {
+            latencies.get(command.getOperation()).record(System.nanoTime() - start);
+        }
+    }
+
+    // Runs the command once; returns the detail for its result line
+    private String perform(BatchCommand command) {
+        switch (command.getOperation()) {
+            case CREATE:
+                accountService.createAccount(command.getAccountType(), command.getAccountId(), command.getAmount());
+                return "";
+            case DEPOSIT:
+                accountService.deposit(command.getAccountId(), command.getAmount());
+                return "";
+            case WITHDRAW:
+                accountService.withdraw(command.getAccountId(), command.getAmount());
+                return "";
+            case TRANSFER:
+                accountService.transfer(command.getAccountId(), command.getToAccountId(), command.getAmount());
+                return "";
+            case HISTORY:
+                return " " + formatHistory(accountService.getTransactionHistory(command.getAccountId()));
+            default:
+                throw new IllegalStateException("Unknown operation: " + command.getOperation());
+        }
+    }
+
+    // "<rows> rows: amount@date,..." newest first
+    private static String formatHistory(List<TransactionLogger.TransactionRecord> history) {
+        StringBuilder detail = new StringBuilder().append(history.size()).append(" rows");
+        for (int i = 0; i < history.size(); i++) {
+            TransactionLogger.TransactionRecord record = history.get(i);
+            detail.append(i == 0 ? ": " : ",").append(record.getAmount().toPlainString()).append('@').append(record.getDate());
+        }
+        return detail.toString();
+    }
+
+    private void writeResults(BlockingQueue<CompletableFuture<String>> pending, Semaphore inFlight, PrintWriter out,
+                              CompletableFuture<String> endOfScript) {
+        try {
+            while (true) {
+                CompletableFuture<String> next = pending.take();
+                if (next == endOfScript) {
+                    return;
+                }
+                String result = next.join();
+                if (result != null) {
+                    out.println(result);
+                }
+                inFlight.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BufferedReader openScript() throws IOException {
+        if (script == null || script.equals("-") || script.equals("true")) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8);
+    }
+
+    private PrintWriter openOutput() throws IOException {
+        if (outPath == null) {
+            return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), false);
+        }
+        return new PrintWriter(Files.newBufferedWriter(Paths.get(outPath), StandardCharsets.UTF_8), false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        run(CommandLineOptions.parse(args));
+    }
+
+    public static void run(Map<String, String> options) throws IOException, InterruptedException {
+        if (options.containsKey("init-schema")) {
+            try {
+                DatabaseConnection.initializeSchema();
+            } catch (SQLException e) {
+                System.err.println("Could not initialize schema: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        new BatchRunner(options).run();
+    }
+}
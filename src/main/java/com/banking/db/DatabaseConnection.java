@@ -1,25 +1,221 @@
 package com.banking.db;
 
+import org.h2.jdbcx.JdbcConnectionPool;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Hands out JDBC connections. With db.shards=N (default 1) accounts are spread over N H2 databases
+ * by a hash of the account number: getConnection(accountId) goes to that account's shard, and
+ * getShardConnection(i) reaches a shard directly for scatter-gather work (see Shards).
+ * Shard i uses db.shard.&lt;i&gt;.url if set, else db.url with "_shard&lt;i&gt;" appended to the database name.
+ * getConnection() without an account is shard 0, which also holds the cross-shard commit log.
+ * With db.pool.size &gt; 0 (or after initializePool) connections come from a per-shard pool; closing
+ * one returns it to the pool.
+ */
 public class DatabaseConnection {
     private static final Properties properties = new Properties();
+    private static final DurabilityManager durability;
+    private static final int shardCount;
+    private static volatile boolean recoveryDone;
+    private static boolean recovering;
+    private static final Map<String, JdbcConnectionPool> pools = new ConcurrentHashMap<>();
+    private static volatile int poolSize;
 
     static {
         try (InputStream input = DatabaseConnection.class.getClassLoader().getResourceAsStream("application.properties")) {
-            properties.load(input);
-            Class.forName(properties.getProperty("db.driver"));
+            if (input != null) {
+                properties.load(input);
+            }
+            Class.forName(getProperty("db.driver", "org.h2.Driver"));
         } catch (IOException | ClassNotFoundException e) {
             throw new RuntimeException("Failed to load database configuration", e);
         }
+
+        // DB_CLOSE_ON_EXIT=FALSE keeps the in-memory database alive until the final snapshot is written
+        durability = new DurabilityManager(
+                DurabilityMode.fromConfig(getProperty("db.durability", "strict")),
+                Long.parseLong(getProperty("db.groupCommit.delayMillis", "50")),
+                getProperty("db.snapshot.file", "./banking_snapshot.zip"),
+                Long.parseLong(getProperty("db.snapshot.intervalSeconds", "60")),
+                getProperty("db.snapshot.url", "jdbc:h2:mem:banking;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"));
+
+        shardCount = Integer.parseInt(getProperty("db.shards", "1"));
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("db.shards must be at least 1");
+        }
+        if (shardCount > 1 && durability.getMode() == DurabilityMode.SNAPSHOT) {
+            throw new IllegalArgumentException("db.durability=snapshot does not support db.shards > 1");
+        }
+        poolSize = Integer.parseInt(getProperty("db.pool.size", "0"));
     }
 
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(properties.getProperty("db.url"), properties.getProperty("db.username"), properties.getProperty("db.password"));
+        return getShardConnection(0);
+    }
+
+    // Connection to the shard that owns the account
+    public static Connection getConnection(String accountId) throws SQLException {
+        return getShardConnection(shardOf(accountId));
+    }
+
+    public static Connection getShardConnection(int shard) throws SQLException {
+        return openShardConnection(shard, true);
+    }
+
+    // Always a new physical connection, for sessions whose settings must not leak into pooled connections
+    public static Connection getUnpooledShardConnection(int shard) throws SQLException {
+        return openShardConnection(shard, false);
+    }
+
+    private static Connection openShardConnection(int shard, boolean pooled) throws SQLException {
+        if (shardCount > 1 && !recoveryDone) {
+            recoverCrossShardTransactions();
+        }
+        String url = durability.connectionUrl(shardUrl(shard));
+        String username = getProperty("db.username", "sa");
+        String password = getProperty("db.password", "");
+        durability.ensureStarted(url, username, password);
+
+        long start = System.nanoTime();
+        Connection connection = null;
+        if (pooled && poolSize > 0) {
+            connection = borrow(url, username, password);
+        }
+        if (connection == null) {
+            connection = DriverManager.getConnection(url, username, password);
+        }
+        return SqlTracer.getDefault().wrap(connection, System.nanoTime() - start);
+    }
+
+    // Callers such as the month-end run hold one connection while opening another, so a full pool must
+    // not block: past the limit (or after losing a race for the last slot) this opens a plain connection.
+    private static Connection borrow(String url, String username, String password) {
+        JdbcConnectionPool pool = pools.computeIfAbsent(url, u -> {
+            JdbcConnectionPool created = JdbcConnectionPool.create(u, username, password);
+            created.setMaxConnections(poolSize);
+            created.setLoginTimeout(1);
+            return created;
+        });
+        if (pool.getActiveConnections() >= pool.getMaxConnections()) {
+            return null;
+        }
+        try {
+            return pool.getConnection();
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Turns on connection pooling (if db.pool.size did not already) and opens up to size connections
+     * per shard ahead of time, so the first requests do not pay for opening the databases.
+     */
+    public static void initializePool(int size) throws SQLException {
+        poolSize = Math.max(poolSize, size);
+        for (int shard = 0; shard < shardCount; shard++) {
+            Connection[] opened = new Connection[poolSize];
+            try {
+                for (int i = 0; i < opened.length; i++) {
+                    opened[i] = getShardConnection(shard);
+                }
+            } finally {
+                for (Connection conn : opened) {
+                    if (conn != null) {
+                        conn.close();
+                    }
+                }
+            }
+        }
+    }
+
+    public static int getPoolSize() {
+        return poolSize;
+    }
+
+    // Settles transfers left prepared by a crash before any shard is used. Other threads wait here until
+    // it is done; the recovering thread's own connections pass straight through (the lock is reentrant).
+    private static synchronized void recoverCrossShardTransactions() throws SQLException {
+        if (recoveryDone || recovering) {
+            return;
+        }
+        recovering = true;
+        try {
+            TwoPhaseCommit.recover();
+            recoveryDone = true;
+        } finally {
+            recovering = false;
+        }
+    }
+
+    public static int getShardCount() {
+        return shardCount;
+    }
+
+    // String.hashCode is fixed by the language spec, so the routing is stable across JVMs
+    public static int shardOf(String accountId) {
+        return shardCount == 1 ? 0 : Math.floorMod(accountId.hashCode(), shardCount);
+    }
+
+    private static String shardUrl(int shard) {
+        String url = getProperty("db.url", "jdbc:h2:./banking_db");
+        if (shardCount == 1) {
+            return url;
+        }
+        String override = getProperty("db.shard." + shard + ".url", null);
+        if (override != null) {
+            return override;
+        }
+        int options = url.indexOf(';');
+        return options < 0 ? url + "_shard" + shard : url.substring(0, options) + "_shard" + shard + url.substring(options);
+    }
+
+    /**
+     * Commits the connection's transaction (if it is not in auto-commit mode) and then applies the
+     * configured durability mode. Every write path calls this once its changes are in.
+     */
+    public static void commit(Connection conn) throws SQLException {
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+        }
+        durability.afterCommit(conn);
+    }
+
+    // Applies the durability mode to a participant's PREPARE COMMIT (see TwoPhaseCommit)
+    static void afterPrepare(Connection conn) throws SQLException {
+        durability.afterPrepare(conn);
+    }
+
+    public static DurabilityMode getDurabilityMode() {
+        return durability.getMode();
+    }
+
+    // Writes a snapshot right away; only meaningful in snapshot mode
+    public static void snapshotNow() throws SQLException, IOException {
+        if (durability.getMode() == DurabilityMode.SNAPSHOT) {
+            durability.writeSnapshot();
+        }
+    }
+
+    // Runs schema.sql from the classpath on every shard so a fresh database (e.g. an in-memory one) has its tables
+    public static void initializeSchema() throws SQLException {
+        for (int shard = 0; shard < shardCount; shard++) {
+            try (Connection conn = getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+            }
+        }
+    }
+
+    // System properties win over application.properties, so tools can point at another database
+    public static String getProperty(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
     }
 }
@@ -0,0 +1,183 @@
+package com.banking.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies the configured DurabilityMode for DatabaseConnection: picks the JDBC URL, forces
+ * syncs after commits (strict), runs the periodic flush (group-commit) or the snapshot
+ * restore/save cycle (snapshot).
+ */
+class DurabilityManager {
+    private final DurabilityMode mode;
+    private final long groupCommitDelayMillis;
+    private final Path snapshotFile;
+    private final long snapshotIntervalSeconds;
+    private final String snapshotUrl;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    // Every database (shard) handed out so far; group-commit flushes all of them
+    private final Set<String> urls = new CopyOnWriteArraySet<>();
+    private volatile boolean started;
+    private ScheduledExecutorService scheduler;
+    private String url;
+    private String username;
+    private String password;
+
+    DurabilityManager(DurabilityMode mode, long groupCommitDelayMillis, String snapshotFile, long snapshotIntervalSeconds, String snapshotUrl) {
+        this.mode = mode;
+        this.groupCommitDelayMillis = groupCommitDelayMillis;
+        this.snapshotFile = Paths.get(snapshotFile);
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        this.snapshotUrl = snapshotUrl;
+    }
+
+    DurabilityMode getMode() {
+        return mode;
+    }
+
+    // Snapshot mode always runs in memory, whatever db.url says
+    String connectionUrl(String configuredUrl) {
+        return mode == DurabilityMode.SNAPSHOT ? snapshotUrl : configuredUrl;
+    }
+
+    /**
+     * Restores the snapshot (snapshot mode) and starts the background flusher. Runs once,
+     * before the first connection is handed out.
+     */
+    void ensureStarted(String url, String username, String password) throws SQLException {
+        if (started) {
+            urls.add(url);
+            return;
+        }
+        synchronized (this) {
+            if (started) {
+                return;
+            }
+            this.url = url;
+            this.username = username;
+            this.password = password;
+            urls.add(url);
+
+            if (mode == DurabilityMode.GROUP_COMMIT) {
+                scheduler = newScheduler("group-commit-flush");
+                scheduler.scheduleWithFixedDelay(this::flushIfDirty, groupCommitDelayMillis, groupCommitDelayMillis, TimeUnit.MILLISECONDS);
+            } else if (mode == DurabilityMode.SNAPSHOT) {
+                restoreSnapshot();
+                scheduler = newScheduler("snapshot-writer");
+                scheduler.scheduleWithFixedDelay(this::snapshotIfDirty, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "durability-shutdown"));
+            started = true;
+        }
+    }
+
+    /**
+     * Called by the write paths after they committed.
+     */
+    void afterCommit(Connection conn) throws SQLException {
+        if (mode == DurabilityMode.STRICT) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CHECKPOINT SYNC");
+            }
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Called by TwoPhaseCommit after a participant prepared. In strict mode the prepared work is synced
+     * before the commit decision is logged, so a logged decision never outlives a participant's work.
+     */
+    void afterPrepare(Connection conn) throws SQLException {
+        if (mode == DurabilityMode.STRICT) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CHECKPOINT SYNC");
+            }
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    private void flushIfDirty() {
+        if (dirty.getAndSet(false)) {
+            for (String target : urls) {
+                try (Connection conn = DriverManager.getConnection(target, username, password); Statement stmt = conn.createStatement()) {
+                    stmt.execute("CHECKPOINT SYNC");
+                } catch (SQLException e) {
+                    dirty.set(true);
+                    System.out.println("Warning: Group commit flush failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void snapshotIfDirty() {
+        if (dirty.getAndSet(false)) {
+            try {
+                writeSnapshot();
+            } catch (SQLException | IOException e) {
+                dirty.set(true);
+                System.out.println("Warning: Snapshot failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes the in-memory database to the snapshot file. The script goes to a temp file first
+     * and is then renamed, so a crash mid-write leaves the previous snapshot intact.
+     */
+    synchronized void writeSnapshot() throws SQLException, IOException {
+        Path absolute = snapshotFile.toAbsolutePath();
+        if (absolute.getParent() != null) {
+            Files.createDirectories(absolute.getParent());
+        }
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (Connection conn = DriverManager.getConnection(url, username, password); Statement stmt = conn.createStatement()) {
+            stmt.execute("SCRIPT TO '" + temp.toString().replace("'", "''") + "' COMPRESSION ZIP");
+        }
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void restoreSnapshot() throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, username, password); Statement stmt = conn.createStatement()) {
+            if (Files.exists(snapshotFile)) {
+                stmt.execute("RUNSCRIPT FROM '" + snapshotFile.toAbsolutePath().toString().replace("'", "''") + "' COMPRESSION ZIP");
+            } else {
+                stmt.execute("RUNSCRIPT FROM 'classpath:/schema.sql'");
+            }
+        }
+    }
+
+    private void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (mode == DurabilityMode.GROUP_COMMIT) {
+            flushIfDirty();
+        } else if (mode == DurabilityMode.SNAPSHOT) {
+            snapshotIfDirty();
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
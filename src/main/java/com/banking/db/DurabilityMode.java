@@ -0,0 +1,45 @@
+package com.banking.db;
+
+/**
+ * How hard the persistence layer works to keep committed writes, selected with db.durability.
+ */
+public enum DurabilityMode {
+    /**
+     * Every committed write is forced to disk (CHECKPOINT SYNC) before the call returns.
+     * Loss window: none beyond the operation in flight.
+     */
+    STRICT("strict"),
+
+    /**
+     * Commits return immediately; a background flush forces everything committed so far to disk
+     * every db.groupCommit.delayMillis, so concurrent commits share one sync.
+     * Loss window: up to db.groupCommit.delayMillis of committed writes on a crash or power loss.
+     */
+    GROUP_COMMIT("group-commit"),
+
+    /**
+     * The database lives in memory and is written to db.snapshot.file (a zipped SQL script)
+     * every db.snapshot.intervalSeconds and on a clean shutdown; it is restored from there on start.
+     * Loss window: everything since the last snapshot, up to db.snapshot.intervalSeconds, if the process dies.
+     */
+    SNAPSHOT("snapshot");
+
+    private final String configName;
+
+    DurabilityMode(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    public static DurabilityMode fromConfig(String value) {
+        for (DurabilityMode mode : values()) {
+            if (mode.configName.equalsIgnoreCase(value.trim()) || mode.name().equalsIgnoreCase(value.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown db.durability mode: " + value + " (use strict, group-commit or snapshot)");
+    }
+}
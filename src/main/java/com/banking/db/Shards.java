@@ -0,0 +1,89 @@
+package com.banking.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scatter-gather over all shards: runs a query on every shard in parallel and returns the
+ * per-shard results in shard order for the caller to combine. With one shard it runs inline.
+ */
+public class Shards {
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "shard-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Work to run against one shard.
+     */
+    public interface ShardQuery<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Work to run against one shard that needs to know which shard it is on.
+     */
+    public interface ShardTask<T> {
+        T run(int shard, Connection conn) throws SQLException;
+    }
+
+    public static <T> List<T> scatter(ShardQuery<T> query) throws SQLException {
+        return scatterByShard((shard, conn) -> query.run(conn));
+    }
+
+    public static <T> List<T> scatterByShard(ShardTask<T> task) throws SQLException {
+        int shards = DatabaseConnection.getShardCount();
+        List<T> results = new ArrayList<>(shards);
+        if (shards == 1) {
+            results.add(runOn(0, task));
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int target = shard;
+            futures.add(EXECUTOR.submit(() -> runOn(target, task)));
+        }
+
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for shards", e);
+            }
+        }
+        // The first failure is thrown as the task threw it, so callers can catch unchecked ones by type
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new SQLException("Shard query failed", failure);
+        }
+        return results;
+    }
+
+    private static <T> T runOn(int shard, ShardTask<T> task) throws SQLException {
+        try (Connection conn = DatabaseConnection.getShardConnection(shard)) {
+            return task.run(shard, conn);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.banking.db;
+
+import com.banking.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated execution statistics of one SQL shape (the statement text with literals replaced by ?).
+ */
+public class SqlStatementStats {
+    private final String sql;
+    private final LatencyHistogram executeTime = new LatencyHistogram();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedStatements = new LongAdder();
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    SqlStatementStats(String sql) {
+        this.sql = sql;
+    }
+
+    void recordExecution(long nanos, boolean failed) {
+        executeTime.record(nanos);
+        totalNanos.add(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    void recordRows(long count) {
+        rows.add(count);
+    }
+
+    void recordBatch(int size) {
+        batches.increment();
+        batchedStatements.add(size);
+        maxBatchSize.accumulateAndGet(size, Math::max);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutions() {
+        return executeTime.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0.0 : (double) batchedStatements.sum() / count;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1_000_000.0;
+    }
+
+    public double getMeanMicros() {
+        return executeTime.getMeanNanos() / 1000.0;
+    }
+
+    public double getP99Micros() {
+        return executeTime.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    public double getMaxMicros() {
+        return executeTime.getMaxNanos() / 1000.0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.banking.db;
+
+import com.banking.util.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Traces JDBC work done through DatabaseConnection: connection acquire time, and per SQL shape the
+ * execute time, rows returned or affected, and batch sizes.
+ *
+ * Statements slower than the threshold go to a bounded in-memory slow-query log and, if
+ * db.trace.slowLogFile is set, to that file (rotated to &lt;file&gt;.1 once it passes db.trace.slowLogMaxBytes).
+ *
+ * Configuration (application.properties or -D):
+ *   db.trace.enabled=false
+ *   db.trace.slowQueryMillis=50
+ *   db.trace.slowLogSize=500
+ *   db.trace.slowLogFile=
+ *   db.trace.slowLogMaxBytes=10485760
+ */
+public class SqlTracer implements SqlTracerMXBean {
+    private static final int MAX_SHAPES = 10_000;
+    private static final String OTHER_SHAPE = "<other>";
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final SqlTracer DEFAULT = new SqlTracer(
+            Boolean.parseBoolean(DatabaseConnection.getProperty("db.trace.enabled", "false")),
+            Long.parseLong(DatabaseConnection.getProperty("db.trace.slowQueryMillis", "50")),
+            Integer.parseInt(DatabaseConnection.getProperty("db.trace.slowLogSize", "500")),
+            DatabaseConnection.getProperty("db.trace.slowLogFile", ""),
+            Long.parseLong(DatabaseConnection.getProperty("db.trace.slowLogMaxBytes", "10485760")));
+
+    private final ConcurrentHashMap<String, SqlStatementStats> statements = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionAcquire = new LatencyHistogram();
+    private final ArrayDeque<String> slowQueries;
+    private final int slowLogSize;
+    private final Path slowLogFile;
+    private final long slowLogMaxBytes;
+    private volatile boolean enabled;
+    private volatile long slowQueryThresholdNanos;
+
+    public SqlTracer(boolean enabled, long slowQueryMillis, int slowLogSize, String slowLogFile, long slowLogMaxBytes) {
+        this.enabled = enabled;
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+        this.slowLogSize = slowLogSize;
+        this.slowQueries = new ArrayDeque<>(slowLogSize);
+        this.slowLogFile = slowLogFile.isEmpty() ? null : Paths.get(slowLogFile);
+        this.slowLogMaxBytes = slowLogMaxBytes;
+    }
+
+    public static SqlTracer getDefault() {
+        return DEFAULT;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getSlowQueryThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowQueryThresholdNanos);
+    }
+
+    @Override
+    public void setSlowQueryThresholdMillis(long thresholdMillis) {
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    // Wraps the connection so its statements are traced; returns it untouched while tracing is off
+    Connection wrap(Connection connection, long acquireNanos) {
+        if (!enabled) {
+            return connection;
+        }
+        connectionAcquire.record(acquireNanos);
+        return TracingProxies.connection(connection, this);
+    }
+
+    SqlStatementStats statsFor(String shape) {
+        SqlStatementStats stats = statements.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        if (statements.size() >= MAX_SHAPES) {
+            return statements.computeIfAbsent(OTHER_SHAPE, SqlStatementStats::new);
+        }
+        return statements.computeIfAbsent(shape, SqlStatementStats::new);
+    }
+
+    void recordExecution(SqlStatementStats stats, long nanos, long rows, boolean failed) {
+        stats.recordExecution(nanos, failed);
+        if (rows > 0) {
+            stats.recordRows(rows);
+        }
+        if (nanos >= slowQueryThresholdNanos) {
+            // Rows of a query are only known once its ResultSet has been read, so they show as ?
+            logSlowQuery(String.format(Locale.ROOT, "%s %.3fms rows=%s%s %s", LocalDateTime.now(), nanos / 1_000_000.0,
+                    rows < 0 ? "?" : String.valueOf(rows), failed ? " FAILED" : "", stats.getSql()));
+        }
+    }
+
+    private void logSlowQuery(String entry) {
+        synchronized (slowQueries) {
+            if (slowQueries.size() == slowLogSize) {
+                slowQueries.removeFirst();
+            }
+            slowQueries.addLast(entry);
+
+            if (slowLogFile != null) {
+                try {
+                    if (Files.exists(slowLogFile) && Files.size(slowLogFile) >= slowLogMaxBytes) {
+                        Files.move(slowLogFile, Paths.get(slowLogFile + ".1"), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    try (Writer writer = Files.newBufferedWriter(slowLogFile, StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                        writer.write(entry);
+                        writer.write(System.lineSeparator());
+                    }
+                } catch (IOException e) {
+                    System.out.println("Warning: Could not write slow query log: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Collapses whitespace and replaces literals with ? so statements differing only in values share stats. */
+    static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql.trim()).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return WHITESPACE.matcher(shape).replaceAll(" ");
+    }
+
+    public List<SqlStatementStats> getStatementStats() {
+        List<SqlStatementStats> stats = new ArrayList<>(statements.values());
+        stats.sort(Comparator.comparingDouble(SqlStatementStats::getTotalMillis).reversed());
+        return stats;
+    }
+
+    public LatencyHistogram getConnectionAcquireTime() {
+        return connectionAcquire;
+    }
+
+    @Override
+    public List<String> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    @Override
+    public String dump() {
+        StringWriter text = new StringWriter();
+        dump(new PrintWriter(text));
+        return text.toString();
+    }
+
+    /** Prints connection acquire times and per-statement stats, most expensive statement first. */
+    public void dump(PrintWriter out) {
+        out.printf(Locale.ROOT, "Connections acquired: %d, mean %.1fus, p99 %.1fus, max %.1fus%n",
+                connectionAcquire.getCount(), connectionAcquire.getMeanNanos() / 1000.0,
+                connectionAcquire.getValueAtPercentile(99, TimeUnit.MICROSECONDS), connectionAcquire.getMaxNanos() / 1000.0);
+        out.println("+------------+------------+----------+------------+------------+------------+---------+-----------+--------");
+        out.println("|   Total ms |      Execs |   Errors |    Mean us |     P99 us |       Rows | Batches | Avg batch | SQL");
+        out.println("+------------+------------+----------+------------+------------+------------+---------+-----------+--------");
+        for (SqlStatementStats stats : getStatementStats()) {
+            out.printf(Locale.ROOT, "| %10.1f | %10d | %8d | %10.1f | %10.1f | %10d | %7d | %9.1f | %s%n",
+                    stats.getTotalMillis(), stats.getExecutions(), stats.getErrors(), stats.getMeanMicros(),
+                    stats.getP99Micros(), stats.getRows(), stats.getBatches(), stats.getAverageBatchSize(), stats.getSql());
+        }
+        out.println("+------------+------------+----------+------------+------------+------------+---------+-----------+--------");
+        out.flush();
+    }
+
+    @Override
+    public void reset() {
+        statements.clear();
+        connectionAcquire.reset();
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    public synchronized void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.banking:type=SqlTracer");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register SQL tracer MBean: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.banking.db;
+
+import java.util.List;
+
+/**
+ * JMX view of the SQL tracer, registered as com.banking:type=SqlTracer.
+ */
+public interface SqlTracerMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getSlowQueryThresholdMillis();
+
+    void setSlowQueryThresholdMillis(long thresholdMillis);
+
+    List<String> getSlowQueries();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,227 @@
+package com.banking.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Dynamic proxies that time JDBC calls for the SqlTracer. Only created while tracing is enabled.
+ */
+final class TracingProxies {
+    private TracingProxies() {
+    }
+
+    static Connection connection(Connection target, SqlTracer tracer) {
+        return (Connection) Proxy.newProxyInstance(TracingProxies.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(target, tracer));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final SqlTracer tracer;
+
+        ConnectionHandler(Connection target, SqlTracer tracer) {
+            this.target = target;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracingProxies.invoke(target, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement((Statement) result, PreparedStatement.class, tracer.statsFor(SqlTracer.shapeOf((String) args[0])));
+                case "prepareCall":
+                    return statement((Statement) result, CallableStatement.class, tracer.statsFor(SqlTracer.shapeOf((String) args[0])));
+                case "createStatement":
+                    return statement((Statement) result, Statement.class, null);
+                default:
+                    return result;
+            }
+        }
+
+        private Object statement(Statement statement, Class<?> type, SqlStatementStats preparedStats) {
+            return Proxy.newProxyInstance(TracingProxies.class.getClassLoader(), new Class<?>[]{type},
+                    new StatementHandler(statement, tracer, preparedStats));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final SqlTracer tracer;
+        // Set for prepared statements; plain statements find their shape from the SQL passed to execute
+        private final SqlStatementStats preparedStats;
+        private SqlStatementStats batchStats;
+        private int pendingBatch;
+        private ResultSetHandler openResultSet;
+
+        StatementHandler(Statement target, SqlTracer tracer, SqlStatementStats preparedStats) {
+            this.target = target;
+            this.tracer = tracer;
+            this.preparedStats = preparedStats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "addBatch":
+                    if (batchStats == null) {
+                        batchStats = preparedStats != null ? preparedStats : tracer.statsFor(SqlTracer.shapeOf((String) args[0]));
+                    }
+                    pendingBatch++;
+                    return TracingProxies.invoke(target, method, args);
+                case "clearBatch":
+                    pendingBatch = 0;
+                    return TracingProxies.invoke(target, method, args);
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executeBatch(method, args);
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                    return execute(method, args);
+                case "close":
+                    closeResultSet();
+                    return TracingProxies.invoke(target, method, args);
+                case "getResultSet":
+                    Object resultSet = TracingProxies.invoke(target, method, args);
+                    return resultSet == null ? null : resultSet((ResultSet) resultSet, statsFor(null));
+                default:
+                    return TracingProxies.invoke(target, method, args);
+            }
+        }
+
+        private SqlStatementStats statsFor(Object[] args) {
+            if (preparedStats != null) {
+                return preparedStats;
+            }
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                return tracer.statsFor(SqlTracer.shapeOf((String) args[0]));
+            }
+            return tracer.statsFor("<unknown>");
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            closeResultSet();
+            SqlStatementStats stats = statsFor(args);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = TracingProxies.invoke(target, method, args);
+            } catch (Throwable e) {
+                tracer.recordExecution(stats, System.nanoTime() - start, -1, true);
+                throw e;
+            }
+            long nanos = System.nanoTime() - start;
+
+            if (result instanceof ResultSet) {
+                tracer.recordExecution(stats, nanos, -1, false);
+                return resultSet((ResultSet) result, stats);
+            }
+            if (result instanceof Number) {
+                tracer.recordExecution(stats, nanos, ((Number) result).longValue(), false);
+                return result;
+            }
+            // execute() returns whether a result set is available; rows show up when it is read
+            tracer.recordExecution(stats, nanos, Boolean.TRUE.equals(result) ? -1 : target.getLargeUpdateCount(), false);
+            return result;
+        }
+
+        private Object executeBatch(Method method, Object[] args) throws Throwable {
+            SqlStatementStats stats = batchStats != null ? batchStats : statsFor(null);
+            int size = pendingBatch;
+            pendingBatch = 0;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = TracingProxies.invoke(target, method, args);
+            } catch (Throwable e) {
+                tracer.recordExecution(stats, System.nanoTime() - start, -1, true);
+                stats.recordBatch(size);
+                throw e;
+            }
+            long nanos = System.nanoTime() - start;
+
+            long rows = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    rows += Math.max(count, 0);
+                }
+            }
+            tracer.recordExecution(stats, nanos, rows, false);
+            stats.recordBatch(size);
+            return result;
+        }
+
+        private Object resultSet(ResultSet resultSet, SqlStatementStats stats) {
+            closeResultSet();
+            openResultSet = new ResultSetHandler(resultSet, stats);
+            return Proxy.newProxyInstance(TracingProxies.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    openResultSet);
+        }
+
+        // Closing or re-executing a statement closes its ResultSet, so count the rows read so far
+        private void closeResultSet() {
+            if (openResultSet != null) {
+                openResultSet.recordRows();
+                openResultSet = null;
+            }
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final SqlStatementStats stats;
+        private long rows;
+        private boolean recorded;
+
+        ResultSetHandler(ResultSet target, SqlStatementStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = TracingProxies.invoke(target, method, args);
+            String name = method.getName();
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                } else {
+                    recordRows();
+                }
+            } else if (name.equals("close")) {
+                recordRows();
+            }
+            return result;
+        }
+
+        // Many callers never close their ResultSet explicitly, so rows are also recorded once next() runs out
+        void recordRows() {
+            if (!recorded) {
+                recorded = true;
+                stats.recordRows(rows);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.banking.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-phase commit over shard connections, for work that spans shards (cross-shard transfers).
+ *
+ * Each participant does its part in a local transaction, then:
+ * 1. every participant runs PREPARE COMMIT (H2 keeps prepared work across a crash, "in doubt"),
+ *    synced under the durability mode;
+ * 2. the commit decision is written to shard_commit_log on shard 0 under the durability mode;
+ * 3. every participant commits and the log row is removed.
+ * A failure before step 2 rolls all participants back. A participant that fails to commit in step 3
+ * stays in doubt, holding its locks; it is committed by a retry every db.recovery.retryMillis. After a
+ * crash, recover() commits the in-doubt transactions that have a log row and rolls back the rest
+ * (presumed abort).
+ */
+public class TwoPhaseCommit {
+    // Decided transactions some shard failed to commit; only these are committed while the process runs
+    private static final Set<String> unresolved = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService retrier;
+
+    public static String newTransactionName() {
+        return "XS_" + UUID.randomUUID().toString().replace("-", "").toUpperCase();
+    }
+
+    /**
+     * Commits the participants' open transactions atomically. The connections must not be in
+     * auto-commit mode; they stay open and are closed by the caller. They must be unpooled
+     * (getUnpooledShardConnection): closing a pooled one rolls back a branch left in doubt.
+     */
+    public static void commit(String txName, List<Connection> participants) throws SQLException {
+        try {
+            for (Connection conn : participants) {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PREPARE COMMIT " + txName);
+                }
+                DatabaseConnection.afterPrepare(conn);
+            }
+            logDecision(txName);
+        } catch (SQLException e) {
+            rollbackAll(participants);
+            throw e;
+        }
+
+        SQLException failure = null;
+        for (Connection conn : participants) {
+            try {
+                DatabaseConnection.commit(conn);
+            } catch (SQLException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            // Keep the decision so the retry (or recovery after a crash) commits whatever is still in doubt
+            unresolved.add(txName);
+            scheduleRetry();
+            throw new SQLException("Transaction " + txName + " was decided but not every shard confirmed the commit", failure);
+        }
+        forgetDecision(txName);
+    }
+
+    private static synchronized void scheduleRetry() {
+        if (retrier == null) {
+            retrier = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cross-shard-recovery");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        retrier.schedule(TwoPhaseCommit::retryUnresolved,
+                Long.parseLong(DatabaseConnection.getProperty("db.recovery.retryMillis", "1000")), TimeUnit.MILLISECONDS);
+    }
+
+    // Commits the unresolved transactions still in doubt on any shard; runs again until all are settled
+    private static void retryUnresolved() {
+        for (String txName : unresolved) {
+            try {
+                commitInDoubt(txName);
+                forgetDecision(txName);
+                unresolved.remove(txName);
+            } catch (SQLException e) {
+                System.out.println("Warning: Could not yet settle cross-shard transaction " + txName + ": " + e.getMessage());
+            }
+        }
+        if (!unresolved.isEmpty()) {
+            scheduleRetry();
+        }
+    }
+
+    private static void commitInDoubt(String txName) throws SQLException {
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard);
+                 PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM INFORMATION_SCHEMA.IN_DOUBT WHERE TRANSACTION_NAME = ?")) {
+                stmt.setString(1, txName);
+                boolean inDoubt;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    inDoubt = rs.next();
+                }
+                if (inDoubt) {
+                    try (Statement commit = conn.createStatement()) {
+                        commit.execute("COMMIT TRANSACTION " + txName);
+                    }
+                }
+            }
+        }
+    }
+
+    // Transactions a shard failed to commit that are still waiting for the retry
+    public static int getUnresolvedCount() {
+        return unresolved.size();
+    }
+
+    private static void logDecision(String txName) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO shard_commit_log (tx_name, created) VALUES (?, ?)")) {
+            stmt.setString(1, txName);
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+            DatabaseConnection.commit(conn);
+        }
+    }
+
+    // Best effort: a row left behind is cleared by the next recovery
+    private static void forgetDecision(String txName) {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM shard_commit_log WHERE tx_name = ?")) {
+            stmt.setString(1, txName);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            System.out.println("Warning: Could not clear commit log entry " + txName + ": " + e.getMessage());
+        }
+    }
+
+    private static void rollbackAll(List<Connection> participants) {
+        for (Connection conn : participants) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                System.out.println("Warning: Rollback failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Resolves transactions left in doubt on any shard by a crash, using the commit log on shard 0.
+     * Runs once before the shards are first used (see DatabaseConnection).
+     */
+    static void recover() throws SQLException {
+        Set<String> decided = null;
+        int committed = 0;
+        int rolledBack = 0;
+
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                List<String> inDoubt = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery("SELECT TRANSACTION_NAME FROM INFORMATION_SCHEMA.IN_DOUBT")) {
+                    while (rs.next()) {
+                        inDoubt.add(rs.getString(1));
+                    }
+                }
+                for (String txName : inDoubt) {
+                    if (decided == null) {
+                        decided = loadDecisions();
+                    }
+                    if (decided.contains(txName)) {
+                        stmt.execute("COMMIT TRANSACTION " + txName);
+                        committed++;
+                    } else {
+                        stmt.execute("ROLLBACK TRANSACTION " + txName);
+                        rolledBack++;
+                    }
+                }
+            }
+        }
+
+        // Nothing else runs until recovery is done, so every logged decision is now settled
+        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
+            if (hasCommitLog(conn)) {
+                stmt.executeUpdate("DELETE FROM shard_commit_log");
+            }
+        }
+        if (committed + rolledBack > 0) {
+            System.out.println("Recovered cross-shard transactions: " + committed + " committed, " + rolledBack + " rolled back.");
+        }
+    }
+
+    private static Set<String> loadDecisions() throws SQLException {
+        Set<String> decided = new HashSet<>();
+        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
+            if (hasCommitLog(conn)) {
+                try (ResultSet rs = stmt.executeQuery("SELECT tx_name FROM shard_commit_log")) {
+                    while (rs.next()) {
+                        decided.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+        return decided;
+    }
+
+    // A database created before sharding (or not yet initialized) has no log table
+    private static boolean hasCommitLog(Connection conn) throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getTables(null, null, "SHARD_COMMIT_LOG", null)) {
+            return rs.next();
+        }
+    }
+}
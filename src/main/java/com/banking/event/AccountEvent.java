@@ -0,0 +1,120 @@
+package com.banking.event;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * A committed change to an account or the ledger, published after the database write succeeded.
+ */
+public class AccountEvent {
+    public enum Kind {
+        ACCOUNT_CREATED,
+        BALANCE_CHANGED,
+        // A relative change, for writers that do not hold the account row (hot-account credits, accruals)
+        BALANCE_ADJUSTED,
+        LEDGER_ENTRY,
+        ACCOUNTS_CLEARED,
+        LEDGER_CLEARED,
+        // Too many accounts were written at once to publish each; listeners reload from the database
+        BULK_LOADED
+    }
+
+    private final Kind kind;
+    private final String accountId;
+    private final String type;
+    private final BigDecimal balance;
+    private final BigDecimal amount;
+    private final LocalDateTime date;
+    private final long version;
+    private final long publishedAtMillis;
+
+    private AccountEvent(Kind kind, String accountId, String type, BigDecimal balance, BigDecimal amount, LocalDateTime date,
+                         long version) {
+        this.kind = kind;
+        this.accountId = accountId;
+        this.type = type;
+        this.balance = asStored(balance);
+        this.amount = asStored(amount);
+        this.date = date;
+        this.version = version;
+        this.publishedAtMillis = System.currentTimeMillis();
+    }
+
+    // Money columns are DECIMAL(19, 2) and H2 rounds half-up on write, so report the value as stored
+    private static BigDecimal asStored(BigDecimal value) {
+        return value == null ? null : value.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Version 0: older than any change to the account
+    public static AccountEvent accountCreated(String accountId, String type, BigDecimal balance) {
+        return new AccountEvent(Kind.ACCOUNT_CREATED, accountId, type, balance, null, null, 0);
+    }
+
+    // version is from AccountEvents.nextVersion, taken while the writer held the account row
+    public static AccountEvent balanceChanged(String accountId, BigDecimal balance, long version) {
+        return new AccountEvent(Kind.BALANCE_CHANGED, accountId, null, balance, null, null, version);
+    }
+
+    // version is AccountEvents.currentVersion when the change was written: balances of later versions include it
+    public static AccountEvent balanceAdjusted(String accountId, BigDecimal amount, long version) {
+        return new AccountEvent(Kind.BALANCE_ADJUSTED, accountId, null, null, amount, null, version);
+    }
+
+    public static AccountEvent ledgerEntry(String accountId, BigDecimal amount, LocalDateTime date) {
+        return new AccountEvent(Kind.LEDGER_ENTRY, accountId, null, null, amount, date, 0);
+    }
+
+    public static AccountEvent accountsCleared() {
+        return new AccountEvent(Kind.ACCOUNTS_CLEARED, null, null, null, null, null, 0);
+    }
+
+    public static AccountEvent ledgerCleared() {
+        return new AccountEvent(Kind.LEDGER_CLEARED, null, null, null, null, null, 0);
+    }
+
+    public static AccountEvent bulkLoaded() {
+        return new AccountEvent(Kind.BULK_LOADED, null, null, null, null, null, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    // Only set for ACCOUNT_CREATED
+    public String getType() {
+        return type;
+    }
+
+    // New balance, for ACCOUNT_CREATED and BALANCE_CHANGED
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    // Signed ledger amount, for LEDGER_ENTRY, or change to the balance, for BALANCE_ADJUSTED
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    // The account's balance version, for ACCOUNT_CREATED, BALANCE_CHANGED and BALANCE_ADJUSTED
+    public long getVersion() {
+        return version;
+    }
+
+    public long getPublishedAtMillis() {
+        return publishedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AccountEvent[%s, account=%s, balance=%s, amount=%s, version=%d]", kind, accountId, balance, amount, version);
+    }
+}
@@ -0,0 +1,9 @@
+package com.banking.event;
+
+/**
+ * Receives committed account and ledger changes. Called on the writing thread, so
+ * implementations must hand the event off quickly and never block.
+ */
+public interface AccountEventListener {
+    void onEvent(AccountEvent event);
+}
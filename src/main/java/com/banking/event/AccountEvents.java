@@ -0,0 +1,50 @@
+package com.banking.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide publisher the write paths of BankingSystem and TransactionLogger call after each commit.
+ */
+public class AccountEvents {
+    private static final CopyOnWriteArrayList<AccountEventListener> listeners = new CopyOnWriteArrayList<>();
+    private static final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public static void addListener(AccountEventListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(AccountEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    public static void publish(AccountEvent event) {
+        for (AccountEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                // A broken listener must not fail a write that has already committed
+                System.out.println("Warning: Account event listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The next balance version of the account. A writer takes it while it holds the account row, after
+     * its update and before its commit, so versions follow commit order even when the events are
+     * published in another order.
+     */
+    public static long nextVersion(String accountId) {
+        return versions.computeIfAbsent(accountId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    // The account's latest balance version, 0 if it has none yet
+    public static long currentVersion(String accountId) {
+        AtomicLong version = versions.get(accountId);
+        return version == null ? 0 : version.get();
+    }
+
+    private AccountEvents() {
+    }
+}
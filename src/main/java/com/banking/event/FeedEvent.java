@@ -0,0 +1,28 @@
+package com.banking.event;
+
+/**
+ * An AccountEvent with its position in the LedgerFeed. Sequence numbers start at 1 and increase
+ * by one per event, so a subscriber can resume after the last one it processed.
+ */
+public final class FeedEvent {
+    private final long sequence;
+    private final AccountEvent event;
+
+    FeedEvent(long sequence, AccountEvent event) {
+        this.sequence = sequence;
+        this.event = event;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public AccountEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + event;
+    }
+}
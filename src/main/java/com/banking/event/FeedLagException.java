@@ -0,0 +1,29 @@
+package com.banking.event;
+
+import com.banking.exception.BankingException;
+
+/**
+ * Ends a LedgerFeed subscription whose subscriber fell further behind than its buffer, or that
+ * asked to resume from a sequence the feed no longer retains. Resubscribing after
+ * getLastDeliveredSequence() continues without loss as long as the feed still retains it.
+ */
+public class FeedLagException extends BankingException {
+    private static final long serialVersionUID = 1L;
+    private final long lastDeliveredSequence;
+    private final long droppedEvents;
+
+    public FeedLagException(String message, long lastDeliveredSequence, long droppedEvents) {
+        super(message);
+        this.lastDeliveredSequence = lastDeliveredSequence;
+        this.droppedEvents = droppedEvents;
+    }
+
+    public long getLastDeliveredSequence() {
+        return lastDeliveredSequence;
+    }
+
+    // Events that did not fit the subscriber's buffer
+    public long getDroppedEvents() {
+        return droppedEvents;
+    }
+}
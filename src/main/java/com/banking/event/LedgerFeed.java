@@ -0,0 +1,257 @@
+package com.banking.event;
+
+import com.banking.db.DatabaseConnection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process change feed of committed account and ledger events, for consumers that would
+ * otherwise poll the tables (notifications, analytics, the reporting model).
+ *
+ * The feed listens to AccountEvents, so it sees everything the write paths publish after their
+ * commits, numbers the events and delivers them through java.util.concurrent.Flow in batches of
+ * up to feed.maxBatch events, one batch per unit of demand. Each subscription has its own bounded
+ * buffer; the writing thread only appends to the buffers and never waits for a subscriber. A
+ * subscriber that falls more than its buffer behind gets its buffered events and then a
+ * FeedLagException, and can resubscribe after the last sequence it saw: the newest feed.retention
+ * events are kept for that.
+ *
+ * Configuration: feed.retention (default 100000), feed.subscriberBuffer (default 10000),
+ * feed.maxBatch (default 256).
+ */
+public class LedgerFeed implements Flow.Publisher<List<FeedEvent>>, AccountEventListener {
+    private static volatile LedgerFeed defaultFeed;
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object lock = new Object();
+    private final FeedEvent[] retained;
+    private final int subscriberBuffer;
+    private final int maxBatch;
+    private final CopyOnWriteArrayList<FeedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long lastSequence;
+
+    public LedgerFeed(int retention, int subscriberBuffer, int maxBatch) {
+        this.retained = new FeedEvent[retention];
+        this.subscriberBuffer = subscriberBuffer;
+        this.maxBatch = maxBatch;
+    }
+
+    // Created and subscribed to AccountEvents on first use; events published before that are not in it
+    public static LedgerFeed getDefault() {
+        LedgerFeed feed = defaultFeed;
+        if (feed == null) {
+            synchronized (LedgerFeed.class) {
+                feed = defaultFeed;
+                if (feed == null) {
+                    feed = new LedgerFeed(Integer.parseInt(DatabaseConnection.getProperty("feed.retention", "100000")),
+                            Integer.parseInt(DatabaseConnection.getProperty("feed.subscriberBuffer", "10000")),
+                            Integer.parseInt(DatabaseConnection.getProperty("feed.maxBatch", "256")));
+                    AccountEvents.addListener(feed);
+                    defaultFeed = feed;
+                }
+            }
+        }
+        return feed;
+    }
+
+    // Called on the writing thread: appends to every buffer and wakes the subscribers with demand
+    @Override
+    public void onEvent(AccountEvent event) {
+        synchronized (lock) {
+            FeedEvent feedEvent = new FeedEvent(++lastSequence, event);
+            retained[(int) (lastSequence % retained.length)] = feedEvent;
+            for (FeedSubscription subscription : subscriptions) {
+                subscription.offer(feedEvent);
+            }
+        }
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    // Delivers the events published from now on
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<FeedEvent>> subscriber) {
+        subscribe(subscriber, getLastSequence(), subscriberBuffer);
+    }
+
+    // Delivers the events after afterSequence, replaying the retained ones first
+    public void subscribe(Flow.Subscriber<? super List<FeedEvent>> subscriber, long afterSequence) {
+        subscribe(subscriber, afterSequence, subscriberBuffer);
+    }
+
+    public void subscribe(Flow.Subscriber<? super List<FeedEvent>> subscriber, long afterSequence, int bufferCapacity) {
+        FeedSubscription subscription = new FeedSubscription(subscriber, bufferCapacity, afterSequence);
+        long oldest;
+        synchronized (lock) {
+            oldest = Math.max(1, lastSequence - retained.length + 1);
+            if (afterSequence >= oldest - 1 && afterSequence <= lastSequence) {
+                for (long sequence = afterSequence + 1; sequence <= lastSequence; sequence++) {
+                    subscription.offer(retained[(int) (sequence % retained.length)]);
+                }
+                subscriptions.add(subscription);
+                oldest = -1;
+            }
+        }
+        subscriber.onSubscribe(subscription);
+        if (oldest >= 0) {
+            subscription.fail(new FeedLagException("Cannot resume after sequence " + afterSequence
+                    + ": the feed retains " + oldest + " to " + getLastSequence(), afterSequence, 0));
+        } else {
+            subscription.signal();
+        }
+    }
+
+    // Sequence of the newest event, 0 before the first
+    public long getLastSequence() {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+    // The retained event with this sequence, or null if it is too old or not published yet
+    public FeedEvent find(long sequence) {
+        synchronized (lock) {
+            if (sequence < 1 || sequence > lastSequence || sequence <= lastSequence - retained.length) {
+                return null;
+            }
+            return retained[(int) (sequence % retained.length)];
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * One subscriber's buffer and demand. Deliveries run on the feed's executor, at most one at a
+     * time per subscription, so the subscriber's methods are never called concurrently.
+     */
+    private final class FeedSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<FeedEvent>> subscriber;
+        private final ArrayDeque<FeedEvent> buffer;
+        private final int capacity;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private long demand;
+        private long lastDelivered;
+        private long dropped;
+        private boolean overflowed;
+        private boolean done;
+
+        FeedSubscription(Flow.Subscriber<? super List<FeedEvent>> subscriber, int capacity, long afterSequence) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.buffer = new ArrayDeque<>(Math.min(capacity, 1024));
+            this.lastDelivered = afterSequence;
+        }
+
+        synchronized void offer(FeedEvent event) {
+            if (done) {
+                return;
+            }
+            if (overflowed || buffer.size() == capacity) {
+                // Everything after the first lost event is dropped too, so the subscriber sees no gaps
+                overflowed = true;
+                dropped++;
+                return;
+            }
+            buffer.addLast(event);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Demand must be positive: " + n));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                done = true;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        private synchronized boolean hasWork() {
+            return !done && ((demand > 0 && !buffer.isEmpty()) || (overflowed && buffer.isEmpty()));
+        }
+
+        void signal() {
+            if (hasWork() && scheduled.compareAndSet(false, true)) {
+                EXECUTOR.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    List<FeedEvent> batch;
+                    synchronized (this) {
+                        if (done) {
+                            return;
+                        }
+                        if (buffer.isEmpty() && overflowed) {
+                            batch = null;
+                        } else if (demand > 0 && !buffer.isEmpty()) {
+                            batch = new ArrayList<>(Math.min(buffer.size(), maxBatch));
+                            while (batch.size() < maxBatch && !buffer.isEmpty()) {
+                                batch.add(buffer.pollFirst());
+                            }
+                            demand--;
+                        } else {
+                            return;
+                        }
+                    }
+                    if (batch == null) {
+                        fail(new FeedLagException("Subscriber fell more than " + capacity + " events behind after sequence "
+                                + lastDelivered, lastDelivered, dropped));
+                        return;
+                    }
+                    try {
+                        subscriber.onNext(batch);
+                    } catch (RuntimeException e) {
+                        // A subscriber that throws is cancelled rather than retried
+                        fail(e);
+                        return;
+                    }
+                    lastDelivered = batch.get(batch.size() - 1).getSequence();
+                }
+            } finally {
+                scheduled.set(false);
+                // Events or demand that arrived after the last check
+                signal();
+            }
+        }
+
+        void fail(Throwable error) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+            subscriber.onError(error);
+        }
+    }
+}
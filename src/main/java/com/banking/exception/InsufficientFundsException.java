@@ -6,10 +6,11 @@ public class InsufficientFundsException extends BankingException {
     private final String accountNumber;
     private final BigDecimal requestedAmount;
     private final BigDecimal availableBalance;
+    private String message;
 
     public InsufficientFundsException(String accountNumber, BigDecimal requestedAmount, BigDecimal availableBalance) {
-        super(String.format("Insufficient funds in account %s: requested %.2f, available %.2f",
-                          accountNumber, requestedAmount, availableBalance));
+        // The message is formatted on first use, since most callers only look at the type
+        super(null);
         this.accountNumber = accountNumber;
         this.requestedAmount = requestedAmount;
         this.availableBalance = availableBalance;
@@ -26,4 +27,13 @@ public class InsufficientFundsException extends BankingException {
     public BigDecimal getAvailableBalance() {
         return availableBalance;
     }
+
+    @Override
+    public String getMessage() {
+        if (message == null) {
+            message = String.format("Insufficient funds in account %s: requested %.2f, available %.2f",
+                    accountNumber, requestedAmount, availableBalance);
+        }
+        return message;
+    }
 }
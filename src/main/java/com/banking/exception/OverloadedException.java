@@ -0,0 +1,9 @@
+package com.banking.exception;
+
+public class OverloadedException extends BankingException {
+    private static final long serialVersionUID = 1L;
+
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.banking.exception;
+
+public class VelocityLimitExceededException extends BankingException {
+    private static final long serialVersionUID = 1L;
+    private final String accountNumber;
+
+    public VelocityLimitExceededException(String accountNumber, String limit) {
+        super("Withdrawal velocity limit reached for account " + accountNumber + ": " + limit);
+        this.accountNumber = accountNumber;
+    }
+
+    public String getAccountNumber() {
+        return accountNumber;
+    }
+}
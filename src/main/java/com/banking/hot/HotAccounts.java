@@ -0,0 +1,309 @@
+package com.banking.hot;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.util.CommandLineOptions;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot-account mode: an account that takes most of the deposits keeps part of its balance in
+ * sub-balance slots (table account_slots), so concurrent deposits update different rows instead of
+ * all waiting for the account row.
+ *
+ * The balance of an account is accounts.balance plus the sum of its slots; BALANCE_COLUMN is that
+ * expression for queries, and absolute balance writes store the new balance minus the slots
+ * (SET_BALANCE_SQL), so both are right for hot and normal accounts alike. A deposit to a hot account
+ * adds to a random slot. A debit first consolidates: it locks the account row, moves every slot's
+ * amount into it and only then applies the account's withdrawal rules, so minimum balances and
+ * overdraft limits are checked against the exact balance.
+ *
+ * Which accounts are hot is kept in the database and cached here for routing. A background thread
+ * reloads the cache every hot.refreshMillis, so requests never wait for that query. A stale cache
+ * only picks the slower path: a credit to an account not yet seen as hot, or to a slot that no longer
+ * exists, is added to the account row with a relative update, so no deposit is lost either way.
+ *
+ * Usage: java com.banking.hot.HotAccounts [--enable=ID [--slots=8] | --disable=ID | --list] [--init-schema]
+ */
+public class HotAccounts implements HotAccountsMXBean {
+    private static volatile HotAccounts defaultInstance;
+
+    /**
+     * A select-list expression for "FROM accounts a": the account's whole balance, slots included.
+     * Accounts without slots only pay an index lookup.
+     */
+    public static final String BALANCE_COLUMN = "(a.balance + COALESCE((SELECT SUM(s.balance) FROM account_slots s "
+            + "WHERE s.account_id = a.account_id), 0))";
+
+    /**
+     * Sets an account's whole balance (parameters: balance, account id) by storing it less the slots.
+     */
+    public static final String SET_BALANCE_SQL = "UPDATE accounts SET balance = ? - COALESCE((SELECT SUM(s.balance) FROM account_slots s "
+            + "WHERE s.account_id = accounts.account_id), 0) WHERE account_id = ?";
+
+    private static final String CREDIT_SQL = "UPDATE account_slots SET balance = balance + ? WHERE account_id = ? AND slot = ?";
+    // The slots' amounts as they were when the update locked them
+    private static final String DRAIN_SQL = "SELECT COALESCE(SUM(balance), 0) FROM OLD TABLE "
+            + "(UPDATE account_slots SET balance = 0 WHERE account_id = ?)";
+    private static final String FOLD_SQL = "UPDATE accounts SET balance = balance + ? WHERE account_id = ?";
+    private static final String INSERT_SLOT_SQL = "INSERT INTO account_slots (account_id, slot, balance) VALUES (?, ?, 0)";
+
+    private final long refreshMillis;
+    private final int defaultSlots;
+    private final Object refreshLock = new Object();
+    private volatile Map<String, Integer> slotCounts = new HashMap<>();
+    private volatile boolean refreshing;
+
+    public HotAccounts(long refreshMillis, int defaultSlots) {
+        this.refreshMillis = refreshMillis;
+        this.defaultSlots = defaultSlots;
+    }
+
+    public static HotAccounts getDefault() {
+        HotAccounts instance = defaultInstance;
+        if (instance == null) {
+            synchronized (HotAccounts.class) {
+                instance = defaultInstance;
+                if (instance == null) {
+                    instance = defaultInstance = new HotAccounts(
+                            Long.parseLong(DatabaseConnection.getProperty("hot.refreshMillis", "1000")),
+                            Integer.parseInt(DatabaseConnection.getProperty("hot.defaultSlots", "8")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    // The account's number of slots as last seen, 0 for a normal account (or before the first load)
+    public int slotCount(String accountId) {
+        if (!refreshing) {
+            startRefreshing();
+        }
+        Integer slots = slotCounts.get(accountId);
+        return slots == null ? 0 : slots;
+    }
+
+    private synchronized void startRefreshing() {
+        if (refreshing) {
+            return;
+        }
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-accounts-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMillis, TimeUnit.MILLISECONDS);
+        refreshing = true;
+    }
+
+    // A failed reload keeps the previous map and must not stop the schedule
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            System.out.println("Warning: Could not refresh hot accounts: " + e.getMessage());
+        }
+    }
+
+    private static Map<String, Integer> load() {
+        Map<String, Integer> counts = new HashMap<>();
+        try {
+            for (Map<String, Integer> shard : Shards.scatter(conn -> {
+                Map<String, Integer> shardCounts = new HashMap<>();
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT account_id, COUNT(*) FROM account_slots GROUP BY account_id")) {
+                    while (rs.next()) {
+                        shardCounts.put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+                return shardCounts;
+            })) {
+                counts.putAll(shard);
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to load hot accounts", e);
+        }
+        return counts;
+    }
+
+    /**
+     * Splits the account's balance into slots (re-splits it if it already has some). The account
+     * row keeps the current balance and the slots start empty.
+     */
+    @Override
+    public void enable(String accountId, int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("A hot account needs at least one slot");
+        }
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                lockAccount(conn, accountId);
+                consolidate(conn, accountId);
+                deleteSlots(conn, accountId);
+                try (PreparedStatement insert = conn.prepareStatement(INSERT_SLOT_SQL)) {
+                    for (int slot = 0; slot < slots; slot++) {
+                        insert.setString(1, accountId);
+                        insert.setInt(2, slot);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                DatabaseConnection.commit(conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to enable hot-account mode for " + accountId, e);
+        }
+        refresh();
+    }
+
+    public void enable(String accountId) {
+        enable(accountId, defaultSlots);
+    }
+
+    // Moves the slots back into the account row and removes them
+    @Override
+    public void disable(String accountId) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                lockAccount(conn, accountId);
+                consolidate(conn, accountId);
+                deleteSlots(conn, accountId);
+                DatabaseConnection.commit(conn);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to disable hot-account mode for " + accountId, e);
+        }
+        refresh();
+    }
+
+    @Override
+    public void refresh() {
+        synchronized (refreshLock) {
+            slotCounts = load();
+        }
+    }
+
+    @Override
+    public List<String> getHotAccounts() {
+        List<String> accounts = new ArrayList<>();
+        for (Map.Entry<String, Integer> account : new TreeMap<>(slotCounts).entrySet()) {
+            accounts.add(account.getKey() + ": " + account.getValue() + " slots");
+        }
+        return accounts;
+    }
+
+    /**
+     * Adds amount to a random one of the account's slots, on the caller's connection and in its
+     * transaction. False if the slot does not exist (the account is not hot, or has fewer slots now).
+     */
+    public static boolean credit(Connection conn, String accountId, BigDecimal amount, int slotCount) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(CREDIT_SQL)) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setInt(3, ThreadLocalRandom.current().nextInt(slotCount));
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Moves the amounts in the account's slots into its row and returns their sum (zero for a normal
+     * account). The caller holds the account row lock and owns the transaction; the slots stay locked
+     * until it ends, so the row then has the whole balance.
+     */
+    public static BigDecimal consolidate(Connection conn, String accountId) throws SQLException {
+        BigDecimal drained;
+        try (PreparedStatement stmt = conn.prepareStatement(DRAIN_SQL)) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                drained = rs.getBigDecimal(1);
+            }
+        }
+        if (drained.signum() != 0) {
+            try (PreparedStatement stmt = conn.prepareStatement(FOLD_SQL)) {
+                stmt.setBigDecimal(1, drained);
+                stmt.setString(2, accountId);
+                stmt.executeUpdate();
+            }
+        }
+        return drained;
+    }
+
+    private static void lockAccount(Connection conn, String accountId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts WHERE account_id = ? FOR UPDATE")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new AccountNotFoundException(accountId);
+                }
+            }
+        }
+    }
+
+    private static void deleteSlots(Connection conn, String accountId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM account_slots WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.banking:type=HotAccounts");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register hot accounts MBean: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            DatabaseConnection.initializeSchema();
+        }
+
+        HotAccounts hotAccounts = getDefault();
+        if (options.containsKey("enable")) {
+            String accountId = options.get("enable");
+            hotAccounts.enable(accountId, Integer.parseInt(options.getOrDefault("slots", String.valueOf(hotAccounts.defaultSlots))));
+            System.out.println("Hot-account mode enabled for " + accountId);
+        } else if (options.containsKey("disable")) {
+            hotAccounts.disable(options.get("disable"));
+            System.out.println("Hot-account mode disabled for " + options.get("disable"));
+        }
+        hotAccounts.refresh();
+        List<String> accounts = hotAccounts.getHotAccounts();
+        System.out.println(accounts.isEmpty() ? "No hot accounts." : "Hot accounts: " + String.join(", ", accounts));
+    }
+}
@@ -0,0 +1,18 @@
+package com.banking.hot;
+
+import java.util.List;
+
+/**
+ * JMX view of the hot accounts, registered as com.banking:type=HotAccounts. enable and disable take
+ * effect at once in this process, and in other processes within hot.refreshMillis.
+ */
+public interface HotAccountsMXBean {
+    // "ACC1: 8 slots" per hot account
+    List<String> getHotAccounts();
+
+    void enable(String accountId, int slots);
+
+    void disable(String accountId);
+
+    void refresh();
+}
@@ -0,0 +1,375 @@
+package com.banking.load;
+
+import com.banking.admission.AdmissionController;
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.hot.HotAccounts;
+import com.banking.metrics.MetricsRegistry;
+import com.banking.model.AccountType;
+import com.banking.net.BankClient;
+import com.banking.service.AccountService;
+import com.banking.service.BankingOperations;
+import com.banking.service.BulkCreateResult;
+import com.banking.service.NewAccount;
+import com.banking.util.CommandLineOptions;
+import com.banking.util.LatencyHistogram;
+import com.banking.util.TransactionLogger;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Macro load driver: N client threads issue a weighted mix of create, deposit, withdraw, transfer
+ * and history calls through AccountService against a Zipfian-skewed set of accounts.
+ *
+ * Arrival modes:
+ *   closed - each client sends its next request as soon as the previous one returns (--rate is ignored)
+ *   fixed  - each client sends on a fixed schedule so the clients together issue --rate requests/s
+ *   open   - like fixed, but with exponential (Poisson) gaps between requests
+ *
+ * In the scheduled modes latency is measured from the time a request was supposed to be sent,
+ * not from when the client got around to sending it, so stalls are not hidden (coordinated omission).
+ *
+ * With --server=host:port the calls go to a BankServer instead, one BankClient connection per client.
+ *
+ * When the clients are done, the balance of each of the --check hottest accounts must equal the sum
+ * of its ledger rows; a mismatch (e.g. a lost update) is reported and fails the run.
+ *
+ * Usage: java com.banking.load.LoadGenerator --clients=8 --accounts=1000 --duration=30 --warmup=5
+ *        --arrival=open --rate=2000 --mix=deposit=50,withdraw=30,transfer=20 --zipf=0.99
+ *        --check=20 --report=target/load-report.txt [--db-url=jdbc:h2:mem:load;DB_CLOSE_DELAY=-1 | --server=localhost:7070]
+ */
+public class LoadGenerator {
+    private static final String SEED_PREFIX = "LOAD";
+    private static final BigDecimal SEED_BALANCE = new BigDecimal("100000.00");
+
+    private final int clients;
+    private final int accounts;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final String arrival;
+    private final double rate;
+    private final WorkloadMix mix;
+    private final double zipfTheta;
+    private final int checkedAccounts;
+    private final Path reportPath;
+    private final String server;
+
+    private final AccountService accountService;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicLong createdAccounts = new AtomicLong();
+    private final String runPrefix = "N" + Long.toString(System.currentTimeMillis() % 60466176L, 36);
+    private ZipfianGenerator accountChooser;
+
+    public LoadGenerator(Map<String, String> options) {
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "8"));
+        this.accounts = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        this.warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        this.arrival = options.getOrDefault("arrival", "closed").toLowerCase();
+        this.rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        this.mix = WorkloadMix.parse(options.getOrDefault("mix", WorkloadMix.DEFAULT_SPEC));
+        this.zipfTheta = Double.parseDouble(options.getOrDefault("zipf", "0.99"));
+        this.checkedAccounts = Integer.parseInt(options.getOrDefault("check", "20"));
+        this.reportPath = Paths.get(options.getOrDefault("report", "target/load-report.txt"));
+        this.server = options.get("server");
+
+        if (!arrival.equals("closed") && !arrival.equals("fixed") && !arrival.equals("open")) {
+            throw new IllegalArgumentException("Arrival mode must be closed, fixed or open: " + arrival);
+        }
+        if (!arrival.equals("closed") && rate <= 0) {
+            throw new IllegalArgumentException("The " + arrival + " arrival mode needs a positive --rate");
+        }
+
+        this.accountService = server == null ? new AccountService() : null;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats(operation));
+        }
+    }
+
+    // False if a checked account's balance does not match its ledger
+    public boolean run() throws InterruptedException, IOException {
+        if (server == null) {
+            seedAccountsInBulk();
+        } else {
+            try (BankClient seeder = BankClient.connect(server)) {
+                seedAccounts(seeder);
+            }
+        }
+        accountChooser = new ZipfianGenerator(accounts, zipfTheta);
+
+        long startNanos = System.nanoTime();
+        long measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        System.out.printf("Running %d clients for %ds (+%ds warm-up), arrival=%s, rate=%.0f/s, mix=%s, target=%s%n",
+                clients, durationSeconds, warmupSeconds, arrival, rate, mix, server == null ? "in-process" : server);
+
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            Thread client = new Thread(() -> {
+                try {
+                    if (server == null) {
+                        runClient(accountService, startNanos, measureFromNanos, endNanos);
+                    } else {
+                        try (BankClient bankClient = BankClient.connect(server)) {
+                            runClient(bankClient, startNanos, measureFromNanos, endNanos);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Load client could not reach " + server + ": " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + i);
+            client.setDaemon(true);
+            client.start();
+        }
+        done.await();
+
+        List<String> mismatches;
+        if (server == null) {
+            mismatches = checkHotAccounts(accountService);
+        } else {
+            try (BankClient checker = BankClient.connect(server)) {
+                mismatches = checkHotAccounts(checker);
+            }
+        }
+        writeReport(mismatches);
+        return mismatches.isEmpty();
+    }
+
+    // The hottest accounts take the most concurrent updates, so a lost one shows there first
+    private List<String> checkHotAccounts(BankingOperations bank) {
+        List<String> mismatches = new ArrayList<>();
+        for (int i = 0; i < Math.min(accounts, checkedAccounts); i++) {
+            String accountId = seedAccountId(i);
+            BigDecimal balance = bank.findAccount(accountId).getBalance();
+            BigDecimal ledger = BigDecimal.ZERO;
+            for (TransactionLogger.TransactionRecord record : bank.getTransactionHistory(accountId)) {
+                ledger = ledger.add(record.getAmount());
+            }
+            if (balance.compareTo(ledger) != 0) {
+                mismatches.add(accountId + " balance " + balance + " but ledger " + ledger);
+            }
+        }
+        return mismatches;
+    }
+
+    private void runClient(BankingOperations bank, long startNanos, long measureFromNanos, long endNanos) {
+        double meanGapNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * clients / rate : 0;
+        // Stagger clients so fixed-rate schedules do not all fire at the same instant
+        double intended = startNanos + ThreadLocalRandom.current().nextDouble() * meanGapNanos;
+
+        while (true) {
+            long sendNanos;
+            if (arrival.equals("closed")) {
+                sendNanos = System.nanoTime();
+                if (sendNanos >= endNanos) {
+                    return;
+                }
+            } else {
+                sendNanos = (long) intended;
+                if (sendNanos >= endNanos) {
+                    return;
+                }
+                long wait = sendNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                intended += arrival.equals("fixed")
+                        ? meanGapNanos
+                        : -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanGapNanos;
+            }
+
+            Operation operation = mix.next();
+            Throwable failure = null;
+            try {
+                execute(bank, operation);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            long latency = System.nanoTime() - sendNanos;
+
+            if (sendNanos >= measureFromNanos) {
+                OperationStats operationStats = stats.get(operation);
+                if (failure == null) {
+                    operationStats.recordSuccess(latency);
+                } else {
+                    operationStats.recordFailure(failure, latency);
+                }
+            }
+        }
+    }
+
+    private void execute(BankingOperations bank, Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 10000), 2);
+
+        switch (operation) {
+            case CREATE:
+                String newAccount = runPrefix + createdAccounts.incrementAndGet();
+                AccountType type = random.nextBoolean() ? AccountType.SAVINGS : AccountType.CHECKING;
+                bank.createAccount(type, newAccount, SEED_BALANCE);
+                break;
+            case DEPOSIT:
+                bank.deposit(pickAccount(), amount);
+                break;
+            case WITHDRAW:
+                bank.withdraw(pickAccount(), amount);
+                break;
+            case TRANSFER:
+                String from = pickAccount();
+                String to = pickAccount();
+                while (accounts > 1 && to.equals(from)) {
+                    to = pickAccount();
+                }
+                bank.transfer(from, to, amount);
+                break;
+            case HISTORY:
+                bank.getTransactionHistory(pickAccount());
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation: " + operation);
+        }
+    }
+
+    private String pickAccount() {
+        return seedAccountId(accountChooser.next());
+    }
+
+    private static String seedAccountId(int index) {
+        return String.format("%s%07d", SEED_PREFIX, index);
+    }
+
+    // Creates any of the LOAD0000000.. accounts that do not exist yet
+    private void seedAccounts(BankingOperations bank) {
+        int created = 0;
+        for (int i = 0; i < accounts; i++) {
+            String accountId = seedAccountId(i);
+            try {
+                bank.findAccount(accountId);
+            } catch (AccountNotFoundException e) {
+                bank.createAccount(i % 2 == 0 ? AccountType.SAVINGS : AccountType.CHECKING, accountId, SEED_BALANCE);
+                created++;
+            }
+        }
+        System.out.printf("Seeded %d accounts (%d already existed)%n", created, accounts - created);
+    }
+
+    // In-process seeding goes through createAccounts, which skips the accounts that already exist
+    private void seedAccountsInBulk() {
+        List<NewAccount> requests = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            requests.add(new NewAccount(i % 2 == 0 ? AccountType.SAVINGS : AccountType.CHECKING, seedAccountId(i), SEED_BALANCE));
+        }
+        BulkCreateResult result = accountService.createAccounts(requests);
+        System.out.printf("Seeded %d accounts (%d already existed)%n", result.getCreated(), result.getDuplicates());
+    }
+
+    private void writeReport(List<String> mismatches) throws IOException {
+        if (reportPath.getParent() != null) {
+            Files.createDirectories(reportPath.getParent());
+        }
+
+        LatencyHistogram overall = new LatencyHistogram();
+        long totalOps = 0;
+        long totalFailures = 0;
+        for (OperationStats operationStats : stats.values()) {
+            overall.add(operationStats.getLatency());
+            totalOps += operationStats.getTotal();
+            totalFailures += operationStats.getFailures();
+        }
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8))) {
+            out.println("# Banking load report (latencies in microseconds, throughput in ops/s)");
+            out.printf("config.clients=%d%n", clients);
+            out.printf("config.accounts=%d%n", accounts);
+            out.printf("config.duration_s=%d%n", durationSeconds);
+            out.printf("config.warmup_s=%d%n", warmupSeconds);
+            out.printf("config.arrival=%s%n", arrival);
+            out.printf(Locale.ROOT, "config.rate=%.1f%n", rate);
+            out.printf("config.mix=%s%n", mix);
+            out.printf(Locale.ROOT, "config.zipf_theta=%.3f%n", zipfTheta);
+            out.printf("config.target=%s%n", server == null ? "in-process" : server);
+            out.printf("check.accounts=%d%n", Math.min(accounts, checkedAccounts));
+            out.printf("check.mismatches=%d%n", mismatches.size());
+            writeSection(out, "total", overall, totalOps, totalFailures, null);
+            for (OperationStats operationStats : stats.values()) {
+                if (operationStats.getTotal() > 0) {
+                    writeSection(out, operationStats.getOperation().label(), operationStats.getLatency(),
+                            operationStats.getTotal(), operationStats.getFailures(), operationStats.getFailuresByType());
+                }
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "Done: %d ops, %.1f ops/s, p50=%.0fus p99=%.0fus p99.9=%.0fus, error rate %.4f%n",
+                totalOps, (double) totalOps / durationSeconds,
+                overall.getValueAtPercentile(50, TimeUnit.MICROSECONDS),
+                overall.getValueAtPercentile(99, TimeUnit.MICROSECONDS),
+                overall.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS),
+                totalOps == 0 ? 0.0 : (double) totalFailures / totalOps);
+        for (String mismatch : mismatches) {
+            System.out.println("Ledger mismatch: " + mismatch);
+        }
+        System.out.println("Report written to " + reportPath);
+    }
+
+    private void writeSection(PrintWriter out, String name, LatencyHistogram latency, long ops, long failures,
+                              Map<String, Long> failuresByType) {
+        out.printf("%s.ops=%d%n", name, ops);
+        out.printf(Locale.ROOT, "%s.throughput=%.1f%n", name, (double) ops / durationSeconds);
+        out.printf("%s.errors=%d%n", name, failures);
+        out.printf(Locale.ROOT, "%s.error_rate=%.6f%n", name, ops == 0 ? 0.0 : (double) failures / ops);
+        out.printf(Locale.ROOT, "%s.latency_mean=%.1f%n", name, latency.getMeanNanos() / 1000.0);
+        out.printf(Locale.ROOT, "%s.latency_p50=%.1f%n", name, latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS));
+        out.printf(Locale.ROOT, "%s.latency_p99=%.1f%n", name, latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS));
+        out.printf(Locale.ROOT, "%s.latency_p999=%.1f%n", name, latency.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS));
+        out.printf(Locale.ROOT, "%s.latency_max=%.1f%n", name, latency.getMaxNanos() / 1000.0);
+        if (failuresByType != null) {
+            failuresByType.forEach((type, count) -> out.printf("%s.errors.%s=%d%n", name, type, count));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("server")) {
+            if (!new LoadGenerator(options).run()) {
+                System.exit(1);
+            }
+            return;
+        }
+        // Never point the generator at the real banking_db by accident
+        if (System.getProperty("db.url") == null) {
+            System.setProperty("db.url", options.getOrDefault("db-url", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1"));
+        }
+        try {
+            DatabaseConnection.initializeSchema();
+        } catch (SQLException e) {
+            System.err.println("Could not initialize schema: " + e.getMessage());
+            System.exit(1);
+        }
+        MetricsRegistry.getDefault().registerMBeans();
+        AdmissionController.getDefault().registerMBean();
+        HotAccounts.getDefault().registerMBean();
+        if (!new LoadGenerator(options).run()) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.banking.load;
+
+/**
+ * The AccountService calls the load generator and the batch runner can issue.
+ */
+public enum Operation {
+    CREATE,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    HISTORY;
+
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,62 @@
+package com.banking.load;
+
+import com.banking.util.LatencyHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, successes and errors (by exception type) recorded for one operation during a load run.
+ */
+public class OperationStats {
+    private final Operation operation;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final ConcurrentHashMap<String, LongAdder> failuresByType = new ConcurrentHashMap<>();
+
+    public OperationStats(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        successes.incrementAndGet();
+        latency.record(latencyNanos);
+    }
+
+    public void recordFailure(Throwable error, long latencyNanos) {
+        failures.incrementAndGet();
+        failuresByType.computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+        latency.record(latencyNanos);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getTotal() {
+        return successes.get() + failures.get();
+    }
+
+    // Sorted so reports list error types in a stable order
+    public Map<String, Long> getFailuresByType() {
+        Map<String, Long> sorted = new TreeMap<>();
+        failuresByType.forEach((type, count) -> sorted.put(type, count.sum()));
+        return sorted;
+    }
+}
@@ -0,0 +1,78 @@
+package com.banking.load;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Relative weights of each operation, parsed from a spec like "create=5,deposit=40,withdraw=30,transfer=20,history=5".
+ * Operations left out of the spec get weight 0.
+ */
+public class WorkloadMix {
+    public static final String DEFAULT_SPEC = "create=5,deposit=40,withdraw=30,transfer=20,history=5";
+
+    private final Map<Operation, Integer> weights;
+    private final Operation[] operations;
+    private final int[] cumulative;
+    private final int total;
+
+    private WorkloadMix(Map<Operation, Integer> weights) {
+        this.weights = weights;
+        this.operations = new Operation[weights.size()];
+        this.cumulative = new int[weights.size()];
+
+        int sum = 0;
+        int i = 0;
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            sum += entry.getValue();
+            operations[i] = entry.getKey();
+            cumulative[i] = sum;
+            i++;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("Workload mix needs at least one operation with a positive weight");
+        }
+        this.total = sum;
+    }
+
+    public static WorkloadMix parse(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Invalid workload mix entry: " + part);
+            }
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase());
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Workload mix weights cannot be negative: " + part);
+            }
+            if (weight > 0) {
+                weights.put(operation, weight);
+            }
+        }
+        return new WorkloadMix(weights);
+    }
+
+    public Operation next() {
+        int roll = ThreadLocalRandom.current().nextInt(total);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (roll < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder spec = new StringBuilder();
+        for (Map.Entry<Operation, Integer> entry : weights.entrySet()) {
+            if (spec.length() > 0) {
+                spec.append(',');
+            }
+            spec.append(entry.getKey().label()).append('=').append(entry.getValue());
+        }
+        return spec.toString();
+    }
+}
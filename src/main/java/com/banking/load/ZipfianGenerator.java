@@ -0,0 +1,65 @@
+package com.banking.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks item indexes in [0, items) with a Zipfian skew, so a few accounts receive most of the traffic.
+ * Uses the rejection-free method from Gray et al. "Quickly Generating Billion-Record Synthetic Databases"
+ * (the same one YCSB uses). Index 0 is the hottest item. A theta of 0 gives a uniform distribution.
+ */
+public class ZipfianGenerator {
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double halfPowTheta;
+
+    public ZipfianGenerator(int items, double theta) {
+        if (items <= 0) {
+            throw new IllegalArgumentException("Zipfian generator needs at least one item");
+        }
+        if (theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("Zipfian theta must be in [0, 1): " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.alpha = 1.0 / (1.0 - theta);
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    public int next() {
+        if (items == 1) {
+            return 0;
+        }
+        double u = ThreadLocalRandom.current().nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return 1;
+        }
+        int value = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(value, items - 1);
+    }
+
+    public int getItems() {
+        return items;
+    }
+
+    public double getTheta() {
+        return theta;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
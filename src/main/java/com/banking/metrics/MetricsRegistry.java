@@ -0,0 +1,132 @@
+package com.banking.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide operation metrics for AccountService, published through JMX.
+ *
+ * Usage on the hot path:
+ *   long start = metrics.start();
+ *   ... work ...
+ *   metrics.recordSuccess(ServiceOperation.DEPOSIT, start);   // or recordFailure(op, start, e)
+ *
+ * Failures reported as results rather than exceptions use recordInsufficientFunds,
+ * recordAccountNotFound and recordOtherFailure; calls shed by the admission controller use
+ * recordOverloaded, and admitted calls report how long they waited through recordQueueTime.
+ *
+ * Errors that BankingSystem and TransactionLogger catch and only print are counted by source
+ * through recordSwallowedError, so they are visible without reading stderr.
+ */
+public class MetricsRegistry implements MetricsRegistryMXBean {
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final OperationMetrics[] operations;
+    private final ConcurrentHashMap<String, LongAdder> swallowedErrors = new ConcurrentHashMap<>();
+
+    public MetricsRegistry() {
+        ServiceOperation[] values = ServiceOperation.values();
+        operations = new OperationMetrics[values.length];
+        for (ServiceOperation operation : values) {
+            operations[operation.ordinal()] = new OperationMetrics(operation);
+        }
+    }
+
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void recordSuccess(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].recordSuccess(System.nanoTime() - startNanos);
+    }
+
+    public void recordFailure(ServiceOperation operation, long startNanos, Throwable error) {
+        operations[operation.ordinal()].recordFailure(System.nanoTime() - startNanos, error);
+    }
+
+    public void recordInsufficientFunds(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].recordInsufficientFunds(System.nanoTime() - startNanos);
+    }
+
+    public void recordAccountNotFound(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].recordAccountNotFound(System.nanoTime() - startNanos);
+    }
+
+    public void recordOtherFailure(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].recordOtherFailure(System.nanoTime() - startNanos);
+    }
+
+    public void recordOverloaded(ServiceOperation operation, long startNanos) {
+        operations[operation.ordinal()].recordOverloaded(System.nanoTime() - startNanos);
+    }
+
+    public void recordQueueTime(ServiceOperation operation, long waitNanos) {
+        operations[operation.ordinal()].recordQueueTime(waitNanos);
+    }
+
+    public void recordSwallowedError(String source, Throwable error) {
+        swallowedErrors.computeIfAbsent(source + ":" + error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    public OperationMetrics get(ServiceOperation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    @Override
+    public List<OperationSnapshot> getSnapshot() {
+        List<OperationSnapshot> snapshot = new ArrayList<>(operations.length);
+        for (OperationMetrics metrics : operations) {
+            snapshot.add(metrics.snapshot());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Long> getSwallowedErrors() {
+        Map<String, Long> errors = new TreeMap<>();
+        swallowedErrors.forEach((source, count) -> errors.put(source, count.sum()));
+        return errors;
+    }
+
+    @Override
+    public void reset() {
+        for (OperationMetrics metrics : operations) {
+            metrics.reset();
+        }
+        swallowedErrors.clear();
+    }
+
+    /**
+     * Registers the registry and one MBean per operation with the platform MBean server.
+     * Safe to call more than once.
+     */
+    public synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName registryName = new ObjectName("com.banking:type=MetricsRegistry");
+            if (!server.isRegistered(registryName)) {
+                server.registerMBean(this, registryName);
+            }
+            for (OperationMetrics metrics : operations) {
+                ObjectName name = new ObjectName("com.banking:type=OperationMetrics,operation=" + metrics.getOperation().metricName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(metrics, name);
+                }
+            }
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register metrics MBeans: " + e.getMessage());
+        }
+    }
+}
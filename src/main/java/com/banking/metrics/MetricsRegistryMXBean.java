@@ -0,0 +1,15 @@
+package com.banking.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of the whole registry, registered as com.banking:type=MetricsRegistry.
+ */
+public interface MetricsRegistryMXBean {
+    List<OperationSnapshot> getSnapshot();
+
+    Map<String, Long> getSwallowedErrors();
+
+    void reset();
+}
@@ -0,0 +1,175 @@
+package com.banking.metrics;
+
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.InsufficientFundsException;
+import com.banking.util.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram of one AccountService operation.
+ * The record methods only touch LongAdders and the histogram, so they do not allocate.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private final ServiceOperation operation;
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder insufficientFunds = new LongAdder();
+    private final LongAdder accountNotFound = new LongAdder();
+    private final LongAdder otherFailures = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    OperationMetrics(ServiceOperation operation) {
+        this.operation = operation;
+    }
+
+    void recordSuccess(long latencyNanos) {
+        successes.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordFailure(long latencyNanos, Throwable error) {
+        // BankingSystem wraps business failures in BankingException, so look through the causes
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof InsufficientFundsException) {
+                recordInsufficientFunds(latencyNanos);
+                return;
+            }
+            if (cause instanceof AccountNotFoundException) {
+                recordAccountNotFound(latencyNanos);
+                return;
+            }
+            cause = cause.getCause();
+        }
+        recordOtherFailure(latencyNanos);
+    }
+
+    void recordInsufficientFunds(long latencyNanos) {
+        insufficientFunds.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordAccountNotFound(long latencyNanos) {
+        accountNotFound.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordOtherFailure(long latencyNanos) {
+        otherFailures.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordOverloaded(long latencyNanos) {
+        overloaded.increment();
+        latency.record(latencyNanos);
+    }
+
+    void recordQueueTime(long waitNanos) {
+        queueTime.record(waitNanos);
+    }
+
+    public ServiceOperation getOperation() {
+        return operation;
+    }
+
+    @Override
+    public long getCalls() {
+        return getSuccesses() + getInsufficientFundsFailures() + getAccountNotFoundFailures() + getOtherFailures()
+                + getOverloadedFailures();
+    }
+
+    @Override
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    @Override
+    public long getInsufficientFundsFailures() {
+        return insufficientFunds.sum();
+    }
+
+    @Override
+    public long getAccountNotFoundFailures() {
+        return accountNotFound.sum();
+    }
+
+    @Override
+    public long getOtherFailures() {
+        return otherFailures.sum();
+    }
+
+    @Override
+    public long getOverloadedFailures() {
+        return overloaded.sum();
+    }
+
+    @Override
+    public double getLatencyMeanMicros() {
+        return latency.getMeanNanos() / 1000.0;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getLatencyP999Micros() {
+        return latency.getValueAtPercentile(99.9, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return latency.getMaxNanos() / 1000.0;
+    }
+
+    @Override
+    public double getQueueTimeP50Micros() {
+        return queueTime.getValueAtPercentile(50, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getQueueTimeP99Micros() {
+        return queueTime.getValueAtPercentile(99, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public double getQueueTimeMaxMicros() {
+        return queueTime.getMaxNanos() / 1000.0;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    // Time admitted calls waited for the admission controller, 0 for those admitted at once
+    public LatencyHistogram getQueueTime() {
+        return queueTime;
+    }
+
+    @Override
+    public void reset() {
+        successes.reset();
+        insufficientFunds.reset();
+        accountNotFound.reset();
+        otherFailures.reset();
+        overloaded.reset();
+        latency.reset();
+        queueTime.reset();
+    }
+
+    public OperationSnapshot snapshot() {
+        return new OperationSnapshot(operation.metricName(), getSuccesses(), getInsufficientFundsFailures(),
+                getAccountNotFoundFailures(), getOtherFailures(), getOverloadedFailures(), getLatencyMeanMicros(),
+                getLatencyP50Micros(), getLatencyP99Micros(), getLatencyP999Micros(), getLatencyMaxMicros(),
+                getQueueTimeP99Micros());
+    }
+}
@@ -0,0 +1,38 @@
+package com.banking.metrics;
+
+/**
+ * JMX view of one AccountService operation, registered as com.banking:type=OperationMetrics,operation=&lt;name&gt;.
+ * Latencies are in microseconds.
+ */
+public interface OperationMetricsMXBean {
+    long getCalls();
+
+    long getSuccesses();
+
+    long getInsufficientFundsFailures();
+
+    long getAccountNotFoundFailures();
+
+    long getOtherFailures();
+
+    // Calls shed by the admission controller
+    long getOverloadedFailures();
+
+    double getLatencyMeanMicros();
+
+    double getLatencyP50Micros();
+
+    double getLatencyP99Micros();
+
+    double getLatencyP999Micros();
+
+    double getLatencyMaxMicros();
+
+    double getQueueTimeP50Micros();
+
+    double getQueueTimeP99Micros();
+
+    double getQueueTimeMaxMicros();
+
+    void reset();
+}
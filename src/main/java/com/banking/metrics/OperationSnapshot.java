@@ -0,0 +1,101 @@
+package com.banking.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point-in-time copy of one operation's metrics. Latencies are in microseconds.
+ */
+public class OperationSnapshot {
+    private final String operation;
+    private final long successes;
+    private final long insufficientFundsFailures;
+    private final long accountNotFoundFailures;
+    private final long otherFailures;
+    private final long overloadedFailures;
+    private final double latencyMeanMicros;
+    private final double latencyP50Micros;
+    private final double latencyP99Micros;
+    private final double latencyP999Micros;
+    private final double latencyMaxMicros;
+    private final double queueTimeP99Micros;
+
+    @ConstructorProperties({"operation", "successes", "insufficientFundsFailures", "accountNotFoundFailures",
+            "otherFailures", "overloadedFailures", "latencyMeanMicros", "latencyP50Micros", "latencyP99Micros",
+            "latencyP999Micros", "latencyMaxMicros", "queueTimeP99Micros"})
+    public OperationSnapshot(String operation, long successes, long insufficientFundsFailures, long accountNotFoundFailures,
+                             long otherFailures, long overloadedFailures, double latencyMeanMicros, double latencyP50Micros,
+                             double latencyP99Micros, double latencyP999Micros, double latencyMaxMicros,
+                             double queueTimeP99Micros) {
+        this.operation = operation;
+        this.successes = successes;
+        this.insufficientFundsFailures = insufficientFundsFailures;
+        this.accountNotFoundFailures = accountNotFoundFailures;
+        this.otherFailures = otherFailures;
+        this.overloadedFailures = overloadedFailures;
+        this.latencyMeanMicros = latencyMeanMicros;
+        this.latencyP50Micros = latencyP50Micros;
+        this.latencyP99Micros = latencyP99Micros;
+        this.latencyP999Micros = latencyP999Micros;
+        this.latencyMaxMicros = latencyMaxMicros;
+        this.queueTimeP99Micros = queueTimeP99Micros;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCalls() {
+        return successes + insufficientFundsFailures + accountNotFoundFailures + otherFailures + overloadedFailures;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getInsufficientFundsFailures() {
+        return insufficientFundsFailures;
+    }
+
+    public long getAccountNotFoundFailures() {
+        return accountNotFoundFailures;
+    }
+
+    public long getOtherFailures() {
+        return otherFailures;
+    }
+
+    public long getOverloadedFailures() {
+        return overloadedFailures;
+    }
+
+    public double getLatencyMeanMicros() {
+        return latencyMeanMicros;
+    }
+
+    public double getLatencyP50Micros() {
+        return latencyP50Micros;
+    }
+
+    public double getLatencyP99Micros() {
+        return latencyP99Micros;
+    }
+
+    public double getLatencyP999Micros() {
+        return latencyP999Micros;
+    }
+
+    public double getLatencyMaxMicros() {
+        return latencyMaxMicros;
+    }
+
+    public double getQueueTimeP99Micros() {
+        return queueTimeP99Micros;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[calls=%d, ok=%d, insufficientFunds=%d, notFound=%d, other=%d, overloaded=%d, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus, queueP99=%.1fus]",
+                operation, getCalls(), successes, insufficientFundsFailures, accountNotFoundFailures, otherFailures,
+                overloadedFailures, latencyP50Micros, latencyP99Micros, latencyP999Micros, latencyMaxMicros, queueTimeP99Micros);
+    }
+}
@@ -0,0 +1,37 @@
+package com.banking.metrics;
+
+/**
+ * The AccountService methods that are timed and counted by the MetricsRegistry.
+ */
+public enum ServiceOperation {
+    CREATE_ACCOUNT,
+    CREATE_ACCOUNTS,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER,
+    FIND_ACCOUNT,
+    GET_TRANSACTION_HISTORY,
+    GET_MONTHLY_SUMMARY,
+    GET_BALANCE_AT,
+    FETCH_ACCOUNTS,
+    GET_ACCOUNTS_SORTED_BY_BALANCE,
+    APPLY_MONTHLY_FEES_AND_INTEREST,
+    GET_TOTAL_BALANCE,
+    GET_ACCOUNT_WITH_MIN_BALANCE,
+    GET_NUMBER_OF_ACCOUNTS;
+
+    // camelCase name used for the MBean key and in snapshots, e.g. getTransactionHistory
+    public String metricName() {
+        StringBuilder name = new StringBuilder();
+        boolean upper = false;
+        for (char c : name().toLowerCase().toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                name.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return name.toString();
+    }
+}
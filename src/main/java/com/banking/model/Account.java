@@ -3,6 +3,7 @@ package com.banking.model;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import com.banking.exception.InsufficientFundsException;
+import com.banking.pricing.PricingTable;
 
 public abstract class Account {
     // Private fields - data encapsulation
@@ -11,9 +12,7 @@ public abstract class Account {
 
     // Protected field - accessible by subclasses
     protected LocalDateTime lastTransaction;
-
-    // Static field - shared across instances
-    private static final BigDecimal MINIMUM_BALANCE = new BigDecimal("100.00");
+    protected int monthlyTransactions;
 
     // Public constructor
     public Account(String accountNumber, BigDecimal balance) {
@@ -23,20 +22,56 @@ public abstract class Account {
     }
 
     // Abstract method
-    public abstract void processMonthlyFees();
+    public abstract AccountType getType();
+
+    /**
+     * Month-end: credits interest at the priced rate, then charges the monthly fee, both from the
+     * PricingTable rules of the account's type. The fee tier is chosen by the balance and the
+     * transaction count before the interest. Returns false, leaving the account unchanged, if the fee
+     * would take the balance below the minimum once the interest is in.
+     */
+    public boolean processMonthlyFees() {
+        BigDecimal fee = PricingTable.getDefault().getMonthlyFee(getType(), balance, monthlyTransactions);
+        BigDecimal interest = balance.multiply(getInterestRate());
+        BigDecimal credited = interest.signum() > 0 ? interest : BigDecimal.ZERO;
+        if (fee.signum() > 0 && balance.add(credited).subtract(fee).compareTo(getMinimumBalance()) < 0) {
+            return false;
+        }
+        if (interest.signum() > 0) {
+            deposit(interest);
+        }
+        if (fee.signum() > 0) {
+            withdraw(fee);
+        }
+        return true;
+    }
+
+    // Monthly rate of the account's balance tier
+    public BigDecimal getInterestRate() {
+        return PricingTable.getDefault().getInterestRate(getType(), balance);
+    }
 
     // Concrete method with virtual invocation
     public void withdraw(BigDecimal amount) {
+        if (!tryWithdraw(amount)) {
+            throw new InsufficientFundsException(accountNumber, amount, balance);
+        }
+    }
+
+    // Like withdraw, but returns false instead of throwing when the funds are insufficient
+    public boolean tryWithdraw(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
 
         if (!canWithdraw(amount)) {
-            throw new InsufficientFundsException(accountNumber, amount, balance);
+            return false;
         }
 
         balance = balance.subtract(amount);
         lastTransaction = LocalDateTime.now();
+        monthlyTransactions++;
+        return true;
     }
 
     public void deposit(BigDecimal amount) {
@@ -45,6 +80,7 @@ public abstract class Account {
         }
         balance = balance.add(amount);
         lastTransaction = LocalDateTime.now();
+        monthlyTransactions++;
     }
 
     // Protected method for subclasses
@@ -63,8 +99,13 @@ public abstract class Account {
         return lastTransaction;
     }
 
+    public int getMonthlyTransactions() {
+        return monthlyTransactions;
+    }
+
+    // Lowest balance a withdrawal may leave; negative for an overdraft
     protected BigDecimal getMinimumBalance() {
-        return MINIMUM_BALANCE;
+        return PricingTable.getDefault().getMinimumBalance(getType());
     }
 
     // Override Object class methods
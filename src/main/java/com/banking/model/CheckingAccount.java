@@ -3,44 +3,37 @@ package com.banking.model;
 import java.math.BigDecimal;
 
 public class CheckingAccount extends Account {
-    private static final BigDecimal MONTHLY_FEE = new BigDecimal("12.00");
-    private static final BigDecimal OVERDRAFT_LIMIT = new BigDecimal("-100.00");
-    private int monthlyTransactions;
-
     public CheckingAccount(String accountNumber, BigDecimal balance) {
+        this(accountNumber, balance, 0);
+    }
+
+    // monthlyTransactions: transactions already made this month, which select the fee tier
+    public CheckingAccount(String accountNumber, BigDecimal balance, int monthlyTransactions) {
         super(accountNumber, balance);
-        this.monthlyTransactions = 0;
+        this.monthlyTransactions = monthlyTransactions;
     }
 
     @Override
-    public void processMonthlyFees() {
+    public AccountType getType() {
+        return AccountType.CHECKING;
+    }
+
+    @Override
+    public boolean processMonthlyFees() {
         // Deduct monthly maintenance fee
-        withdraw(MONTHLY_FEE);
+        if (!super.processMonthlyFees()) {
+            return false;
+        }
         // Reset monthly transaction count
         monthlyTransactions = 0;
+        return true;
     }
 
     @Override
     protected boolean canWithdraw(BigDecimal amount) {
-        // Allow withdrawals up to overdraft limit
+        // Allow withdrawals up to overdraft limit (a negative minimum balance)
         return getBalance().subtract(amount)
-                         .compareTo(OVERDRAFT_LIMIT) >= 0;
-    }
-
-    @Override
-    public void withdraw(BigDecimal amount) {
-        super.withdraw(amount);
-        monthlyTransactions++;
-    }
-
-    @Override
-    public void deposit(BigDecimal amount) {
-        super.deposit(amount);
-        monthlyTransactions++;
-    }
-
-    public int getMonthlyTransactions() {
-        return monthlyTransactions;
+                         .compareTo(getMinimumBalance()) >= 0;
     }
 
     @Override
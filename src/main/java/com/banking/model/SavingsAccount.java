@@ -3,23 +3,26 @@ package com.banking.model;
 import java.math.BigDecimal;
 
 public class SavingsAccount extends Account {
-    private final BigDecimal interestRate;
+    private final BigDecimal interestRate; // null: the PricingTable tier rate
 
     public SavingsAccount(String accountNumber, BigDecimal balance) {
-        super(accountNumber, balance);
-        this.interestRate = new BigDecimal("0.025"); // 2.5% interest rate
+        this(accountNumber, balance, null);
     }
 
     public SavingsAccount(String accountNumber, BigDecimal balance, BigDecimal interestRate) {
+        this(accountNumber, balance, interestRate, 0);
+    }
+
+    // monthlyTransactions: transactions already made this month, which select the fee tier
+    public SavingsAccount(String accountNumber, BigDecimal balance, BigDecimal interestRate, int monthlyTransactions) {
         super(accountNumber, balance);
         this.interestRate = interestRate;
+        this.monthlyTransactions = monthlyTransactions;
     }
 
     @Override
-    public void processMonthlyFees() {
-        // Calculate and add interest
-        BigDecimal interest = getBalance().multiply(interestRate);
-        deposit(interest);
+    public AccountType getType() {
+        return AccountType.SAVINGS;
     }
 
     @Override
@@ -28,12 +31,18 @@ public class SavingsAccount extends Account {
         return getBalance().subtract(amount).compareTo(getMinimumBalance()) >= 0;
     }
 
+    @Override
     public BigDecimal getInterestRate() {
+        return interestRate != null ? interestRate : super.getInterestRate();
+    }
+
+    // The rate agreed for this account, or null if it follows the pricing tiers
+    public BigDecimal getCustomInterestRate() {
         return interestRate;
     }
 
     @Override
     public String toString() {
-        return String.format("SavingsAccount[number=%s, balance=%.2f, interestRate=%.2f%%]", getAccountNumber(), getBalance(), interestRate.multiply(new BigDecimal("100")));
+        return String.format("SavingsAccount[number=%s, balance=%.2f, interestRate=%.2f%%]", getAccountNumber(), getBalance(), getInterestRate().multiply(new BigDecimal("100")));
     }
 }
@@ -0,0 +1,223 @@
+package com.banking.net;
+
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.exception.InsufficientFundsException;
+import com.banking.exception.OverloadedException;
+import com.banking.model.Account;
+import com.banking.model.AccountFactory;
+import com.banking.model.AccountType;
+import com.banking.service.BankingOperations;
+import com.banking.util.TransactionLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client for BankServer. The *Async methods pipeline: they send the request and return at once,
+ * and the future completes when the response arrives. The plain methods wait for the response and
+ * throw the same exceptions AccountService would (AccountNotFoundException, InsufficientFundsException,
+ * BankingException). One client is one connection and may be shared between threads.
+ */
+public class BankClient implements BankingOperations, AutoCloseable {
+    private final Socket socket;
+    private final OutputStream out;
+    private final DataInputStream in;
+    private final Thread reader;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<ByteBuffer>> inFlight = new ConcurrentHashMap<>();
+    private volatile IOException failure;
+
+    public BankClient(String host, int port) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.reader = new Thread(this::readResponses, "bank-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // "host:port"
+    public static BankClient connect(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        return new BankClient(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    public CompletableFuture<Void> createAccountAsync(AccountType type, String accountId, BigDecimal initialBalance) {
+        return send(request(Protocol.CREATE).string(type.name()).string(accountId).amount(initialBalance)).thenApply(response -> null);
+    }
+
+    public CompletableFuture<Void> depositAsync(String accountId, BigDecimal amount) {
+        return send(request(Protocol.DEPOSIT).string(accountId).amount(amount)).thenApply(response -> null);
+    }
+
+    public CompletableFuture<Void> withdrawAsync(String accountId, BigDecimal amount) {
+        return send(request(Protocol.WITHDRAW).string(accountId).amount(amount)).thenApply(response -> null);
+    }
+
+    public CompletableFuture<Void> transferAsync(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return send(request(Protocol.TRANSFER).string(fromAccountId).string(toAccountId).amount(amount)).thenApply(response -> null);
+    }
+
+    public CompletableFuture<Account> findAccountAsync(String accountId) {
+        return send(request(Protocol.LOOKUP).string(accountId)).thenApply(response ->
+                AccountFactory.createAccount(AccountType.valueOf(Protocol.readString(response)), accountId, Protocol.readAmount(response)));
+    }
+
+    // limit 0 returns the whole history; more rows than fit in one response are read page by page
+    public CompletableFuture<List<TransactionLogger.TransactionRecord>> getTransactionHistoryAsync(String accountId, int limit) {
+        return readHistory(accountId, Math.max(limit, 0), new ArrayList<>());
+    }
+
+    // Asks for the rows after those read so far until limit are read (0: all) or the server has no more
+    private CompletableFuture<List<TransactionLogger.TransactionRecord>> readHistory(String accountId, int limit,
+                                                                                     List<TransactionLogger.TransactionRecord> history) {
+        int wanted = limit == 0 ? 0 : limit - history.size();
+        return send(request(Protocol.HISTORY).string(accountId).integer(wanted).integer(history.size())).thenComposeAsync(response -> {
+            int count = response.getInt();
+            for (int i = 0; i < count; i++) {
+                history.add(new TransactionLogger.TransactionRecord(accountId, Protocol.readAmount(response), Protocol.readDate(response)));
+            }
+            boolean more = response.getInt() != 0;
+            if (more && count > 0 && (limit == 0 || history.size() < limit)) {
+                return readHistory(accountId, limit, history);
+            }
+            return CompletableFuture.completedFuture(history);
+        });
+    }
+
+    @Override
+    public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance) {
+        await(createAccountAsync(type, accountId, initialBalance));
+        return AccountFactory.createAccount(type, accountId, initialBalance);
+    }
+
+    @Override
+    public void deposit(String accountId, BigDecimal amount) {
+        await(depositAsync(accountId, amount));
+    }
+
+    @Override
+    public void withdraw(String accountId, BigDecimal amount) {
+        await(withdrawAsync(accountId, amount));
+    }
+
+    @Override
+    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        await(transferAsync(fromAccountId, toAccountId, amount));
+    }
+
+    @Override
+    public Account findAccount(String accountId) {
+        return await(findAccountAsync(accountId));
+    }
+
+    @Override
+    public List<TransactionLogger.TransactionRecord> getTransactionHistory(String accountId) {
+        return await(getTransactionHistoryAsync(accountId, 0));
+    }
+
+    private Protocol.FrameWriter request(byte opcode) {
+        return new Protocol.FrameWriter(nextId.incrementAndGet(), opcode);
+    }
+
+    private CompletableFuture<ByteBuffer> send(Protocol.FrameWriter request) {
+        ByteBuffer frame = request.toFrame();
+        int id = frame.getInt(4);
+        CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+        inFlight.put(id, response);
+        try {
+            synchronized (out) {
+                if (failure != null) {
+                    throw failure;
+                }
+                out.write(frame.array());
+                out.flush();
+            }
+        } catch (IOException e) {
+            inFlight.remove(id);
+            response.completeExceptionally(new BankingException("Could not send request to bank server", e));
+        }
+        return response;
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < 5 || length > Protocol.MAX_FRAME) {
+                    throw new IOException("Bad response frame length: " + length);
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                ByteBuffer response = ByteBuffer.wrap(payload);
+                int id = response.getInt();
+                byte status = response.get();
+                CompletableFuture<ByteBuffer> future = inFlight.remove(id);
+                if (future == null) {
+                    continue;
+                }
+                if (status == Protocol.OK) {
+                    future.complete(response);
+                } else {
+                    future.completeExceptionally(toException(status, response));
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            BankingException closed = new BankingException("Connection to bank server lost", e);
+            for (CompletableFuture<ByteBuffer> future : inFlight.values()) {
+                future.completeExceptionally(closed);
+            }
+            inFlight.clear();
+        }
+    }
+
+    private static RuntimeException toException(byte status, ByteBuffer response) {
+        switch (status) {
+            case Protocol.NOT_FOUND:
+                return new AccountNotFoundException(Protocol.readString(response));
+            case Protocol.INSUFFICIENT_FUNDS:
+                return new InsufficientFundsException(Protocol.readString(response), Protocol.readAmount(response), Protocol.readAmount(response));
+            case Protocol.INVALID_REQUEST:
+                return new IllegalArgumentException(Protocol.readString(response));
+            case Protocol.OVERLOADED:
+                return new OverloadedException(Protocol.readString(response));
+            default:
+                return new BankingException(Protocol.readString(response));
+        }
+    }
+
+    // Rethrows the server's exception as is instead of wrapped in CompletionException
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,400 @@
+package com.banking.net;
+
+import com.banking.admission.AdmissionController;
+import com.banking.db.DatabaseConnection;
+import com.banking.hot.HotAccounts;
+import com.banking.metrics.MetricsRegistry;
+import com.banking.service.AccountService;
+import com.banking.util.CommandLineOptions;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded network front end for AccountService, speaking the length-prefixed protocol in Protocol.
+ *
+ * Selector threads do all socket I/O without blocking: the first one also accepts, and new
+ * connections are spread over them round-robin. Complete request frames are queued on their
+ * connection and executed on a worker pool. A connection's requests run one after another, in the
+ * order they arrived, so a client can pipeline dependent requests; different connections run in
+ * parallel. All responses a worker produces in one pass over a connection's queue are handed to the
+ * selector together and go out in one gathering write. A connection with too many requests
+ * outstanding (queued, running, or answered but not yet written to the socket) stops being read until
+ * the workers and the client catch up, so a client that pipelines without reading its responses
+ * cannot make the server buffer them without bound.
+ *
+ * Usage: java com.banking.net.BankServer [--host=127.0.0.1] [--port=7070] [--selectors=2] [--workers=16]
+ *        [--max-pending=1024] [--init-schema]
+ */
+public class BankServer {
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_BATCH = 64;
+
+    private final InetSocketAddress address;
+    private final int maxPending;
+    private final RequestHandler handler;
+    private final ExecutorService workers;
+    private final List<SelectorLoop> loops = new ArrayList<>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private ServerSocketChannel serverChannel;
+
+    public BankServer(String host, int port, int selectors, int workerThreads, int maxPending, AccountService accountService) {
+        this.address = new InetSocketAddress(host, port);
+        this.maxPending = maxPending;
+        this.handler = new RequestHandler(accountService);
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "bank-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < selectors; i++) {
+            loops.add(new SelectorLoop(i));
+        }
+    }
+
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        for (SelectorLoop loop : loops) {
+            loop.open();
+        }
+        SelectorLoop acceptor = loops.get(0);
+        acceptor.execute(() -> {
+            try {
+                serverChannel.register(acceptor.selector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not register the server socket", e);
+            }
+        });
+        for (SelectorLoop loop : loops) {
+            loop.thread.start();
+        }
+        System.out.println("Bank server listening on " + getAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return address;
+        }
+    }
+
+    public void stop() throws IOException, InterruptedException {
+        serverChannel.close();
+        for (SelectorLoop loop : loops) {
+            loop.close();
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * One selector thread and the connections registered with it.
+     */
+    private class SelectorLoop implements Runnable {
+        private final Thread thread;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private Selector selector;
+        private volatile boolean running = true;
+
+        SelectorLoop(int index) {
+            this.thread = new Thread(this, "bank-selector-" + index);
+        }
+
+        void open() throws IOException {
+            selector = Selector.open();
+        }
+
+        // Runs the task on this selector's thread, which is the only one touching its keys and channels
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void close() throws InterruptedException {
+            running = false;
+            selector.wakeup();
+            thread.join(5000);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                System.out.println("Bank server selector stopped: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // Shutting down anyway
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                SelectorLoop target = loops.get(Math.floorMod(nextLoop.getAndIncrement(), loops.size()));
+                SocketChannel accepted = channel;
+                target.execute(() -> target.register(accepted));
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                key.attach(new Connection(this, channel, key));
+            } catch (IOException e) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Nothing more to do for this client
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-client state. The read buffer, write backlog and key are only used on the selector
+     * thread; the request and response queues are shared with the workers.
+     */
+    private class Connection {
+        private final SelectorLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final ArrayDeque<ByteBuffer> unwritten = new ArrayDeque<>();
+
+        private final Queue<ByteBuffer> requests = new ConcurrentLinkedQueue<>();
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Requests read whose responses are not fully written yet; selector thread only
+        private int outstanding;
+        private boolean readPaused;
+
+        Connection(SelectorLoop loop, SocketChannel channel, SelectionKey key) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() {
+            int read;
+            try {
+                read = channel.read(readBuffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                closeQuietly(key);
+                return;
+            }
+
+            readBuffer.flip();
+            int queued = 0;
+            while (readBuffer.remaining() >= 4) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length < 0 || length > Protocol.MAX_FRAME) {
+                    closeQuietly(key);
+                    return;
+                }
+                if (readBuffer.remaining() < 4 + length) {
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + 4);
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                int limit = readBuffer.limit();
+                readBuffer.limit(readBuffer.position() + length);
+                payload.put(readBuffer).flip();
+                readBuffer.limit(limit);
+                requests.add(payload);
+                queued++;
+            }
+            // Make room for a frame larger than the buffer
+            if (readBuffer.remaining() >= 4) {
+                int needed = 4 + readBuffer.getInt(readBuffer.position());
+                if (needed > readBuffer.capacity()) {
+                    ByteBuffer larger = ByteBuffer.allocate(needed);
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                } else {
+                    readBuffer.compact();
+                }
+            } else {
+                readBuffer.compact();
+            }
+
+            if (queued > 0) {
+                outstanding += queued;
+                if (outstanding >= maxPending) {
+                    readPaused = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                scheduleDrain();
+            }
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+
+        // Worker side: runs queued requests in order and hands their responses over in batches
+        private void drain() {
+            while (true) {
+                int batch = 0;
+                ByteBuffer request;
+                while (batch < MAX_BATCH && (request = requests.poll()) != null) {
+                    responses.add(handler.handle(request));
+                    batch++;
+                }
+                if (batch > 0) {
+                    loop.execute(this::afterBatch);
+                    continue;
+                }
+                draining.set(false);
+                // A request may have arrived after the last poll but before the flag was cleared
+                if (requests.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void afterBatch() {
+            if (key.isValid()) {
+                flush();
+            }
+        }
+
+        // Selector side: one gathering write for everything queued so far; reading resumes once it drained enough
+        void flush() {
+            ByteBuffer response;
+            while ((response = responses.poll()) != null) {
+                unwritten.add(response);
+            }
+            try {
+                while (!unwritten.isEmpty()) {
+                    ByteBuffer[] buffers = unwritten.toArray(new ByteBuffer[0]);
+                    long written = channel.write(buffers);
+                    while (!unwritten.isEmpty() && !unwritten.peek().hasRemaining()) {
+                        unwritten.poll();
+                        outstanding--;
+                    }
+                    if (written == 0) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                closeQuietly(key);
+                return;
+            }
+            if (unwritten.isEmpty()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+            if (readPaused && outstanding < maxPending / 2) {
+                readPaused = false;
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            try {
+                DatabaseConnection.initializeSchema();
+            } catch (SQLException e) {
+                System.err.println("Could not initialize schema: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        MetricsRegistry.getDefault().registerMBeans();
+        AdmissionController.getDefault().registerMBean();
+        HotAccounts.getDefault().registerMBean();
+
+        BankServer server = new BankServer(
+                options.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(options.getOrDefault("port", "7070")),
+                Integer.parseInt(options.getOrDefault("selectors", "2")),
+                Integer.parseInt(options.getOrDefault("workers", "16")),
+                Integer.parseInt(options.getOrDefault("max-pending", "1024")),
+                new AccountService());
+        server.start();
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (IOException | InterruptedException e) {
+                System.out.println("Error stopping bank server: " + e.getMessage());
+            }
+            stopped.countDown();
+        }, "bank-server-shutdown"));
+        stopped.await();
+    }
+}
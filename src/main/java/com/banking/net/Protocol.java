@@ -0,0 +1,137 @@
+package com.banking.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Wire format shared by BankServer and BankClient. All integers are big-endian.
+ *
+ * Frame:    int length, then length bytes of payload
+ * Request:  int requestId, byte opcode, fields
+ * Response: int requestId, byte status, fields
+ *
+ * Strings are an unsigned short byte count followed by UTF-8; amounts are strings (plain BigDecimal);
+ * dates are long epoch seconds plus int nanos, read as UTC. Request fields by opcode:
+ *   CREATE   type, account, initial balance     -> OK
+ *   DEPOSIT  account, amount                    -> OK
+ *   WITHDRAW account, amount                    -> OK
+ *   TRANSFER from, to, amount                   -> OK
+ *   LOOKUP   account                            -> OK type, balance
+ *   HISTORY  account, int limit, int offset     -> OK int count, count x (amount, date), int more
+ *            (newest first, skipping the newest offset rows; limit 0, or more than MAX_HISTORY, gives
+ *            MAX_HISTORY rows; more is 1 if older rows follow, to be read with offset + count)
+ * Error statuses carry: NOT_FOUND account; INSUFFICIENT_FUNDS account, requested, available;
+ * INVALID_REQUEST, ERROR and OVERLOADED a message. OVERLOADED means the server shed the request
+ * without doing anything, so it can be retried after a pause.
+ *
+ * Requests on one connection may be pipelined; each response carries the id of its request.
+ */
+final class Protocol {
+    static final int MAX_FRAME = 1 << 20;
+    // Rows in one HISTORY response: each is at most about 40 bytes, so they fit well within MAX_FRAME
+    static final int MAX_HISTORY = 20_000;
+
+    static final byte CREATE = 1;
+    static final byte DEPOSIT = 2;
+    static final byte WITHDRAW = 3;
+    static final byte TRANSFER = 4;
+    static final byte LOOKUP = 5;
+    static final byte HISTORY = 6;
+
+    static final byte OK = 0;
+    static final byte NOT_FOUND = 1;
+    static final byte INSUFFICIENT_FUNDS = 2;
+    static final byte INVALID_REQUEST = 3;
+    static final byte ERROR = 4;
+    static final byte OVERLOADED = 5;
+
+    private Protocol() {
+    }
+
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static BigDecimal readAmount(ByteBuffer buffer) {
+        return new BigDecimal(readString(buffer));
+    }
+
+    static LocalDateTime readDate(ByteBuffer buffer) {
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Builds one frame; the length prefix is filled in by toFrame().
+     */
+    static class FrameWriter {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        FrameWriter(int id, byte code) {
+            try {
+                out.writeInt(0);
+                out.writeInt(id);
+                out.writeByte(code);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        FrameWriter string(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long for the protocol: " + encoded.length + " bytes");
+            }
+            try {
+                out.writeShort(encoded.length);
+                out.write(encoded);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        FrameWriter amount(BigDecimal value) {
+            return string(value.toPlainString());
+        }
+
+        FrameWriter integer(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        FrameWriter date(LocalDateTime value) {
+            try {
+                out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+                out.writeInt(value.getNano());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        ByteBuffer toFrame() {
+            if (bytes.size() - 4 > MAX_FRAME) {
+                throw new IllegalStateException("Response of " + (bytes.size() - 4) + " bytes exceeds the frame limit");
+            }
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            frame.putInt(0, frame.capacity() - 4);
+            return frame;
+        }
+    }
+}
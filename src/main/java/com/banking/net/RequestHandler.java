@@ -0,0 +1,131 @@
+package com.banking.net;
+
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.InsufficientFundsException;
+import com.banking.exception.OverloadedException;
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import com.banking.service.AccountService;
+import com.banking.service.OperationResult;
+import com.banking.util.TransactionLogger;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Decodes one request payload, runs it against AccountService and encodes the response frame.
+ */
+class RequestHandler {
+    private final AccountService accountService;
+
+    RequestHandler(AccountService accountService) {
+        this.accountService = accountService;
+    }
+
+    ByteBuffer handle(ByteBuffer request) {
+        if (request.remaining() < 5) {
+            return new Protocol.FrameWriter(-1, Protocol.INVALID_REQUEST).string("Truncated request header").toFrame();
+        }
+        int id = request.getInt();
+        byte opcode = request.get();
+        try {
+            return execute(id, opcode, request);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return new Protocol.FrameWriter(id, Protocol.INVALID_REQUEST)
+                    .string(e.getMessage() == null ? "Malformed request" : e.getMessage()).toFrame();
+        } catch (RuntimeException e) {
+            return errorResponse(id, e);
+        }
+    }
+
+    private ByteBuffer execute(int id, byte opcode, ByteBuffer request) {
+        switch (opcode) {
+            case Protocol.CREATE:
+                AccountType type = AccountType.valueOf(Protocol.readString(request));
+                return respond(id, accountService.tryCreateAccount(type, Protocol.readString(request), Protocol.readAmount(request)));
+            case Protocol.DEPOSIT:
+                return respond(id, accountService.tryDeposit(Protocol.readString(request), Protocol.readAmount(request)));
+            case Protocol.WITHDRAW:
+                return respond(id, accountService.tryWithdraw(Protocol.readString(request), Protocol.readAmount(request)));
+            case Protocol.TRANSFER:
+                return respond(id, accountService.tryTransfer(Protocol.readString(request), Protocol.readString(request), Protocol.readAmount(request)));
+            case Protocol.LOOKUP:
+                OperationResult<Account> lookup = accountService.tryFindAccount(Protocol.readString(request));
+                if (!lookup.isOk()) {
+                    return respond(id, lookup);
+                }
+                Account account = lookup.getValue();
+                return ok(id).string(account.getType().name())
+                        .amount(account.getBalance()).toFrame();
+            case Protocol.HISTORY:
+                String accountId = Protocol.readString(request);
+                int limit = request.getInt();
+                int offset = request.getInt();
+                if (offset < 0 || offset > Integer.MAX_VALUE - Protocol.MAX_HISTORY - 1) {
+                    throw new IllegalArgumentException("Bad history offset: " + offset);
+                }
+                // One frame holds at most MAX_HISTORY rows, so "all" is a page too; the extra row tells whether more follow
+                int page = limit > 0 ? Math.min(limit, Protocol.MAX_HISTORY) : Protocol.MAX_HISTORY;
+                OperationResult<List<TransactionLogger.TransactionRecord>> history =
+                        accountService.tryGetTransactionHistory(accountId, offset, page + 1);
+                if (!history.isOk()) {
+                    return respond(id, history);
+                }
+                List<TransactionLogger.TransactionRecord> rows = history.getValue();
+                int count = Math.min(rows.size(), page);
+                Protocol.FrameWriter response = ok(id).integer(count);
+                for (TransactionLogger.TransactionRecord record : rows.subList(0, count)) {
+                    response.amount(record.getAmount()).date(record.getDate());
+                }
+                return response.integer(rows.size() > page ? 1 : 0).toFrame();
+            default:
+                throw new IllegalArgumentException("Unknown opcode: " + opcode);
+        }
+    }
+
+    private static Protocol.FrameWriter ok(int id) {
+        return new Protocol.FrameWriter(id, Protocol.OK);
+    }
+
+    // Business failures come back as results, so the server path does not pay for exceptions
+    private static ByteBuffer respond(int id, OperationResult<?> result) {
+        switch (result.getOutcome()) {
+            case OK:
+                return ok(id).toFrame();
+            case INSUFFICIENT_FUNDS:
+                return new Protocol.FrameWriter(id, Protocol.INSUFFICIENT_FUNDS).string(result.getAccountId())
+                        .amount(result.getRequestedAmount()).amount(result.getAvailableBalance()).toFrame();
+            case ACCOUNT_NOT_FOUND:
+                return new Protocol.FrameWriter(id, Protocol.NOT_FOUND).string(result.getAccountId()).toFrame();
+            case OVERLOADED:
+                return new Protocol.FrameWriter(id, Protocol.OVERLOADED).string(result.getMessage()).toFrame();
+            case ERROR:
+                return errorResponse(id, result.getError());
+            default:
+                return new Protocol.FrameWriter(id, Protocol.ERROR).string(result.getMessage()).toFrame();
+        }
+    }
+
+    // AccountService wraps business failures, so look through the causes like OperationMetrics does
+    private static ByteBuffer errorResponse(int id, RuntimeException error) {
+        Throwable cause = error;
+        while (cause != null) {
+            if (cause instanceof InsufficientFundsException) {
+                InsufficientFundsException insufficient = (InsufficientFundsException) cause;
+                return new Protocol.FrameWriter(id, Protocol.INSUFFICIENT_FUNDS).string(insufficient.getAccountNumber())
+                        .amount(insufficient.getRequestedAmount()).amount(insufficient.getAvailableBalance()).toFrame();
+            }
+            if (cause instanceof AccountNotFoundException) {
+                return new Protocol.FrameWriter(id, Protocol.NOT_FOUND)
+                        .string(((AccountNotFoundException) cause).getAccountNumber()).toFrame();
+            }
+            if (cause instanceof OverloadedException) {
+                return new Protocol.FrameWriter(id, Protocol.OVERLOADED).string(cause.getMessage()).toFrame();
+            }
+            cause = cause.getCause();
+        }
+        return new Protocol.FrameWriter(id, Protocol.ERROR)
+                .string(error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage()).toFrame();
+    }
+}
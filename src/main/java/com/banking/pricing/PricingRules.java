@@ -0,0 +1,105 @@
+package com.banking.pricing;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.model.AccountType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The fee and interest rules of one account type as configured. PricingTable compiles them for lookup.
+ *
+ * Keys, per type (SAVINGS, CHECKING):
+ *   pricing.&lt;TYPE&gt;.minimumBalance   lowest balance a withdrawal or fee may leave; negative allows an overdraft
+ *   pricing.&lt;TYPE&gt;.interestTiers    "&lt;from balance&gt;:&lt;monthly rate&gt;,..." - the whole balance earns the rate
+ *                                   of the highest tier it reaches; below the first tier it earns nothing
+ *   pricing.&lt;TYPE&gt;.feeTiers         "&lt;from transactions&gt;:&lt;fee&gt;,..." - monthly fee by the month's transaction count
+ *   pricing.&lt;TYPE&gt;.feeWaiverBalance no fee at or above this balance; empty never waives
+ * Unset keys keep the built-in pricing: savings earn 2.5% and keep 100.00, checking pays 12.00 with a 100.00 overdraft.
+ */
+public class PricingRules {
+    private final AccountType type;
+    private final BigDecimal minimumBalance;
+    private final List<Tier> interestTiers;
+    private final List<Tier> feeTiers;
+    private final BigDecimal feeWaiverBalance;
+
+    public PricingRules(AccountType type, BigDecimal minimumBalance, List<Tier> interestTiers, List<Tier> feeTiers,
+                        BigDecimal feeWaiverBalance) {
+        this.type = type;
+        this.minimumBalance = minimumBalance;
+        this.interestTiers = Collections.unmodifiableList(new ArrayList<>(interestTiers));
+        this.feeTiers = Collections.unmodifiableList(new ArrayList<>(feeTiers));
+        this.feeWaiverBalance = feeWaiverBalance;
+    }
+
+    public static PricingRules fromConfig(AccountType type) {
+        boolean savings = type == AccountType.SAVINGS;
+        String prefix = "pricing." + type.name() + ".";
+        String waiver = DatabaseConnection.getProperty(prefix + "feeWaiverBalance", "").trim();
+        return new PricingRules(type,
+                new BigDecimal(DatabaseConnection.getProperty(prefix + "minimumBalance", savings ? "100.00" : "-100.00").trim()),
+                parseTiers(prefix + "interestTiers", DatabaseConnection.getProperty(prefix + "interestTiers", savings ? "0:0.025" : "")),
+                parseTiers(prefix + "feeTiers", DatabaseConnection.getProperty(prefix + "feeTiers", savings ? "" : "0:12.00")),
+                waiver.isEmpty() ? null : new BigDecimal(waiver));
+    }
+
+    static List<Tier> parseTiers(String key, String value) {
+        List<Tier> tiers = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(key + ": expected <from>:<value>, got '" + entry.trim() + "'");
+            }
+            tiers.add(new Tier(new BigDecimal(parts[0].trim()), new BigDecimal(parts[1].trim())));
+        }
+        return tiers;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public BigDecimal getMinimumBalance() {
+        return minimumBalance;
+    }
+
+    public List<Tier> getInterestTiers() {
+        return interestTiers;
+    }
+
+    public List<Tier> getFeeTiers() {
+        return feeTiers;
+    }
+
+    // null if the fee is never waived
+    public BigDecimal getFeeWaiverBalance() {
+        return feeWaiverBalance;
+    }
+
+    /**
+     * A tier starts at from (a balance or a transaction count) and applies value (a rate or a fee).
+     */
+    public static class Tier {
+        private final BigDecimal from;
+        private final BigDecimal value;
+
+        public Tier(BigDecimal from, BigDecimal value) {
+            this.from = from;
+            this.value = value;
+        }
+
+        public BigDecimal getFrom() {
+            return from;
+        }
+
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+}
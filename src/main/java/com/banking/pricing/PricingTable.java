@@ -0,0 +1,181 @@
+package com.banking.pricing;
+
+import com.banking.model.AccountType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PricingRules compiled into flat arrays indexed by AccountType ordinal and tier: amounts in cents,
+ * rates in millionths. Each type's tier row is padded to the widest row, so a lookup is a short
+ * fixed-length scan with no parsing, maps or BigDecimal. The month-end engine uses the long lookups;
+ * the Account model uses the BigDecimal views, which give the same values.
+ */
+public final class PricingTable {
+    public static final int RATE_SCALE = 6;
+
+    private static volatile PricingTable defaultTable;
+
+    private final int rateWidth;
+    private final int feeWidth;
+    private final long[] rateFrom;      // cents
+    private final long[] rate;          // millionths
+    private final long[] feeFrom;       // transactions
+    private final long[] fee;           // cents
+    private final long[] waiverBalance; // cents; Long.MAX_VALUE if never waived
+    private final long[] minimumBalance;
+    private final long maxRate;
+
+    private PricingTable(List<PricingRules> rules) {
+        AccountType[] types = AccountType.values();
+        PricingRules[] byType = new PricingRules[types.length];
+        for (PricingRules rule : rules) {
+            byType[rule.getType().ordinal()] = rule;
+        }
+        int rates = 1;
+        int fees = 1;
+        for (AccountType type : types) {
+            if (byType[type.ordinal()] == null) {
+                throw new IllegalArgumentException("No pricing rules for " + type);
+            }
+            rates = Math.max(rates, byType[type.ordinal()].getInterestTiers().size());
+            fees = Math.max(fees, byType[type.ordinal()].getFeeTiers().size());
+        }
+
+        rateWidth = rates;
+        feeWidth = fees;
+        rateFrom = new long[types.length * rateWidth];
+        rate = new long[types.length * rateWidth];
+        feeFrom = new long[types.length * feeWidth];
+        fee = new long[types.length * feeWidth];
+        waiverBalance = new long[types.length];
+        minimumBalance = new long[types.length];
+
+        long highest = 0;
+        for (AccountType type : types) {
+            PricingRules rule = byType[type.ordinal()];
+            String name = "pricing." + type.name();
+            fill(rule.getInterestTiers(), type.ordinal() * rateWidth, rateWidth, rateFrom, rate, 2, RATE_SCALE, name + ".interestTiers");
+            fill(rule.getFeeTiers(), type.ordinal() * feeWidth, feeWidth, feeFrom, fee, 0, 2, name + ".feeTiers");
+            waiverBalance[type.ordinal()] = rule.getFeeWaiverBalance() == null
+                    ? Long.MAX_VALUE : scaled(rule.getFeeWaiverBalance(), 2, name + ".feeWaiverBalance");
+            minimumBalance[type.ordinal()] = scaled(rule.getMinimumBalance(), 2, name + ".minimumBalance");
+            for (PricingRules.Tier tier : rule.getInterestTiers()) {
+                highest = Math.max(highest, scaled(tier.getValue(), RATE_SCALE, name + ".interestTiers"));
+            }
+        }
+        maxRate = highest;
+    }
+
+    // Unused padding slots start at Long.MAX_VALUE, so they are never reached
+    private static void fill(List<PricingRules.Tier> tiers, int base, int width, long[] from, long[] values,
+                             int fromScale, int valueScale, String key) {
+        for (int t = 0; t < width; t++) {
+            if (t < tiers.size()) {
+                from[base + t] = scaled(tiers.get(t).getFrom(), fromScale, key);
+                values[base + t] = scaled(tiers.get(t).getValue(), valueScale, key);
+                if (t > 0 && from[base + t] <= from[base + t - 1]) {
+                    throw new IllegalArgumentException(key + ": tiers must be in increasing order");
+                }
+                if (values[base + t] < 0) {
+                    throw new IllegalArgumentException(key + ": values must not be negative");
+                }
+            } else {
+                from[base + t] = Long.MAX_VALUE;
+                values[base + t] = 0;
+            }
+        }
+    }
+
+    private static long scaled(BigDecimal value, int scale, String key) {
+        try {
+            return value.movePointRight(scale).setScale(0).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(key + ": " + value.toPlainString() + " has more than " + scale + " decimal places");
+        }
+    }
+
+    public static PricingTable compile(List<PricingRules> rules) {
+        return new PricingTable(rules);
+    }
+
+    // Compiled from the pricing.* configuration on first use
+    public static PricingTable getDefault() {
+        PricingTable table = defaultTable;
+        if (table == null) {
+            synchronized (PricingTable.class) {
+                table = defaultTable;
+                if (table == null) {
+                    List<PricingRules> rules = new ArrayList<>();
+                    for (AccountType type : AccountType.values()) {
+                        rules.add(PricingRules.fromConfig(type));
+                    }
+                    table = defaultTable = compile(rules);
+                }
+            }
+        }
+        return table;
+    }
+
+    // Monthly rate in millionths for a balance in cents
+    public long rate(int type, long balanceCents) {
+        int base = type * rateWidth;
+        long result = 0;
+        for (int t = 0; t < rateWidth; t++) {
+            result = balanceCents >= rateFrom[base + t] ? rate[base + t] : result;
+        }
+        return result;
+    }
+
+    // Monthly fee in cents for a balance in cents and the month's transaction count
+    public long fee(int type, long balanceCents, long transactions) {
+        if (balanceCents >= waiverBalance[type]) {
+            return 0;
+        }
+        int base = type * feeWidth;
+        long result = 0;
+        for (int t = 0; t < feeWidth; t++) {
+            result = transactions >= feeFrom[base + t] ? fee[base + t] : result;
+        }
+        return result;
+    }
+
+    // Lowest balance in cents a withdrawal or fee may leave
+    public long minimumBalance(int type) {
+        return minimumBalance[type];
+    }
+
+    // Highest configured rate, for overflow bounds
+    public long maxRate() {
+        return maxRate;
+    }
+
+    public BigDecimal getInterestRate(AccountType type, BigDecimal balance) {
+        return BigDecimal.valueOf(rate(type.ordinal(), toCents(balance)), RATE_SCALE);
+    }
+
+    public BigDecimal getMonthlyFee(AccountType type, BigDecimal balance, int transactions) {
+        return BigDecimal.valueOf(fee(type.ordinal(), toCents(balance), transactions), 2);
+    }
+
+    public BigDecimal getMinimumBalance(AccountType type) {
+        return BigDecimal.valueOf(minimumBalance[type.ordinal()], 2);
+    }
+
+    /**
+     * A balance in cents for the lookups. Thresholds are whole cents, so flooring keeps every comparison
+     * exact; balances beyond a long saturate below Long.MAX_VALUE, which marks the unused tier slots.
+     */
+    public static long toCents(BigDecimal balance) {
+        BigDecimal cents = balance.movePointRight(2).setScale(0, RoundingMode.FLOOR);
+        if (cents.compareTo(BigDecimal.valueOf(Long.MAX_VALUE - 1)) > 0) {
+            return Long.MAX_VALUE - 1;
+        }
+        if (cents.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) < 0) {
+            return Long.MIN_VALUE;
+        }
+        return cents.longValueExact();
+    }
+}
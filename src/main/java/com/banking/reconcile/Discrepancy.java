@@ -0,0 +1,46 @@
+package com.banking.reconcile;
+
+import java.math.BigDecimal;
+
+/**
+ * An account whose balance is not the sum of its ledger rows.
+ */
+public final class Discrepancy {
+    private final String accountId;
+    private final int shard;
+    private final BigDecimal balance;
+    private final BigDecimal ledgerTotal;
+
+    Discrepancy(String accountId, int shard, BigDecimal balance, BigDecimal ledgerTotal) {
+        this.accountId = accountId;
+        this.shard = shard;
+        this.balance = balance;
+        this.ledgerTotal = ledgerTotal;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public BigDecimal getLedgerTotal() {
+        return ledgerTotal;
+    }
+
+    // Positive when the balance is more than the ledger accounts for
+    public BigDecimal getDifference() {
+        return balance.subtract(ledgerTotal);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: balance %s, ledger %s, difference %s", accountId, balance, ledgerTotal, getDifference());
+    }
+}
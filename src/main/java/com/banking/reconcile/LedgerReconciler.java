@@ -0,0 +1,446 @@
+package com.banking.reconcile;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.BankingException;
+import com.banking.hot.HotAccounts;
+import com.banking.util.CommandLineOptions;
+import com.banking.util.LedgerArchive;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that every account's balance equals the sum of its ledger rows (archived months included)
+ * and writes the accounts where it does not to a CSV report.
+ *
+ * The job keeps a running ledger total per account in reconciliation_totals and, per shard, the
+ * highest transactions.id folded into it (reconciliation_watermark). An incremental run adds only the
+ * rows above the watermark, then compares the balances with the totals in one pass over the accounts;
+ * a full run (the first one, after the ledger was cleared, or with --full) sums the whole ledger
+ * instead. Each shard's accounts are split into account_id ranges that run in parallel.
+ *
+ * The totals only pick out the accounts to look at. Every account whose balance differs from its
+ * running total is summed up exactly, and its total corrected, so a row the watermark skipped (one
+ * that committed after a higher id) or a run that failed halfway heals on the next run instead of
+ * being reported. Accounts that still differ are checked once more after reconcile.settleMillis, so
+ * an operation between its balance update and its ledger row is not reported; what differs then is.
+ * Incremental runs see every balance change and every new ledger row, but not an old row that was
+ * edited or deleted in place; only a full run finds those.
+ *
+ * Usage: java com.banking.reconcile.LedgerReconciler [--full] [--init-schema]
+ */
+public class LedgerReconciler {
+    private static final String WATERMARK_SQL = "SELECT last_txn_id FROM reconciliation_watermark WHERE id = 1";
+    private static final String SAVE_WATERMARK_SQL = "MERGE INTO reconciliation_watermark (id, last_txn_id, reconciled) KEY (id) VALUES (1, ?, ?)";
+    private static final String ADD_TOTAL_SQL = "UPDATE reconciliation_totals SET ledger_total = ledger_total + ? WHERE account_id = ?";
+    private static final String INSERT_TOTAL_SQL = "INSERT INTO reconciliation_totals (account_id, ledger_total) VALUES (?, ?)";
+    private static final String MERGE_TOTAL_SQL = "MERGE INTO reconciliation_totals (account_id, ledger_total) KEY (account_id) VALUES (?, ?)";
+    // The whole ledger and the part up to the watermark, in one statement so they agree with the balance
+    private static final String EXACT_SQL = "SELECT " + HotAccounts.BALANCE_COLUMN + ", "
+            + "COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.account_id = a.account_id), 0), "
+            + "COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.account_id = a.account_id AND t.id <= ?), 0) "
+            + "FROM accounts a WHERE a.account_id = ?";
+    private static final int BATCH_SIZE = 1000;
+    private static final DateTimeFormatter REPORT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final int workers;
+    private final long settleMillis;
+    private final Path reportDir;
+
+    public LedgerReconciler() {
+        this(Integer.parseInt(DatabaseConnection.getProperty("reconcile.workers", "4")),
+                Long.parseLong(DatabaseConnection.getProperty("reconcile.settleMillis", "2000")),
+                Paths.get(DatabaseConnection.getProperty("reconcile.reportDir", "reconciliation")));
+    }
+
+    public LedgerReconciler(int workers, long settleMillis, Path reportDir) {
+        this.workers = workers;
+        this.settleMillis = settleMillis;
+        this.reportDir = reportDir;
+    }
+
+    public ReconciliationSummary run(boolean full) throws InterruptedException {
+        ReconciliationSummary summary = new ReconciliationSummary();
+        int shards = DatabaseConnection.getShardCount();
+        long[] upTo = new long[shards];
+        List<Partition> partitions = new ArrayList<>();
+        try {
+            for (int shard = 0; shard < shards; shard++) {
+                try (Connection conn = DatabaseConnection.getShardConnection(shard)) {
+                    long watermark = readWatermark(conn);
+                    upTo[shard] = maxTransactionId(conn);
+                    // No watermark yet, or one past the end of a ledger that has since been cleared
+                    boolean fullShard = full || watermark < 0 || watermark > upTo[shard];
+                    summary.addShard(fullShard);
+                    List<String> boundaries = planBoundaries(conn, Math.max(1, workers / shards));
+                    for (int i = 0; i <= boundaries.size(); i++) {
+                        partitions.add(new Partition(shard, i > 0 ? boundaries.get(i - 1) : null,
+                                i < boundaries.size() ? boundaries.get(i) : null, fullShard, watermark, upTo[shard]));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to plan the reconciliation", e);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        List<Future<List<Discrepancy>>> futures = new ArrayList<>();
+        for (Partition partition : partitions) {
+            futures.add(executor.submit(() -> runPartition(partition, summary)));
+        }
+        executor.shutdown();
+
+        List<Discrepancy> suspects = new ArrayList<>();
+        boolean[] failedShards = new boolean[shards];
+        Exception failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                suspects.addAll(futures.get(i).get());
+            } catch (ExecutionException e) {
+                failedShards[partitions.get(i).shard] = true;
+                failure = failure == null ? (Exception) e.getCause() : failure;
+                System.out.println("Reconciliation partition failed: " + e.getCause().getMessage());
+            }
+        }
+
+        if (!suspects.isEmpty()) {
+            Thread.sleep(settleMillis);
+        }
+        summary.setDiscrepancies(recheck(suspects, upTo));
+        summary.setReport(writeReport(summary.getDiscrepancies()));
+
+        for (int shard = 0; shard < shards; shard++) {
+            if (!failedShards[shard]) {
+                saveWatermark(shard, upTo[shard]);
+            }
+        }
+        if (failure != null) {
+            throw new BankingException("Reconciliation did not finish on every shard", failure);
+        }
+        return summary;
+    }
+
+    private List<Discrepancy> runPartition(Partition partition, ReconciliationSummary summary) throws SQLException {
+        try (Connection conn = DatabaseConnection.getShardConnection(partition.shard)) {
+            conn.setAutoCommit(false);
+            try {
+                summary.addLedgerRows(partition.full ? sumLedger(conn, partition) : addNewRows(conn, partition));
+
+                List<String> candidates = new ArrayList<>();
+                String sql = "SELECT a.account_id FROM accounts a LEFT JOIN reconciliation_totals t ON t.account_id = a.account_id "
+                        + "WHERE " + partition.rangeCondition("a.account_id") + " AND " + HotAccounts.BALANCE_COLUMN + " <> COALESCE(t.ledger_total, 0)";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    partition.bindRange(stmt, 1);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            candidates.add(rs.getString(1));
+                        }
+                    }
+                }
+                summary.addRechecked(candidates.size());
+
+                List<Discrepancy> suspects = new ArrayList<>();
+                for (String accountId : candidates) {
+                    Discrepancy discrepancy = exactCheck(conn, partition.shard, accountId, partition.upTo);
+                    if (discrepancy != null) {
+                        suspects.add(discrepancy);
+                    }
+                }
+                DatabaseConnection.commit(conn);
+                return suspects;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Recomputes the partition's totals from the whole ledger; returns the rows read
+    private long sumLedger(Connection conn, Partition partition) throws SQLException {
+        Map<String, BigDecimal> totals = new HashMap<>(LedgerArchive.archivedTotals(conn, partition.from, partition.to));
+        long rows = 0;
+        String sql = "SELECT account_id, SUM(amount), COUNT(*) FROM transactions WHERE id <= ? AND "
+                + partition.rangeCondition("account_id") + " GROUP BY account_id";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, partition.upTo);
+            partition.bindRange(stmt, 2);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    totals.merge(rs.getString(1), rs.getBigDecimal(2), BigDecimal::add);
+                    rows += rs.getLong(3);
+                }
+            }
+        }
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM reconciliation_totals WHERE " + partition.rangeCondition("account_id"))) {
+            partition.bindRange(delete, 1);
+            delete.executeUpdate();
+        }
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_TOTAL_SQL)) {
+            int batched = 0;
+            for (Map.Entry<String, BigDecimal> total : totals.entrySet()) {
+                insert.setString(1, total.getKey());
+                insert.setBigDecimal(2, total.getValue());
+                insert.addBatch();
+                if (++batched % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        return rows;
+    }
+
+    // Adds the rows above the watermark to the totals; returns the rows read
+    private long addNewRows(Connection conn, Partition partition) throws SQLException {
+        List<String> accountIds = new ArrayList<>();
+        List<BigDecimal> amounts = new ArrayList<>();
+        long rows = 0;
+        String sql = "SELECT account_id, SUM(amount), COUNT(*) FROM transactions WHERE id > ? AND id <= ? AND "
+                + partition.rangeCondition("account_id") + " GROUP BY account_id";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, partition.watermark);
+            stmt.setLong(2, partition.upTo);
+            partition.bindRange(stmt, 3);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    accountIds.add(rs.getString(1));
+                    amounts.add(rs.getBigDecimal(2));
+                    rows += rs.getLong(3);
+                }
+            }
+        }
+
+        try (PreparedStatement update = conn.prepareStatement(ADD_TOTAL_SQL);
+             PreparedStatement insert = conn.prepareStatement(INSERT_TOTAL_SQL)) {
+            for (int from = 0; from < accountIds.size(); from += BATCH_SIZE) {
+                int to = Math.min(accountIds.size(), from + BATCH_SIZE);
+                for (int i = from; i < to; i++) {
+                    update.setBigDecimal(1, amounts.get(i));
+                    update.setString(2, accountIds.get(i));
+                    update.addBatch();
+                }
+                int[] updated = update.executeBatch();
+                boolean inserts = false;
+                for (int i = from; i < to; i++) {
+                    // First rows of an account since the last run
+                    if (updated[i - from] == 0) {
+                        insert.setString(1, accountIds.get(i));
+                        insert.setBigDecimal(2, amounts.get(i));
+                        insert.addBatch();
+                        inserts = true;
+                    }
+                }
+                if (inserts) {
+                    insert.executeBatch();
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Sums up the account's whole ledger and compares it with the balance; null if they agree or the
+     * account is gone. Either way the running total is set to the exact sum up to the watermark.
+     */
+    private static Discrepancy exactCheck(Connection conn, int shard, String accountId, long upTo) throws SQLException {
+        BigDecimal balance;
+        BigDecimal ledgerTotal;
+        BigDecimal totalUpTo;
+        try (PreparedStatement stmt = conn.prepareStatement(EXACT_SQL)) {
+            stmt.setLong(1, upTo);
+            stmt.setString(2, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                balance = rs.getBigDecimal(1);
+                ledgerTotal = rs.getBigDecimal(2);
+                totalUpTo = rs.getBigDecimal(3);
+            }
+        }
+        BigDecimal archived = LedgerArchive.archivedTotal(conn, accountId);
+        ledgerTotal = ledgerTotal.add(archived);
+        totalUpTo = totalUpTo.add(archived);
+
+        try (PreparedStatement merge = conn.prepareStatement(MERGE_TOTAL_SQL)) {
+            merge.setString(1, accountId);
+            merge.setBigDecimal(2, totalUpTo);
+            merge.executeUpdate();
+        }
+        return balance.compareTo(ledgerTotal) == 0 ? null : new Discrepancy(accountId, shard, balance, ledgerTotal);
+    }
+
+    // The second look at the accounts that differed; what still differs is reported
+    private static List<Discrepancy> recheck(List<Discrepancy> suspects, long[] upTo) {
+        List<Discrepancy> confirmed = new ArrayList<>();
+        for (Discrepancy suspect : suspects) {
+            try (Connection conn = DatabaseConnection.getShardConnection(suspect.getShard())) {
+                conn.setAutoCommit(false);
+                Discrepancy discrepancy = exactCheck(conn, suspect.getShard(), suspect.getAccountId(), upTo[suspect.getShard()]);
+                DatabaseConnection.commit(conn);
+                if (discrepancy != null) {
+                    confirmed.add(discrepancy);
+                }
+            } catch (SQLException e) {
+                throw new BankingException("Failed to recheck account " + suspect.getAccountId(), e);
+            }
+        }
+        confirmed.sort((a, b) -> a.getAccountId().compareTo(b.getAccountId()));
+        return confirmed;
+    }
+
+    // Written even when there is nothing to report, so every run leaves a record
+    private Path writeReport(List<Discrepancy> discrepancies) {
+        Path report = reportDir.resolve("discrepancies-" + LocalDateTime.now().format(REPORT_NAME) + ".csv");
+        Path temp = reportDir.resolve(report.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(reportDir);
+            try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                out.write("account_id,shard,balance,ledger_total,difference");
+                out.newLine();
+                for (Discrepancy discrepancy : discrepancies) {
+                    out.write(discrepancy.getAccountId() + "," + discrepancy.getShard() + "," + discrepancy.getBalance().toPlainString()
+                            + "," + discrepancy.getLedgerTotal().toPlainString() + "," + discrepancy.getDifference().toPlainString());
+                    out.newLine();
+                }
+            }
+            Files.move(temp, report, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new BankingException("Failed to write reconciliation report " + report, e);
+        }
+        return report;
+    }
+
+    // -1 if the shard has never been reconciled
+    private static long readWatermark(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(WATERMARK_SQL)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    private static long maxTransactionId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM transactions")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void saveWatermark(int shard, long upTo) {
+        try (Connection conn = DatabaseConnection.getShardConnection(shard);
+             PreparedStatement stmt = conn.prepareStatement(SAVE_WATERMARK_SQL)) {
+            conn.setAutoCommit(false);
+            stmt.setLong(1, upTo);
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+            DatabaseConnection.commit(conn);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to save the reconciliation watermark of shard " + shard, e);
+        }
+    }
+
+    // Picks ranges-1 account ids that split the shard's accounts into ranges of about equal size
+    private static List<String> planBoundaries(Connection conn, int ranges) throws SQLException {
+        List<String> boundaries = new ArrayList<>();
+        int accounts;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM accounts")) {
+            rs.next();
+            accounts = rs.getInt(1);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts ORDER BY account_id LIMIT 1 OFFSET ?")) {
+            for (int i = 1; i < ranges && accounts > 0; i++) {
+                stmt.setInt(1, (int) ((long) accounts * i / ranges));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        String boundary = rs.getString(1);
+                        if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                            boundaries.add(boundary);
+                        }
+                    }
+                }
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * Accounts of one shard with from &lt;= account_id &lt; to (a null bound is open), and the ledger
+     * rows to fold in: all up to upTo for a full run, those in (watermark, upTo] otherwise.
+     */
+    private static class Partition {
+        private final int shard;
+        private final String from;
+        private final String to;
+        private final boolean full;
+        private final long watermark;
+        private final long upTo;
+
+        Partition(int shard, String from, String to, boolean full, long watermark, long upTo) {
+            this.shard = shard;
+            this.from = from;
+            this.to = to;
+            this.full = full;
+            this.watermark = watermark;
+            this.upTo = upTo;
+        }
+
+        String rangeCondition(String column) {
+            List<String> conditions = new ArrayList<>();
+            if (from != null) {
+                conditions.add(column + " >= ?");
+            }
+            if (to != null) {
+                conditions.add(column + " < ?");
+            }
+            return conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions);
+        }
+
+        // Binds the parameters of rangeCondition starting at the given index; returns the next free index
+        int bindRange(PreparedStatement stmt, int index) throws SQLException {
+            if (from != null) {
+                stmt.setString(index++, from);
+            }
+            if (to != null) {
+                stmt.setString(index++, to);
+            }
+            return index;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            DatabaseConnection.initializeSchema();
+        }
+
+        long start = System.nanoTime();
+        ReconciliationSummary summary = new LedgerReconciler().run(options.containsKey("full"));
+        System.out.printf("Reconciled in %d ms: %s%n", (System.nanoTime() - start) / 1_000_000, summary);
+        for (Discrepancy discrepancy : summary.getDiscrepancies()) {
+            System.out.println("  " + discrepancy);
+        }
+        System.out.println("Report: " + summary.getReport());
+    }
+}
@@ -0,0 +1,76 @@
+package com.banking.reconcile;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What one LedgerReconciler run did across all shards.
+ */
+public class ReconciliationSummary {
+    private int fullShards;
+    private int incrementalShards;
+    private long ledgerRows;
+    private long rechecked;
+    private final List<Discrepancy> discrepancies = new ArrayList<>();
+    private Path report;
+
+    synchronized void addShard(boolean full) {
+        if (full) {
+            fullShards++;
+        } else {
+            incrementalShards++;
+        }
+    }
+
+    synchronized void addLedgerRows(long rows) {
+        ledgerRows += rows;
+    }
+
+    synchronized void addRechecked(long accounts) {
+        rechecked += accounts;
+    }
+
+    void setDiscrepancies(List<Discrepancy> found) {
+        discrepancies.clear();
+        discrepancies.addAll(found);
+    }
+
+    void setReport(Path report) {
+        this.report = report;
+    }
+
+    // Shards whose ledger was summed in full (first run, or --full) rather than from the watermark
+    public int getFullShards() {
+        return fullShards;
+    }
+
+    public int getIncrementalShards() {
+        return incrementalShards;
+    }
+
+    // Ledger rows read: all of them for a full shard, the new ones for an incremental one
+    public long getLedgerRows() {
+        return ledgerRows;
+    }
+
+    // Accounts whose balance did not match the running total and were summed up exactly
+    public long getRechecked() {
+        return rechecked;
+    }
+
+    public List<Discrepancy> getDiscrepancies() {
+        return Collections.unmodifiableList(discrepancies);
+    }
+
+    public Path getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d full and %d incremental shards, %d ledger rows, %d accounts rechecked, %d discrepancies",
+                fullShards, incrementalShards, ledgerRows, rechecked, discrepancies.size());
+    }
+}
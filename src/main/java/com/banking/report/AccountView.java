@@ -0,0 +1,30 @@
+package com.banking.report;
+
+import java.math.BigDecimal;
+
+/**
+ * An account as seen by the ReportingModel.
+ */
+public class AccountView {
+    private final String accountId;
+    private final String type;
+    private final BigDecimal balance;
+
+    public AccountView(String accountId, String type, BigDecimal balance) {
+        this.accountId = accountId;
+        this.type = type;
+        this.balance = balance;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,395 @@
+package com.banking.report;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.event.AccountEvent;
+import com.banking.event.FeedEvent;
+import com.banking.event.FeedLagException;
+import com.banking.event.LedgerFeed;
+import com.banking.exception.BankingException;
+import com.banking.hot.HotAccounts;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory read model behind the admin reports (sorted listing, totals, minimum balance,
+ * recent ledger entries), so reporting does not query the tables clients write to.
+ *
+ * It loads the accounts once on start, then follows committed changes through a LedgerFeed
+ * subscription, applying each batch on the feed's delivery thread and asking for the next one
+ * when done. The model lags the database slightly; getStalenessMillis() reports by how much. If it
+ * falls more than its buffer behind, the feed ends the subscription and the model resubscribes
+ * and reloads itself from the database.
+ *
+ * Events can be published in another order than their transactions committed, so balances carry
+ * the account's version (see AccountEvents.nextVersion): a balance older than the one applied is
+ * ignored, and a relative adjustment is kept until a balance that includes it arrives.
+ *
+ * Configuration: reporting.queueCapacity (default 100000, the feed buffer), reporting.recentLedgerSize (default 1000).
+ */
+public class ReportingModel implements Flow.Subscriber<List<FeedEvent>>, ReportingModelMXBean {
+    private static final Comparator<AccountView> BY_BALANCE =
+            Comparator.comparing(AccountView::getBalance).thenComparing(AccountView::getAccountId);
+
+    private final ConcurrentHashMap<String, AccountView> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<AccountView> accountsByBalance = new ConcurrentSkipListSet<>(BY_BALANCE);
+    private final ArrayDeque<AccountEvent> recentLedger;
+    private final int recentLedgerSize;
+    private final LedgerFeed feed;
+    private final int queueCapacity;
+    // Held while applying events or reloading, so a reload never interleaves with a batch
+    private final Object modelLock = new Object();
+    // Applied balance version per account, and the adjustments on top of it by their version; modelLock only
+    private final Map<String, Long> versions = new HashMap<>();
+    private final Map<String, TreeMap<Long, BigDecimal>> adjustments = new HashMap<>();
+    // Events up to this sequence were committed before the last reload read the tables; modelLock only
+    private long loadedThroughSequence;
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    private volatile BigDecimal totalBalance = BigDecimal.ZERO;
+    private volatile long lastAppliedSequence;
+    private volatile long lastAppliedAtMillis = System.currentTimeMillis();
+    private volatile boolean running;
+    private volatile Flow.Subscription subscription;
+
+    public ReportingModel() {
+        this(Integer.parseInt(DatabaseConnection.getProperty("reporting.queueCapacity", "100000")),
+                Integer.parseInt(DatabaseConnection.getProperty("reporting.recentLedgerSize", "1000")));
+    }
+
+    public ReportingModel(int queueCapacity, int recentLedgerSize) {
+        this(LedgerFeed.getDefault(), queueCapacity, recentLedgerSize);
+    }
+
+    public ReportingModel(LedgerFeed feed, int queueCapacity, int recentLedgerSize) {
+        this.feed = feed;
+        this.queueCapacity = queueCapacity;
+        this.recentLedgerSize = recentLedgerSize;
+        this.recentLedger = new ArrayDeque<>(recentLedgerSize);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        subscribeAndReload();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        Flow.Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    // Subscribe before loading so nothing committed during the load is missed
+    private void subscribeAndReload() {
+        synchronized (modelLock) {
+            long from = feed.getLastSequence();
+            lastAppliedSequence = from;
+            feed.subscribe(this, from, queueCapacity);
+            reload();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<FeedEvent> batch) {
+        synchronized (modelLock) {
+            try {
+                for (FeedEvent event : batch) {
+                    // Skipped when the reload already read it, so an adjustment is not counted twice
+                    if (event.getSequence() > loadedThroughSequence) {
+                        apply(event.getEvent());
+                    }
+                    lastAppliedSequence = event.getSequence();
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Warning: Reporting model update failed, reloading: " + e.getMessage());
+                lastAppliedSequence = batch.get(batch.size() - 1).getSequence();
+                reload();
+            }
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (error instanceof FeedLagException) {
+            droppedEvents.addAndGet(((FeedLagException) error).getDroppedEvents());
+        }
+        if (running) {
+            System.out.println("Warning: Reporting model fell behind the ledger feed, reloading: " + error.getMessage());
+            subscribeAndReload();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        // The feed never completes
+    }
+
+    private void apply(AccountEvent event) {
+        switch (event.getKind()) {
+            case ACCOUNT_CREATED:
+            case BALANCE_CHANGED:
+                applyBalance(event);
+                break;
+            case BALANCE_ADJUSTED:
+                applyAdjustment(event);
+                break;
+            case LEDGER_ENTRY:
+                synchronized (recentLedger) {
+                    if (recentLedger.size() == recentLedgerSize) {
+                        recentLedger.removeFirst();
+                    }
+                    recentLedger.addLast(event);
+                }
+                break;
+            case ACCOUNTS_CLEARED:
+                accounts.clear();
+                accountsByBalance.clear();
+                versions.clear();
+                adjustments.clear();
+                totalBalance = BigDecimal.ZERO;
+                break;
+            case LEDGER_CLEARED:
+                synchronized (recentLedger) {
+                    recentLedger.clear();
+                }
+                break;
+            case BULK_LOADED:
+                reload();
+                break;
+            default:
+                throw new IllegalStateException("Unknown event kind: " + event.getKind());
+        }
+        lastAppliedAtMillis = event.getPublishedAtMillis();
+        appliedEvents.incrementAndGet();
+    }
+
+    private void applyBalance(AccountEvent event) {
+        String accountId = event.getAccountId();
+        AccountView previous = accounts.get(accountId);
+        if (previous != null && event.getVersion() <= versions.getOrDefault(accountId, -1L)) {
+            // A newer balance was applied first; only the type of a late ACCOUNT_CREATED is still news
+            if (event.getType() != null && "UNKNOWN".equals(previous.getType())) {
+                putAccount(accountId, event.getType(), previous.getBalance());
+            }
+            return;
+        }
+        BigDecimal balance = event.getBalance();
+        TreeMap<Long, BigDecimal> pending = adjustments.get(accountId);
+        if (pending != null) {
+            // Adjustments made before this version are already in the balance
+            pending.headMap(event.getVersion()).clear();
+            for (BigDecimal amount : pending.values()) {
+                balance = balance.add(amount);
+            }
+            if (pending.isEmpty()) {
+                adjustments.remove(accountId);
+            }
+        }
+        versions.put(accountId, event.getVersion());
+        putAccount(accountId, event.getType(), balance);
+    }
+
+    private void applyAdjustment(AccountEvent event) {
+        String accountId = event.getAccountId();
+        if (event.getVersion() < versions.getOrDefault(accountId, -1L)) {
+            return;   // the applied balance includes it
+        }
+        adjustments.computeIfAbsent(accountId, id -> new TreeMap<>()).merge(event.getVersion(), event.getAmount(), BigDecimal::add);
+        AccountView previous = accounts.get(accountId);
+        if (previous != null) {
+            putAccount(accountId, null, previous.getBalance().add(event.getAmount()));
+        }
+    }
+
+    // type null keeps the account's type
+    private void putAccount(String accountId, String type, BigDecimal balance) {
+        AccountView previous = accounts.get(accountId);
+        String resolvedType = type != null ? type : previous != null ? previous.getType() : "UNKNOWN";
+        AccountView updated = new AccountView(accountId, resolvedType, balance);
+        accounts.put(accountId, updated);
+        BigDecimal total = totalBalance;
+        if (previous != null) {
+            accountsByBalance.remove(previous);
+            total = total.subtract(previous.getBalance());
+        }
+        accountsByBalance.add(updated);
+        totalBalance = total.add(balance);
+    }
+
+    // Rebuilds the model from the accounts table and the newest ledger rows
+    private void reload() {
+        long loadedAt = System.currentTimeMillis();
+        // Events are published after their commit, so the ones published so far are in what is read below
+        long loadedThrough = feed.getLastSequence();
+        List<AccountView> loaded = new ArrayList<>();
+        List<AccountEvent> ledger = new ArrayList<>();
+
+        try {
+            // Every shard returns its accounts and its newest ledger rows; the ledger is merged by date below
+            for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+                try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                    try (ResultSet rs = stmt.executeQuery("SELECT a.account_id, a.type, " + HotAccounts.BALANCE_COLUMN + " AS balance FROM accounts a")) {
+                        while (rs.next()) {
+                            loaded.add(new AccountView(rs.getString("account_id"), rs.getString("type"), rs.getBigDecimal("balance")));
+                        }
+                    }
+                    try (ResultSet rs = stmt.executeQuery("SELECT account_id, amount, date FROM transactions ORDER BY id DESC LIMIT " + recentLedgerSize)) {
+                        while (rs.next()) {
+                            ledger.add(AccountEvent.ledgerEntry(rs.getString("account_id"), rs.getBigDecimal("amount"),
+                                    rs.getTimestamp("date").toLocalDateTime()));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to load reporting model", e);
+        }
+
+        accounts.clear();
+        accountsByBalance.clear();
+        versions.clear();
+        adjustments.clear();
+        loadedThroughSequence = loadedThrough;
+        BigDecimal total = BigDecimal.ZERO;
+        for (AccountView view : loaded) {
+            accounts.put(view.getAccountId(), view);
+            accountsByBalance.add(view);
+            total = total.add(view.getBalance());
+        }
+        totalBalance = total;
+
+        // Oldest first; the sort is stable, so rows of one shard keep their id order
+        Collections.reverse(ledger);
+        ledger.sort(Comparator.comparing(AccountEvent::getDate));
+        if (ledger.size() > recentLedgerSize) {
+            ledger = new ArrayList<>(ledger.subList(ledger.size() - recentLedgerSize, ledger.size()));
+        }
+        synchronized (recentLedger) {
+            recentLedger.clear();
+            recentLedger.addAll(ledger);
+        }
+        lastAppliedAtMillis = loadedAt;
+    }
+
+    /**
+     * Waits until every event published so far has been applied, e.g. so an admin sees the
+     * result of the month-end run they just started. Returns false on timeout.
+     */
+    public boolean awaitCaughtUp(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long target = feed.getLastSequence();
+        while (lastAppliedSequence < target) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    public List<AccountView> getAccountsSortedByBalance() {
+        return new ArrayList<>(accountsByBalance);
+    }
+
+    public AccountView getAccountWithMinBalance() {
+        return accountsByBalance.isEmpty() ? null : accountsByBalance.first();
+    }
+
+    @Override
+    public BigDecimal getTotalBalance() {
+        return totalBalance;
+    }
+
+    @Override
+    public int getNumberOfAccounts() {
+        return accounts.size();
+    }
+
+    public List<AccountEvent> getRecentLedgerEntries() {
+        synchronized (recentLedger) {
+            return new ArrayList<>(recentLedger);
+        }
+    }
+
+    /**
+     * How far behind the database the model is: the age of the oldest event not applied yet,
+     * or 0 when it is caught up.
+     */
+    @Override
+    public long getStalenessMillis() {
+        long next = lastAppliedSequence + 1;
+        if (next > feed.getLastSequence()) {
+            return 0;
+        }
+        FeedEvent oldest = feed.find(next);
+        long publishedAt = oldest == null ? lastAppliedAtMillis : oldest.getEvent().getPublishedAtMillis();
+        return Math.max(0, System.currentTimeMillis() - publishedAt);
+    }
+
+    // Published but not applied yet
+    @Override
+    public int getPendingEvents() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, feed.getLastSequence() - lastAppliedSequence));
+    }
+
+    @Override
+    public long getAppliedEvents() {
+        return appliedEvents.get();
+    }
+
+    @Override
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @Override
+    public void resync() {
+        synchronized (modelLock) {
+            reload();
+        }
+    }
+
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.banking:type=ReportingModel");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.out.println("Warning: Could not register reporting model MBean: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.banking.report;
+
+import java.math.BigDecimal;
+
+/**
+ * JMX view of the admin read model, registered as com.banking:type=ReportingModel.
+ */
+public interface ReportingModelMXBean {
+    long getStalenessMillis();
+
+    int getPendingEvents();
+
+    long getAppliedEvents();
+
+    long getDroppedEvents();
+
+    int getNumberOfAccounts();
+
+    BigDecimal getTotalBalance();
+
+    void resync();
+}
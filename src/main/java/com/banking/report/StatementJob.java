@@ -0,0 +1,349 @@
+package com.banking.report;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.BankingException;
+import com.banking.util.CommandLineOptions;
+import com.banking.util.LedgerArchive;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes one statement file per account for a month: &lt;out&gt;/&lt;yyyy-MM&gt;/&lt;account&gt;.txt.
+ *
+ * The accounts are split into contiguous account_id ranges, one per worker (per shard when db.shards &gt; 1,
+ * the workers being divided over the shards). Each worker reads its
+ * accounts and that month's ledger rows in (account_id, date) order with lazy (streaming) queries and
+ * merges the two cursors, so the ledger is scanned once and no account's history is held in memory.
+ * Opening balances come from the daily ledger rollups.
+ *
+ * The job is resumable: the partition plan is saved in partitions.properties, each worker checkpoints
+ * the last finished account in .progress/, and statements are written to a temp file and renamed, so
+ * a rerun skips finished work. A _COMPLETE marker is written once every partition has finished.
+ *
+ * Usage: java com.banking.report.StatementJob --month=2026-09 [--out=statements] [--workers=4] [--fetch-size=1000]
+ */
+public class StatementJob {
+    private static final int CHECKPOINT_EVERY = 100;
+    private static final String MANIFEST = "partitions.properties";
+    private static final String COMPLETE_MARKER = "_COMPLETE";
+
+    private final YearMonth month;
+    private final Path monthDir;
+    private final int workers;
+    private final int fetchSize;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong ledgerRows = new AtomicLong();
+
+    public StatementJob(YearMonth month, Path outputDir, int workers, int fetchSize) {
+        this.month = month;
+        this.monthDir = outputDir.resolve(month.toString());
+        this.workers = workers;
+        this.fetchSize = fetchSize;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Files.createDirectories(monthDir.resolve(".progress"));
+        if (Files.exists(monthDir.resolve(COMPLETE_MARKER))) {
+            System.out.println("Statements for " + month + " are already complete in " + monthDir);
+            return;
+        }
+        // The job streams the month from the transactions table, so it has to run before the month is archived
+        if (LedgerArchive.isArchived(month)) {
+            throw new BankingException("The ledger of " + month + " has been archived; statements must be written before archiving");
+        }
+
+        List<Partition> partitions = loadOrPlanPartitions();
+        ExecutorService executor = Executors.newFixedThreadPool(partitions.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (Partition partition : partitions) {
+            futures.add(executor.submit(() -> {
+                runPartition(partition);
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        int failed = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failed++;
+                System.out.println("Statement partition failed: " + e.getCause().getMessage());
+            }
+        }
+
+        if (failed == 0) {
+            Files.write(monthDir.resolve(COMPLETE_MARKER), new byte[0]);
+        }
+        System.out.printf("Statements for %s: %d written, %d already present, %d ledger rows, %d/%d partitions failed, %.1fs%n",
+                month, written.get(), skipped.get(), ledgerRows.get(), failed, partitions.size(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    // Reuses the saved plan on a rerun so checkpoints still line up with their ranges
+    private List<Partition> loadOrPlanPartitions() throws IOException {
+        Path manifest = monthDir.resolve(MANIFEST);
+        Properties plan = new Properties();
+        if (Files.exists(manifest)) {
+            try (InputStream in = Files.newInputStream(manifest)) {
+                plan.load(in);
+            }
+        } else {
+            int shards = DatabaseConnection.getShardCount();
+            int perShard = Math.max(1, workers / shards);
+            int index = 0;
+            for (int shard = 0; shard < shards; shard++) {
+                List<String> boundaries = planBoundaries(shard, perShard);
+                for (int i = 0; i <= boundaries.size(); i++, index++) {
+                    plan.setProperty("partition." + index + ".shard", String.valueOf(shard));
+                    if (i > 0) {
+                        plan.setProperty("partition." + index + ".from", boundaries.get(i - 1));
+                    }
+                    if (i < boundaries.size()) {
+                        plan.setProperty("partition." + index + ".to", boundaries.get(i));
+                    }
+                }
+            }
+            plan.setProperty("partitions", String.valueOf(index));
+            Path temp = monthDir.resolve(MANIFEST + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                plan.store(out, "Statement partitions for " + month);
+            }
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        int count = Integer.parseInt(plan.getProperty("partitions"));
+        List<Partition> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new Partition(i, Integer.parseInt(plan.getProperty("partition." + i + ".shard")),
+                    plan.getProperty("partition." + i + ".from"), plan.getProperty("partition." + i + ".to")));
+        }
+        return partitions;
+    }
+
+    // Picks ranges-1 account ids that split the shard's accounts into ranges of about equal size
+    private List<String> planBoundaries(int shard, int ranges) {
+        List<String> boundaries = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getShardConnection(shard)) {
+            int accounts;
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM accounts")) {
+                rs.next();
+                accounts = rs.getInt(1);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT account_id FROM accounts ORDER BY account_id LIMIT 1 OFFSET ?")) {
+                for (int i = 1; i < ranges && accounts > 0; i++) {
+                    stmt.setInt(1, (int) ((long) accounts * i / ranges));
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next()) {
+                        String boundary = rs.getString(1);
+                        if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+                            boundaries.add(boundary);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to plan statement partitions", e);
+        }
+        return boundaries;
+    }
+
+    private void runPartition(Partition partition) throws SQLException, IOException {
+        Path checkpoint = monthDir.resolve(".progress").resolve("partition-" + partition.index);
+        String resumeAfter = Files.exists(checkpoint)
+                ? new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim()
+                : null;
+
+        String accountsSql = "SELECT a.account_id, a.type, (SELECT r.closing_balance FROM ledger_rollups r "
+                + "WHERE r.account_id = a.account_id AND r.txn_day < ? ORDER BY r.txn_day DESC LIMIT 1) AS opening "
+                + "FROM accounts a WHERE " + partition.rangeCondition("a.account_id", resumeAfter) + " ORDER BY a.account_id";
+        String ledgerSql = "SELECT account_id, amount, date FROM transactions WHERE "
+                + partition.rangeCondition("account_id", resumeAfter)
+                + " AND date >= ? AND date < ? ORDER BY account_id, date";
+
+        try (Connection accountsConn = openStreamingConnection(partition.shard); Connection ledgerConn = openStreamingConnection(partition.shard);
+             PreparedStatement accountsStmt = accountsConn.prepareStatement(accountsSql);
+             PreparedStatement ledgerStmt = ledgerConn.prepareStatement(ledgerSql)) {
+            accountsStmt.setFetchSize(fetchSize);
+            ledgerStmt.setFetchSize(fetchSize);
+
+            accountsStmt.setDate(1, Date.valueOf(month.atDay(1)));
+            partition.bindRange(accountsStmt, 2, resumeAfter);
+            int next = partition.bindRange(ledgerStmt, 1, resumeAfter);
+            ledgerStmt.setTimestamp(next++, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+            ledgerStmt.setTimestamp(next, Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay()));
+
+            try (ResultSet accounts = accountsStmt.executeQuery(); ResultSet ledger = ledgerStmt.executeQuery()) {
+                boolean hasLedgerRow = ledger.next();
+                int sinceCheckpoint = 0;
+                String lastAccount = null;
+
+                while (accounts.next()) {
+                    String accountId = accounts.getString("account_id");
+                    // Ledger rows of accounts that no longer exist sort before this one; skip them
+                    while (hasLedgerRow && ledger.getString("account_id").compareTo(accountId) < 0) {
+                        hasLedgerRow = ledger.next();
+                    }
+
+                    Path statementFile = monthDir.resolve(accountId + ".txt");
+                    if (Files.exists(statementFile)) {
+                        while (hasLedgerRow && ledger.getString("account_id").equals(accountId)) {
+                            hasLedgerRow = ledger.next();
+                        }
+                        skipped.incrementAndGet();
+                    } else {
+                        BigDecimal opening = accounts.getBigDecimal("opening");
+                        hasLedgerRow = writeStatement(statementFile, accountId, accounts.getString("type"),
+                                opening == null ? BigDecimal.ZERO : opening, ledger, hasLedgerRow);
+                        written.incrementAndGet();
+                    }
+
+                    lastAccount = accountId;
+                    if (++sinceCheckpoint == CHECKPOINT_EVERY) {
+                        writeCheckpoint(checkpoint, accountId);
+                        sinceCheckpoint = 0;
+                    }
+                }
+
+                if (sinceCheckpoint > 0) {
+                    writeCheckpoint(checkpoint, lastAccount);
+                }
+            }
+        }
+    }
+
+    // Writes the statement from the ledger rows of this account; returns whether the cursor still has a row
+    private boolean writeStatement(Path statementFile, String accountId, String type, BigDecimal opening,
+                                   ResultSet ledger, boolean hasLedgerRow) throws SQLException, IOException {
+        Path temp = statementFile.resolveSibling(statementFile.getFileName() + ".tmp");
+        BigDecimal balance = opening;
+        BigDecimal credits = BigDecimal.ZERO;
+        BigDecimal debits = BigDecimal.ZERO;
+
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(String.format("Statement for account %s (%s)%n", accountId, type));
+            out.write(String.format("Period: %s to %s%n", month.atDay(1), month.atEndOfMonth()));
+            out.write(String.format("Opening balance: $%.2f%n", opening));
+            out.write(String.format("----------------------------------------------------------%n"));
+            out.write(String.format("%-26s %14s %14s%n", "Date", "Amount", "Balance"));
+
+            while (hasLedgerRow && ledger.getString("account_id").equals(accountId)) {
+                BigDecimal amount = ledger.getBigDecimal("amount");
+                balance = balance.add(amount);
+                if (amount.signum() >= 0) {
+                    credits = credits.add(amount);
+                } else {
+                    debits = debits.add(amount.negate());
+                }
+                out.write(String.format("%-26s %14.2f %14.2f%n", ledger.getTimestamp("date").toLocalDateTime(), amount, balance));
+                ledgerRows.incrementAndGet();
+                hasLedgerRow = ledger.next();
+            }
+
+            out.write(String.format("----------------------------------------------------------%n"));
+            out.write(String.format("Credits: $%.2f%nDebits: $%.2f%nClosing balance: $%.2f%n", credits, debits, balance));
+        }
+
+        Files.move(temp, statementFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return hasLedgerRow;
+    }
+
+    private static void writeCheckpoint(Path checkpoint, String accountId) throws IOException {
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.write(temp, accountId.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Lazy execution makes H2 stream rows instead of building the whole result first. It is a session
+    // setting, so these connections bypass the pool.
+    private static Connection openStreamingConnection(int shard) throws SQLException {
+        Connection conn = DatabaseConnection.getUnpooledShardConnection(shard);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        return conn;
+    }
+
+    /**
+     * Accounts of one shard with from &lt;= account_id &lt; to; a null bound is open.
+     */
+    private static class Partition {
+        private final int index;
+        private final int shard;
+        private final String from;
+        private final String to;
+
+        Partition(int index, int shard, String from, String to) {
+            this.index = index;
+            this.shard = shard;
+            this.from = from;
+            this.to = to;
+        }
+
+        String rangeCondition(String column, String resumeAfter) {
+            List<String> conditions = new ArrayList<>();
+            if (resumeAfter != null) {
+                conditions.add(column + " > ?");
+            } else if (from != null) {
+                conditions.add(column + " >= ?");
+            }
+            if (to != null) {
+                conditions.add(column + " < ?");
+            }
+            return conditions.isEmpty() ? "1 = 1" : String.join(" AND ", conditions);
+        }
+
+        // Binds the parameters of rangeCondition starting at the given index; returns the next free index
+        int bindRange(PreparedStatement stmt, int index, String resumeAfter) throws SQLException {
+            if (resumeAfter != null) {
+                stmt.setString(index++, resumeAfter);
+            } else if (from != null) {
+                stmt.setString(index++, from);
+            }
+            if (to != null) {
+                stmt.setString(index++, to);
+            }
+            return index;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        YearMonth month = options.containsKey("month") ? YearMonth.parse(options.get("month")) : YearMonth.now().minusMonths(1);
+        Path outputDir = Paths.get(options.getOrDefault("out", "statements"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int fetchSize = Integer.parseInt(options.getOrDefault("fetch-size", "1000"));
+
+        new StatementJob(month, outputDir, workers, fetchSize).run();
+    }
+}
@@ -1,18 +1,34 @@
 package com.banking.service;
 
 import com.banking.BankingSystem;
+import com.banking.admission.AdmissionController;
 import com.banking.db.DatabaseConnection;
+import com.banking.metrics.MetricsRegistry;
+import com.banking.metrics.ServiceOperation;
 import com.banking.model.Account;
 import com.banking.model.AccountFactory;
 import com.banking.model.AccountType;
 import com.banking.exception.*;
+import com.banking.hot.HotAccounts;
+import com.banking.util.BalanceCheckpoints;
+import com.banking.util.LedgerRollups;
+import com.banking.util.LedgerSummary;
+import com.banking.util.PointInTimeBalance;
 import com.banking.util.TransactionLogger;
+import com.banking.velocity.VelocityTracker;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * This class handles all banking operations like:
@@ -20,26 +36,214 @@ import java.util.List;
  * - Depositing money
  * - Withdrawing money
  * - Transferring between accounts
+ *
+ * Every public operation is timed and counted in the MetricsRegistry. The account operations also
+ * come in try* forms that return an OperationResult instead of throwing on expected failures; the
+ * throwing methods are thin adapters over them. Calls pass the AdmissionController first; one it
+ * sheds does nothing and ends as OVERLOADED (OverloadedException from the throwing methods).
+ * Credits to a hot account go to one of its sub-balance slots and debits consolidate it first
+ * (see HotAccounts).
  */
-public class AccountService {
+public class AccountService implements BankingOperations {
     // We need these to work with accounts and save transactions
     private final BankingSystem bankingSystem;
     private final TransactionLogger logger;
+    private final MetricsRegistry metrics;
+    private final VelocityTracker velocity;
+    private final AdmissionController admission;
+    private final HotAccounts hotAccounts;
 
     // When we create AccountService, we need a BankingSystem
     public AccountService() {
         this.bankingSystem = new BankingSystem();
         this.logger = new TransactionLogger();
+        this.metrics = MetricsRegistry.getDefault();
+        this.velocity = VelocityTracker.getDefault();
+        this.admission = AdmissionController.getDefault();
+        this.hotAccounts = HotAccounts.getDefault();
     }
 
     /**
      * Create a new bank account
      */
+    @Override
     public Account createAccount(AccountType type, String accountId, BigDecimal initialBalance)
             throws BankingException {
+        return tryCreateAccount(type, accountId, initialBalance).orThrow();
+    }
+
+    /**
+     * Open many accounts at once, e.g. a migrated cohort. Every request is validated first; the valid
+     * ones are written in batched transactions of accounts.bulkChunkSize accounts, with their opening
+     * ledger rows. An id that already exists (or repeats within the request) is reported as
+     * DUPLICATE_ACCOUNT for that item only. A database error aborts the call; chunks committed
+     * before it stay created.
+     */
+    public BulkCreateResult createAccounts(Collection<NewAccount> requests) {
+        return call(ServiceOperation.CREATE_ACCOUNTS, () -> createAccountsResult(requests));
+    }
+
+    private BulkCreateResult createAccountsResult(Collection<NewAccount> requests) {
+        List<OperationResult<Account>> results = new ArrayList<>(requests.size());
+        List<Account> accounts = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Set<String> requested = new HashSet<>();
+        for (NewAccount request : requests) {
+            OperationResult<Account> invalid = validate(request);
+            if (invalid != null) {
+                results.add(invalid);
+            } else if (!requested.add(request.getAccountId())) {
+                results.add(OperationResult.duplicateAccount(request.getAccountId()));
+            } else {
+                positions.add(results.size());
+                accounts.add(AccountFactory.createAccount(request.getType(), request.getAccountId(), request.getInitialBalance()));
+                results.add(null);
+            }
+        }
+
+        Set<String> existing = bankingSystem.addAccounts(accounts,
+                Integer.parseInt(DatabaseConnection.getProperty("accounts.bulkChunkSize", "1000")),
+                Integer.parseInt(DatabaseConnection.getProperty("accounts.bulkEventLimit", "10000")));
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            results.set(positions.get(i), existing.contains(account.getAccountNumber())
+                    ? OperationResult.duplicateAccount(account.getAccountNumber())
+                    : OperationResult.ok(account));
+        }
+
+        return new BulkCreateResult(results);
+    }
+
+    // Null if the request can be written; accounts.account_id is VARCHAR(20)
+    private static OperationResult<Account> validate(NewAccount request) {
+        if (request.getType() == null) {
+            return OperationResult.of(OperationResult.MISSING_TYPE);
+        }
+        if (request.getAccountId() == null || request.getAccountId().isEmpty()) {
+            return OperationResult.of(OperationResult.MISSING_ACCOUNT_ID);
+        }
+        if (request.getAccountId().length() > 20) {
+            return OperationResult.of(OperationResult.ACCOUNT_ID_TOO_LONG);
+        }
+        if (request.getInitialBalance() == null || request.getInitialBalance().compareTo(BigDecimal.ZERO) < 0) {
+            return OperationResult.of(OperationResult.NEGATIVE_INITIAL_BALANCE);
+        }
+        return null;
+    }
+
+    /**
+     * Deposit money into an account
+     */
+    @Override
+    public void deposit(String accountId, BigDecimal amount) throws BankingException {
+        tryDeposit(accountId, amount).orThrow();
+    }
+
+    /**
+     * Withdraw money from an account
+     */
+    @Override
+    public void withdraw(String accountId, BigDecimal amount) throws BankingException {
+        tryWithdraw(accountId, amount).orThrow();
+    }
+
+    /**
+     * Transfer money between accounts
+     */
+    @Override
+    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount)
+            throws BankingException, InsufficientFundsException, AccountNotFoundException {
+        tryTransfer(fromAccountId, toAccountId, amount).orThrow();
+    }
+
+    /**
+     * Helper method to find an account
+     */
+    @Override
+    public Account findAccount(String accountId) throws AccountNotFoundException {
+        return tryFindAccount(accountId).orThrow();
+    }
+
+    /*
+     * The try* operations report a missing account, insufficient funds or an invalid amount as an
+     * OperationResult instead of an exception. Only unexpected errors (database failures, a
+     * duplicate account id) end up as ERROR results carrying the exception.
+     */
+
+    public OperationResult<Account> tryCreateAccount(AccountType type, String accountId, BigDecimal initialBalance) {
+        return run(ServiceOperation.CREATE_ACCOUNT, () -> createAccountResult(type, accountId, initialBalance));
+    }
+
+    public OperationResult<Void> tryDeposit(String accountId, BigDecimal amount) {
+        return run(ServiceOperation.DEPOSIT, () -> depositResult(accountId, amount));
+    }
+
+    public OperationResult<Void> tryWithdraw(String accountId, BigDecimal amount) {
+        return run(ServiceOperation.WITHDRAW, () -> withdrawResult(accountId, amount));
+    }
+
+    public OperationResult<Void> tryTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return run(ServiceOperation.TRANSFER, () -> transferResult(fromAccountId, toAccountId, amount));
+    }
+
+    public OperationResult<Account> tryFindAccount(String accountId) {
+        return run(ServiceOperation.FIND_ACCOUNT, () -> {
+            Account account = lookupAccount(accountId);
+            return account == null ? notFound(accountId) : OperationResult.ok(account);
+        });
+    }
+
+    // Admits, runs and records one try* operation
+    private <T> OperationResult<T> run(ServiceOperation operation, Supplier<OperationResult<T>> body) {
+        long start = metrics.start();
+        OperationResult<T> result;
+        if (!admission.acquire(operation, start)) {
+            result = OperationResult.overloaded(operation.metricName());
+        } else {
+            long admitted = System.nanoTime();
+            try {
+                result = body.get();
+            } catch (RuntimeException e) {
+                result = OperationResult.error(e);
+            } finally {
+                admission.release(operation, admitted);
+            }
+        }
+        record(operation, start, result);
+        return result;
+    }
+
+    // Admits, runs and records one throwing operation; a shed call throws OverloadedException
+    private <T> T call(ServiceOperation operation, Supplier<T> body) {
+        long start = metrics.start();
+        if (!admission.acquire(operation, start)) {
+            metrics.recordOverloaded(operation, start);
+            return OperationResult.<T>overloaded(operation.metricName()).orThrow();
+        }
+        long admitted = System.nanoTime();
+        try {
+            T result = body.get();
+            metrics.recordSuccess(operation, start);
+            return result;
+        } catch (RuntimeException e) {
+            metrics.recordFailure(operation, start, e);
+            throw e;
+        } finally {
+            admission.release(operation, admitted);
+        }
+    }
+
+    private void call(ServiceOperation operation, Runnable body) {
+        call(operation, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    private OperationResult<Account> createAccountResult(AccountType type, String accountId, BigDecimal initialBalance) {
         // Check that initial balance is positive
         if (initialBalance.compareTo(BigDecimal.ZERO) < 0) {
-            throw new BankingException("Initial balance cannot be negative");
+            return OperationResult.of(OperationResult.NEGATIVE_INITIAL_BALANCE);
         }
 
         // Create the account
@@ -51,119 +255,231 @@ public class AccountService {
         // Log the initial deposit
         logger.addTransaction(accountId, initialBalance);
 
-        return account;
+        return OperationResult.ok(account);
     }
 
-    /**
-     * Deposit money into an account
-     */
-    public void deposit(String accountId, BigDecimal amount) throws BankingException {
+    private OperationResult<Void> depositResult(String accountId, BigDecimal amount) {
         // Check that deposit amount is positive
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Deposit amount must be positive");
+            return OperationResult.of(OperationResult.NON_POSITIVE_DEPOSIT);
         }
 
         // Find the account
-        Account account = findAccount(accountId);
-
-        // Add the money
-        account.deposit(amount);
+        Account account = lookupAccount(accountId);
+        if (account == null) {
+            return notFound(accountId);
+        }
 
-        // Update the new balance of the said account in database
-        bankingSystem.updateAccountAfterDeposit(account.getAccountNumber(), account.getBalance());
+        // Add the money and update the balance in database
+        credit(account, amount);
 
         // Save the transaction
         logger.addTransaction(accountId, amount);
+
+        return OperationResult.ok();
     }
 
-    /**
-     * Withdraw money from an account
-     */
-    public void withdraw(String accountId, BigDecimal amount) throws BankingException {
+    private OperationResult<Void> withdrawResult(String accountId, BigDecimal amount) {
         // Check that withdrawal amount is positive
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Withdrawal amount must be positive");
+            return OperationResult.of(OperationResult.NON_POSITIVE_WITHDRAWAL);
         }
 
         // Find the account
-        Account account = findAccount(accountId);
-
-        // Take out the money
-        account.withdraw(amount);
-
-        // Update the new balance of the said account in database
-        bankingSystem.updateAccountAfterWithdrawal(account.getAccountNumber(), account.getBalance());
+        Account account = lookupAccount(accountId);
+        if (account == null) {
+            return notFound(accountId);
+        }
 
-        // Save the transaction (negative amount for withdrawal)
-        logger.addTransaction(accountId, amount.negate());
+        // Count the withdrawal against the velocity limits; taken back below if it does not happen
+        long stamp = velocity.tryRecord(accountId, amount);
+        if (VelocityTracker.isRejected(stamp)) {
+            return OperationResult.velocityLimitExceeded(accountId, velocity.getRejectedWindow(stamp).getDescription());
+        }
+        boolean withdrawn = false;
+        try {
+            // Take out the money and update the balance in database
+            BigDecimal available = account.getBalance();
+            if (!debit(account, amount)) {
+                return OperationResult.insufficientFunds(accountId, amount, available);
+            }
+            withdrawn = true;
+
+            // Save the transaction (negative amount for withdrawal)
+            logger.addTransaction(accountId, amount.negate());
+
+            return OperationResult.ok();
+        } finally {
+            if (!withdrawn) {
+                velocity.release(accountId, amount, stamp);
+            }
+        }
     }
 
-    /**
-     * Transfer money between accounts
-     */
-    public void transfer(String fromAccountId, String toAccountId, BigDecimal amount)
-            throws BankingException, InsufficientFundsException, AccountNotFoundException {
+    private OperationResult<Void> transferResult(String fromAccountId, String toAccountId, BigDecimal amount) {
         // Check that transfer amount is positive
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new BankingException("Transfer amount must be positive");
+            return OperationResult.of(OperationResult.NON_POSITIVE_TRANSFER);
         }
 
         // Find both accounts
-        Account fromAccount = findAccount(fromAccountId);
-        Account toAccount = findAccount(toAccountId);
-
-        // Take money from first account
-        fromAccount.withdraw(amount);
+        Account fromAccount = lookupAccount(fromAccountId);
+        if (fromAccount == null) {
+            return notFound(fromAccountId);
+        }
+        Account toAccount = lookupAccount(toAccountId);
+        if (toAccount == null) {
+            return notFound(toAccountId);
+        }
 
-        // Add money to second account
-        toAccount.deposit(amount);
+        // The source account's velocity limits apply as for a withdrawal
+        long stamp = velocity.tryRecord(fromAccountId, amount);
+        if (VelocityTracker.isRejected(stamp)) {
+            return OperationResult.velocityLimitExceeded(fromAccountId, velocity.getRejectedWindow(stamp).getDescription());
+        }
+        boolean withdrawn = false;
+        try {
+            // Accounts on different shards are moved together with a two-phase commit
+            if (DatabaseConnection.shardOf(fromAccountId) != DatabaseConnection.shardOf(toAccountId)) {
+                if (!bankingSystem.transferAcrossShards(fromAccountId, toAccountId, amount)) {
+                    return OperationResult.insufficientFunds(fromAccountId, amount, fromAccount.getBalance());
+                }
+                withdrawn = true;
+                return OperationResult.ok();
+            }
+
+            // Take money from first account
+            BigDecimal available = fromAccount.getBalance();
+            if (!debit(fromAccount, amount)) {
+                return OperationResult.insufficientFunds(fromAccountId, amount, available);
+            }
+            withdrawn = true;
+
+            // Add money to second account
+            credit(toAccount, amount);
+
+            // Save both transactions
+            logger.addTransaction(fromAccountId, amount.negate());
+            logger.addTransaction(toAccountId, amount);
+
+            return OperationResult.ok();
+        } finally {
+            if (!withdrawn) {
+                velocity.release(fromAccountId, amount, stamp);
+            }
+        }
+    }
 
-        // Update the new balances of the accounts
-        bankingSystem.updateAccountAfterWithdrawal(fromAccount.getAccountNumber(), fromAccount.getBalance());
-        bankingSystem.updateAccountAfterDeposit(toAccount.getAccountNumber(), toAccount.getBalance());
+    // A hot account takes the amount in one of its slots; the others (or a slot gone since the cache was loaded) add it to the row
+    private void credit(Account account, BigDecimal amount) {
+        int slots = hotAccounts.slotCount(account.getAccountNumber());
+        if (slots > 0 && bankingSystem.creditHotAccount(account.getAccountNumber(), amount, slots)) {
+            return;
+        }
+        bankingSystem.updateAccountAfterDeposit(account.getAccountNumber(), amount);
+    }
 
-        // Save both transactions
-        logger.addTransaction(fromAccountId, amount.negate());
-        logger.addTransaction(toAccountId, amount);
+    // False if the account cannot cover the amount, checked on the locked row (slots folded in) so concurrent debits cannot both pass
+    private boolean debit(Account account, BigDecimal amount) {
+        return bankingSystem.withdrawConsolidated(account.getAccountNumber(), amount) != null;
     }
 
-    /**
-     * Helper method to find an account
-     */
-    public Account findAccount(String accountId) throws AccountNotFoundException {
+    // Used by the other operations so their lookups are not counted as findAccount calls; null if not found
+    private Account lookupAccount(String accountId) {
         // Make sure account ID is valid
         if (accountId == null || accountId.isEmpty()) {
-            throw new AccountNotFoundException("Account number cannot be empty");
+            return null;
         }
 
         // Try to find the account
-        return bankingSystem.findAccount(accountId);
+        return bankingSystem.tryFindAccount(accountId);
+    }
+
+    private static <T> OperationResult<T> notFound(String accountId) {
+        if (accountId == null || accountId.isEmpty()) {
+            return OperationResult.of(OperationResult.EMPTY_ACCOUNT_ID);
+        }
+        return OperationResult.accountNotFound(accountId);
+    }
+
+    private void record(ServiceOperation operation, long start, OperationResult<?> result) {
+        switch (result.getOutcome()) {
+            case OK:
+                metrics.recordSuccess(operation, start);
+                break;
+            case ACCOUNT_NOT_FOUND:
+                metrics.recordAccountNotFound(operation, start);
+                break;
+            case INSUFFICIENT_FUNDS:
+                metrics.recordInsufficientFunds(operation, start);
+                break;
+            case OVERLOADED:
+                metrics.recordOverloaded(operation, start);
+                break;
+            case ERROR:
+                metrics.recordFailure(operation, start, result.getError());
+                break;
+            default:
+                metrics.recordOtherFailure(operation, start);
+        }
+    }
+
+    /**
+     * Get all transactions of an account, newest first
+     */
+    @Override
+    public List<TransactionLogger.TransactionRecord> getTransactionHistory(String accountId) {
+        return call(ServiceOperation.GET_TRANSACTION_HISTORY, () -> logger.getTransactionHistory(accountId));
+    }
+
+    /**
+     * One page of an account's transactions, newest first: up to limit rows after skipping the newest
+     * offset. An unknown account is ACCOUNT_NOT_FOUND rather than an empty page.
+     */
+    public OperationResult<List<TransactionLogger.TransactionRecord>> tryGetTransactionHistory(String accountId, int offset, int limit) {
+        return run(ServiceOperation.GET_TRANSACTION_HISTORY, () -> {
+            if (lookupAccount(accountId) == null) {
+                return notFound(accountId);
+            }
+            return OperationResult.ok(logger.getTransactions(accountId, offset, limit));
+        });
+    }
+
+    /**
+     * Get opening/closing balance and totals of an account for one month, from the daily rollups
+     */
+    public LedgerSummary getMonthlySummary(String accountId, YearMonth month) {
+        return call(ServiceOperation.GET_MONTHLY_SUMMARY, () -> LedgerRollups.getMonthlySummary(accountId, month));
+    }
+
+    /**
+     * Get the ledger balance of an account at a point in time, from the nearest balance checkpoint
+     */
+    public PointInTimeBalance getBalanceAt(String accountId, LocalDateTime at) {
+        return call(ServiceOperation.GET_BALANCE_AT, () -> BalanceCheckpoints.balanceAt(accountId, at));
     }
 
     public void fetchAccount() {
-        bankingSystem.fetchAccount();
+        call(ServiceOperation.FETCH_ACCOUNTS, BankingSystem::fetchAccount);
     }
 
     public void getAccountsSortedByBalance(){
-        bankingSystem.getAccountsSortedByBalance();
+        call(ServiceOperation.GET_ACCOUNTS_SORTED_BY_BALANCE, BankingSystem::getAccountsSortedByBalance);
     }
 
     public void applyMonthlyFeesAndInterest() {
-        bankingSystem.applyMonthlyFeesAndInterest();
+        call(ServiceOperation.APPLY_MONTHLY_FEES_AND_INTEREST, BankingSystem::applyMonthlyFeesAndInterest);
     }
 
     public BigDecimal getTotalBalance(){
-        return bankingSystem.getTotalBalance();
+        return call(ServiceOperation.GET_TOTAL_BALANCE, BankingSystem::getTotalBalance);
     }
 
     public void getAccountWithMinBalance(){
-        bankingSystem.getAccountWithMinBalance();
+        call(ServiceOperation.GET_ACCOUNT_WITH_MIN_BALANCE, BankingSystem::getAccountWithMinBalance);
     }
 
     public int getNumberOfAccounts(){
-        return bankingSystem.getNumberOfAccounts();
+        return call(ServiceOperation.GET_NUMBER_OF_ACCOUNTS, BankingSystem::getNumberOfAccounts);
     }
 }
-
-
-
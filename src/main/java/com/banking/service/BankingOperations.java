@@ -0,0 +1,26 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import com.banking.util.TransactionLogger;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The account operations clients use, whether in-process (AccountService) or over the
+ * network (com.banking.net.BankClient).
+ */
+public interface BankingOperations {
+    Account createAccount(AccountType type, String accountId, BigDecimal initialBalance);
+
+    void deposit(String accountId, BigDecimal amount);
+
+    void withdraw(String accountId, BigDecimal amount);
+
+    void transfer(String fromAccountId, String toAccountId, BigDecimal amount);
+
+    Account findAccount(String accountId);
+
+    List<TransactionLogger.TransactionRecord> getTransactionHistory(String accountId);
+}
@@ -0,0 +1,53 @@
+package com.banking.service;
+
+import com.banking.model.Account;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What AccountService.createAccounts did with each requested account, in request order.
+ */
+public class BulkCreateResult {
+    private final List<OperationResult<Account>> results;
+    private final int created;
+    private final int duplicates;
+
+    BulkCreateResult(List<OperationResult<Account>> results) {
+        this.results = Collections.unmodifiableList(results);
+        int ok = 0;
+        int duplicate = 0;
+        for (OperationResult<Account> result : results) {
+            if (result.isOk()) {
+                ok++;
+            } else if (result.getOutcome() == Outcome.DUPLICATE_ACCOUNT) {
+                duplicate++;
+            }
+        }
+        this.created = ok;
+        this.duplicates = duplicate;
+    }
+
+    public List<OperationResult<Account>> getResults() {
+        return results;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    // Ids that already existed, or appeared earlier in the same request
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    // Requests that failed validation
+    public int getRejected() {
+        return results.size() - created - duplicates;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d created, %d duplicates, %d rejected", created, duplicates, getRejected());
+    }
+}
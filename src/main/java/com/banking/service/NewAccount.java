@@ -0,0 +1,37 @@
+package com.banking.service;
+
+import com.banking.model.AccountType;
+
+import java.math.BigDecimal;
+
+/**
+ * One account to open through AccountService.createAccounts.
+ */
+public final class NewAccount {
+    private final AccountType type;
+    private final String accountId;
+    private final BigDecimal initialBalance;
+
+    public NewAccount(AccountType type, String accountId, BigDecimal initialBalance) {
+        this.type = type;
+        this.accountId = accountId;
+        this.initialBalance = initialBalance;
+    }
+
+    public AccountType getType() {
+        return type;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getInitialBalance() {
+        return initialBalance;
+    }
+
+    @Override
+    public String toString() {
+        return "NewAccount[" + type + ", " + accountId + ", " + initialBalance + "]";
+    }
+}
@@ -0,0 +1,189 @@
+package com.banking.service;
+
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.exception.InsufficientFundsException;
+import com.banking.exception.OverloadedException;
+import com.banking.exception.VelocityLimitExceededException;
+
+import java.math.BigDecimal;
+
+/**
+ * The result of a try* operation of AccountService: an Outcome, the value on success and the
+ * details of a failure. Results that carry no data are shared constants, and the message is only
+ * formatted when getMessage is called, so a rejected operation costs about as much as a
+ * successful one. orThrow turns a failure into the exception the throwing API has always used.
+ */
+public final class OperationResult<T> {
+    private static final OperationResult<Object> OK = new OperationResult<>(Outcome.OK, null, null, null, null, null, null);
+
+    static final OperationResult<Object> EMPTY_ACCOUNT_ID = accountNotFound("Account number cannot be empty");
+    static final OperationResult<Object> NEGATIVE_INITIAL_BALANCE = invalidAmount("Initial balance cannot be negative");
+    static final OperationResult<Object> NON_POSITIVE_DEPOSIT = invalidAmount("Deposit amount must be positive");
+    static final OperationResult<Object> NON_POSITIVE_WITHDRAWAL = invalidAmount("Withdrawal amount must be positive");
+    static final OperationResult<Object> NON_POSITIVE_TRANSFER = invalidAmount("Transfer amount must be positive");
+    static final OperationResult<Object> MISSING_TYPE = invalidAccount("Account type is required");
+    static final OperationResult<Object> MISSING_ACCOUNT_ID = invalidAccount("Account number cannot be empty");
+    static final OperationResult<Object> ACCOUNT_ID_TOO_LONG = invalidAccount("Account number cannot be longer than 20 characters");
+
+    private final Outcome outcome;
+    private final T value;
+    private final String accountId;
+    private final BigDecimal requestedAmount;
+    private final BigDecimal availableBalance;
+    private final String reason;
+    private final RuntimeException error;
+    private String message;
+
+    private OperationResult(Outcome outcome, T value, String accountId, BigDecimal requestedAmount,
+                            BigDecimal availableBalance, String reason, RuntimeException error) {
+        this.outcome = outcome;
+        this.value = value;
+        this.accountId = accountId;
+        this.requestedAmount = requestedAmount;
+        this.availableBalance = availableBalance;
+        this.reason = reason;
+        this.error = error;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> OperationResult<T> ok() {
+        return (OperationResult<T>) OK;
+    }
+
+    public static <T> OperationResult<T> ok(T value) {
+        return new OperationResult<>(Outcome.OK, value, null, null, null, null, null);
+    }
+
+    public static <T> OperationResult<T> accountNotFound(String accountId) {
+        return new OperationResult<>(Outcome.ACCOUNT_NOT_FOUND, null, accountId, null, null, null, null);
+    }
+
+    public static <T> OperationResult<T> insufficientFunds(String accountId, BigDecimal requestedAmount, BigDecimal availableBalance) {
+        return new OperationResult<>(Outcome.INSUFFICIENT_FUNDS, null, accountId, requestedAmount, availableBalance, null, null);
+    }
+
+    // reason should be a constant; it is the whole message
+    public static <T> OperationResult<T> invalidAmount(String reason) {
+        return new OperationResult<>(Outcome.INVALID_AMOUNT, null, null, null, null, reason, null);
+    }
+
+    // reason should be a constant; it is the whole message
+    public static <T> OperationResult<T> invalidAccount(String reason) {
+        return new OperationResult<>(Outcome.INVALID_ACCOUNT, null, null, null, null, reason, null);
+    }
+
+    public static <T> OperationResult<T> duplicateAccount(String accountId) {
+        return new OperationResult<>(Outcome.DUPLICATE_ACCOUNT, null, accountId, null, null, null, null);
+    }
+
+    // limit describes the limit reached, e.g. "at most 5 withdrawals per minute"
+    public static <T> OperationResult<T> velocityLimitExceeded(String accountId, String limit) {
+        return new OperationResult<>(Outcome.VELOCITY_LIMIT_EXCEEDED, null, accountId, null, null, limit, null);
+    }
+
+    // Shed by the admission controller before anything was done; operation is its metric name
+    public static <T> OperationResult<T> overloaded(String operation) {
+        return new OperationResult<>(Outcome.OVERLOADED, null, null, null, null, operation, null);
+    }
+
+    public static <T> OperationResult<T> error(RuntimeException error) {
+        return new OperationResult<>(Outcome.ERROR, null, null, null, null, null, error);
+    }
+
+    // Reuses a shared failure result for any value type; failures never carry a value
+    @SuppressWarnings("unchecked")
+    static <T> OperationResult<T> of(OperationResult<Object> failure) {
+        return (OperationResult<T>) failure;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isOk() {
+        return outcome == Outcome.OK;
+    }
+
+    // Null unless the operation succeeded and returns something
+    public T getValue() {
+        return value;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getRequestedAmount() {
+        return requestedAmount;
+    }
+
+    public BigDecimal getAvailableBalance() {
+        return availableBalance;
+    }
+
+    // The unexpected exception behind an ERROR result
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        if (message == null) {
+            message = buildMessage();
+        }
+        return message;
+    }
+
+    private String buildMessage() {
+        switch (outcome) {
+            case OK:
+                return "OK";
+            case ACCOUNT_NOT_FOUND:
+                return "Account not found: " + accountId;
+            case INSUFFICIENT_FUNDS:
+                return String.format("Insufficient funds in account %s: requested %.2f, available %.2f",
+                        accountId, requestedAmount, availableBalance);
+            case INVALID_AMOUNT:
+            case INVALID_ACCOUNT:
+                return reason;
+            case DUPLICATE_ACCOUNT:
+                return "Account already exists: " + accountId;
+            case VELOCITY_LIMIT_EXCEEDED:
+                return "Withdrawal velocity limit reached for account " + accountId + ": " + reason;
+            case OVERLOADED:
+                return "Too busy to accept " + reason + " now, try again later";
+            default:
+                return error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+        }
+    }
+
+    /**
+     * The value on success; otherwise the exception the throwing AccountService API reports for the
+     * outcome. An ERROR result rethrows the original exception.
+     */
+    public T orThrow() {
+        switch (outcome) {
+            case OK:
+                return value;
+            case ACCOUNT_NOT_FOUND:
+                throw new AccountNotFoundException(accountId);
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException(accountId, requestedAmount, availableBalance);
+            case INVALID_AMOUNT:
+            case INVALID_ACCOUNT:
+            case DUPLICATE_ACCOUNT:
+                throw new BankingException(getMessage());
+            case VELOCITY_LIMIT_EXCEEDED:
+                throw new VelocityLimitExceededException(accountId, reason);
+            case OVERLOADED:
+                throw new OverloadedException(getMessage());
+            default:
+                throw error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return outcome == Outcome.OK ? "OK" : outcome + ": " + getMessage();
+    }
+}
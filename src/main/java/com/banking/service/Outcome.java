@@ -0,0 +1,17 @@
+package com.banking.service;
+
+/**
+ * How an AccountService operation ended. Everything but ERROR is an expected business outcome
+ * and is reported without an exception by the try* operations.
+ */
+public enum Outcome {
+    OK,
+    ACCOUNT_NOT_FOUND,
+    INSUFFICIENT_FUNDS,
+    INVALID_AMOUNT,
+    INVALID_ACCOUNT,
+    DUPLICATE_ACCOUNT,
+    VELOCITY_LIMIT_EXCEEDED,
+    OVERLOADED,
+    ERROR
+}
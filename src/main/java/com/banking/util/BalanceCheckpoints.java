@@ -0,0 +1,264 @@
+package com.banking.util;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.exception.BankingException;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-account balance checkpoints (table balance_checkpoints) for "what was the balance at time T".
+ *
+ * A checkpoint is the sum of the account's ledger rows dated at or before its as_of time. balanceAt
+ * reads the newest checkpoint at or before T and adds only the ledger rows between the two, found
+ * through the (account_id, date) index, so its cost is bounded by the activity of one checkpoint
+ * interval rather than by the length of the history. Times before an account's first checkpoint
+ * replay from the start of its ledger.
+ *
+ * checkpoint() is the periodic job: every account with at least checkpoints.minRows ledger rows
+ * since its last checkpoint gets a new one as of checkpoints.lagSeconds ago (the lag leaves room for
+ * transactions still in flight). Ledger rows written later with an earlier date are added to the
+ * checkpoints after them by LedgerRollups, so checkpoints stay exact.
+ *
+ * Usage: java com.banking.util.BalanceCheckpoints [--account=ID --at=2026-10-01T12:00] [--init-schema]
+ */
+public class BalanceCheckpoints {
+    private static final String LATEST_SQL = "SELECT as_of, balance FROM balance_checkpoints WHERE account_id = ? AND as_of <= ? "
+            + "ORDER BY as_of DESC LIMIT 1";
+    private static final String TAIL_SQL = "SELECT COALESCE(SUM(amount), 0), COUNT(*) FROM transactions "
+            + "WHERE account_id = ? AND date > ? AND date <= ?";
+    private static final String INSERT_SQL = "INSERT INTO balance_checkpoints (account_id, as_of, balance) VALUES (?, ?, ?)";
+    private static final String MERGE_SQL = "MERGE INTO balance_checkpoints (account_id, as_of, balance) KEY (account_id, as_of) VALUES (?, ?, ?)";
+    private static final String SHIFT_LATER_SQL = "UPDATE balance_checkpoints SET balance = balance + ? WHERE account_id = ? AND as_of >= ?";
+    // Before any ledger row, for accounts without a checkpoint
+    private static final Timestamp BEGINNING = Timestamp.valueOf("1900-01-01 00:00:00");
+
+    public static PointInTimeBalance balanceAt(String accountId, LocalDateTime at) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            try (PreparedStatement latest = conn.prepareStatement(LATEST_SQL);
+                 PreparedStatement tail = conn.prepareStatement(TAIL_SQL)) {
+                Timestamp time = Timestamp.valueOf(at);
+                Timestamp checkpoint = null;
+                BigDecimal balance = BigDecimal.ZERO;
+                latest.setString(1, accountId);
+                latest.setTimestamp(2, time);
+                try (ResultSet rs = latest.executeQuery()) {
+                    if (rs.next()) {
+                        checkpoint = rs.getTimestamp("as_of");
+                        balance = rs.getBigDecimal("balance");
+                    }
+                }
+
+                Timestamp since = checkpoint == null ? BEGINNING : checkpoint;
+                long rows;
+                tail.setString(1, accountId);
+                tail.setTimestamp(2, since);
+                tail.setTimestamp(3, time);
+                try (ResultSet rs = tail.executeQuery()) {
+                    rs.next();
+                    balance = balance.add(rs.getBigDecimal(1));
+                    rows = rs.getLong(2);
+                }
+
+                // Rows between the checkpoint and the time that were archived
+                LocalDateTime boundary = LedgerArchive.boundary(conn);
+                if (boundary != null && since.toLocalDateTime().isBefore(boundary)) {
+                    LedgerArchive.Tail archived = LedgerArchive.tail(conn, accountId, since.toLocalDateTime(), at);
+                    balance = balance.add(archived.total);
+                    rows += archived.rows;
+                }
+                return new PointInTimeBalance(accountId, at, balance, checkpoint == null ? null : checkpoint.toLocalDateTime(), rows);
+            }
+        } catch (SQLException e) {
+            throw new BankingException("Failed to compute balance of account " + accountId + " at " + at, e);
+        }
+    }
+
+    // Checkpoints as of checkpoints.lagSeconds ago; returns the number written
+    public static long checkpoint() {
+        long lagSeconds = Long.parseLong(DatabaseConnection.getProperty("checkpoints.lagSeconds", "60"));
+        return checkpoint(LocalDateTime.now().minusSeconds(lagSeconds));
+    }
+
+    public static long checkpoint(LocalDateTime asOf) {
+        // Whole seconds, so the stored as_of is exactly the time the rows were summed up to
+        Timestamp time = Timestamp.valueOf(asOf.truncatedTo(ChronoUnit.SECONDS));
+        int chunkSize = Integer.parseInt(DatabaseConnection.getProperty("checkpoints.chunkSize", "1000"));
+        long minRows = Long.parseLong(DatabaseConnection.getProperty("checkpoints.minRows", "1"));
+        try {
+            long written = 0;
+            for (long shard : Shards.scatter(conn -> checkpointShard(conn, time, chunkSize, minRows))) {
+                written += shard;
+            }
+            return written;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to write balance checkpoints", e);
+        }
+    }
+
+    // Walks the shard's accounts in id order, one transaction of batched inserts per chunk
+    private static long checkpointShard(Connection conn, Timestamp asOf, int chunkSize, long minRows) throws SQLException {
+        long written = 0;
+        // Archived months already end with a checkpoint of every account active in them
+        LocalDateTime boundary = LedgerArchive.boundary(conn);
+        if (boundary != null && asOf.toLocalDateTime().isBefore(boundary)) {
+            return 0;
+        }
+        conn.setAutoCommit(false);
+        try (PreparedStatement accounts = conn.prepareStatement("SELECT account_id FROM accounts WHERE account_id > ? ORDER BY account_id LIMIT ?");
+             PreparedStatement latest = conn.prepareStatement(LATEST_SQL);
+             PreparedStatement tail = conn.prepareStatement(TAIL_SQL);
+             PreparedStatement insert = conn.prepareStatement(INSERT_SQL)) {
+            String after = "";
+            List<String> chunk = new ArrayList<>(chunkSize);
+            do {
+                chunk.clear();
+                accounts.setString(1, after);
+                accounts.setInt(2, chunkSize);
+                try (ResultSet rs = accounts.executeQuery()) {
+                    while (rs.next()) {
+                        chunk.add(rs.getString(1));
+                    }
+                }
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                after = chunk.get(chunk.size() - 1);
+
+                int batched = 0;
+                for (String accountId : chunk) {
+                    Timestamp since = BEGINNING;
+                    BigDecimal balance = BigDecimal.ZERO;
+                    latest.setString(1, accountId);
+                    latest.setTimestamp(2, asOf);
+                    try (ResultSet rs = latest.executeQuery()) {
+                        if (rs.next()) {
+                            since = rs.getTimestamp("as_of");
+                            balance = rs.getBigDecimal("balance");
+                        }
+                    }
+                    if (!since.before(asOf)) {
+                        continue;
+                    }
+                    tail.setString(1, accountId);
+                    tail.setTimestamp(2, since);
+                    tail.setTimestamp(3, asOf);
+                    try (ResultSet rs = tail.executeQuery()) {
+                        rs.next();
+                        if (rs.getLong(2) < minRows) {
+                            continue;
+                        }
+                        insert.setString(1, accountId);
+                        insert.setTimestamp(2, asOf);
+                        insert.setBigDecimal(3, balance.add(rs.getBigDecimal(1)));
+                        insert.addBatch();
+                        batched++;
+                    }
+                }
+                if (batched > 0) {
+                    insert.executeBatch();
+                    written += batched;
+                }
+                DatabaseConnection.commit(conn);
+            } while (chunk.size() == chunkSize);
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Checkpoints the given accounts as of asOf, replacing any there already, in the caller's
+     * transaction. Used by LedgerArchive before it removes the rows up to asOf from the table.
+     */
+    static void writeAt(Connection conn, List<String> accountIds, LocalDateTime asOf) throws SQLException {
+        Timestamp time = Timestamp.valueOf(asOf);
+        try (PreparedStatement latest = conn.prepareStatement(LATEST_SQL);
+             PreparedStatement tail = conn.prepareStatement(TAIL_SQL);
+             PreparedStatement merge = conn.prepareStatement(MERGE_SQL)) {
+            for (String accountId : accountIds) {
+                Timestamp since = BEGINNING;
+                BigDecimal balance = BigDecimal.ZERO;
+                latest.setString(1, accountId);
+                latest.setTimestamp(2, time);
+                try (ResultSet rs = latest.executeQuery()) {
+                    if (rs.next()) {
+                        since = rs.getTimestamp("as_of");
+                        balance = rs.getBigDecimal("balance");
+                    }
+                }
+                tail.setString(1, accountId);
+                tail.setTimestamp(2, since);
+                tail.setTimestamp(3, time);
+                try (ResultSet rs = tail.executeQuery()) {
+                    rs.next();
+                    balance = balance.add(rs.getBigDecimal(1));
+                }
+                merge.setString(1, accountId);
+                merge.setTimestamp(2, time);
+                merge.setBigDecimal(3, balance);
+                merge.addBatch();
+            }
+            if (!accountIds.isEmpty()) {
+                merge.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Adds a ledger row dated before existing checkpoints of its account to them. Runs on the
+     * caller's connection, in the transaction that writes the row.
+     */
+    static void shiftLater(Connection conn, String accountId, BigDecimal amount, LocalDateTime date) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SHIFT_LATER_SQL)) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setTimestamp(3, Timestamp.valueOf(date));
+            stmt.executeUpdate();
+        }
+    }
+
+    static void shiftLaterAll(Connection conn, List<String> accountIds, List<BigDecimal> amounts, LocalDateTime date) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SHIFT_LATER_SQL)) {
+            Timestamp timestamp = Timestamp.valueOf(date);
+            for (int i = 0; i < accountIds.size(); i++) {
+                stmt.setBigDecimal(1, amounts.get(i));
+                stmt.setString(2, accountIds.get(i));
+                stmt.setTimestamp(3, timestamp);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            try {
+                DatabaseConnection.initializeSchema();
+            } catch (SQLException e) {
+                throw new BankingException("Failed to initialize schema", e);
+            }
+        }
+
+        long start = System.nanoTime();
+        if (options.containsKey("account")) {
+            String at = options.get("at");
+            System.out.print(balanceAt(options.get("account"), at == null ? LocalDateTime.now() : LocalDateTime.parse(at)));
+        } else {
+            System.out.printf("Wrote %d checkpoints", checkpoint());
+        }
+        System.out.printf(" in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+    }
+}
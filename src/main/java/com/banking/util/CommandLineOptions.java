@@ -0,0 +1,31 @@
+package com.banking.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses "--name=value", "--name value" and bare "--flag" arguments of the command line tools.
+ */
+public class CommandLineOptions {
+    public static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                options.put(arg.substring(2), "true");
+            }
+        }
+        return options;
+    }
+
+    private CommandLineOptions() {
+    }
+}
@@ -0,0 +1,403 @@
+package com.banking.util;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.exception.BankingException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Monthly partitions of the transactions ledger, with the closed months moved out to archive files.
+ *
+ * The current month and the archive.hotMonths before it stay in the transactions table. Older months
+ * are archived oldest first, one month at a time per shard: the month's rows are written to a
+ * LedgerArchiveFile under archive.dir (compressed blocks with a per-account index), and then, in one
+ * database transaction, every account with rows in the month gets a balance checkpoint at the month's
+ * end, the month is recorded in ledger_archives and its rows are deleted. The archived months always
+ * form an unbroken run, so everything before the boundary (the start of the first month not archived)
+ * is in the files, apart from rows written later with an earlier date, which stay in the table.
+ *
+ * Reads span both: getTransactionHistory and getRecentTransactions add the archived rows, and a
+ * point-in-time balance before the boundary adds the archived rows after its checkpoint. Later
+ * balances start from the boundary checkpoints and need nothing from the files. The daily rollups are
+ * kept, so monthly summaries of archived months still work; ledger rows written without rollups must
+ * be rolled up (LedgerRollups.rebuild) before their month is archived.
+ *
+ * Usage: java com.banking.util.LedgerArchive [--through=2026-06] [--init-schema]
+ */
+public class LedgerArchive {
+    private static final String MONTH_SQL = "SELECT id, account_id, amount, date FROM transactions "
+            + "WHERE date >= ? AND date < ? ORDER BY account_id, date, id";
+    private static final String DELETE_SQL = "DELETE FROM transactions WHERE id = ANY(?)";
+    private static final String CATALOG_SQL = "SELECT period, file_name FROM ledger_archives ORDER BY period DESC";
+    private static final String INSERT_CATALOG_SQL = "INSERT INTO ledger_archives (period, file_name, row_count, account_count, archived) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final int DELETE_CHUNK = 1000;
+
+    // Archive files are immutable once in the catalog, so their indexes are kept once read
+    private static final Map<Path, LedgerArchiveFile> FILES = new ConcurrentHashMap<>();
+
+    /**
+     * The sum and count of an account's archived rows within a time range.
+     */
+    static final class Tail {
+        BigDecimal total = BigDecimal.ZERO;
+        long rows;
+    }
+
+    // Archives the months before the current one and its archive.hotMonths predecessors; returns the rows moved
+    public static long archive() {
+        int hotMonths = Integer.parseInt(DatabaseConnection.getProperty("archive.hotMonths", "2"));
+        return archive(YearMonth.now().minusMonths(hotMonths + 1L));
+    }
+
+    // Archives every month up to and including through that is not archived yet
+    public static long archive(YearMonth through) {
+        if (!through.isBefore(YearMonth.now())) {
+            throw new BankingException("Cannot archive " + through + ": only closed months can be archived");
+        }
+        try {
+            long rows = 0;
+            for (long shard : Shards.scatterByShard((shard, conn) -> archiveShard(shard, conn, through))) {
+                rows += shard;
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to archive the ledger through " + through, e);
+        }
+    }
+
+    private static long archiveShard(int shard, Connection conn, YearMonth through) throws SQLException {
+        conn.setAutoCommit(false);
+        YearMonth next = null;
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT MAX(period) FROM ledger_archives")) {
+                if (rs.next() && rs.getDate(1) != null) {
+                    next = YearMonth.from(rs.getDate(1).toLocalDate()).plusMonths(1);
+                }
+            }
+            if (next == null) {
+                try (ResultSet rs = stmt.executeQuery("SELECT MIN(date) FROM transactions")) {
+                    if (rs.next() && rs.getTimestamp(1) != null) {
+                        next = YearMonth.from(rs.getTimestamp(1).toLocalDateTime());
+                    }
+                }
+            }
+        }
+        DatabaseConnection.commit(conn);
+
+        long rows = 0;
+        for (; next != null && !next.isAfter(through); next = next.plusMonths(1)) {
+            rows += archiveMonth(shard, conn, next);
+        }
+        return rows;
+    }
+
+    private static long archiveMonth(int shard, Connection conn, YearMonth month) throws SQLException {
+        String fileName = "shard-" + shard + "/ledger-" + month + ".dat";
+        Path path = directory().resolve(fileName);
+        LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+        List<String> accountIds = new ArrayList<>();
+        long[] ids = new long[1024];
+        long rows;
+
+        try (LedgerArchiveFile.Writer writer = new LedgerArchiveFile.Writer(path);
+             PreparedStatement select = conn.prepareStatement(MONTH_SQL)) {
+            select.setTimestamp(1, Timestamp.valueOf(month.atDay(1).atStartOfDay()));
+            select.setTimestamp(2, Timestamp.valueOf(end));
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    String accountId = rs.getString("account_id");
+                    if (accountIds.isEmpty() || !accountIds.get(accountIds.size() - 1).equals(accountId)) {
+                        accountIds.add(accountId);
+                    }
+                    long id = rs.getLong("id");
+                    writer.add(id, accountId, rs.getBigDecimal("amount"), rs.getTimestamp("date").toLocalDateTime());
+                    int row = (int) writer.getRowCount() - 1;
+                    if (row == ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[row] = id;
+                }
+            }
+            rows = writer.getRowCount();
+            writer.commit();
+        } catch (IOException e) {
+            throw new BankingException("Failed to write ledger archive " + path, e);
+        }
+
+        try {
+            // The rows are still in the table, so the checkpoints are computed as usual; later ones need no archive
+            BalanceCheckpoints.writeAt(conn, accountIds, end.minusNanos(1000));
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_CATALOG_SQL)) {
+                insert.setDate(1, Date.valueOf(month.atDay(1)));
+                insert.setString(2, fileName);
+                insert.setLong(3, rows);
+                insert.setInt(4, accountIds.size());
+                insert.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                insert.executeUpdate();
+            }
+            // By id rather than by date, so a row written into the month meanwhile is not lost
+            try (PreparedStatement delete = conn.prepareStatement(DELETE_SQL)) {
+                for (int from = 0; from < rows; from += DELETE_CHUNK) {
+                    int to = (int) Math.min(rows, from + DELETE_CHUNK);
+                    Long[] chunk = new Long[to - from];
+                    for (int i = from; i < to; i++) {
+                        chunk[i - from] = ids[i];
+                    }
+                    delete.setObject(1, chunk);
+                    delete.executeUpdate();
+                }
+            }
+            DatabaseConnection.commit(conn);
+        } catch (SQLException e) {
+            conn.rollback();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // Not in the catalog, so never read; the next run overwrites it
+            }
+            throw e;
+        }
+        FILES.remove(path);
+        return rows;
+    }
+
+    // True if the month has been moved out of the transactions table on any shard
+    public static boolean isArchived(YearMonth month) {
+        try {
+            for (LocalDateTime boundary : Shards.scatter(LedgerArchive::boundary)) {
+                if (boundary != null && month.isBefore(YearMonth.from(boundary))) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (SQLException e) {
+            throw new BankingException("Failed to read the ledger archive catalog", e);
+        }
+    }
+
+    /**
+     * The first instant that is not archived on this connection's shard, or null if nothing is.
+     * Ledger rows dated before it are in the archive files (or are late rows still in the table).
+     */
+    static LocalDateTime boundary(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT MAX(period) FROM ledger_archives")) {
+            if (rs.next() && rs.getDate(1) != null) {
+                return rs.getDate(1).toLocalDate().plusMonths(1).atStartOfDay();
+            }
+            return null;
+        }
+    }
+
+    // The account's archived rows, newest first; at most limit of them unless limit is 0
+    static List<TransactionLogger.TransactionRecord> history(Connection conn, String accountId, int limit) throws SQLException {
+        List<TransactionLogger.TransactionRecord> history = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(CATALOG_SQL)) {
+            while (rs.next() && (limit == 0 || history.size() < limit)) {
+                List<TransactionLogger.TransactionRecord> month = read(rs.getString("file_name"), accountId);
+                for (int i = month.size() - 1; i >= 0 && (limit == 0 || history.size() < limit); i--) {
+                    history.add(month.get(i));
+                }
+            }
+        }
+        return history;
+    }
+
+    // The account's archived rows dated after after and at or before through
+    static Tail tail(Connection conn, String accountId, LocalDateTime after, LocalDateTime through) throws SQLException {
+        Tail tail = new Tail();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(CATALOG_SQL)) {
+            while (rs.next()) {
+                LocalDateTime start = rs.getDate("period").toLocalDate().atStartOfDay();
+                LocalDateTime end = start.plusMonths(1);
+                if (!end.isAfter(after) || start.isAfter(through)) {
+                    continue;
+                }
+                String fileName = rs.getString("file_name");
+                if (start.isAfter(after) && end.isBefore(through)) {
+                    // The whole month is in range: the index has the total
+                    LedgerArchiveFile.Entry entry = file(fileName).find(accountId);
+                    if (entry != null) {
+                        tail.total = tail.total.add(BigDecimal.valueOf(entry.totalCents, 2));
+                        tail.rows += entry.rows;
+                    }
+                    continue;
+                }
+                for (TransactionLogger.TransactionRecord record : read(fileName, accountId)) {
+                    if (record.getDate().isAfter(after) && !record.getDate().isAfter(through)) {
+                        tail.total = tail.total.add(record.getAmount());
+                        tail.rows++;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    // The sum of the account's archived rows on this connection's shard, from the file indexes
+    public static BigDecimal archivedTotal(Connection conn, String accountId) throws SQLException {
+        long cents = 0;
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(CATALOG_SQL)) {
+            while (rs.next()) {
+                LedgerArchiveFile.Entry entry = file(rs.getString("file_name")).find(accountId);
+                if (entry != null) {
+                    cents += entry.totalCents;
+                }
+            }
+        }
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /**
+     * archivedTotal of every account with archived rows and from &lt;= account_id &lt; to (a null bound
+     * is open), reading each file's index once.
+     */
+    public static Map<String, BigDecimal> archivedTotals(Connection conn, String from, String to) throws SQLException {
+        Map<String, Long> cents = new HashMap<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(CATALOG_SQL)) {
+            while (rs.next()) {
+                LedgerArchiveFile file = file(rs.getString("file_name"));
+                for (String accountId : file.accountIds()) {
+                    if ((from == null || accountId.compareTo(from) >= 0) && (to == null || accountId.compareTo(to) < 0)) {
+                        cents.merge(accountId, file.find(accountId).totalCents, Long::sum);
+                    }
+                }
+            }
+        }
+        Map<String, BigDecimal> totals = new HashMap<>(cents.size() * 4 / 3 + 1);
+        cents.forEach((accountId, total) -> totals.put(accountId, BigDecimal.valueOf(total, 2)));
+        return totals;
+    }
+
+    /**
+     * Passes every archived row of this connection's shard to the visitor, a month and an account at a
+     * time (each account's rows oldest first). For bulk readers such as the columnar ledger export.
+     */
+    public static void scan(Connection conn, Consumer<TransactionLogger.TransactionRecord> visitor) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(CATALOG_SQL)) {
+            while (rs.next()) {
+                String fileName = rs.getString("file_name");
+                LedgerArchiveFile file = file(fileName);
+                for (String accountId : file.accountIds()) {
+                    read(fileName, accountId).forEach(visitor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges two newest-first lists of the same account's rows, keeping at most limit (0 = all).
+     * Usually every live row is newer than every archived one and this is a concatenation.
+     */
+    static List<TransactionLogger.TransactionRecord> merge(List<TransactionLogger.TransactionRecord> live,
+                                                           List<TransactionLogger.TransactionRecord> archived, int limit) {
+        if (archived.isEmpty()) {
+            return live;
+        }
+        int size = live.size() + archived.size();
+        List<TransactionLogger.TransactionRecord> merged = new ArrayList<>(limit == 0 ? size : Math.min(size, limit));
+        int i = 0;
+        int j = 0;
+        while ((i < live.size() || j < archived.size()) && (limit == 0 || merged.size() < limit)) {
+            if (j == archived.size() || (i < live.size() && !live.get(i).getDate().isBefore(archived.get(j).getDate()))) {
+                merged.add(live.get(i++));
+            } else {
+                merged.add(archived.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Deletes this shard's catalog and archive files, for TransactionLogger.clearTransactions. The
+     * catalog rows go in the caller's transaction; the files are deleted once it has committed.
+     */
+    static List<Path> clearCatalog(Connection conn) throws SQLException {
+        List<Path> files = new ArrayList<>();
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT file_name FROM ledger_archives")) {
+                while (rs.next()) {
+                    files.add(directory().resolve(rs.getString(1)));
+                }
+            }
+            stmt.executeUpdate("DELETE FROM ledger_archives");
+        }
+        return files;
+    }
+
+    static void deleteFiles(List<Path> files) {
+        for (Path path : files) {
+            FILES.remove(path);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.out.println("Warning: Could not delete ledger archive " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static List<TransactionLogger.TransactionRecord> read(String fileName, String accountId) {
+        try {
+            LedgerArchiveFile file = file(fileName);
+            return file.find(accountId) == null ? Collections.emptyList() : file.read(accountId);
+        } catch (IOException e) {
+            throw new BankingException("Failed to read ledger archive " + fileName, e);
+        }
+    }
+
+    private static LedgerArchiveFile file(String fileName) {
+        Path path = directory().resolve(fileName);
+        LedgerArchiveFile file = FILES.get(path);
+        if (file == null) {
+            try {
+                file = LedgerArchiveFile.open(path);
+            } catch (IOException e) {
+                throw new BankingException("Failed to open ledger archive " + path, e);
+            }
+            FILES.put(path, file);
+        }
+        return file;
+    }
+
+    private static Path directory() {
+        return Paths.get(DatabaseConnection.getProperty("archive.dir", "ledger_archive"));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = CommandLineOptions.parse(args);
+        if (options.containsKey("init-schema")) {
+            try {
+                DatabaseConnection.initializeSchema();
+            } catch (SQLException e) {
+                throw new BankingException("Failed to initialize schema", e);
+            }
+        }
+
+        long start = System.nanoTime();
+        String through = options.get("through");
+        long rows = through == null ? archive() : archive(YearMonth.parse(through));
+        System.out.printf("Archived %d ledger rows in %d ms%n", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,292 @@
+package com.banking.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One archived month of one shard's ledger.
+ *
+ * Layout: a header, one deflate-compressed block per account, then the index and a footer pointing
+ * at it. A block holds the account's rows in date order, each as varints of the differences from the
+ * previous row (transaction id, date in microseconds) and the amount in cents, which is what makes
+ * the rows compress to a few bytes each. The index maps account id to its block's offset and length,
+ * row count and amount total, so reading one account's history inflates only its own block, and a
+ * sum over a whole month needs no block at all.
+ */
+final class LedgerArchiveFile {
+    private static final int MAGIC = 0x4C444731; // "LDG1"
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Where one account's rows are in the file.
+     */
+    static final class Entry {
+        final long offset;
+        final int length;
+        final int rows;
+        final long totalCents;
+
+        Entry(long offset, int length, int rows, long totalCents) {
+            this.offset = offset;
+            this.length = length;
+            this.rows = rows;
+            this.totalCents = totalCents;
+        }
+    }
+
+    private final Path path;
+    private final Map<String, Entry> index;
+
+    private LedgerArchiveFile(Path path, Map<String, Entry> index) {
+        this.path = path;
+        this.index = index;
+    }
+
+    // Reads the header and the index; the blocks are read on demand
+    static LedgerArchiveFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+            readFully(channel, footer, size - FOOTER_BYTES);
+            footer.flip();
+            long indexOffset = footer.getLong();
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            readFully(channel, header, 0);
+            if (footer.getInt() != MAGIC || header.getInt(0) != MAGIC || indexOffset < Integer.BYTES || indexOffset > size - FOOTER_BYTES) {
+                throw new IOException("Not a ledger archive: " + path);
+            }
+
+            channel.position(indexOffset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            int accounts = in.readInt();
+            Map<String, Entry> index = new HashMap<>(accounts * 4 / 3 + 1);
+            for (int i = 0; i < accounts; i++) {
+                String accountId = in.readUTF();
+                index.put(accountId, new Entry(in.readLong(), in.readInt(), in.readInt(), in.readLong()));
+            }
+            return new LedgerArchiveFile(path, index);
+        }
+    }
+
+    Entry find(String accountId) {
+        return index.get(accountId);
+    }
+
+    Set<String> accountIds() {
+        return index.keySet();
+    }
+
+    // The account's rows, oldest first; empty if it has none in this month
+    List<TransactionLogger.TransactionRecord> read(String accountId) throws IOException {
+        Entry entry = index.get(accountId);
+        if (entry == null) {
+            return new ArrayList<>(0);
+        }
+        ByteBuffer compressed = ByteBuffer.allocate(entry.length);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            readFully(channel, compressed, entry.offset);
+        }
+
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(entry.rows * 8);
+        try {
+            inflater.setInput(compressed.array());
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated block of account " + accountId + " in " + path);
+                }
+                raw.write(chunk, 0, n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block of account " + accountId + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer block = ByteBuffer.wrap(raw.toByteArray());
+        List<TransactionLogger.TransactionRecord> rows = new ArrayList<>(entry.rows);
+        long id = 0;
+        long micros = 0;
+        for (int i = 0; i < entry.rows; i++) {
+            id += readSignedVarLong(block);
+            micros += readSignedVarLong(block);
+            long cents = readSignedVarLong(block);
+            rows.add(new TransactionLogger.TransactionRecord(accountId, BigDecimal.valueOf(cents, 2), toDate(micros)));
+        }
+        return rows;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Unexpected end of ledger archive");
+            }
+        }
+    }
+
+    /**
+     * Writes a file from rows given in (account, date) order. The file is written next to its target
+     * and moved into place by commit, so a reader never sees a partial archive.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final DataOutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        private final byte[] buffer = new byte[8192];
+        private final List<String> accountIds = new ArrayList<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private long offset;
+        private String accountId;
+        private int rows;
+        private long totalCents;
+        private long lastId;
+        private long lastMicros;
+        private long rowCount;
+        private boolean done;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            Files.createDirectories(target.getParent());
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16));
+            out.writeInt(MAGIC);
+            offset = Integer.BYTES;
+        }
+
+        void add(long transactionId, String account, BigDecimal amount, LocalDateTime date) throws IOException {
+            if (!account.equals(accountId)) {
+                finishAccount();
+                accountId = account;
+            }
+            long micros = toMicros(date);
+            long cents = amount.movePointRight(2).longValueExact();
+            writeSignedVarLong(transactionId - lastId);
+            writeSignedVarLong(micros - lastMicros);
+            writeSignedVarLong(cents);
+            lastId = transactionId;
+            lastMicros = micros;
+            totalCents += cents;
+            rows++;
+            rowCount++;
+        }
+
+        long getRowCount() {
+            return rowCount;
+        }
+
+        private void finishAccount() throws IOException {
+            if (accountId == null) {
+                return;
+            }
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+                length += n;
+            }
+            accountIds.add(accountId);
+            entries.add(new Entry(offset, length, rows, totalCents));
+            offset += length;
+
+            block.reset();
+            accountId = null;
+            rows = 0;
+            totalCents = 0;
+            lastId = 0;
+            lastMicros = 0;
+        }
+
+        // Writes the index, syncs and moves the file into place
+        void commit() throws IOException {
+            finishAccount();
+            out.writeInt(accountIds.size());
+            for (int i = 0; i < accountIds.size(); i++) {
+                Entry entry = entries.get(i);
+                out.writeUTF(accountIds.get(i));
+                out.writeLong(entry.offset);
+                out.writeInt(entry.length);
+                out.writeInt(entry.rows);
+                out.writeLong(entry.totalCents);
+            }
+            out.writeLong(offset);
+            out.writeInt(MAGIC);
+            out.close();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            done = true;
+        }
+
+        // Without commit the partial file is deleted
+        @Override
+        public void close() throws IOException {
+            deflater.end();
+            if (!done) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void writeSignedVarLong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                block.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            block.write((int) zigzag);
+        }
+    }
+
+    private static long readSignedVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    // The TIMESTAMP column keeps microseconds, so this is exact
+    static long toMicros(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + date.getNano() / 1000;
+    }
+
+    static LocalDateTime toDate(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+}
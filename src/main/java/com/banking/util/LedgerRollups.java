@@ -0,0 +1,267 @@
+package com.banking.util;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.exception.BankingException;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Per-account daily rollups of the transactions ledger (table ledger_rollups).
+ *
+ * Every ledger write folds its row into the (account, day) rollup in the same database
+ * transaction, so a period summary reads one row per day instead of every transaction.
+ * Rows written by anything that bypasses TransactionLogger (old data, manual SQL) have ids
+ * above the account's last_txn_id; those form the unrolled tail and are read directly.
+ * rebuild() recomputes all rollups from the ledger, e.g. for a database that predates them.
+ * Back-dated rows are also added to the BalanceCheckpoints taken after them.
+ */
+public class LedgerRollups {
+    private static final String DUPLICATE_KEY = "23505";
+
+    /**
+     * A select-list expression for "FROM accounts a": the account's rolled-up transaction count
+     * between two dates (parameters: first day, last day). Uses the (account_id, txn_day) key.
+     */
+    public static final String MONTH_TRANSACTIONS_COLUMN = "(SELECT COALESCE(SUM(r.txn_count), 0) FROM ledger_rollups r "
+            + "WHERE r.account_id = a.account_id AND r.txn_day BETWEEN ? AND ?)";
+
+    private static final String UPDATE_SQL = "UPDATE ledger_rollups SET credit_total = credit_total + ?, debit_total = debit_total + ?, "
+            + "txn_count = txn_count + 1, closing_balance = closing_balance + ?, last_txn_id = GREATEST(last_txn_id, ?) "
+            + "WHERE account_id = ? AND txn_day = ?";
+    private static final String INSERT_SQL = "INSERT INTO ledger_rollups (account_id, txn_day, credit_total, debit_total, txn_count, closing_balance, last_txn_id) "
+            + "VALUES (?, ?, ?, ?, 1, COALESCE((SELECT closing_balance FROM ledger_rollups WHERE account_id = ? AND txn_day < ? "
+            + "ORDER BY txn_day DESC LIMIT 1), 0) + ?, ?)";
+    private static final String SHIFT_LATER_DAYS_SQL = "UPDATE ledger_rollups SET closing_balance = closing_balance + ? WHERE account_id = ? AND txn_day > ?";
+
+    /**
+     * Folds one ledger row into its daily rollup. Runs on the caller's connection so it
+     * commits or rolls back together with the ledger insert.
+     */
+    public static void apply(Connection conn, String accountId, BigDecimal amount, LocalDateTime date, long transactionId) throws SQLException {
+        BigDecimal credit = amount.signum() > 0 ? amount : BigDecimal.ZERO;
+        BigDecimal debit = amount.signum() < 0 ? amount.negate() : BigDecimal.ZERO;
+        Date day = Date.valueOf(date.toLocalDate());
+
+        if (updateDay(conn, accountId, amount, credit, debit, day, transactionId) == 0) {
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+                stmt.setString(1, accountId);
+                stmt.setDate(2, day);
+                stmt.setBigDecimal(3, credit);
+                stmt.setBigDecimal(4, debit);
+                stmt.setString(5, accountId);
+                stmt.setDate(6, day);
+                stmt.setBigDecimal(7, amount);
+                stmt.setLong(8, transactionId);
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                // Another writer created the day row first; add to it instead
+                if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                    throw e;
+                }
+                updateDay(conn, accountId, amount, credit, debit, day, transactionId);
+            }
+        }
+
+        // Only does work for back-dated rows: later days' closing balances include this amount too
+        try (PreparedStatement stmt = conn.prepareStatement(SHIFT_LATER_DAYS_SQL)) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setDate(3, day);
+            stmt.executeUpdate();
+        }
+        BalanceCheckpoints.shiftLater(conn, accountId, amount, date);
+    }
+
+    /**
+     * apply for many ledger rows at once, with one JDBC batch per statement instead of two or three
+     * statements per row. Meant for bulk writes with at most one row per account and day.
+     */
+    public static void applyAll(Connection conn, List<String> accountIds, List<BigDecimal> amounts, LocalDateTime date,
+                                long[] transactionIds) throws SQLException {
+        Date day = Date.valueOf(date.toLocalDate());
+        int[] updated;
+        try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+            for (int i = 0; i < accountIds.size(); i++) {
+                BigDecimal amount = amounts.get(i);
+                stmt.setBigDecimal(1, amount.signum() > 0 ? amount : BigDecimal.ZERO);
+                stmt.setBigDecimal(2, amount.signum() < 0 ? amount.negate() : BigDecimal.ZERO);
+                stmt.setBigDecimal(3, amount);
+                stmt.setLong(4, transactionIds[i]);
+                stmt.setString(5, accountIds.get(i));
+                stmt.setDate(6, day);
+                stmt.addBatch();
+            }
+            updated = stmt.executeBatch();
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement(INSERT_SQL);
+             PreparedStatement shift = conn.prepareStatement(SHIFT_LATER_DAYS_SQL)) {
+            boolean inserts = false;
+            for (int i = 0; i < accountIds.size(); i++) {
+                BigDecimal amount = amounts.get(i);
+                if (updated[i] == 0) {
+                    insert.setString(1, accountIds.get(i));
+                    insert.setDate(2, day);
+                    insert.setBigDecimal(3, amount.signum() > 0 ? amount : BigDecimal.ZERO);
+                    insert.setBigDecimal(4, amount.signum() < 0 ? amount.negate() : BigDecimal.ZERO);
+                    insert.setString(5, accountIds.get(i));
+                    insert.setDate(6, day);
+                    insert.setBigDecimal(7, amount);
+                    insert.setLong(8, transactionIds[i]);
+                    insert.addBatch();
+                    inserts = true;
+                }
+                shift.setBigDecimal(1, amount);
+                shift.setString(2, accountIds.get(i));
+                shift.setDate(3, day);
+                shift.addBatch();
+            }
+            if (inserts) {
+                insert.executeBatch();
+            }
+            shift.executeBatch();
+        }
+        BalanceCheckpoints.shiftLaterAll(conn, accountIds, amounts, date);
+    }
+
+    private static int updateDay(Connection conn, String accountId, BigDecimal amount, BigDecimal credit, BigDecimal debit,
+                                 Date day, long transactionId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+            stmt.setBigDecimal(1, credit);
+            stmt.setBigDecimal(2, debit);
+            stmt.setBigDecimal(3, amount);
+            stmt.setLong(4, transactionId);
+            stmt.setString(5, accountId);
+            stmt.setDate(6, day);
+            return stmt.executeUpdate();
+        }
+    }
+
+    public static LedgerSummary getMonthlySummary(String accountId, YearMonth month) {
+        return summarize(accountId, month.atDay(1), month.atEndOfMonth());
+    }
+
+    /**
+     * Opening balance, credits, debits and count of an account between two days (inclusive).
+     * Reads the rollups for the period plus only the ledger rows that are not rolled up yet.
+     */
+    public static LedgerSummary summarize(String accountId, LocalDate from, LocalDate to) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            long watermark = 0;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT MAX(last_txn_id) FROM ledger_rollups WHERE account_id = ?")) {
+                stmt.setString(1, accountId);
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    watermark = rs.getLong(1);
+                }
+            }
+
+            BigDecimal opening = BigDecimal.ZERO;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT closing_balance FROM ledger_rollups WHERE account_id = ? AND txn_day < ? ORDER BY txn_day DESC LIMIT 1")) {
+                stmt.setString(1, accountId);
+                stmt.setDate(2, Date.valueOf(from));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    opening = rs.getBigDecimal(1);
+                }
+            }
+
+            BigDecimal credits = BigDecimal.ZERO;
+            BigDecimal debits = BigDecimal.ZERO;
+            long count = 0;
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(SUM(credit_total), 0), COALESCE(SUM(debit_total), 0), COALESCE(SUM(txn_count), 0) "
+                    + "FROM ledger_rollups WHERE account_id = ? AND txn_day BETWEEN ? AND ?")) {
+                stmt.setString(1, accountId);
+                stmt.setDate(2, Date.valueOf(from));
+                stmt.setDate(3, Date.valueOf(to));
+                ResultSet rs = stmt.executeQuery();
+                if (rs.next()) {
+                    credits = rs.getBigDecimal(1);
+                    debits = rs.getBigDecimal(2);
+                    count = rs.getLong(3);
+                }
+            }
+
+            int tailRows = 0;
+            Timestamp periodStart = Timestamp.valueOf(from.atStartOfDay());
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT amount, date FROM transactions WHERE account_id = ? AND id > ? AND date < ?")) {
+                stmt.setString(1, accountId);
+                stmt.setLong(2, watermark);
+                stmt.setTimestamp(3, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    BigDecimal amount = rs.getBigDecimal("amount");
+                    tailRows++;
+                    if (rs.getTimestamp("date").before(periodStart)) {
+                        opening = opening.add(amount);
+                    } else if (amount.signum() >= 0) {
+                        credits = credits.add(amount);
+                        count++;
+                    } else {
+                        debits = debits.add(amount.negate());
+                        count++;
+                    }
+                }
+            }
+
+            return new LedgerSummary(accountId, from, to, opening, credits, debits, count, tailRows);
+        } catch (SQLException e) {
+            throw new BankingException("Failed to summarize ledger for account " + accountId, e);
+        }
+    }
+
+    /**
+     * Recomputes every rollup from the transactions table. Needed once for ledgers written
+     * before rollups existed; afterwards the write path keeps them current. The rollups of months
+     * moved to the LedgerArchive are kept, and the later ones continue from their closing balances.
+     */
+    public static void rebuild() {
+        String rebuildSql = "INSERT INTO ledger_rollups (account_id, txn_day, credit_total, debit_total, txn_count, closing_balance, last_txn_id) "
+                + "SELECT account_id, txn_day, credit_total, debit_total, txn_count, "
+                + "SUM(credit_total - debit_total) OVER (PARTITION BY account_id ORDER BY txn_day) "
+                + "+ COALESCE((SELECT p.closing_balance FROM ledger_rollups p WHERE p.account_id = daily.account_id AND p.txn_day < ? "
+                + "ORDER BY p.txn_day DESC LIMIT 1), 0), last_txn_id "
+                + "FROM (SELECT account_id, CAST(date AS DATE) AS txn_day, "
+                + "SUM(CASE WHEN amount > 0 THEN amount ELSE 0 END) AS credit_total, "
+                + "SUM(CASE WHEN amount < 0 THEN -amount ELSE 0 END) AS debit_total, "
+                + "COUNT(*) AS txn_count, MAX(id) AS last_txn_id "
+                + "FROM transactions WHERE date >= ? GROUP BY account_id, CAST(date AS DATE)) daily";
+
+        try {
+            // Each shard rolls up its own accounts' ledger
+            Shards.scatter(conn -> {
+                try (PreparedStatement delete = conn.prepareStatement("DELETE FROM ledger_rollups WHERE txn_day >= ?");
+                     PreparedStatement insert = conn.prepareStatement(rebuildSql)) {
+                    conn.setAutoCommit(false);
+                    try {
+                        LocalDateTime boundary = LedgerArchive.boundary(conn);
+                        LocalDate from = boundary == null ? LocalDate.of(1900, 1, 1) : boundary.toLocalDate();
+                        delete.setDate(1, Date.valueOf(from));
+                        delete.executeUpdate();
+                        insert.setDate(1, Date.valueOf(from));
+                        insert.setTimestamp(2, Timestamp.valueOf(from.atStartOfDay()));
+                        insert.executeUpdate();
+                        DatabaseConnection.commit(conn);
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new BankingException("Failed to rebuild ledger rollups", e);
+        }
+    }
+}
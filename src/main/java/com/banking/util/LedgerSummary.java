@@ -0,0 +1,74 @@
+package com.banking.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Ledger totals of one account over a range of days, as computed by LedgerRollups.
+ */
+public class LedgerSummary {
+    private final String accountId;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final BigDecimal openingBalance;
+    private final BigDecimal credits;
+    private final BigDecimal debits;
+    private final long transactionCount;
+    private final int tailRows;
+
+    public LedgerSummary(String accountId, LocalDate from, LocalDate to, BigDecimal openingBalance,
+                         BigDecimal credits, BigDecimal debits, long transactionCount, int tailRows) {
+        this.accountId = accountId;
+        this.from = from;
+        this.to = to;
+        this.openingBalance = openingBalance;
+        this.credits = credits;
+        this.debits = debits;
+        this.transactionCount = transactionCount;
+        this.tailRows = tailRows;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public BigDecimal getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public BigDecimal getCredits() {
+        return credits;
+    }
+
+    // Positive total of all money taken out
+    public BigDecimal getDebits() {
+        return debits;
+    }
+
+    public BigDecimal getClosingBalance() {
+        return openingBalance.add(credits).subtract(debits);
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    // Raw ledger rows that were not yet in the rollups and had to be read directly
+    public int getTailRows() {
+        return tailRows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s..%s: opening $%.2f, credits $%.2f, debits $%.2f, closing $%.2f (%d transactions)",
+                accountId, from, to, openingBalance, credits, debits, getClosingBalance(), transactionCount);
+    }
+}
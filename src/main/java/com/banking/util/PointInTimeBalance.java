@@ -0,0 +1,51 @@
+package com.banking.util;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An account's ledger balance at a point in time, as computed by BalanceCheckpoints.
+ */
+public class PointInTimeBalance {
+    private final String accountId;
+    private final LocalDateTime at;
+    private final BigDecimal balance;
+    private final LocalDateTime checkpoint;
+    private final long tailRows;
+
+    public PointInTimeBalance(String accountId, LocalDateTime at, BigDecimal balance, LocalDateTime checkpoint, long tailRows) {
+        this.accountId = accountId;
+        this.at = at;
+        this.balance = balance;
+        this.checkpoint = checkpoint;
+        this.tailRows = tailRows;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public LocalDateTime getAt() {
+        return at;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    // The checkpoint the balance was replayed from; null if there was none before the time
+    public LocalDateTime getCheckpoint() {
+        return checkpoint;
+    }
+
+    // Ledger rows between the checkpoint and the time that had to be read
+    public long getTailRows() {
+        return tailRows;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s at %s: $%.2f (from checkpoint %s + %d ledger rows)",
+                accountId, at, balance, checkpoint == null ? "none" : checkpoint.toString(), tailRows);
+    }
+}
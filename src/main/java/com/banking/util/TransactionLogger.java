@@ -1,10 +1,15 @@
 package com.banking.util;
 
 import com.banking.db.DatabaseConnection;
+import com.banking.db.Shards;
+import com.banking.event.AccountEvent;
+import com.banking.event.AccountEvents;
 import com.banking.exception.AccountNotFoundException;
 import com.banking.exception.BankingException;
+import com.banking.metrics.MetricsRegistry;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -12,11 +17,12 @@ import java.util.List;
 
 public class TransactionLogger {
 
+    // Newest first, including the months moved to the ledger archive
     public List<TransactionRecord> getTransactionHistory(String accountId) {
         String sql = "SELECT * FROM transactions WHERE account_id = ? ORDER BY date DESC";
         List<TransactionRecord> transactions = new ArrayList<>();
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
             stmt.setString(1, accountId);
@@ -25,56 +31,190 @@ public class TransactionLogger {
             while (rs.next()) {
                 transactions.add(new TransactionRecord(rs.getString("account_id"), rs.getBigDecimal("amount"), rs.getTimestamp("date").toLocalDateTime()));
             }
-            return transactions;
+            return LedgerArchive.merge(transactions, LedgerArchive.history(conn, accountId, 0), 0);
 
         } catch (SQLException e) {
             throw new RuntimeException("Failed to get transaction history", e);
         }
     }
 
+    /**
+     * The newest transactions of an account, newest first. H2 finds the account's rows through
+     * idx_transactions_account_date and keeps the newest limit of them, so the cost follows the
+     * account's unarchived rows, not the ledger. The ledger archive is only read if the table has
+     * fewer than limit rows of the account.
+     */
+    public List<TransactionRecord> getRecentTransactions(String accountId, int limit) {
+        String sql = "SELECT account_id, amount, date FROM transactions WHERE account_id = ? ORDER BY account_id, date DESC LIMIT ?";
+        List<TransactionRecord> transactions = new ArrayList<>(Math.min(limit, 1024));
+
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, accountId);
+            stmt.setInt(2, limit);
+            ResultSet rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                transactions.add(new TransactionRecord(rs.getString("account_id"), rs.getBigDecimal("amount"), rs.getTimestamp("date").toLocalDateTime()));
+            }
+            if (transactions.size() < limit) {
+                return LedgerArchive.merge(transactions, LedgerArchive.history(conn, accountId, limit), limit);
+            }
+            return transactions;
+
+        } catch (SQLException e) {
+            throw new BankingException("Failed to get recent transactions", e);
+        }
+    }
+
+    /**
+     * A page of an account's transactions, newest first: up to limit rows after skipping the newest
+     * offset. It reads offset + limit rows, and rows added between pages shift the later ones.
+     */
+    public List<TransactionRecord> getTransactions(String accountId, int offset, int limit) {
+        List<TransactionRecord> newest = getRecentTransactions(accountId, Math.addExact(offset, limit));
+        if (offset == 0) {
+            return newest;
+        }
+        return offset >= newest.size() ? new ArrayList<>() : new ArrayList<>(newest.subList(offset, newest.size()));
+    }
+
+    // Builds the whole table first so it goes out in one write
+    public static String renderTransactions(List<TransactionRecord> transactions) {
+        StringBuilder table = new StringBuilder(128 + transactions.size() * 56);
+        table.append("+------------+---------+----------------------------+\n");
+        table.append("| Account ID | Amount  | Date                       |\n");
+        table.append("+------------+---------+----------------------------+\n");
+        for (TransactionRecord transaction : transactions) {
+            table.append(String.format("| %-10s | %7.2f | %-26s |%n", transaction.getAccountId(), transaction.getAmount(), transaction.getDate()));
+        }
+        table.append("+------------+---------+----------------------------+");
+        return table.toString();
+    }
+
     public static void addTransaction(String accountId, BigDecimal amount) {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            try {
+                LocalDateTime date = LocalDateTime.now();
+                insertTransaction(conn, accountId, amount, date);
+                DatabaseConnection.commit(conn);
+                AccountEvents.publish(AccountEvent.ledgerEntry(accountId, amount, date));
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("TransactionLogger.addTransaction", e);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes one ledger row and folds it into the daily rollups on the given connection.
+     * The caller owns the transaction.
+     */
+    public static long insertTransaction(Connection conn, String accountId, BigDecimal amount, LocalDateTime date) throws SQLException {
         String insertSql = "INSERT INTO transactions (account_id, amount, date) VALUES (?, ?, ?)";
 
-        try (Connection conn = DatabaseConnection.getConnection(); PreparedStatement stmt = conn.prepareStatement(insertSql)){
+        long transactionId;
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setString(1, accountId);
             stmt.setBigDecimal(2, amount);
-            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setTimestamp(3, Timestamp.valueOf(date));
             stmt.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+
+            ResultSet keys = stmt.getGeneratedKeys();
+            if (!keys.next()) {
+                throw new SQLException("No id generated for transaction of account " + accountId);
+            }
+            transactionId = keys.getLong(1);
         }
+
+        LedgerRollups.apply(conn, accountId, amount, date, transactionId);
+        return transactionId;
+    }
+
+    /**
+     * insertTransaction for many rows with the same date, as JDBC batches. The caller owns the
+     * transaction; at most one row per account.
+     */
+    public static void insertTransactions(Connection conn, List<String> accountIds, List<BigDecimal> amounts, LocalDateTime date) throws SQLException {
+        String insertSql = "INSERT INTO transactions (account_id, amount, date) VALUES (?, ?, ?)";
+
+        long[] transactionIds = new long[accountIds.size()];
+        try (PreparedStatement stmt = conn.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS)) {
+            Timestamp timestamp = Timestamp.valueOf(date);
+            for (int i = 0; i < accountIds.size(); i++) {
+                stmt.setString(1, accountIds.get(i));
+                stmt.setBigDecimal(2, amounts.get(i));
+                stmt.setTimestamp(3, timestamp);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (int i = 0; i < transactionIds.length; i++) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id generated for transaction of account " + accountIds.get(i));
+                    }
+                    transactionIds[i] = keys.getLong(1);
+                }
+            }
+        }
+
+        LedgerRollups.applyAll(conn, accountIds, amounts, date, transactionIds);
     }
 
     public static void fetchTransactions() {
         String sql = "SELECT * FROM transactions";
 
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+        System.out.println("+------------+---------+----------------------------+");
+        System.out.println("| Account ID | Amount  | Date                       |");
+        System.out.println("+------------+---------+----------------------------+");
 
-            System.out.println("+------------+---------+----------------------------+");
-            System.out.println("| Account ID | Amount  | Date                       |");
-            System.out.println("+------------+---------+----------------------------+");
+        // Shard by shard, so the rows are grouped by shard rather than in insertion order
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
 
-            while (rs.next()) {
-                String accountId= rs.getString("account_id");
-                double amount= rs.getDouble("amount");
-                String date = rs.getNString("date");
+                while (rs.next()) {
+                    String accountId= rs.getString("account_id");
+                    double amount= rs.getDouble("amount");
+                    String date = rs.getNString("date");
 
-                System.out.printf("| %-10s | %7.2f | %-26s |\n", accountId, amount, date);
-            }
-
-            System.out.println("+------------+---------+----------------------------+");
+                    System.out.printf("| %-10s | %7.2f | %-26s |\n", accountId, amount, date);
+                }
 
-        } catch (SQLException e) {
-            throw new BankingException("No transaction created on the table yet", e);
+            } catch (SQLException e) {
+                throw new BankingException("No transaction created on the table yet", e);
+            }
         }
+
+        System.out.println("+------------+---------+----------------------------+");
     }
 
-    // Clear all transactions
+    // Clear all transactions, archived months included
     public static void clearTransactions() {
-        try (Connection conn = DatabaseConnection.getConnection(); Statement stmt = conn.createStatement()) {
-            stmt.executeUpdate("DELETE FROM transactions");
+        try {
+            Shards.scatter(conn -> {
+                List<Path> archives;
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM transactions");
+                    stmt.executeUpdate("DELETE FROM ledger_rollups");
+                    stmt.executeUpdate("DELETE FROM balance_checkpoints");
+                    stmt.executeUpdate("DELETE FROM reconciliation_totals");
+                    stmt.executeUpdate("DELETE FROM reconciliation_watermark");
+                    archives = LedgerArchive.clearCatalog(conn);
+                    DatabaseConnection.commit(conn);
+                }
+                LedgerArchive.deleteFiles(archives);
+                return null;
+            });
+            AccountEvents.publish(AccountEvent.ledgerCleared());
             System.out.println("All transactions have been deleted.");
         } catch (SQLException e) {
+            MetricsRegistry.getDefault().recordSwallowedError("TransactionLogger.clearTransactions", e);
             e.printStackTrace();
         }
     }
@@ -0,0 +1,262 @@
+package com.banking.velocity;
+
+import com.banking.db.DatabaseConnection;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * In-memory withdrawal velocity per account: how many withdrawals, and how much money, left the
+ * account within the last minute and the last hour, checked against configured limits.
+ *
+ * Each account has one ring of BUCKETS time buckets per window; a bucket is replaced by CAS when
+ * its time slot comes round again and its counters are atomics, so recording never locks. A check
+ * reads the window's BUCKETS buckets, a fixed cost whatever the account's history, and an account
+ * costs the same few rings however busy it is. Accounts idle for longer than the longest window
+ * are dropped. The windows slide by one bucket (1/BUCKETS of their length) at a time.
+ *
+ * Limits (0 = none): velocity.minute.maxCount, velocity.minute.maxAmount, velocity.hour.maxCount,
+ * velocity.hour.maxAmount. With no limits set the tracker records nothing.
+ */
+public class VelocityTracker {
+    static final int BUCKETS = 12;
+    // tryRecord results below this mean "rejected"
+    private static final long REJECTED = -1;
+
+    private static volatile VelocityTracker defaultTracker;
+
+    private final Window[] windows;
+    private final long idleMillis;
+    private final ConcurrentHashMap<String, AccountVelocity> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepMillis = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * A limit on the withdrawals within a sliding window of time.
+     */
+    public static final class Window {
+        private final String name;
+        private final long bucketMillis;
+        private final long maxCount;
+        private final long maxCents;
+        private final String description;
+
+        public Window(String name, Duration length, long maxCount, BigDecimal maxAmount) {
+            this.name = name;
+            this.bucketMillis = Math.max(1, length.toMillis() / BUCKETS);
+            this.maxCount = maxCount;
+            this.maxCents = toCents(maxAmount);
+            List<String> limits = new ArrayList<>();
+            if (maxCount > 0) {
+                limits.add(maxCount + " withdrawals");
+            }
+            if (maxCents > 0) {
+                limits.add("$" + maxAmount.setScale(2, RoundingMode.HALF_UP).toPlainString());
+            }
+            this.description = "at most " + String.join(" and ", limits) + " per " + name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        boolean isLimited() {
+            return maxCount > 0 || maxCents > 0;
+        }
+
+        // e.g. "at most 5 withdrawals and $1000.00 per minute"
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    public VelocityTracker(List<Window> limits) {
+        List<Window> active = new ArrayList<>();
+        long longest = 0;
+        for (Window window : limits) {
+            if (window.isLimited()) {
+                active.add(window);
+                longest = Math.max(longest, window.bucketMillis * BUCKETS);
+            }
+        }
+        this.windows = active.toArray(new Window[0]);
+        this.idleMillis = longest;
+    }
+
+    public static VelocityTracker getDefault() {
+        VelocityTracker tracker = defaultTracker;
+        if (tracker == null) {
+            synchronized (VelocityTracker.class) {
+                tracker = defaultTracker;
+                if (tracker == null) {
+                    List<Window> limits = new ArrayList<>();
+                    limits.add(fromConfig("minute", Duration.ofMinutes(1)));
+                    limits.add(fromConfig("hour", Duration.ofHours(1)));
+                    tracker = defaultTracker = new VelocityTracker(limits);
+                }
+            }
+        }
+        return tracker;
+    }
+
+    private static Window fromConfig(String name, Duration length) {
+        return new Window(name, length,
+                Long.parseLong(DatabaseConnection.getProperty("velocity." + name + ".maxCount", "0").trim()),
+                new BigDecimal(DatabaseConnection.getProperty("velocity." + name + ".maxAmount", "0").trim()));
+    }
+
+    public boolean isEnabled() {
+        return windows.length > 0;
+    }
+
+    /**
+     * Counts a withdrawal of amount from the account if it stays within every limit. Returns a stamp
+     * to pass to release if the withdrawal does not go ahead after all, or a negative value if a
+     * limit would be exceeded (see isRejected and getRejectedWindow); nothing is counted then.
+     */
+    public long tryRecord(String accountId, BigDecimal amount) {
+        if (windows.length == 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long cents = toCents(amount);
+        AccountVelocity velocity = accounts.computeIfAbsent(accountId, id -> new AccountVelocity(windows.length));
+        velocity.lastSeenMillis = now;
+
+        // Add first and take it back if over, so two concurrent withdrawals cannot both slip under a limit
+        velocity.add(windows, now, 1, cents);
+        for (int w = 0; w < windows.length; w++) {
+            Window window = windows[w];
+            if ((window.maxCount > 0 && velocity.count(window, w, now) > window.maxCount)
+                    || (window.maxCents > 0 && velocity.cents(window, w, now) > window.maxCents)) {
+                velocity.add(windows, now, -1, -cents);
+                return REJECTED - w;
+            }
+        }
+        sweepIfDue(now);
+        return now;
+    }
+
+    // Takes back a withdrawal counted by tryRecord that did not happen
+    public void release(String accountId, BigDecimal amount, long stamp) {
+        AccountVelocity velocity = accounts.get(accountId);
+        if (windows.length > 0 && stamp > 0 && velocity != null) {
+            velocity.add(windows, stamp, -1, -toCents(amount));
+        }
+    }
+
+    public static boolean isRejected(long stamp) {
+        return stamp <= REJECTED;
+    }
+
+    public Window getRejectedWindow(long stamp) {
+        return windows[(int) (REJECTED - stamp)];
+    }
+
+    // Withdrawals counted for the account in the named window, for monitoring
+    public long getCount(String accountId, String windowName) {
+        AccountVelocity velocity = accounts.get(accountId);
+        for (int w = 0; w < windows.length && velocity != null; w++) {
+            if (windows[w].name.equals(windowName)) {
+                return velocity.count(windows[w], w, System.currentTimeMillis());
+            }
+        }
+        return 0;
+    }
+
+    public int getTrackedAccounts() {
+        return accounts.size();
+    }
+
+    // At most once per longest window, drops the accounts that have been idle for all of it
+    private void sweepIfDue(long now) {
+        long last = lastSweepMillis.get();
+        if (now - last >= idleMillis && lastSweepMillis.compareAndSet(last, now)) {
+            accounts.values().removeIf(velocity -> now - velocity.lastSeenMillis > idleMillis);
+        }
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.CEILING).longValue();
+    }
+
+    /**
+     * One time slot of a ring: the slot number (time / bucket length) and its totals.
+     */
+    private static final class Bucket {
+        final long slot;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong cents = new AtomicLong();
+
+        Bucket(long slot) {
+            this.slot = slot;
+        }
+    }
+
+    private static final class AccountVelocity {
+        final AtomicReferenceArray<Bucket>[] rings;
+        volatile long lastSeenMillis;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        AccountVelocity(int windows) {
+            rings = new AtomicReferenceArray[windows];
+            for (int w = 0; w < windows; w++) {
+                rings[w] = new AtomicReferenceArray<>(BUCKETS);
+            }
+        }
+
+        void add(Window[] windows, long timeMillis, long count, long cents) {
+            for (int w = 0; w < windows.length; w++) {
+                Bucket bucket = bucket(rings[w], timeMillis / windows[w].bucketMillis);
+                if (bucket != null) {
+                    bucket.count.addAndGet(count);
+                    bucket.cents.addAndGet(cents);
+                }
+            }
+        }
+
+        // The slot's bucket, replacing the one of an older slot; null if the slot is already past
+        private static Bucket bucket(AtomicReferenceArray<Bucket> ring, long slot) {
+            int index = (int) (slot % BUCKETS);
+            while (true) {
+                Bucket current = ring.get(index);
+                if (current != null && current.slot >= slot) {
+                    return current.slot == slot ? current : null;
+                }
+                Bucket fresh = new Bucket(slot);
+                if (ring.compareAndSet(index, current, fresh)) {
+                    return fresh;
+                }
+            }
+        }
+
+        long count(Window window, int w, long now) {
+            long slot = now / window.bucketMillis;
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                Bucket bucket = rings[w].get(i);
+                if (bucket != null && bucket.slot > slot - BUCKETS && bucket.slot <= slot) {
+                    total += bucket.count.get();
+                }
+            }
+            return total;
+        }
+
+        long cents(Window window, int w, long now) {
+            long slot = now / window.bucketMillis;
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                Bucket bucket = rings[w].get(i);
+                if (bucket != null && bucket.slot > slot - BUCKETS && bucket.slot <= slot) {
+                    total += bucket.cents.get();
+                }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+CREATE TABLE IF NOT EXISTS accounts (
+    account_id VARCHAR(20) PRIMARY KEY,
+    type VARCHAR(10) NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    interest_rate DECIMAL(9, 6)
+);
+-- The account's own monthly rate; NULL follows the pricing tiers. Added to databases created before it existed.
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS interest_rate DECIMAL(9, 6);
+
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id VARCHAR(20) NOT NULL,
+    amount DECIMAL(19, 2) NOT NULL,
+    date TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_account_date ON transactions (account_id, date);
+-- Dropped: it only repeated idx_transactions_account_date in the other direction, at a second write per ledger row
+DROP INDEX IF EXISTS idx_transactions_account_date_desc;
+
+-- One row per account and day, maintained by TransactionLogger as ledger rows are written.
+-- last_txn_id is the newest transactions.id folded in; rows above it are the unrolled tail.
+CREATE TABLE IF NOT EXISTS ledger_rollups (
+    account_id VARCHAR(20) NOT NULL,
+    txn_day DATE NOT NULL,
+    credit_total DECIMAL(19, 2) NOT NULL,
+    debit_total DECIMAL(19, 2) NOT NULL,
+    txn_count INT NOT NULL,
+    closing_balance DECIMAL(19, 2) NOT NULL,
+    last_txn_id BIGINT NOT NULL,
+    PRIMARY KEY (account_id, txn_day)
+);
+
+-- Commit decisions of cross-shard transfers (used on shard 0 only). A row means "commit";
+-- a prepared transaction on a shard without a row here is rolled back on recovery.
+CREATE TABLE IF NOT EXISTS shard_commit_log (
+    tx_name VARCHAR(64) PRIMARY KEY,
+    created TIMESTAMP NOT NULL
+);
+
+-- Interest accrued day by day for the month starting at period (see AccrualEngine). accrued is the sum of
+-- balance x monthly rate over the accrued days; month-end posting credits accrued / days in the month.
+CREATE TABLE IF NOT EXISTS interest_accruals (
+    account_id VARCHAR(20) NOT NULL,
+    period DATE NOT NULL,
+    accrued DECIMAL(38, 8) NOT NULL,
+    days INT NOT NULL,
+    last_day DATE NOT NULL,
+    PRIMARY KEY (account_id, period)
+);
+
+-- Ledger balance of an account as of a time: the sum of its transactions dated at or before as_of
+-- (see BalanceCheckpoints). Point-in-time queries start from the newest checkpoint before the time.
+CREATE TABLE IF NOT EXISTS balance_checkpoints (
+    account_id VARCHAR(20) NOT NULL,
+    as_of TIMESTAMP NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (account_id, as_of)
+);
+
+-- Months of the ledger moved out of transactions into archive files (see LedgerArchive), per shard: period is the
+-- first day of the month and file_name is relative to archive.dir. The archived months are always an unbroken run.
+CREATE TABLE IF NOT EXISTS ledger_archives (
+    period DATE PRIMARY KEY,
+    file_name VARCHAR(255) NOT NULL,
+    row_count BIGINT NOT NULL,
+    account_count INT NOT NULL,
+    archived TIMESTAMP NOT NULL
+);
+
+-- Ledger total of each account as last reconciled (see LedgerReconciler): the sum of its transactions rows with
+-- id up to reconciliation_watermark.last_txn_id, archived rows included. Incremental runs add the newer rows.
+CREATE TABLE IF NOT EXISTS reconciliation_totals (
+    account_id VARCHAR(20) PRIMARY KEY,
+    ledger_total DECIMAL(19, 2) NOT NULL
+);
+
+-- A single row (id = 1): the highest transactions.id folded into reconciliation_totals, and when.
+CREATE TABLE IF NOT EXISTS reconciliation_watermark (
+    id INT PRIMARY KEY,
+    last_txn_id BIGINT NOT NULL,
+    reconciled TIMESTAMP NOT NULL
+);
+
+-- Sub-balances of hot accounts (see HotAccounts): deposits add to a random slot instead of the accounts row, and
+-- debits fold the slots back in under the row lock. An account is hot while it has slots, and its balance is
+-- accounts.balance plus the sum of its slots.
+CREATE TABLE IF NOT EXISTS account_slots (
+    account_id VARCHAR(20) NOT NULL,
+    slot INT NOT NULL,
+    balance DECIMAL(19, 2) NOT NULL,
+    PRIMARY KEY (account_id, slot)
+);
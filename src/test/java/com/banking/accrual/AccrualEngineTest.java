@@ -0,0 +1,182 @@
+package com.banking.accrual;
+
+import com.banking.BankingSystem;
+import com.banking.db.DatabaseConnection;
+import com.banking.pricing.PricingTable;
+import com.banking.util.TransactionLogger;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class AccrualEngineTest {
+
+    @BeforeClass
+    public static void setUpPricing() {
+        // Savings pay a fee once they have a transaction in the month, priced by the month's count
+        System.setProperty("pricing.SAVINGS.feeTiers", "0:0,1:5.00");
+    }
+
+    @Test
+    public void testMonthEndMatchesPerAccountPath() throws SQLException {
+        seed(42, 300);
+        System.setProperty("accrual.engine", "object");
+        BankingSystem.applyMonthlyFeesAndInterest();
+        Map<String, String> perAccount = dump();
+
+        seed(42, 300);
+        new AccrualEngine(64, PricingTable.getDefault()).applyMonthly();
+        Map<String, String> columnar = dump();
+
+        assertEquals(perAccount, columnar);
+    }
+
+    @Test
+    public void testUnpayableFeeLeavesAccountAlone() throws SQLException {
+        seed(7, 0);
+        // The checking fee would take it below its overdraft limit, the savings fee below its minimum balance
+        insertAccount("UNPAID_CHK", "CHECKING", new BigDecimal("-95.00"));
+        insertAccount("UNPAID_SAV", "SAVINGS", new BigDecimal("101.00"));
+        TransactionLogger.addTransaction("UNPAID_SAV", BigDecimal.ONE);
+
+        new AccrualEngine().applyMonthly();
+
+        Map<String, String> state = dump();
+        assertEquals("-95.00", state.get("UNPAID_CHK"));
+        assertEquals("101.00", state.get("UNPAID_SAV"));
+        assertNull(state.get("UNPAID_CHK/txn"));
+        assertEquals("1.00", state.get("UNPAID_SAV/txn"));
+
+        seed(7, 0);
+        insertAccount("UNPAID_CHK", "CHECKING", new BigDecimal("-95.00"));
+        insertAccount("UNPAID_SAV", "SAVINGS", new BigDecimal("101.00"));
+        TransactionLogger.addTransaction("UNPAID_SAV", BigDecimal.ONE);
+        System.setProperty("accrual.engine", "object");
+        BankingSystem.applyMonthlyFeesAndInterest();
+        assertEquals(state, dump());
+    }
+
+    @Test
+    public void testDailyAccrualsPostAtMonthEnd() throws SQLException {
+        seed(3, 0);
+        // Savings earn 2.5% a month and, without transactions in the month, pay no fee; checking earns nothing and pays 12.00
+        insertAccount("DAILY_SAV", "SAVINGS", new BigDecimal("1200.00"));
+        insertAccount("DAILY_CHK", "CHECKING", new BigDecimal("500.00"));
+        AccrualEngine engine = new AccrualEngine(64, PricingTable.getDefault());
+        YearMonth month = YearMonth.of(2026, 4);
+
+        assertEquals(1, engine.accrueDay(month.atDay(1)).getAccruals());
+        setBalance("DAILY_SAV", new BigDecimal("2400.00"));
+        assertEquals(1, engine.accrueDay(month.atDay(2)).getAccruals());
+        assertEquals(1, engine.accrueDay(month.atDay(3)).getAccruals());
+        // A day accrued twice counts once, at the balance it was first accrued on
+        setBalance("DAILY_SAV", new BigDecimal("3600.00"));
+        AccrualSummary again = engine.accrueDay(month.atDay(3));
+        assertEquals(0, again.getAccruals());
+        assertEquals(0, again.getPostings());
+        setBalance("DAILY_SAV", new BigDecimal("2400.00"));
+
+        // (1200 + 2400 + 2400) x 2.5% over the 30 days of the month
+        AccrualSummary posted = engine.postMonthEnd(month);
+        assertEquals(2, posted.getPostings());
+        assertEquals(0, posted.getAccruals());
+        assertEquals(0, new BigDecimal("5.00").compareTo(posted.getInterest()));
+        assertEquals(0, new BigDecimal("12.00").compareTo(posted.getFees()));
+
+        Map<String, String> state = dump();
+        assertEquals("2405.00", state.get("DAILY_SAV"));
+        assertEquals("5.00", state.get("DAILY_SAV/txn"));
+        assertEquals("488.00", state.get("DAILY_CHK"));
+        assertEquals("-12.00", state.get("DAILY_CHK/txn"));
+        assertEquals(0, accrualRows());
+    }
+
+    // Savings and checking accounts with random balances, some with transactions this month
+    private static void seed(long seed, int accounts) throws SQLException {
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+        DatabaseConnection.initializeSchema();
+
+        Random random = new Random(seed);
+        for (int i = 0; i < accounts; i++) {
+            String accountId = String.format("ACR%04d", i);
+            boolean savings = random.nextBoolean();
+            BigDecimal balance = BigDecimal.valueOf(random.nextInt(10_000_000) + (savings ? 10_000 : -10_000), 2);
+            insertAccount(accountId, savings ? "SAVINGS" : "CHECKING", balance);
+            for (int k = random.nextInt(4); k > 0; k--) {
+                TransactionLogger.addTransaction(accountId, BigDecimal.ONE);
+            }
+        }
+    }
+
+    private static void insertAccount(String accountId, String type, BigDecimal balance) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO accounts (account_id, type, balance) VALUES (?, ?, ?)")) {
+            stmt.setString(1, accountId);
+            stmt.setString(2, type);
+            stmt.setBigDecimal(3, balance);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Straight on the row, without a ledger entry
+    private static void setBalance(String accountId, BigDecimal balance) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement("UPDATE accounts SET balance = ? WHERE account_id = ?")) {
+            stmt.setBigDecimal(1, balance);
+            stmt.setString(2, accountId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static int accrualRows() throws SQLException {
+        int rows = 0;
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM interest_accruals")) {
+                rs.next();
+                rows += rs.getInt(1);
+            }
+        }
+        return rows;
+    }
+
+    // Balances, ledger amounts in order and rollups of every account
+    private static Map<String, String> dump() throws SQLException {
+        Map<String, String> state = new TreeMap<>();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT account_id, balance FROM accounts")) {
+                    while (rs.next()) {
+                        state.put(rs.getString(1), rs.getBigDecimal(2).toPlainString());
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT account_id, GROUP_CONCAT(amount ORDER BY id) FROM transactions GROUP BY account_id")) {
+                    while (rs.next()) {
+                        state.put(rs.getString(1) + "/txn", rs.getString(2));
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT account_id, credit_total, debit_total, txn_count, closing_balance FROM ledger_rollups")) {
+                    while (rs.next()) {
+                        state.put(rs.getString(1) + "/rollup", rs.getString(2) + "," + rs.getString(3) + "," + rs.getString(4) + "," + rs.getString(5));
+                    }
+                }
+            }
+        }
+        return state;
+    }
+}
@@ -0,0 +1,110 @@
+package com.banking.admission;
+
+import com.banking.metrics.MetricsRegistry;
+import com.banking.metrics.ServiceOperation;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class AdmissionControllerTest {
+    private static final ServiceOperation OPERATION = ServiceOperation.DEPOSIT;
+    private static final long MILLI = 1_000_000L;
+
+    @Test
+    public void testLimitGrowsWhileCallsWaitAtUsualLatency() {
+        AdmissionController controller = controller(8, 64);
+        for (int round = 0; round < 5; round++) {
+            int limit = controller.getLimit();
+            for (int i = 0; i < limit; i++) {
+                assertTrue(controller.acquire(OPERATION, System.nanoTime()));
+            }
+            // No room and no time to wait: shed, which marks the window as saturated
+            assertFalse(controller.acquire(OPERATION, System.nanoTime()));
+            for (int i = 0; i < limit; i++) {
+                controller.release(OPERATION, System.nanoTime() - MILLI);
+            }
+        }
+        assertTrue("Limit " + controller.getLimit(), controller.getLimit() > 8);
+        assertEquals(5, controller.getRejected());
+    }
+
+    @Test
+    public void testLimitDropsWhenCallsGetSlower() {
+        AdmissionController controller = controller(32, 64);
+        // The first call sets the average, the rest fill two windows
+        runOneAtATime(controller, 21, MILLI);
+        assertEquals(32, controller.getLimit());
+
+        runOneAtATime(controller, 10, 10 * MILLI);
+        assertEquals(28, controller.getLimit());
+
+        // Nothing waits, so the average follows and a database that stays slower is the new normal
+        runOneAtATime(controller, 200, 10 * MILLI);
+        int settled = controller.getLimit();
+        assertTrue("Limit " + settled, settled < 28 && settled > 2);
+        runOneAtATime(controller, 200, 10 * MILLI);
+        assertEquals(settled, controller.getLimit());
+    }
+
+    @Test
+    public void testSteadyHeavyTailIsNotOverload() {
+        AdmissionController controller = controller(32, 64);
+        // Until the average has settled on the mix it may drop a little
+        for (int i = 0; i < 20; i++) {
+            runOneAtATime(controller, 8, MILLI / 2);
+            runOneAtATime(controller, 2, 10 * MILLI);
+        }
+        int settled = controller.getLimit();
+        assertTrue("Limit " + settled, settled > 16);
+
+        // Then one call in five being twenty times slower is just how these calls are
+        for (int i = 0; i < 200; i++) {
+            runOneAtATime(controller, 8, MILLI / 2);
+            runOneAtATime(controller, 2, 10 * MILLI);
+        }
+        assertEquals(settled, controller.getLimit());
+    }
+
+    @Test
+    public void testSharedProcessorsAreNotOverload() {
+        // Eight calls on one processor take eight times as long each
+        AdmissionController oneProcessor = controller(32, 1);
+        runOneAtATime(oneProcessor, 20, MILLI);
+        runConcurrently(oneProcessor, 8, 3, MILLI);
+        assertEquals(32, oneProcessor.getLimit());
+
+        // With a processor each, the same latencies mean a slower database
+        AdmissionController manyProcessors = controller(32, 64);
+        runOneAtATime(manyProcessors, 20, MILLI);
+        runConcurrently(manyProcessors, 8, 3, MILLI);
+        assertTrue("Limit " + manyProcessors.getLimit(), manyProcessors.getLimit() < 32);
+    }
+
+    // Limits 2..64, no waiting, and a window that closes every MIN_WINDOW_SAMPLES calls
+    private static AdmissionController controller(int initialLimit, int processors) {
+        AdmissionController.Priority[] priorities = new AdmissionController.Priority[ServiceOperation.values().length];
+        Arrays.fill(priorities, AdmissionController.Priority.HIGH);
+        return new AdmissionController(true, priorities, initialLimit, 2, 64, 100, 0, 0, 2.0, processors, new MetricsRegistry());
+    }
+
+    private static void runOneAtATime(AdmissionController controller, int calls, long latencyNanos) {
+        for (int i = 0; i < calls; i++) {
+            assertTrue(controller.acquire(OPERATION, System.nanoTime()));
+            controller.release(OPERATION, System.nanoTime() - latencyNanos);
+        }
+    }
+
+    // Each call takes latencyNanos for every call running alongside it, itself included
+    private static void runConcurrently(AdmissionController controller, int calls, int rounds, long latencyNanos) {
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < calls; i++) {
+                assertTrue(controller.acquire(OPERATION, System.nanoTime()));
+            }
+            for (int i = 0; i < calls; i++) {
+                controller.release(OPERATION, System.nanoTime() - latencyNanos * controller.getInFlight());
+            }
+        }
+    }
+}
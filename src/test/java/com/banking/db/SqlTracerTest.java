@@ -0,0 +1,43 @@
+package com.banking.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlTracerTest {
+
+    @Test
+    public void testWhitespaceIsCollapsed() {
+        assertEquals("SELECT * FROM accounts WHERE account_id = ?",
+                SqlTracer.shapeOf("  SELECT  *\n  FROM accounts\tWHERE account_id = ?  "));
+    }
+
+    @Test
+    public void testStringLiteralsBecomeParameters() {
+        assertEquals("UPDATE accounts SET type = ? WHERE account_id = ?",
+                SqlTracer.shapeOf("UPDATE accounts SET type = 'CHECKING' WHERE account_id = 'REC_OFF'"));
+        // A doubled quote stays inside its literal, and nothing in a literal is touched by the later steps
+        assertEquals("SELECT ? FROM accounts WHERE account_id = ?",
+                SqlTracer.shapeOf("SELECT 1 FROM accounts WHERE account_id = 'O''Brien  42'"));
+    }
+
+    @Test
+    public void testNumberLiteralsBecomeParameters() {
+        assertEquals("UPDATE accounts SET balance = balance + ? WHERE interest_rate > ? LIMIT ?",
+                SqlTracer.shapeOf("UPDATE accounts SET balance = balance + 5.25 WHERE interest_rate > 0.02 LIMIT 10"));
+    }
+
+    @Test
+    public void testDigitsInIdentifiersAreKept() {
+        assertEquals("SELECT s1.balance FROM account_slots s1 WHERE s1.slot = ?",
+                SqlTracer.shapeOf("SELECT s1.balance FROM account_slots s1 WHERE s1.slot = 3"));
+    }
+
+    @Test
+    public void testStatementsDifferingOnlyInValuesShareAShape() {
+        String first = SqlTracer.shapeOf("SELECT balance FROM accounts WHERE account_id = 'LOAD0000001' AND balance > 100");
+        String second = SqlTracer.shapeOf("SELECT balance\nFROM accounts WHERE account_id = 'LOAD0000042' AND balance > 2500.50");
+        assertEquals(first, second);
+        assertNotEquals(first, SqlTracer.shapeOf("SELECT balance FROM accounts WHERE account_id = 'LOAD0000001'"));
+    }
+}
@@ -0,0 +1,169 @@
+package com.banking.db;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TwoPhaseCommitTest {
+
+    @Before
+    public void setUp() throws SQLException {
+        DatabaseConnection.initializeSchema();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM accounts");
+                stmt.executeUpdate("DELETE FROM shard_commit_log");
+            }
+        }
+    }
+
+    @Test
+    public void testCommitAppliesEveryShard() throws SQLException {
+        try (Connection shard0 = DatabaseConnection.getUnpooledShardConnection(0); Connection shard1 = DatabaseConnection.getUnpooledShardConnection(1)) {
+            insertAccount(shard0, "TPC_A");
+            insertAccount(shard1, "TPC_B");
+
+            TwoPhaseCommit.commit(TwoPhaseCommit.newTransactionName(), Arrays.asList(shard0, shard1));
+        }
+
+        assertTrue(accountExists(0, "TPC_A"));
+        assertTrue(accountExists(1, "TPC_B"));
+        assertEquals(0, commitLogSize());
+    }
+
+    @Test
+    public void testFailedPrepareRollsBackEveryShard() throws SQLException {
+        try (Connection shard0 = DatabaseConnection.getUnpooledShardConnection(0)) {
+            insertAccount(shard0, "TPC_C");
+            Connection broken = DatabaseConnection.getUnpooledShardConnection(1);
+            broken.close();
+
+            try {
+                TwoPhaseCommit.commit(TwoPhaseCommit.newTransactionName(), Arrays.asList(shard0, broken));
+                fail("A participant that cannot prepare must fail the commit");
+            } catch (SQLException expected) {
+                // the other participant was rolled back
+            }
+        }
+
+        assertFalse(accountExists(0, "TPC_C"));
+        assertEquals(0, commitLogSize());
+    }
+
+    @Test
+    public void testParticipantThatFailsToCommitIsRetried() throws Exception {
+        System.setProperty("db.recovery.retryMillis", "50");
+        String txName = TwoPhaseCommit.newTransactionName();
+        try (Connection shard0 = DatabaseConnection.getUnpooledShardConnection(0);
+             Connection shard1 = DatabaseConnection.getUnpooledShardConnection(1)) {
+            insertAccount(shard0, "TPC_D");
+            insertAccount(shard1, "TPC_E");
+
+            try {
+                TwoPhaseCommit.commit(txName, Arrays.asList(shard0, failingCommit(shard1)));
+                fail("The failed participant commit must be reported");
+            } catch (SQLException expected) {
+                // the decision is logged, so shard 1 stays in doubt until the retry commits it
+            }
+        }
+
+        assertTrue(accountExists(0, "TPC_D"));
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (TwoPhaseCommit.getUnresolvedCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, TwoPhaseCommit.getUnresolvedCount());
+        assertTrue(accountExists(1, "TPC_E"));
+        assertEquals(0, commitLogSize());
+    }
+
+    @Test
+    public void testRecoveryCommitsLoggedAndRollsBackUndecided() throws SQLException {
+        String decided = TwoPhaseCommit.newTransactionName();
+        String undecided = TwoPhaseCommit.newTransactionName();
+        try (Connection first = DatabaseConnection.getUnpooledShardConnection(1);
+             Connection second = DatabaseConnection.getUnpooledShardConnection(1)) {
+            insertAccount(first, "TPC_F");
+            prepare(first, decided);
+            insertAccount(second, "TPC_G");
+            prepare(second, undecided);
+        }
+        // As after a crash between logging the decision and committing the participants
+        try (Connection conn = DatabaseConnection.getShardConnection(0);
+             PreparedStatement stmt = conn.prepareStatement("INSERT INTO shard_commit_log (tx_name, created) VALUES (?, ?)")) {
+            stmt.setString(1, decided);
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+        }
+
+        TwoPhaseCommit.recover();
+
+        assertTrue(accountExists(1, "TPC_F"));
+        assertFalse(accountExists(1, "TPC_G"));
+        assertEquals(0, commitLogSize());
+        try (Connection conn = DatabaseConnection.getShardConnection(1); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.IN_DOUBT")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    private static void insertAccount(Connection conn, String accountId) throws SQLException {
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO accounts (account_id, type, balance) VALUES (?, 'SAVINGS', 100)")) {
+            stmt.setString(1, accountId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private static void prepare(Connection conn, String txName) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PREPARE COMMIT " + txName);
+        }
+    }
+
+    // The connection with commit() failing, as when a shard goes away after it prepared
+    private static Connection failingCommit(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("commit")) {
+                        throw new SQLException("Simulated commit failure");
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static boolean accountExists(int shard, String accountId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getShardConnection(shard);
+             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static int commitLogSize() throws SQLException {
+        try (Connection conn = DatabaseConnection.getShardConnection(0); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM shard_commit_log")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
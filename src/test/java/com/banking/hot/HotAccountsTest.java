@@ -0,0 +1,137 @@
+package com.banking.hot;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.model.AccountType;
+import com.banking.service.AccountService;
+import com.banking.service.Outcome;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HotAccountsTest {
+    private AccountService accountService;
+    private HotAccounts hotAccounts;
+
+    @Before
+    public void setUp() throws SQLException {
+        DatabaseConnection.initializeSchema();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM account_slots");
+                stmt.executeUpdate("DELETE FROM accounts");
+            }
+        }
+        accountService = new AccountService();
+        hotAccounts = HotAccounts.getDefault();
+        hotAccounts.refresh();
+    }
+
+    @Test
+    public void testMinimumBalanceSeesSlots() throws SQLException {
+        accountService.createAccount(AccountType.SAVINGS, "HOT_SAV", new BigDecimal("200.00"));
+        hotAccounts.enable("HOT_SAV", 4);
+        accountService.deposit("HOT_SAV", new BigDecimal("300.00"));
+        // The deposit went to a slot; the row alone could not cover the withdrawal below
+        assertEquals(0, new BigDecimal("200.00").compareTo(rowBalance("HOT_SAV")));
+
+        assertEquals(Outcome.OK, accountService.tryWithdraw("HOT_SAV", new BigDecimal("400.00")).getOutcome());
+        assertEquals(Outcome.INSUFFICIENT_FUNDS, accountService.tryWithdraw("HOT_SAV", new BigDecimal("0.01")).getOutcome());
+        assertEquals(0, new BigDecimal("100.00").compareTo(accountService.findAccount("HOT_SAV").getBalance()));
+    }
+
+    @Test
+    public void testOverdraftLimitSeesSlots() {
+        accountService.createAccount(AccountType.CHECKING, "HOT_CHK", BigDecimal.ZERO);
+        hotAccounts.enable("HOT_CHK", 4);
+        accountService.deposit("HOT_CHK", new BigDecimal("50.00"));
+
+        assertEquals(Outcome.OK, accountService.tryWithdraw("HOT_CHK", new BigDecimal("150.00")).getOutcome());
+        assertEquals(Outcome.INSUFFICIENT_FUNDS, accountService.tryWithdraw("HOT_CHK", new BigDecimal("0.01")).getOutcome());
+        assertEquals(0, new BigDecimal("-100.00").compareTo(accountService.findAccount("HOT_CHK").getBalance()));
+    }
+
+    @Test
+    public void testEnableAndDisableKeepBalance() throws SQLException {
+        accountService.createAccount(AccountType.SAVINGS, "HOT_MODE", new BigDecimal("1000.00"));
+        hotAccounts.enable("HOT_MODE", 8);
+        for (int i = 0; i < 20; i++) {
+            accountService.deposit("HOT_MODE", new BigDecimal("2.50"));
+        }
+        assertEquals(0, new BigDecimal("1050.00").compareTo(accountService.findAccount("HOT_MODE").getBalance()));
+
+        // Re-splitting into fewer slots folds the old ones into the row first
+        hotAccounts.enable("HOT_MODE", 3);
+        assertEquals(3, hotAccounts.slotCount("HOT_MODE"));
+        assertEquals(0, new BigDecimal("1050.00").compareTo(rowBalance("HOT_MODE")));
+        accountService.deposit("HOT_MODE", new BigDecimal("10.00"));
+
+        hotAccounts.disable("HOT_MODE");
+        assertEquals(0, hotAccounts.slotCount("HOT_MODE"));
+        assertEquals(0, new BigDecimal("1060.00").compareTo(rowBalance("HOT_MODE")));
+        assertEquals(0, new BigDecimal("1060.00").compareTo(accountService.findAccount("HOT_MODE").getBalance()));
+    }
+
+    @Test
+    public void testConcurrentDepositsAndWithdrawals() throws Exception {
+        accountService.createAccount(AccountType.SAVINGS, "HOT_BUSY", new BigDecimal("150.00"));
+        hotAccounts.enable("HOT_BUSY", 4);
+        AtomicInteger deposits = new AtomicInteger();
+        AtomicInteger withdrawals = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    if (accountService.tryDeposit("HOT_BUSY", new BigDecimal("1.00")).isOk()) {
+                        deposits.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    if (accountService.tryWithdraw("HOT_BUSY", new BigDecimal("5.00")).isOk()) {
+                        withdrawals.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        BigDecimal expected = new BigDecimal("150.00").add(BigDecimal.valueOf(deposits.get()))
+                .subtract(BigDecimal.valueOf(withdrawals.get() * 5L));
+        BigDecimal balance = accountService.findAccount("HOT_BUSY").getBalance();
+        assertEquals(0, expected.compareTo(balance));
+        assertTrue("Balance " + balance + " went below the minimum", balance.compareTo(new BigDecimal("100.00")) >= 0);
+    }
+
+    private static BigDecimal rowBalance(String accountId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement("SELECT balance FROM accounts WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.banking.reconcile;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.model.AccountType;
+import com.banking.service.AccountService;
+import com.banking.util.LedgerArchive;
+import com.banking.util.TransactionLogger;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LedgerReconcilerTest {
+    private AccountService accountService;
+    private LedgerReconciler reconciler;
+
+    @BeforeClass
+    public static void clearArchive() throws IOException {
+        Path archiveDir = Paths.get(DatabaseConnection.getProperty("archive.dir", "ledger_archive"));
+        if (Files.exists(archiveDir)) {
+            try (Stream<Path> paths = Files.walk(archiveDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+        }
+        DatabaseConnection.initializeSchema();
+        accountService = new AccountService();
+        reconciler = new LedgerReconciler(2, 10, Paths.get(DatabaseConnection.getProperty("reconcile.reportDir", "reconciliation")));
+    }
+
+    @Test
+    public void testRowSkippedByWatermarkIsHealed() throws Exception {
+        String skipped = "REC_SKIP";
+        String other = accountOnShardOf(skipped);
+        accountService.createAccount(AccountType.SAVINGS, skipped, new BigDecimal("100.00"));
+        accountService.createAccount(AccountType.SAVINGS, other, new BigDecimal("100.00"));
+        assertTrue(reconciler.run(false).getDiscrepancies().isEmpty());
+
+        // A deposit that takes its ledger id first but commits after a later one, around a run
+        try (Connection conn = DatabaseConnection.getUnpooledShardConnection(DatabaseConnection.shardOf(skipped))) {
+            conn.setAutoCommit(false);
+            TransactionLogger.insertTransaction(conn, skipped, new BigDecimal("50.00"), LocalDateTime.now());
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE accounts SET balance = balance + 50 WHERE account_id = ?")) {
+                stmt.setString(1, skipped);
+                stmt.executeUpdate();
+            }
+            accountService.deposit(other, new BigDecimal("10.00"));
+            assertTrue(reconciler.run(false).getDiscrepancies().isEmpty());
+            conn.commit();
+        }
+
+        // The watermark is past the late row, so only the exact check of the differing account finds it
+        ReconciliationSummary healed = reconciler.run(false);
+        assertEquals(0, healed.getFullShards());
+        assertTrue(healed.getDiscrepancies().isEmpty());
+        assertEquals(1, healed.getRechecked());
+        assertEquals(0, new BigDecimal("150.00").compareTo(runningTotal(skipped)));
+
+        ReconciliationSummary next = reconciler.run(false);
+        assertTrue(next.getDiscrepancies().isEmpty());
+        assertEquals(0, next.getRechecked());
+    }
+
+    @Test
+    public void testRealDiscrepancyIsReported() throws Exception {
+        accountService.createAccount(AccountType.CHECKING, "REC_OFF", new BigDecimal("100.00"));
+        assertTrue(reconciler.run(false).getDiscrepancies().isEmpty());
+        try (Connection conn = DatabaseConnection.getConnection("REC_OFF"); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("UPDATE accounts SET balance = 90 WHERE account_id = 'REC_OFF'");
+        }
+
+        ReconciliationSummary summary = reconciler.run(false);
+        assertEquals(1, summary.getDiscrepancies().size());
+        Discrepancy discrepancy = summary.getDiscrepancies().get(0);
+        assertEquals("REC_OFF", discrepancy.getAccountId());
+        assertEquals(0, new BigDecimal("100.00").compareTo(discrepancy.getLedgerTotal()));
+        assertEquals(0, new BigDecimal("-10.00").compareTo(discrepancy.getDifference()));
+        assertTrue(Files.exists(summary.getReport()));
+    }
+
+    @Test
+    public void testArchivedRowsCount() throws Exception {
+        YearMonth old = YearMonth.now().minusMonths(6);
+        insertAccountWithLedger("REC_ARC1", old, "100.00", "-30.00");
+        insertAccountWithLedger("REC_ARC2", old, "250.00");
+        try (Connection conn = DatabaseConnection.getConnection("REC_ARC1")) {
+            conn.setAutoCommit(false);
+            TransactionLogger.insertTransaction(conn, "REC_ARC1", new BigDecimal("5.00"), LocalDateTime.now());
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE accounts SET balance = balance + 5 WHERE account_id = 'REC_ARC1'");
+            }
+            conn.commit();
+        }
+        assertTrue(reconciler.run(false).getDiscrepancies().isEmpty());
+
+        assertEquals(3, LedgerArchive.archive(old));
+
+        // An incremental run keeps the archived rows in its totals, and a full one reads them back
+        ReconciliationSummary incremental = reconciler.run(false);
+        assertTrue(incremental.getDiscrepancies().isEmpty());
+        assertEquals(0, incremental.getRechecked());
+        ReconciliationSummary full = reconciler.run(true);
+        assertEquals(DatabaseConnection.getShardCount(), full.getFullShards());
+        assertTrue(full.getDiscrepancies().isEmpty());
+        assertEquals(0, full.getRechecked());
+        assertEquals(0, new BigDecimal("75.00").compareTo(runningTotal("REC_ARC1")));
+        assertEquals(0, new BigDecimal("250.00").compareTo(runningTotal("REC_ARC2")));
+    }
+
+    // An account id that lives on the same shard as accountId, so both share one ledger id sequence
+    private static String accountOnShardOf(String accountId) {
+        for (int i = 0; ; i++) {
+            String candidate = "REC_OTHER" + i;
+            if (DatabaseConnection.shardOf(candidate) == DatabaseConnection.shardOf(accountId)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void insertAccountWithLedger(String accountId, YearMonth month, String... amounts) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId)) {
+            conn.setAutoCommit(false);
+            BigDecimal balance = BigDecimal.ZERO;
+            for (int i = 0; i < amounts.length; i++) {
+                BigDecimal amount = new BigDecimal(amounts[i]);
+                TransactionLogger.insertTransaction(conn, accountId, amount, month.atDay(i + 1).atTime(12, 0));
+                balance = balance.add(amount);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("INSERT INTO accounts (account_id, type, balance) VALUES (?, 'CHECKING', ?)")) {
+                stmt.setString(1, accountId);
+                stmt.setBigDecimal(2, balance);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+        }
+    }
+
+    private static BigDecimal runningTotal(String accountId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement("SELECT ledger_total FROM reconciliation_totals WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                assertTrue(rs.next());
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.service;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.model.AccountType;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentUpdateTest {
+    private static final int THREADS = 8;
+
+    private AccountService accountService;
+
+    @Before
+    public void setUp() throws SQLException {
+        DatabaseConnection.initializeSchema();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM accounts");
+                stmt.executeUpdate("DELETE FROM transactions");
+            }
+        }
+        accountService = new AccountService();
+    }
+
+    @Test
+    public void testConcurrentDepositsAllCount() throws Exception {
+        accountService.createAccount(AccountType.SAVINGS, "RACE_DEP", new BigDecimal("100.00"));
+
+        int deposits = runConcurrently(200, () -> accountService.tryDeposit("RACE_DEP", BigDecimal.ONE));
+
+        BigDecimal balance = accountService.findAccount("RACE_DEP").getBalance();
+        assertEquals(0, new BigDecimal("100.00").add(BigDecimal.valueOf(deposits)).compareTo(balance));
+        assertEquals(0, ledgerTotal("RACE_DEP").compareTo(balance));
+    }
+
+    @Test
+    public void testConcurrentWithdrawalsStopAtTheLimit() throws Exception {
+        // A checking account may go down to -100
+        accountService.createAccount(AccountType.CHECKING, "RACE_WD", BigDecimal.ZERO);
+
+        int withdrawals = runConcurrently(50, () -> accountService.tryWithdraw("RACE_WD", BigDecimal.ONE));
+
+        assertEquals(100, withdrawals);
+        BigDecimal balance = accountService.findAccount("RACE_WD").getBalance();
+        assertEquals(0, new BigDecimal("-100.00").compareTo(balance));
+        assertEquals(0, ledgerTotal("RACE_WD").compareTo(balance));
+    }
+
+    @Test
+    public void testConcurrentSameShardTransfersKeepTotals() throws Exception {
+        String from = "RACE_FROM";
+        String to = accountOnShardOf(from);
+        accountService.createAccount(AccountType.SAVINGS, from, new BigDecimal("1000.00"));
+        accountService.createAccount(AccountType.SAVINGS, to, new BigDecimal("1000.00"));
+
+        int transfers = runConcurrently(50, () -> accountService.tryTransfer(from, to, BigDecimal.ONE));
+
+        BigDecimal fromBalance = accountService.findAccount(from).getBalance();
+        BigDecimal toBalance = accountService.findAccount(to).getBalance();
+        assertEquals(0, new BigDecimal("1000.00").subtract(BigDecimal.valueOf(transfers)).compareTo(fromBalance));
+        assertEquals(0, new BigDecimal("1000.00").add(BigDecimal.valueOf(transfers)).compareTo(toBalance));
+        assertEquals(0, ledgerTotal(from).compareTo(fromBalance));
+        assertEquals(0, ledgerTotal(to).compareTo(toBalance));
+    }
+
+    // Runs the operation perThread times on each of THREADS threads; returns how many succeeded
+    private static int runConcurrently(int perThread, Supplier<OperationResult<Void>> operation) throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    if (operation.get().isOk()) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        return succeeded.get();
+    }
+
+    private static String accountOnShardOf(String accountId) {
+        for (int i = 0; ; i++) {
+            String candidate = "RACE_TO" + i;
+            if (DatabaseConnection.shardOf(candidate) == DatabaseConnection.shardOf(accountId)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static BigDecimal ledgerTotal(String accountId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection(accountId);
+             PreparedStatement stmt = conn.prepareStatement("SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE account_id = ?")) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getBigDecimal(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.banking.service;
+
+import com.banking.db.DatabaseConnection;
+import com.banking.exception.AccountNotFoundException;
+import com.banking.exception.BankingException;
+import com.banking.exception.InsufficientFundsException;
+import com.banking.exception.OverloadedException;
+import com.banking.exception.VelocityLimitExceededException;
+import com.banking.model.Account;
+import com.banking.model.AccountType;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+public class OperationResultTest {
+    private AccountService accountService;
+
+    @BeforeClass
+    public static void setUpLimits() {
+        // One withdrawal per account and minute, read when the velocity tracker is first used
+        System.setProperty("velocity.minute.maxCount", "1");
+    }
+
+    @Before
+    public void setUp() throws SQLException {
+        DatabaseConnection.initializeSchema();
+        for (int shard = 0; shard < DatabaseConnection.getShardCount(); shard++) {
+            try (Connection conn = DatabaseConnection.getShardConnection(shard); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM accounts");
+            }
+        }
+        accountService = new AccountService();
+    }
+
+    @Test
+    public void testOkReturnsValue() {
+        OperationResult<Account> created = accountService.tryCreateAccount(AccountType.SAVINGS, "RES_OK", new BigDecimal("500.00"));
+        assertEquals(Outcome.OK, created.getOutcome());
+        assertEquals("RES_OK", created.orThrow().getAccountNumber());
+
+        assertEquals(Outcome.OK, accountService.tryDeposit("RES_OK", new BigDecimal("25.00")).getOutcome());
+        accountService.deposit("RES_OK", new BigDecimal("25.00"));
+        assertEquals(0, new BigDecimal("550.00").compareTo(accountService.findAccount("RES_OK").getBalance()));
+    }
+
+    @Test
+    public void testAccountNotFound() {
+        OperationResult<Void> result = accountService.tryDeposit("RES_MISSING", BigDecimal.TEN);
+        assertEquals(Outcome.ACCOUNT_NOT_FOUND, result.getOutcome());
+        assertEquals("RES_MISSING", result.getAccountId());
+
+        AccountNotFoundException thrown = assertThrows(AccountNotFoundException.class,
+                () -> accountService.deposit("RES_MISSING", BigDecimal.TEN));
+        assertEquals(result.getMessage(), thrown.getMessage());
+        assertEquals("RES_MISSING", thrown.getAccountNumber());
+        assertThrows(AccountNotFoundException.class, () -> accountService.findAccount("RES_MISSING"));
+    }
+
+    @Test
+    public void testInsufficientFunds() {
+        accountService.createAccount(AccountType.CHECKING, "RES_POOR", new BigDecimal("10.00"));
+
+        OperationResult<Void> result = accountService.tryWithdraw("RES_POOR", new BigDecimal("500.00"));
+        assertEquals(Outcome.INSUFFICIENT_FUNDS, result.getOutcome());
+        assertEquals(0, new BigDecimal("10.00").compareTo(result.getAvailableBalance()));
+
+        InsufficientFundsException thrown = assertThrows(InsufficientFundsException.class,
+                () -> accountService.withdraw("RES_POOR", new BigDecimal("500.00")));
+        assertEquals(result.getMessage(), thrown.getMessage());
+        assertEquals(0, result.getRequestedAmount().compareTo(thrown.getRequestedAmount()));
+        assertEquals(0, result.getAvailableBalance().compareTo(thrown.getAvailableBalance()));
+    }
+
+    @Test
+    public void testInvalidAmountAndAccount() {
+        accountService.createAccount(AccountType.SAVINGS, "RES_AMOUNT", new BigDecimal("500.00"));
+
+        OperationResult<Void> deposit = accountService.tryDeposit("RES_AMOUNT", BigDecimal.ZERO);
+        assertEquals(Outcome.INVALID_AMOUNT, deposit.getOutcome());
+        BankingException thrown = assertThrows(BankingException.class, () -> accountService.deposit("RES_AMOUNT", BigDecimal.ZERO));
+        assertEquals(BankingException.class, thrown.getClass());
+        assertEquals(deposit.getMessage(), thrown.getMessage());
+
+        OperationResult<Account> negative = accountService.tryCreateAccount(AccountType.SAVINGS, "RES_NEGATIVE", new BigDecimal("-1.00"));
+        assertEquals(Outcome.INVALID_AMOUNT, negative.getOutcome());
+        thrown = assertThrows(BankingException.class,
+                () -> accountService.createAccount(AccountType.SAVINGS, "RES_NEGATIVE", new BigDecimal("-1.00")));
+        assertEquals(negative.getMessage(), thrown.getMessage());
+
+        // An empty id is reported as a missing account
+        OperationResult<Void> empty = accountService.tryWithdraw("", BigDecimal.TEN);
+        assertEquals(Outcome.ACCOUNT_NOT_FOUND, empty.getOutcome());
+        thrown = assertThrows(AccountNotFoundException.class, () -> accountService.withdraw("", BigDecimal.TEN));
+        assertEquals(empty.getMessage(), thrown.getMessage());
+    }
+
+    @Test
+    public void testVelocityLimitExceeded() {
+        accountService.createAccount(AccountType.CHECKING, "RES_FAST", new BigDecimal("1000.00"));
+        accountService.withdraw("RES_FAST", new BigDecimal("1.00"));
+
+        OperationResult<Void> result = accountService.tryWithdraw("RES_FAST", new BigDecimal("1.00"));
+        assertEquals(Outcome.VELOCITY_LIMIT_EXCEEDED, result.getOutcome());
+
+        VelocityLimitExceededException thrown = assertThrows(VelocityLimitExceededException.class,
+                () -> accountService.withdraw("RES_FAST", new BigDecimal("1.00")));
+        assertEquals(result.getMessage(), thrown.getMessage());
+        assertEquals("RES_FAST", thrown.getAccountNumber());
+        // A rejected withdrawal writes nothing
+        assertEquals(0, new BigDecimal("999.00").compareTo(accountService.findAccount("RES_FAST").getBalance()));
+    }
+
+    @Test
+    public void testOverloaded() {
+        OperationResult<Void> result = OperationResult.overloaded("deposit");
+        assertEquals(Outcome.OVERLOADED, result.getOutcome());
+
+        OverloadedException thrown = assertThrows(OverloadedException.class, result::orThrow);
+        assertEquals(result.getMessage(), thrown.getMessage());
+    }
+
+    @Test
+    public void testErrorRethrowsOriginal() {
+        IllegalStateException failure = new IllegalStateException("disk full");
+        OperationResult<Void> result = OperationResult.error(failure);
+        assertEquals(Outcome.ERROR, result.getOutcome());
+        assertSame(failure, result.getError());
+        assertSame(failure, assertThrows(IllegalStateException.class, result::orThrow));
+    }
+}
@@ -0,0 +1,92 @@
+package com.banking.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0.0, histogram.getMeanNanos(), 0.0);
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMeanNanos(), 1e-9);
+    }
+
+    @Test
+    public void testLargeValuesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1us .. 10ms in 1us steps
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        double[] percentiles = {10, 50, 90, 99, 99.9};
+        for (double percentile : percentiles) {
+            long exact = (long) Math.ceil(percentile / 100.0 * 10_000) * 1000;
+            long reported = histogram.getValueAtPercentile(percentile);
+            // The bucket's upper bound: never below the exact value, at most ~1.6% above
+            assertTrue(percentile + ": " + reported + " < " + exact, reported >= exact);
+            assertTrue(percentile + ": " + reported + " too far above " + exact, reported <= exact * 1.016);
+        }
+        assertEquals(9900.0, histogram.getValueAtPercentile(99, TimeUnit.MICROSECONDS), 9900 * 0.016);
+    }
+
+    @Test
+    public void testPercentileIsCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000_003);
+        assertEquals(1_000_003, histogram.getValueAtPercentile(50));
+        assertEquals(1_000_003, histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.upperBoundOf(index));
+            if (index > 0) {
+                assertTrue(value + " in an earlier bucket", value > LatencyHistogram.upperBoundOf(index - 1));
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.record(5_000_000);
+        }
+
+        fast.add(slow);
+        assertEquals(100, fast.getCount());
+        assertEquals(100, fast.getValueAtPercentile(90));
+        assertEquals(5_000_000, fast.getValueAtPercentile(91));
+        assertEquals(5_000_000, fast.getMaxNanos());
+
+        fast.reset();
+        assertEquals(0, fast.getCount());
+        assertEquals(0, fast.getValueAtPercentile(50));
+        assertEquals(0, fast.getMaxNanos());
+    }
+}
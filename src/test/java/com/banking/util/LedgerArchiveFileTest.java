@@ -0,0 +1,114 @@
+package com.banking.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LedgerArchiveFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRowsRoundTrip() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("shard0/2026-01.ldg");
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0);
+        try (LedgerArchiveFile.Writer writer = new LedgerArchiveFile.Writer(path)) {
+            writer.add(100, "ARC_A", new BigDecimal("1000.00"), start.plusNanos(123_456_000));
+            // Ids may go down and dates repeat, so the differences are negative or zero
+            writer.add(7, "ARC_A", new BigDecimal("-250.75"), start.plusNanos(123_456_000));
+            writer.add(Long.MAX_VALUE / 2, "ARC_A", new BigDecimal("0.01"), start.plusDays(30).plusHours(23));
+            writer.add(101, "ARC_B", new BigDecimal("-99999999.99"), start.plusMinutes(5));
+            assertEquals(4, writer.getRowCount());
+            writer.commit();
+        }
+        assertFalse(Files.exists(path.resolveSibling("2026-01.ldg.tmp")));
+
+        LedgerArchiveFile file = LedgerArchiveFile.open(path);
+        assertEquals(new HashSet<>(Arrays.asList("ARC_A", "ARC_B")), file.accountIds());
+
+        List<TransactionLogger.TransactionRecord> rows = file.read("ARC_A");
+        assertEquals(3, rows.size());
+        assertRow(rows.get(0), "ARC_A", "1000.00", start.plusNanos(123_456_000));
+        assertRow(rows.get(1), "ARC_A", "-250.75", start.plusNanos(123_456_000));
+        assertRow(rows.get(2), "ARC_A", "0.01", start.plusDays(30).plusHours(23));
+        LedgerArchiveFile.Entry entry = file.find("ARC_A");
+        assertEquals(3, entry.rows);
+        assertEquals(74926, entry.totalCents);
+
+        rows = file.read("ARC_B");
+        assertEquals(1, rows.size());
+        assertRow(rows.get(0), "ARC_B", "-99999999.99", start.plusMinutes(5));
+
+        assertNull(file.find("ARC_NONE"));
+        assertTrue(file.read("ARC_NONE").isEmpty());
+    }
+
+    @Test
+    public void testManyRowsCompress() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("many.ldg");
+        LocalDateTime start = LocalDateTime.of(2026, 2, 1, 9, 0);
+        try (LedgerArchiveFile.Writer writer = new LedgerArchiveFile.Writer(path)) {
+            for (int i = 0; i < 10_000; i++) {
+                writer.add(1_000_000 + i, "ARC_BUSY", new BigDecimal(i % 2 == 0 ? "25.00" : "-10.00"), start.plusSeconds(i * 60L));
+            }
+            writer.commit();
+        }
+
+        LedgerArchiveFile file = LedgerArchiveFile.open(path);
+        List<TransactionLogger.TransactionRecord> rows = file.read("ARC_BUSY");
+        assertEquals(10_000, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(start.plusSeconds(i * 60L), rows.get(i).getDate());
+        }
+        assertEquals(5000 * 2500 - 5000 * 1000, file.find("ARC_BUSY").totalCents);
+        // Regular differences deflate to well under a byte a row
+        assertTrue("Block of " + file.find("ARC_BUSY").length + " bytes", file.find("ARC_BUSY").length < 10_000);
+    }
+
+    @Test
+    public void testMicrosConversion() {
+        LocalDateTime[] dates = {
+                LocalDateTime.of(2026, 3, 31, 23, 59, 59, 999_999_000),
+                LocalDateTime.of(1970, 1, 1, 0, 0),
+                LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500_000_000)
+        };
+        for (LocalDateTime date : dates) {
+            assertEquals(date, LedgerArchiveFile.toDate(LedgerArchiveFile.toMicros(date)));
+        }
+        assertEquals(-500_000, LedgerArchiveFile.toMicros(dates[2]));
+    }
+
+    @Test
+    public void testUncommittedWriterLeavesNothing() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("partial.ldg");
+        try (LedgerArchiveFile.Writer writer = new LedgerArchiveFile.Writer(path)) {
+            writer.add(1, "ARC_A", BigDecimal.TEN, LocalDateTime.of(2026, 1, 1, 0, 0));
+        }
+        assertFalse(Files.exists(path));
+        assertFalse(Files.exists(path.resolveSibling("partial.ldg.tmp")));
+    }
+
+    @Test
+    public void testNotAnArchiveIsRejected() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("other.ldg");
+        Files.write(path, new byte[64]);
+        assertThrows(IOException.class, () -> LedgerArchiveFile.open(path));
+    }
+
+    private static void assertRow(TransactionLogger.TransactionRecord row, String accountId, String amount, LocalDateTime date) {
+        assertEquals(accountId, row.getAccountId());
+        assertEquals(new BigDecimal(amount), row.getAmount());
+        assertEquals(date, row.getDate());
+    }
+}
@@ -0,0 +1,85 @@
+package com.banking.velocity;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class VelocityTrackerTest {
+    private static final BigDecimal TEN = new BigDecimal("10.00");
+
+    @Test
+    public void testCountLimit() {
+        VelocityTracker tracker = tracker(new VelocityTracker.Window("minute", Duration.ofMinutes(1), 2, BigDecimal.ZERO));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_CNT", TEN)));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_CNT", TEN)));
+        long stamp = tracker.tryRecord("VEL_CNT", TEN);
+        assertTrue(VelocityTracker.isRejected(stamp));
+        assertEquals("minute", tracker.getRejectedWindow(stamp).getName());
+        // A rejected withdrawal is not counted, and other accounts have their own limit
+        assertEquals(2, tracker.getCount("VEL_CNT", "minute"));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_OTHER", TEN)));
+    }
+
+    @Test
+    public void testAmountLimitNamesTheWindow() {
+        VelocityTracker tracker = tracker(
+                new VelocityTracker.Window("minute", Duration.ofMinutes(1), 0, new BigDecimal("1000")),
+                new VelocityTracker.Window("hour", Duration.ofHours(1), 0, new BigDecimal("25")));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_AMT", TEN)));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_AMT", TEN)));
+        long stamp = tracker.tryRecord("VEL_AMT", TEN);
+        assertTrue(VelocityTracker.isRejected(stamp));
+        assertEquals("hour", tracker.getRejectedWindow(stamp).getName());
+        assertEquals("at most $25.00 per hour", tracker.getRejectedWindow(stamp).getDescription());
+        // Within the amount left
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_AMT", new BigDecimal("5.00"))));
+    }
+
+    @Test
+    public void testReleaseFreesTheSlot() {
+        VelocityTracker tracker = tracker(new VelocityTracker.Window("minute", Duration.ofMinutes(1), 1, BigDecimal.ZERO));
+        long stamp = tracker.tryRecord("VEL_REL", TEN);
+        assertFalse(VelocityTracker.isRejected(stamp));
+        assertTrue(VelocityTracker.isRejected(tracker.tryRecord("VEL_REL", TEN)));
+
+        tracker.release("VEL_REL", TEN, stamp);
+        assertEquals(0, tracker.getCount("VEL_REL", "minute"));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_REL", TEN)));
+    }
+
+    @Test
+    public void testWithdrawalsExpireWithTheWindow() throws InterruptedException {
+        // Twelve 20ms buckets
+        VelocityTracker tracker = tracker(new VelocityTracker.Window("second", Duration.ofMillis(240), 2, BigDecimal.ZERO));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_EXP", TEN)));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_EXP", TEN)));
+        assertTrue(VelocityTracker.isRejected(tracker.tryRecord("VEL_EXP", TEN)));
+
+        Thread.sleep(300);
+        assertEquals(0, tracker.getCount("VEL_EXP", "second"));
+        assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_EXP", TEN)));
+        assertEquals(1, tracker.getCount("VEL_EXP", "second"));
+        // The idle account was swept and came back
+        assertEquals(1, tracker.getTrackedAccounts());
+    }
+
+    @Test
+    public void testNoLimitsRecordsNothing() {
+        VelocityTracker tracker = tracker(new VelocityTracker.Window("minute", Duration.ofMinutes(1), 0, BigDecimal.ZERO));
+        assertFalse(tracker.isEnabled());
+        for (int i = 0; i < 100; i++) {
+            assertFalse(VelocityTracker.isRejected(tracker.tryRecord("VEL_OFF", TEN)));
+        }
+        assertEquals(0, tracker.getTrackedAccounts());
+        assertFalse(new VelocityTracker(Collections.emptyList()).isEnabled());
+    }
+
+    private static VelocityTracker tracker(VelocityTracker.Window... windows) {
+        return new VelocityTracker(Arrays.asList(windows));
+    }
+}